@@ -2,31 +2,23 @@ package com.whosly.stars.netty.chat.server.enhanced;
 
 import io.netty.channel.*;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * 增强版netty服务端处理器
  * 支持：@用户名/@ID 私聊、/name 改名、/users 查询、普通消息仅回发、可选广播
  */
 public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<String> {
-    // username -> channel
-    private static final Map<String, Channel> usernameToChannel = new ConcurrentHashMap<>();
-    // id(shortText) -> channel
-    private static final Map<String, Channel> idToChannel = new ConcurrentHashMap<>();
-    // channel -> username
-    private static final Map<Channel, String> channelToUsername = new ConcurrentHashMap<>();
+    // 在线用户：按用户名、id(longText) 索引，改名原子完成。shortText 只用于默认用户名，不保证唯一
+    private static final PresenceRegistry<Channel> registry =
+            new PresenceRegistry<>(Runtime.getRuntime().availableProcessors() * 2);
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx) {
         Channel ch = ctx.channel();
-        String id = ch.id().asShortText();
-        String tempClientName = "Client_" + id;
-
-        // 建立映射
-        channelToUsername.put(ch, tempClientName);
-        usernameToChannel.put(tempClientName, ch);
-        idToChannel.put(id, ch);
+        String id = ch.id().asLongText();
+        String defaultName = "Client_" + ch.id().asShortText();
+        // 加入注册表，用户名被占用时追加序号
+        PresenceRegistry.User<Channel> user = registry.join(id, ch, defaultName);
+        String tempClientName = user == null ? defaultName : user.getName();
 
         // 发送欢迎与帮助
         String welcomeMsg = "欢迎连接到聊天服务器！\n"
@@ -46,7 +38,8 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
     @Override
     public void channelRead0(ChannelHandlerContext ctx, String msg) {
         Channel senderChannel = ctx.channel();
-        String senderName = channelToUsername.getOrDefault(senderChannel, "Unknown");
+        PresenceRegistry.User<Channel> sender = registry.findById(senderChannel.id().asLongText());
+        String senderName = sender != null ? sender.getName() : "Unknown";
         String trimmed = msg == null ? "" : msg.trim();
         if (trimmed.isEmpty()) {
             return;
@@ -66,7 +59,7 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
             return;
         }
 
-        // 私聊：@目标:消息 目标可为用户名或短ID
+        // 私聊：@目标:消息 目标可为用户名或ID
         if (trimmed.startsWith("@")) {
             int colonIndex = trimmed.indexOf(":");
             if (colonIndex <= 1) {
@@ -100,18 +93,16 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
     }
 
     private void handlePrivateMessage(Channel senderChannel, String senderName, String targetToken, String content) {
-        Channel target = usernameToChannel.get(targetToken);
-        if (target == null) {
-            target = idToChannel.get(targetToken);
-        }
-        if (target == null || !target.isActive()) {
+        PresenceRegistry.User<Channel> targetUser = registry.find(targetToken);
+        if (targetUser == null || !targetUser.getChannel().isActive()) {
             senderChannel.writeAndFlush("未找到目标或已离线: " + targetToken + "\n");
             return;
         }
 
-        String senderId = senderChannel.id().asShortText();
-        String targetName = channelToUsername.getOrDefault(target, "Unknown");
-        String targetId = target.id().asShortText();
+        Channel target = targetUser.getChannel();
+        String senderId = senderChannel.id().asLongText();
+        String targetName = targetUser.getName();
+        String targetId = targetUser.getId();
 
         target.writeAndFlush("私聊消息 [" + senderName + "|" + senderId + "]: " + content + "\n");
         senderChannel.writeAndFlush("已私聊发送至 [" + targetName + "|" + targetId + "]\n");
@@ -120,25 +111,20 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
 
     private void handleBroadcastMessage(Channel senderChannel, String senderName, String msg) {
         String broadcastMsg = msg.substring(4);
-        String fullMsg = "广播消息 [" + senderName + "]: " + broadcastMsg;
-        for (Channel channel : usernameToChannel.values()) {
+        String fullMsg = "广播消息 [" + senderName + "]: " + broadcastMsg + "\n";
+        registry.forEach(user -> {
+            Channel channel = user.getChannel();
             if (channel.isActive()) {
-                channel.writeAndFlush(fullMsg + "\n");
+                channel.writeAndFlush(fullMsg);
             }
-        }
+        });
         senderChannel.writeAndFlush("广播消息已发送给所有在线用户\n");
         System.out.println("[BROADCAST] " + senderName + ": " + broadcastMsg);
     }
 
     private void handleListUsers(Channel senderChannel) {
-        StringBuilder userList = new StringBuilder("在线用户列表:\n");
-        for (Map.Entry<String, Channel> entry : usernameToChannel.entrySet()) {
-            Channel ch = entry.getValue();
-            String id = ch.id().asShortText();
-            String name = entry.getKey();
-            userList.append("- ").append(name).append(" (ID=").append(id).append(")\n");
-        }
-        senderChannel.writeAndFlush(userList.toString());
+        // 在线用户列表按分片缓存，只在有变化时重建
+        senderChannel.writeAndFlush("在线用户列表:\n" + registry.usersSnapshot());
     }
 
     private void handleRename(Channel senderChannel, String oldName, String newNameRaw) {
@@ -147,13 +133,15 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
             senderChannel.writeAndFlush("用户名不能为空\n");
             return;
         }
-        if (usernameToChannel.containsKey(newName)) {
+        PresenceRegistry.RenameResult result = registry.rename(senderChannel.id().asLongText(), newName);
+        if (result == PresenceRegistry.RenameResult.TAKEN) {
             senderChannel.writeAndFlush("用户名已被占用: " + newName + "\n");
             return;
         }
-        usernameToChannel.remove(oldName);
-        usernameToChannel.put(newName, senderChannel);
-        channelToUsername.put(senderChannel, newName);
+        if (result == PresenceRegistry.RenameResult.NOT_FOUND) {
+            senderChannel.writeAndFlush("用户不存在或已离线\n");
+            return;
+        }
         senderChannel.writeAndFlush("用户名已更新为: " + newName + "\n");
         System.out.println("[RENAME] " + oldName + " -> " + newName);
     }
@@ -164,21 +152,20 @@ public class EnhancedChatServerHandler extends SimpleChannelInboundHandler<Strin
     }
 
     private void broadcastToOthers(Channel excludeChannel, String message) {
-        for (Channel channel : usernameToChannel.values()) {
+        String line = message + "\n";
+        registry.forEach(user -> {
+            Channel channel = user.getChannel();
             if (channel != excludeChannel && channel.isActive()) {
-                channel.writeAndFlush(message + "\n");
+                channel.writeAndFlush(line);
             }
-        }
+        });
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
-        String clientName = channelToUsername.remove(channel);
-        if (clientName != null) {
-            usernameToChannel.remove(clientName);
-        }
-        idToChannel.values().remove(channel);
+        PresenceRegistry.User<Channel> user = registry.leave(channel.id().asLongText(), channel);
+        String clientName = user != null ? user.getName() : null;
         System.out.println("Client disconnected: id=" + channel.id().asShortText() + ", name=" + clientName);
     }
 
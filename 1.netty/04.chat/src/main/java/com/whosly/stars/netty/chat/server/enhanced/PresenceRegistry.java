@@ -0,0 +1,277 @@
+package com.whosly.stars.netty.chat.server.enhanced;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 在线用户注册表
+ *
+ * <code>
+ *     1. id -> 用户、用户名 -> 用户 两个索引，按 id 或用户名查找均为 O(1)。
+ *     2. 加入、改名、离开对同一用户加锁，改名用 putIfAbsent 原子占用新用户名，不会出现两个用户同名或用户名指向已离开的用户。
+ *     3. 成员按 id 分片(shard)，加入、离开只修改所在分片；广播按分片遍历。
+ *     4. 在线用户列表按分片缓存，只重建有变化的分片；没有任何变化时直接返回上次的结果。
+ * </code>
+ *
+ * @param <C> 用户的连接，如 Channel
+ * @author fengyang
+ * @date 2025-08-26 10:12:45
+ * @description
+ */
+final class PresenceRegistry<C> {
+
+    /**
+     * 改名结果
+     */
+    enum RenameResult {
+        OK,
+        /**
+         * 用户名已被占用
+         */
+        TAKEN,
+        /**
+         * 用户不存在或已离开
+         */
+        NOT_FOUND
+    }
+
+    /**
+     * 在线用户
+     */
+    static final class User<C> {
+        private final String id;
+
+        private final C channel;
+
+        private final Shard<C> shard;
+
+        private volatile String name;
+
+        /**
+         * 已离开，由 this 锁保护
+         */
+        private boolean left;
+
+        private User(String id, C channel, Shard<C> shard) {
+            this.id = id;
+            this.channel = channel;
+            this.shard = shard;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        C getChannel() {
+            return channel;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    private final Map<String, User<C>> byId = new ConcurrentHashMap<>();
+
+    private final Map<String, User<C>> byName = new ConcurrentHashMap<>();
+
+    private final Shard<C>[] shards;
+
+    /**
+     * 任何分片变化时加 1，用于判断在线用户列表是否需要重建
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(-1, "");
+
+    @SuppressWarnings("unchecked")
+    PresenceRegistry(int shardCount) {
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard<>();
+        }
+    }
+
+    /**
+     * 加入。用户名已被占用时追加序号
+     *
+     * @return 加入的用户；id 已存在时返回 null
+     */
+    User<C> join(String id, C channel, String name) {
+        User<C> user = new User<>(id, channel, shards[(id.hashCode() & Integer.MAX_VALUE) % shards.length]);
+
+        // 发布到 byId 前先加锁，并发的 leave、rename 会等待加入完成
+        synchronized (user) {
+            if (byId.putIfAbsent(id, user) != null) {
+                return null;
+            }
+
+            String candidate = name;
+            for (int i = 1; byName.putIfAbsent(candidate, user) != null; i++) {
+                candidate = name + "_" + i;
+            }
+            user.name = candidate;
+            user.shard.members.put(id, user);
+        }
+        changed(user.shard);
+
+        return user;
+    }
+
+    /**
+     * 离开。只移除连接为 channel 的用户，id 已被其他连接重新加入时不做任何修改
+     *
+     * @return 离开的用户；不存在或连接不同时返回 null
+     */
+    User<C> leave(String id, C channel) {
+        User<C> user = byId.get(id);
+        if (user == null || user.channel != channel) {
+            return null;
+        }
+
+        synchronized (user) {
+            if (user.left) {
+                return null;
+            }
+            user.left = true;
+            user.shard.members.remove(id, user);
+            byName.remove(user.name, user);
+            byId.remove(id, user);
+        }
+        changed(user.shard);
+
+        return user;
+    }
+
+    /**
+     * 原子改名：新用户名被占用时不做任何修改
+     */
+    RenameResult rename(String id, String newName) {
+        User<C> user = byId.get(id);
+        if (user == null) {
+            return RenameResult.NOT_FOUND;
+        }
+
+        synchronized (user) {
+            if (user.left) {
+                return RenameResult.NOT_FOUND;
+            }
+            if (newName.equals(user.name)) {
+                return RenameResult.OK;
+            }
+            if (byName.putIfAbsent(newName, user) != null) {
+                return RenameResult.TAKEN;
+            }
+            byName.remove(user.name, user);
+            user.name = newName;
+        }
+        changed(user.shard);
+
+        return RenameResult.OK;
+    }
+
+    User<C> findById(String id) {
+        return byId.get(id);
+    }
+
+    User<C> findByName(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * 按用户名或 id 查找
+     */
+    User<C> find(String token) {
+        User<C> user = byName.get(token);
+        return user != null ? user : byId.get(token);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * 用户名索引的大小，与 size() 一致时说明没有残留的用户名
+     */
+    int nameCount() {
+        return byName.size();
+    }
+
+    /**
+     * 按分片遍历在线用户
+     */
+    void forEach(Consumer<User<C>> action) {
+        for (Shard<C> shard : shards) {
+            for (User<C> user : shard.members.values()) {
+                action.accept(user);
+            }
+        }
+    }
+
+    /**
+     * 在线用户列表，每行: - 用户名 (ID=id)
+     */
+    String usersSnapshot() {
+        Snapshot s = this.snapshot;
+        // 先读版本再读数据：构建期间的修改会使版本号变化，下次调用时重建
+        long v = version.get();
+        if (s.version == v) {
+            return s.text;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Shard<C> shard : shards) {
+            sb.append(shard.text());
+        }
+        s = new Snapshot(v, sb.toString());
+        this.snapshot = s;
+
+        return s.text;
+    }
+
+    /**
+     * 修改完成后再增加版本号
+     */
+    private void changed(Shard<C> shard) {
+        shard.version.incrementAndGet();
+        version.incrementAndGet();
+    }
+
+    private static final class Shard<C> {
+        private final Map<String, User<C>> members = new ConcurrentHashMap<>();
+
+        private final AtomicLong version = new AtomicLong();
+
+        private volatile Snapshot cached = new Snapshot(-1, "");
+
+        String text() {
+            Snapshot s = this.cached;
+            long v = version.get();
+            if (s.version == v) {
+                return s.text;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (User<C> user : members.values()) {
+                sb.append("- ").append(user.name).append(" (ID=").append(user.id).append(")\n");
+            }
+            s = new Snapshot(v, sb.toString());
+            this.cached = s;
+
+            return s.text;
+        }
+    }
+
+    private static final class Snapshot {
+        private final long version;
+
+        private final String text;
+
+        Snapshot(long version, String text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+}
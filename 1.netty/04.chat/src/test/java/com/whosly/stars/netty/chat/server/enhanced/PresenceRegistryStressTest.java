@@ -0,0 +1,187 @@
+package com.whosly.stars.netty.chat.server.enhanced;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PresenceRegistry 并发压测：50k 个模拟用户并发加入、改名、离开后，校验索引一致并输出 ops/sec
+ *
+ * @author fengyang
+ */
+class PresenceRegistryStressTest {
+
+    private static final int USERS = Integer.getInteger("bench.users", 50_000);
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private static final int OPS_PER_THREAD = Integer.getInteger("bench.ops", 200_000);
+
+    @Test
+    void testConcurrentJoinRenameLeave() throws Exception {
+        PresenceRegistry<Object> registry = new PresenceRegistry<>(16);
+        AtomicInteger renamed = new AtomicInteger();
+        AtomicInteger taken = new AtomicInteger();
+
+        runConcurrently(t -> {
+            for (int i = t; i < USERS; i += THREADS) {
+                assertNotNull(registry.join("u" + i, new Object(), "Client_u" + i));
+            }
+            return null;
+        });
+        assertEquals(USERS, registry.size());
+        assertConsistent(registry);
+
+        // 每两个用户争抢同一个用户名，只能有一个成功
+        runConcurrently(t -> {
+            for (int i = t; i < USERS; i += THREADS) {
+                PresenceRegistry.RenameResult result = registry.rename("u" + i, "name-" + (i / 2));
+                if (result == PresenceRegistry.RenameResult.OK) {
+                    renamed.incrementAndGet();
+                } else {
+                    assertEquals(PresenceRegistry.RenameResult.TAKEN, result);
+                    taken.incrementAndGet();
+                }
+            }
+            return null;
+        });
+        assertEquals((USERS + 1) / 2, renamed.get());
+        assertEquals(USERS / 2, taken.get());
+        assertConsistent(registry);
+
+        runConcurrently(t -> {
+            for (int i = t; i < USERS; i += THREADS) {
+                if (i % 2 == 1) {
+                    String id = "u" + i;
+                    assertNotNull(registry.leave(id, registry.findById(id).getChannel()));
+                }
+            }
+            return null;
+        });
+        assertEquals((USERS + 1) / 2, registry.size());
+        assertConsistent(registry);
+    }
+
+    @Test
+    void testRandomOps() throws Exception {
+        PresenceRegistry<Object> registry = new PresenceRegistry<>(16);
+
+        long st = System.nanoTime();
+        runConcurrently(t -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                String id = "u" + random.nextInt(USERS);
+                int op = random.nextInt(100);
+                if (op < 30) {
+                    registry.join(id, id, "Client_" + id);
+                } else if (op < 55) {
+                    registry.rename(id, "name-" + random.nextInt(USERS));
+                } else if (op < 75) {
+                    registry.leave(id, id);
+                } else if (op == 99 && random.nextInt(100) == 0) {
+                    // /users 远少于其他操作，每次都在变化时会重建有变化的分片
+                    registry.usersSnapshot();
+                } else {
+                    PresenceRegistry.User<Object> user = registry.find(id);
+                    if (user != null) {
+                        assertEquals(id, user.getId());
+                    }
+                }
+            }
+            return null;
+        });
+        long cost = System.nanoTime() - st;
+
+        long ops = (long) OPS_PER_THREAD * THREADS;
+        System.out.printf("PresenceRegistry threads: %d, users: %d, ops: %d, ops/sec: %.1f%n",
+                THREADS, USERS, ops, ops * 1_000_000_000D / cost);
+        assertConsistent(registry);
+    }
+
+    @Test
+    void testSnapshotRebuildOnlyOnChange() {
+        PresenceRegistry<Object> registry = new PresenceRegistry<>(4);
+        registry.join("a", "a", "alice");
+        registry.join("b", "b", "bob");
+
+        String first = registry.usersSnapshot();
+        assertSame(first, registry.usersSnapshot());
+
+        assertEquals(PresenceRegistry.RenameResult.OK, registry.rename("b", "bobby"));
+        String second = registry.usersSnapshot();
+        assertNotSame(first, second);
+        assertTrue(second.contains("- bobby (ID=b)"));
+        assertFalse(second.contains("- bob (ID=b)"));
+
+        assertEquals(PresenceRegistry.RenameResult.TAKEN, registry.rename("a", "bobby"));
+        assertSame(second, registry.usersSnapshot());
+    }
+
+    @Test
+    void testLeaveOnlySameChannel() {
+        PresenceRegistry<Object> registry = new PresenceRegistry<>(4);
+        Object channel = new Object();
+        registry.join("a", channel, "alice");
+
+        // 同一 id 的其他连接离开时不能移除当前用户
+        assertNull(registry.leave("a", new Object()));
+        assertNotNull(registry.findById("a"));
+
+        assertNotNull(registry.leave("a", channel));
+        assertNull(registry.findById("a"));
+        assertNull(registry.findByName("alice"));
+    }
+
+    /**
+     * 两个索引、分片与在线用户列表一致
+     */
+    private static void assertConsistent(PresenceRegistry<Object> registry) {
+        assertEquals(registry.size(), registry.nameCount());
+
+        Set<String> names = new HashSet<>();
+        AtomicInteger members = new AtomicInteger();
+        registry.forEach(user -> {
+            members.incrementAndGet();
+            assertSame(user, registry.findById(user.getId()));
+            assertSame(user, registry.findByName(user.getName()));
+            assertTrue(names.add(user.getName()), "duplicate name " + user.getName());
+        });
+        assertEquals(registry.size(), members.get());
+
+        String snapshot = registry.usersSnapshot();
+        int lines = snapshot.isEmpty() ? 0 : snapshot.split("\n").length;
+        assertEquals(registry.size(), lines);
+    }
+
+    private interface Task {
+        Void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                Callable<Void> callable = () -> task.run(thread);
+                futures.add(executor.submit(callable));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
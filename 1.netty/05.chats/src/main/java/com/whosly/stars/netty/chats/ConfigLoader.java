@@ -57,4 +57,25 @@ public class ConfigLoader {
         return properties.getProperty("server.host", "localhost");
     }
 
+    /**
+     * 群发时接收者不可写的处理策略：DROP 丢弃本条消息，CLOSE 断开连接
+     */
+    public static String getBroadcastSlowConsumer() {
+        return get("broadcast.slowConsumer", "DROP");
+    }
+
+    /**
+     * 是否广播用户加入、离开的系统提示
+     */
+    public static boolean isPresenceNotify() {
+        return Boolean.parseBoolean(get("broadcast.presenceNotify", "true"));
+    }
+
+    /**
+     * 系统属性(-Dkey=value)优先于配置文件
+     */
+    private static String get(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
+    }
+
 }
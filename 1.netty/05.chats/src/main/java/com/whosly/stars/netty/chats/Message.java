@@ -26,7 +26,16 @@ public class Message {
      * 检查消息是否有效（非空且非空白）
      */
     public boolean isValid() {
-        return message != null && !message.trim().isEmpty();
+        if (message == null) {
+            return false;
+        }
+        // 与 trim() 的判断一致，但不创建新的字符串
+        for (int i = 0; i < message.length(); i++) {
+            if (message.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -0,0 +1,59 @@
+package com.whosly.stars.netty.chats;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 线程安全的时间戳格式化(yyyy-MM-dd HH:mm:ss)
+ *
+ * 格式化结果按秒缓存，同一秒内的多次调用直接返回缓存的字符串，不再创建 SimpleDateFormat、Date 等对象。
+ *
+ * @author fengyang
+ * @date 2025-08-25 14:10:32
+ * @description
+ */
+public final class TimestampFormatter {
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    /**
+     * 最近一次格式化的秒及结果，整体替换，读取时无需加锁
+     */
+    private static volatile Cached cached = new Cached(Long.MIN_VALUE, "");
+
+    private TimestampFormatter() {
+    }
+
+    /**
+     * 格式化当前时间
+     */
+    public static String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * @param epochMillis 毫秒时间戳
+     */
+    public static String format(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+
+        Cached c = cached;
+        if (c.second != second) {
+            c = new Cached(second, FORMATTER.format(Instant.ofEpochSecond(second)));
+            cached = c;
+        }
+        return c.text;
+    }
+
+    private static final class Cached {
+        private final long second;
+
+        private final String text;
+
+        Cached(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -4,44 +4,59 @@ import com.whosly.stars.netty.chats.Message;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * Message对象解码器
+ *
+ * 先按绝对位置读取帧头，帧不完整时不移动读指针；消息内容直接从 ByteBuf 解码为字符串，不经过中间的 byte[]。
+ * 消息长度为负数或超过 MAX_MESSAGE_LENGTH 时丢弃已收到的数据并抛出异常，不会等待、累积一个超长的帧。
+ *
  * @author fengyang
  */
 public class MessageDecoder extends ByteToMessageDecoder {
-    
+
+    /**
+     * 消息内容的最大字节数，-Dchats.maxMessageLength 配置，默认 64KB
+     */
+    public static final int MAX_MESSAGE_LENGTH = Integer.getInteger("chats.maxMessageLength", 64 * 1024);
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        // 检查是否有足够的字节来读取消息长度
-        if (in.readableBytes() < 4) {
+        // 检查是否有足够的字节来读取消息长度和时间戳
+        if (in.readableBytes() < MessageEncoder.HEADER_LENGTH) {
             return;
         }
-        
-        // 标记当前读取位置
-        in.markReaderIndex();
-        
+
+        int readerIndex = in.readerIndex();
+
         // 读取消息长度
-        int messageLength = in.readInt();
-        
-        // 检查是否有足够的字节来读取完整的消息（时间戳8字节 + 消息内容）
-        if (in.readableBytes() < 8 + messageLength) {
-            // 重置读取位置
-            in.resetReaderIndex();
+        int messageLength = in.getInt(readerIndex);
+        if (messageLength < 0 || messageLength > MAX_MESSAGE_LENGTH) {
+            // 长度非法时后续数据已无法分帧，丢弃后由 exceptionCaught 关闭连接
+            in.skipBytes(in.readableBytes());
+            if (messageLength < 0) {
+                throw new CorruptedFrameException("negative message length: " + messageLength);
+            }
+            throw new TooLongFrameException("message length " + messageLength + " exceeds " + MAX_MESSAGE_LENGTH);
+        }
+
+        // 检查是否有足够的字节来读取完整的消息（长度4字节 + 时间戳8字节 + 消息内容）
+        if (in.readableBytes() < MessageEncoder.HEADER_LENGTH + messageLength) {
             return;
         }
-        
+
         // 读取时间戳
-        long timestamp = in.readLong();
-        
+        long timestamp = in.getLong(readerIndex + 4);
+
         // 读取消息内容
-        byte[] messageBytes = new byte[messageLength];
-        in.readBytes(messageBytes);
-        String messageContent = new String(messageBytes, StandardCharsets.UTF_8);
-        
+        String messageContent = in.toString(readerIndex + MessageEncoder.HEADER_LENGTH, messageLength, StandardCharsets.UTF_8);
+        in.skipBytes(MessageEncoder.HEADER_LENGTH + messageLength);
+
         // 创建Message对象
         Message message = new Message(messageContent);
         message.setTimestamp(timestamp);
@@ -53,4 +68,4 @@ public class MessageDecoder extends ByteToMessageDecoder {
             System.out.println("⚠️ MessageDecoder: 解码出无效消息，已忽略");
         }
     }
-}
\ No newline at end of file
+}
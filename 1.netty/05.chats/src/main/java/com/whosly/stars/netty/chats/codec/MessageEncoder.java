@@ -2,29 +2,68 @@ package com.whosly.stars.netty.chats.codec;
 
 import com.whosly.stars.netty.chats.Message;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
-import java.nio.charset.StandardCharsets;
-
 /**
  * Message对象编码器
+ *
+ * 帧格式：消息长度(4字节) + 时间戳(8字节) + 消息内容(UTF-8)。
+ * 消息内容直接以 UTF-8 写入出站 ByteBuf，不经过中间的 byte[]；长度在写完内容后回填。
+ *
  * @author fengyang
  */
 public class MessageEncoder extends MessageToByteEncoder<Message> {
-    
+
+    /**
+     * 消息长度 + 时间戳
+     */
+    static final int HEADER_LENGTH = 12;
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Message msg, boolean preferDirect) throws Exception {
+        int capacity = estimateLength(msg);
+        return preferDirect ? ctx.alloc().ioBuffer(capacity) : ctx.alloc().heapBuffer(capacity);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Message msg, ByteBuf out) throws Exception {
         // 检查消息是否有效
         if (msg != null && msg.isValid()) {
-            // 将消息内容转换为字节并写入ByteBuf
-            byte[] messageBytes = msg.getMessage().getBytes(StandardCharsets.UTF_8);
-            out.writeInt(messageBytes.length); // 先写入消息长度
-            out.writeLong(msg.getTimestamp()); // 写入时间戳
-            out.writeBytes(messageBytes); // 写入消息内容
+            write(msg, out);
         } else {
             // 如果消息无效，记录日志但不编码
             System.out.println("⚠️ MessageEncoder: 尝试编码无效消息，已忽略");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 编码为一个独立的 ByteBuf，群发时只编码一次，由所有接收者共享
+     *
+     * @return 消息无效时返回 null
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, Message msg) {
+        if (msg == null || !msg.isValid()) {
+            return null;
+        }
+
+        ByteBuf out = alloc.buffer(estimateLength(msg));
+        write(msg, out);
+        return out;
+    }
+
+    private static int estimateLength(Message msg) {
+        String text = msg == null ? null : msg.getMessage();
+        return HEADER_LENGTH + (text == null ? 0 : ByteBufUtil.utf8MaxBytes(text));
+    }
+
+    private static void write(Message msg, ByteBuf out) {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0); // 消息长度，写完内容后回填
+        out.writeLong(msg.getTimestamp()); // 写入时间戳
+        int length = ByteBufUtil.writeUtf8(out, msg.getMessage()); // 写入消息内容
+        out.setInt(lengthIndex, length);
+    }
+}
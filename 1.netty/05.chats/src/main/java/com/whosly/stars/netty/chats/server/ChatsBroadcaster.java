@@ -0,0 +1,211 @@
+package com.whosly.stars.netty.chats.server;
+
+import com.whosly.stars.netty.chats.Message;
+import com.whosly.stars.netty.chats.codec.MessageEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群发消息: 只编码一次， 按 EventLoop 分组写入， 每个 EventLoop 每轮事件循环只 flush 一次。
+ *
+ * <code>
+ *     1. 消息编码为一个 ByteBuf， 所有接收者共享(retainedDuplicate)， 不再为每个接收者各编码一次。
+ *     2. 成员按所在的 EventLoop 分组， 一条消息对每个 EventLoop 只提交一个任务； 成员列表只在所属的 EventLoop 中读写。
+ *     3. write 后不立即 flush， 同一轮事件循环中的多条消息合并为一次 flush(一次系统调用)， 只 flush 本轮写过的成员。
+ *     4. 不可写(出站缓冲超过高水位)的接收者按 SlowConsumerPolicy 丢弃本条消息或断开连接。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-25 10:20:15
+ * @description
+ */
+final class ChatsBroadcaster {
+    /**
+     * 接收者不可写时的处理策略
+     */
+    enum SlowConsumerPolicy {
+        /**
+         * 丢弃发给该接收者的本条消息
+         */
+        DROP,
+        /**
+         * 断开该接收者
+         */
+        CLOSE;
+
+        static SlowConsumerPolicy of(String name) {
+            for (SlowConsumerPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return DROP;
+        }
+    }
+
+    private final Map<EventLoop, LoopMembers> loops = new ConcurrentHashMap<>();
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 已写出的消息数
+     */
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * 因接收者不可写而丢弃的消息数
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    ChatsBroadcaster(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    /**
+     * 加入群聊， 连接关闭时自动移除
+     */
+    void add(Channel channel) {
+        LoopMembers members = loops.computeIfAbsent(channel.eventLoop(), LoopMembers::new);
+        members.run(() -> {
+            if (!channel.closeFuture().isDone()) {
+                members.channels.add(channel);
+                size.incrementAndGet();
+            }
+        });
+        channel.closeFuture().addListener(future -> remove(channel));
+    }
+
+    void remove(Channel channel) {
+        LoopMembers members = loops.get(channel.eventLoop());
+        if (members == null) {
+            return;
+        }
+        // 总是异步移除， 避免在 write、flush 遍历成员时修改列表
+        members.loop.execute(() -> {
+            if (members.channels.remove(channel)) {
+                size.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 发送给所有成员
+     *
+     * @param exclude 不发送的成员， 可为 null
+     */
+    void broadcast(ByteBufAllocator alloc, Message msg, Channel exclude) {
+        ByteBuf payload = MessageEncoder.encode(alloc, msg);
+        if (payload == null) {
+            return;
+        }
+
+        try {
+            for (LoopMembers members : loops.values()) {
+                ByteBuf shared = payload.retainedDuplicate();
+                try {
+                    members.run(() -> members.write(shared, exclude));
+                } catch (RejectedExecutionException e) {
+                    // EventLoop 已关闭， 任务不会执行
+                    shared.release();
+                }
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    long getDelivered() {
+        return delivered.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 同一个 EventLoop 上的成员， 只在该 EventLoop 中访问
+     */
+    private final class LoopMembers {
+        private final EventLoop loop;
+
+        private final List<Channel> channels = new ArrayList<>();
+
+        /**
+         * 本轮事件循环中写过、待 flush 的成员
+         */
+        private final Set<Channel> written = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private final Runnable flushTask = this::flush;
+
+        private boolean flushScheduled;
+
+        LoopMembers(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        void run(Runnable task) {
+            if (loop.inEventLoop()) {
+                task.run();
+            } else {
+                loop.execute(task);
+            }
+        }
+
+        void write(ByteBuf payload, Channel exclude) {
+            try {
+                for (int i = 0; i < channels.size(); i++) {
+                    Channel channel = channels.get(i);
+                    if (channel == exclude || !channel.isActive()) {
+                        continue;
+                    }
+                    if (!channel.isWritable()) {
+                        dropped.increment();
+                        if (slowConsumerPolicy == SlowConsumerPolicy.CLOSE) {
+                            channel.close(channel.voidPromise());
+                        }
+                        continue;
+                    }
+
+                    channel.write(payload.retainedDuplicate(), channel.voidPromise());
+                    written.add(channel);
+                    delivered.increment();
+                }
+            } finally {
+                payload.release();
+            }
+
+            // 本轮事件循环中后续的消息也只写不 flush， 由 flushTask 统一 flush
+            if (!flushScheduled && !written.isEmpty()) {
+                flushScheduled = true;
+                loop.execute(flushTask);
+            }
+        }
+
+        private void flush() {
+            flushScheduled = false;
+            for (Channel channel : written) {
+                channel.flush();
+            }
+            written.clear();
+        }
+    }
+}
@@ -1,15 +1,12 @@
 package com.whosly.stars.netty.chats.server;
 
+import com.whosly.stars.netty.chats.ConfigLoader;
 import com.whosly.stars.netty.chats.Message;
+import com.whosly.stars.netty.chats.TimestampFormatter;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.group.ChannelGroup;
-import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.util.concurrent.GlobalEventExecutor;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -21,14 +18,14 @@ import java.util.concurrent.ConcurrentHashMap;
  * @description
  */
 class ChatsServerHandler extends SimpleChannelInboundHandler<Message> {
-    // 定义一个ChannelGroup来保存所有连接的Channel，管理所有的 channel
-    // GlobalEventExecutor.INSTANCE 是全局的事件执行器，是一个单例
-    public static ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // 保存所有连接的Channel，消息只编码一次，按 EventLoop 分组写入并合并 flush
+    static final ChatsBroadcaster broadcaster = new ChatsBroadcaster(
+            ChatsBroadcaster.SlowConsumerPolicy.of(ConfigLoader.getBroadcastSlowConsumer()));
+    // 是否广播加入、离开的系统提示
+    private static final boolean PRESENCE_NOTIFY = ConfigLoader.isPresenceNotify();
     // 维护每个连接对应的用户名
     private static final Map<Channel, String> channelToUsername = new ConcurrentHashMap<>();
 
-    SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
     private String getDisplayName(Channel channel) {
         String name = channelToUsername.get(channel);
         return name != null && !name.isEmpty() ? name : String.valueOf(channel.remoteAddress());
@@ -45,11 +42,14 @@ class ChatsServerHandler extends SimpleChannelInboundHandler<Message> {
         Channel incoming = ctx.channel();
 
         // 将该客户加入聊天的信息推送到给其他在线的客户端
-        // 该方法会将 channelGroup 中所有的 channel 遍历，并发送消息，不需要自己遍历
-        // 当handler被添加到pipeline时，发送加入消息给所有Channel
-        channels.writeAndFlush(new Message("【Server】 - " + getDisplayName(incoming) + " 加入聊天 " + simpleDateFormat.format(new Date())));
-        // 将当前Channel添加到ChannelGroup中
-        channels.add(ctx.channel());
+        // 当handler被添加到pipeline时，发送加入消息给其他Channel
+        if (PRESENCE_NOTIFY) {
+            broadcaster.broadcast(ctx.alloc(),
+                    new Message("【Server】 - " + getDisplayName(incoming) + " 加入聊天 " + TimestampFormatter.now()),
+                    incoming);
+        }
+        // 将当前Channel加入群聊，连接关闭时自动移除
+        broadcaster.add(incoming);
     }
 
     /**
@@ -60,8 +60,11 @@ class ChatsServerHandler extends SimpleChannelInboundHandler<Message> {
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) {
         Channel incoming = ctx.channel();
-        // 当handler从pipeline移除时，发送离开消息给所有Channel
-        channels.writeAndFlush(new Message("【Server】 - " + getDisplayName(incoming) + " 离线了~~~"));
+        broadcaster.remove(incoming);
+        // 当handler从pipeline移除时，发送离开消息给其他Channel
+        if (PRESENCE_NOTIFY) {
+            broadcaster.broadcast(ctx.alloc(), new Message("【Server】 - " + getDisplayName(incoming) + " 离线了~~~"), incoming);
+        }
         // 清理用户名映射
         channelToUsername.remove(incoming);
     }
@@ -99,16 +102,10 @@ class ChatsServerHandler extends SimpleChannelInboundHandler<Message> {
             return;
         }
 
-        // 遍历ChannelGroup中的所有Channel
-        for (Channel channel : channels) {
-            if (channel != incoming) {
-                // 不是当前的 channel，直接转发消息，将消息发送给其他Channel，显示为来自incoming Channel
-                channel.writeAndFlush(new Message("【" + getDisplayName(incoming) + "】" + msg.getMessage()));
-            } else {
-                // 如果是当前Channel，标记消息为"you"
-                channel.writeAndFlush(new Message("【you】" + msg.getMessage()));
-            }
-        }
+        // 转发给其他Channel，显示为来自incoming Channel。只编码一次，所有接收者共享
+        broadcaster.broadcast(ctx.alloc(), new Message("【" + getDisplayName(incoming) + "】" + msg.getMessage()), incoming);
+        // 当前Channel，标记消息为"you"
+        incoming.writeAndFlush(new Message("【you】" + msg.getMessage()));
     }
 
     /**
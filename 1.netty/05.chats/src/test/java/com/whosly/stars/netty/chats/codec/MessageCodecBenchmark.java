@@ -0,0 +1,142 @@
+package com.whosly.stars.netty.chats.codec;
+
+import com.whosly.stars.netty.chats.Message;
+import com.whosly.stars.netty.chats.TimestampFormatter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Message 编解码与时间戳格式化的压测: 原有实现(中间 byte[]、SimpleDateFormat) vs 当前实现
+ *
+ * 输出每次操作的耗时(ns/op)与分配的字节数(bytes/op)。 分配字节数通过 com.sun.management.ThreadMXBean 统计。
+ *
+ * @author fengyang
+ * @date 2025-08-25 15:20:10
+ * @description
+ */
+public class MessageCodecBenchmark {
+
+    private static final int OPS = Integer.getInteger("bench.ops", 5_000_000);
+
+    private static final Message MESSAGE = new Message("【张三】hello everyone, 今天下午三点开会 /name test");
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(1024);
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(1024);
+        new MessageEncoder().encode(null, MESSAGE, frame);
+
+        MessageEncoder encoder = new MessageEncoder();
+        MessageDecoder decoder = new MessageDecoder();
+        List<Object> out = new ArrayList<>(1);
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        Op legacyEncode = () -> {
+            buf.clear();
+            legacyEncode(MESSAGE, buf);
+        };
+        Op encode = () -> {
+            buf.clear();
+            encoder.encode(null, MESSAGE, buf);
+        };
+        Op legacyDecode = () -> {
+            frame.readerIndex(0);
+            out.clear();
+            legacyDecode(frame, out);
+        };
+        Op decode = () -> {
+            frame.readerIndex(0);
+            out.clear();
+            decoder.decode(null, frame, out);
+        };
+        Op legacyFormat = () -> simpleDateFormat.format(new Date());
+        Op format = TimestampFormatter::now;
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            for (Op op : new Op[]{legacyEncode, encode, legacyDecode, decode, legacyFormat, format}) {
+                run(op, OPS / 5);
+            }
+        }
+
+        print("encode   (byte[])", run(legacyEncode, OPS));
+        print("encode   (direct)", run(encode, OPS));
+        print("decode   (byte[])", run(legacyDecode, OPS));
+        print("decode   (direct)", run(decode, OPS));
+        print("format   (SimpleDateFormat)", run(legacyFormat, OPS));
+        print("format   (cached)", run(format, OPS));
+
+        buf.release();
+        frame.release();
+    }
+
+    /**
+     * @return {ns/op, bytes/op}
+     */
+    private static double[] run(Op op, int ops) throws Exception {
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREAD_MX.getThreadAllocatedBytes(tid);
+        long st = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+        long cost = System.nanoTime() - st;
+        long bytes = THREAD_MX.getThreadAllocatedBytes(tid) - bytes0;
+
+        return new double[]{(double) cost / ops, (double) bytes / ops};
+    }
+
+    private static void print(String name, double[] result) {
+        System.out.printf("%-28s %8.1f ns/op, %8.1f bytes/op%n", name, result[0], result[1]);
+    }
+
+    /**
+     * 原有的编码: 先转为 byte[] 再写入
+     */
+    private static void legacyEncode(Message msg, ByteBuf out) {
+        if (msg != null && !msg.getMessage().trim().isEmpty()) {
+            byte[] messageBytes = msg.getMessage().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(messageBytes.length);
+            out.writeLong(msg.getTimestamp());
+            out.writeBytes(messageBytes);
+        }
+    }
+
+    /**
+     * 原有的解码: 先读入 byte[] 再创建字符串
+     */
+    private static void legacyDecode(ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < 4) {
+            return;
+        }
+        in.markReaderIndex();
+        int messageLength = in.readInt();
+        if (in.readableBytes() < 8 + messageLength) {
+            in.resetReaderIndex();
+            return;
+        }
+        long timestamp = in.readLong();
+        byte[] messageBytes = new byte[messageLength];
+        in.readBytes(messageBytes);
+
+        Message message = new Message(new String(messageBytes, StandardCharsets.UTF_8));
+        message.setTimestamp(timestamp);
+        if (!message.getMessage().trim().isEmpty()) {
+            out.add(message);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void run() throws Exception;
+    }
+}
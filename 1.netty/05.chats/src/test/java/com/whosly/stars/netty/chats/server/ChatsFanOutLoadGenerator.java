@@ -0,0 +1,211 @@
+package com.whosly.stars.netty.chats.server;
+
+import com.whosly.stars.netty.chats.Message;
+import com.whosly.stars.netty.chats.codec.MessageDecoder;
+import com.whosly.stars.netty.chats.codec.MessageEncoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群发的本地压测: 在本进程启动 ChatsServer， 连接 N 个客户端， 由其中一个客户端按固定速率发送消息，
+ * 统计其他客户端收到的消息数/秒， 以及从服务端群发(消息时间戳)到客户端收到的 p99 延迟。
+ *
+ * <code>
+ *     java ... ChatsFanOutLoadGenerator 1000 10000
+ *     -Dbench.port=18080 -Dbench.messages=200 -Dbench.rate=50
+ * </code>
+ *
+ * 压测时关闭加入、离开提示(broadcast.presenceNotify=false)， 否则 N 个客户端加入会产生 N^2 条系统消息。
+ * 10000 个连接需要足够的文件句柄(ulimit -n)。
+ *
+ * @author fengyang
+ * @date 2025-08-25 11:05:40
+ * @description
+ */
+public class ChatsFanOutLoadGenerator {
+    private static final int PORT = Integer.getInteger("bench.port", 18080);
+
+    private static final int MESSAGES = Integer.getInteger("bench.messages", 200);
+
+    /**
+     * 发送速率， 条/秒
+     */
+    private static final int RATE = Integer.getInteger("bench.rate", 50);
+
+    private static final String PREFIX = "bench-";
+
+    /**
+     * 延迟直方图， 每毫秒一个桶， 超过 MAX_LATENCY_MILLIS 的计入最后一个桶
+     */
+    private static final int MAX_LATENCY_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("broadcast.presenceNotify", "false");
+
+        int[] clientCounts = args.length == 0 ? new int[]{1000, 10000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            clientCounts[i] = Integer.parseInt(args[i]);
+        }
+
+        ChatsServer server = new ChatsServer(PORT);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start(PORT, new ChatsServerInitializer(), text -> started.countDown());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "chats-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        started.await();
+
+        EventLoopGroup clientGroup = new NioEventLoopGroup();
+        try {
+            for (int clients : clientCounts) {
+                run(clientGroup, clients);
+            }
+        } finally {
+            clientGroup.shutdownGracefully().sync();
+            server.stop();
+        }
+    }
+
+    private static void run(EventLoopGroup clientGroup, int clients) throws Exception {
+        Stats stats = new Stats();
+        Bootstrap bootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new MessageDecoder());
+                        ch.pipeline().addLast(new MessageEncoder());
+                        ch.pipeline().addLast(new LatencyHandler(stats));
+                    }
+                });
+
+        List<Channel> channels = new ArrayList<>(clients);
+        List<ChannelFuture> pending = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            pending.add(bootstrap.connect("127.0.0.1", PORT));
+            // 分批连接， 避免超过 SO_BACKLOG
+            if (pending.size() == 100 || i == clients - 1) {
+                for (ChannelFuture future : pending) {
+                    channels.add(future.sync().channel());
+                }
+                pending.clear();
+            }
+        }
+        while (ChatsServerHandler.broadcaster.size() < clients) {
+            Thread.sleep(10);
+        }
+        System.out.printf("clients: %d connected%n", clients);
+
+        long expected = (long) (clients - 1) * MESSAGES;
+        long delivered0 = ChatsServerHandler.broadcaster.getDelivered();
+        long dropped0 = ChatsServerHandler.broadcaster.getDropped();
+
+        Channel sender = channels.get(0);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long st = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            long next = st + i * intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            sender.writeAndFlush(new Message(PREFIX + i));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (stats.received.sum() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long cost = stats.lastReceiveNanos.get() - st;
+
+        long received = stats.received.sum();
+        System.out.printf("clients: %6d, received: %d/%d, dropped: %d, delivered msgs/sec: %12.1f, "
+                        + "fan-out latency p50: %d ms, p99: %d ms, max: %d ms%n",
+                clients, received, expected,
+                ChatsServerHandler.broadcaster.getDropped() - dropped0,
+                received * 1_000_000_000D / Math.max(cost, 1),
+                stats.percentile(0.50), stats.percentile(0.99), stats.percentile(1.0));
+        System.out.printf("server writes: %d%n", ChatsServerHandler.broadcaster.getDelivered() - delivered0);
+
+        for (Channel channel : channels) {
+            channel.close();
+        }
+        for (Channel channel : channels) {
+            channel.closeFuture().sync();
+        }
+        while (ChatsServerHandler.broadcaster.size() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Stats {
+        private final LongAdder received = new LongAdder();
+
+        private final AtomicLong lastReceiveNanos = new AtomicLong();
+
+        private final AtomicLongArray latency = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+
+        void record(long timestamp) {
+            long millis = Math.max(0, Math.min(MAX_LATENCY_MILLIS, System.currentTimeMillis() - timestamp));
+            latency.incrementAndGet((int) millis);
+            received.increment();
+            lastReceiveNanos.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+
+        long percentile(double p) {
+            long total = 0;
+            for (int i = 0; i < latency.length(); i++) {
+                total += latency.get(i);
+            }
+
+            long rank = (long) Math.ceil(total * p);
+            long count = 0;
+            for (int i = 0; i < latency.length(); i++) {
+                count += latency.get(i);
+                if (count >= rank && count > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static class LatencyHandler extends SimpleChannelInboundHandler<Message> {
+        private final Stats stats;
+
+        LatencyHandler(Stats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Message msg) {
+            // 只统计其他客户端转发来的压测消息， 忽略【you】回显
+            String text = msg.getMessage();
+            if (text.contains(PREFIX) && !text.startsWith("【you】")) {
+                stats.record(msg.getTimestamp());
+            }
+        }
+    }
+}
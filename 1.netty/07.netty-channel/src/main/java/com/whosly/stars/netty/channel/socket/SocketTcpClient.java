@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.channel.socket;
 
+import com.whosly.stars.netty.core.idle.WheelIdleStateHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
@@ -9,7 +10,6 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.CharsetUtil;
 
 import java.util.Scanner;
@@ -51,8 +51,8 @@ public class SocketTcpClient {
                         @Override
                         protected void initChannel(SocketChannel ch) {
                             ch.pipeline()
-                                    // 添加空闲状态检测处理器，5秒没有读操作触发
-                                    .addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS))
+                                    // 添加空闲状态检测处理器，5秒没有写操作触发
+                                    .addLast(new WheelIdleStateHandler(0, 5, 0, TimeUnit.SECONDS))
                                     // 添加字符串解码器
                                     .addLast(new StringDecoder(CharsetUtil.UTF_8))
                                     // 添加字符串编码器
@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.channel.socket;
 
+import com.whosly.stars.netty.core.idle.WheelIdleStateHandler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
@@ -10,7 +11,6 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.CharsetUtil;
 
 import java.util.concurrent.TimeUnit;
@@ -54,7 +54,7 @@ public class SocketTcpServer {
                         protected void initChannel(SocketChannel ch) {
                             ch.pipeline()
                                     // 添加空闲状态检测处理器，10秒没有读写操作触发
-                                    .addLast(new IdleStateHandler(10, 10, 10, TimeUnit.SECONDS))
+                                    .addLast(new WheelIdleStateHandler(10, 10, 10, TimeUnit.SECONDS))
                                     // 添加字符串解码器
                                     .addLast(new StringDecoder(CharsetUtil.UTF_8))
                                     // 添加字符串编码器
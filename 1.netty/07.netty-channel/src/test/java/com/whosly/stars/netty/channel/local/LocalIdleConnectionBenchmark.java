@@ -0,0 +1,193 @@
+package com.whosly.stars.netty.channel.local;
+
+import com.whosly.stars.netty.core.idle.WheelIdleStateHandler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.AbstractScheduledEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 大量空闲连接下， IdleStateHandler 与 WheelIdleStateHandler 的对比
+ *
+ * 在本进程内用 LocalChannel 建立 N 个空闲连接， 服务端每个连接一个空闲检测处理器， 输出：
+ * <code>
+ *     1. 服务端 EventLoop 定时任务队列的总大小(IdleStateHandler 每个连接 3 个， 时间轮每个 EventLoop 1 个)
+ *     2. 建立连接后的堆增量(GC 后)
+ *     3. 空闲期间的进程 CPU 时间与触发的空闲事件数
+ * </code>
+ *
+ * <code>
+ *     java -Xmx8g ... LocalIdleConnectionBenchmark 100000 1000000
+ *     -Dbench.mode=both|idle|wheel -Dbench.idleSeconds=5 -Dbench.seconds=20
+ * </code>
+ *
+ * 1M 连接(服务端、客户端共 2M 个 LocalChannel)需要数 GB 堆。
+ *
+ * @author fengyang
+ * @date 2025-08-30 15:20:44
+ * @description
+ */
+public class LocalIdleConnectionBenchmark {
+    private static final String MODE = System.getProperty("bench.mode", "both");
+
+    private static final int IDLE_SECONDS = Integer.getInteger("bench.idleSeconds", 5);
+
+    /**
+     * 统计 CPU 的空闲时长
+     */
+    private static final int SECONDS = Integer.getInteger("bench.seconds", 20);
+
+    public static void main(String[] args) throws Exception {
+        int[] connectionCounts = args.length == 0 ? new int[]{100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            connectionCounts[i] = Integer.parseInt(args[i]);
+        }
+
+        for (int connections : connectionCounts) {
+            if (!"wheel".equals(MODE)) {
+                run("IdleStateHandler", false, connections);
+            }
+            if (!"idle".equals(MODE)) {
+                run("WheelIdleStateHandler", true, connections);
+            }
+        }
+    }
+
+    private static void run(String name, boolean wheel, int connections) throws Exception {
+        DefaultEventLoopGroup serverGroup = new DefaultEventLoopGroup();
+        DefaultEventLoopGroup clientGroup = new DefaultEventLoopGroup();
+        Counter counter = new Counter();
+        LocalAddress address = new LocalAddress("idle-benchmark-" + System.nanoTime());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        try {
+            System.gc();
+            long heap0 = memory.getHeapMemoryUsage().getUsed();
+
+            Channel server = new ServerBootstrap()
+                    .group(serverGroup)
+                    .channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInitializer<LocalChannel>() {
+                        @Override
+                        protected void initChannel(LocalChannel ch) {
+                            ch.pipeline().addLast(wheel
+                                    ? new WheelIdleStateHandler(IDLE_SECONDS, IDLE_SECONDS, IDLE_SECONDS, TimeUnit.SECONDS)
+                                    : new IdleStateHandler(IDLE_SECONDS, IDLE_SECONDS, IDLE_SECONDS, TimeUnit.SECONDS));
+                            ch.pipeline().addLast(counter);
+                        }
+                    })
+                    .bind(address).sync().channel();
+
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(clientGroup)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter());
+
+            List<Channel> clients = new ArrayList<>(connections);
+            List<ChannelFuture> pending = new ArrayList<>();
+            long st = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                pending.add(bootstrap.connect(address));
+                if (pending.size() == 10_000 || i == connections - 1) {
+                    for (ChannelFuture future : pending) {
+                        clients.add(future.sync().channel());
+                    }
+                    pending.clear();
+                }
+            }
+            while (counter.active.sum() < connections) {
+                Thread.sleep(10);
+            }
+            long connectCost = System.nanoTime() - st;
+
+            System.gc();
+            long heap = memory.getHeapMemoryUsage().getUsed() - heap0;
+            long scheduled = scheduledTasks(serverGroup);
+
+            long cpu0 = processCpuTime();
+            long events0 = counter.events.sum();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+            long cpu = processCpuTime() - cpu0;
+            long events = counter.events.sum() - events0;
+
+            System.out.printf("%-22s connections: %8d, connect: %6d ms, scheduled tasks: %8d, heap: %7.1f MB (%5.0f bytes/conn), "
+                            + "cpu over %ds idle: %7d ms, idle events: %d%n",
+                    name, connections, TimeUnit.NANOSECONDS.toMillis(connectCost), scheduled,
+                    heap / 1024D / 1024D, (double) heap / connections,
+                    SECONDS, TimeUnit.NANOSECONDS.toMillis(cpu), events);
+
+            for (Channel client : clients) {
+                client.close();
+            }
+            server.close().sync();
+        } finally {
+            clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+            serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    /**
+     * 各 EventLoop 定时任务队列大小之和， 在 EventLoop 中读取
+     */
+    private static long scheduledTasks(DefaultEventLoopGroup group) throws Exception {
+        Field field = AbstractScheduledEventExecutor.class.getDeclaredField("scheduledTaskQueue");
+        field.setAccessible(true);
+
+        long total = 0;
+        for (EventExecutor executor : group) {
+            total += executor.submit(() -> {
+                Collection<?> queue = (Collection<?>) field.get(executor);
+                return queue == null ? 0 : queue.size();
+            }).get();
+        }
+        return total;
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    @ChannelHandler.Sharable
+    private static class Counter extends ChannelInboundHandlerAdapter {
+        private final LongAdder active = new LongAdder();
+
+        private final LongAdder events = new LongAdder();
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            active.increment();
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                events.increment();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+}
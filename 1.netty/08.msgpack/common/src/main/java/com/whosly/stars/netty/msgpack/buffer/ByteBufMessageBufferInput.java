@@ -0,0 +1,60 @@
+package com.whosly.stars.netty.msgpack.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferInput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MessageUnpacker 的输入， 从 ByteBuf 读取一帧
+ *
+ * <code>
+ *     1. 不拷贝帧内容： 堆内 ByteBuf 直接引用底层数组， 直接内存 ByteBuf 通过 nioBuffer() 引用， 每帧只创建一个 MessageBuffer 视图。
+ *     2. 由多段组成的帧(如 CompositeByteBuf)拷贝为一个 byte[]。
+ *     3. 视图引用帧的内存， 必须在帧 release 前读完(decode 返回前)。
+ *     4. 每个 channel 一个实例， 不可共享。 msgpack-0.9 与 msgpack-0.9-heartbeat 共用。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-29 10:24:05
+ * @description
+ */
+public final class ByteBufMessageBufferInput implements MessageBufferInput {
+    private ByteBuf source;
+
+    /**
+     * 设置本次读取的帧， 读取时不修改其 readerIndex
+     */
+    public void reset(ByteBuf source) {
+        this.source = source;
+    }
+
+    @Override
+    public MessageBuffer next() {
+        ByteBuf frame = this.source;
+        // 每帧只返回一次， 之后返回 null 表示没有更多数据
+        this.source = null;
+        if (frame == null || !frame.isReadable()) {
+            return null;
+        }
+
+        if (frame.hasArray()) {
+            return MessageBuffer.wrap(frame.array(), frame.arrayOffset() + frame.readerIndex(), frame.readableBytes());
+        }
+        if (frame.nioBufferCount() == 1) {
+            ByteBuffer nio = frame.nioBuffer();
+            if (nio.isDirect()) {
+                return MessageBuffer.wrap(nio);
+            }
+        }
+
+        return MessageBuffer.wrap(ByteBufUtil.getBytes(frame));
+    }
+
+    @Override
+    public void close() {
+        source = null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.whosly.stars.netty.msgpack.buffer;
+
+import io.netty.buffer.ByteBuf;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+/**
+ * MessagePacker 的输出， 写入到 ByteBuf
+ *
+ * <code>
+ *     1. packer 打包到复用的 MessageBuffer(堆内 byte[])， flush 时一次写入目标 ByteBuf，
+ *        不再为每条消息创建 MessageBufferPacker 以及 toByteArray() 的 byte[]。
+ *     2. 超过 packer 缓冲的大段数据(write/add)直接写入目标 ByteBuf。
+ *     3. 每个 channel 一个实例， 不可共享。 msgpack-0.9 与 msgpack-0.9-heartbeat 共用。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-29 10:16:42
+ * @description
+ */
+public final class ByteBufMessageBufferOutput implements MessageBufferOutput {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private byte[] scratch;
+
+    private MessageBuffer buffer;
+
+    private ByteBuf target;
+
+    public ByteBufMessageBufferOutput() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ByteBufMessageBufferOutput(int capacity) {
+        this.scratch = new byte[capacity];
+        this.buffer = MessageBuffer.wrap(scratch);
+    }
+
+    /**
+     * 设置本次写入的目标
+     */
+    public void reset(ByteBuf target) {
+        this.target = target;
+    }
+
+    @Override
+    public MessageBuffer next(int minimumSize) {
+        if (scratch.length < minimumSize) {
+            scratch = new byte[Math.max(minimumSize, scratch.length << 1)];
+            buffer = MessageBuffer.wrap(scratch);
+        }
+
+        return buffer;
+    }
+
+    @Override
+    public void writeBuffer(int length) {
+        target.writeBytes(scratch, 0, length);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        target.writeBytes(buffer, offset, length);
+    }
+
+    @Override
+    public void add(byte[] buffer, int offset, int length) {
+        target.writeBytes(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() {
+        // writeBuffer 已写入目标 ByteBuf
+    }
+
+    @Override
+    public void close() {
+        target = null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.msgpack.heartbeat.client;
 
+import com.whosly.stars.netty.core.idle.WheelIdleStateHandler;
 import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
 import com.whosly.stars.netty.msgpack.domain.TypeData;
 import com.whosly.stars.netty.msgpack.heartbeat.code.MsgPackDecoder;
@@ -66,6 +67,8 @@ public class Client {
 
 //                            p.addLast(new LengthFieldBasedFrameDecoder(1024, 0, 4, -4, 0));
 //                            ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(65535,0,2,0,2));
+                            // 读写都空闲 4 秒时发送 PING， 早于服务端 5 秒的读空闲
+                            p.addLast(new WheelIdleStateHandler(0, 0, 4, TimeUnit.SECONDS));
                             p.addLast(new MsgPackDecoder());
                             p.addLast(new MsgPackEncoder());
                             p.addLast(new ClientHandler());
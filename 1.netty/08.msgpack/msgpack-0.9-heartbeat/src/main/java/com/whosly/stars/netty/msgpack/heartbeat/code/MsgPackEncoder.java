@@ -1,49 +1,76 @@
 package com.whosly.stars.netty.msgpack.heartbeat.code;
 
+import com.whosly.stars.netty.msgpack.buffer.ByteBufMessageBufferOutput;
 import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
-import org.msgpack.core.MessageBufferPacker;
 import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
 
 import java.io.IOException;
 
 /**
  * 编码器
  *
+ * 每个 channel 一个实例(不可 @Sharable)， packer 与输出复用， 直接打包到 ByteBuf；
+ * 字符串由 ByteBufUtil.writeUtf8 直接编码到 ByteBuf， 避免 packString 的 getBytes， 稳定后每条消息不产生垃圾。
+ *
  * @author fengyang
  * @date 2025-08-28 14:11:52
  * @description
  */
 public class MsgPackEncoder extends MessageToByteEncoder<HeartbeatData> {
+    private final ByteBufMessageBufferOutput output = new ByteBufMessageBufferOutput();
+
+    private MessagePacker packer;
+
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext,
                           HeartbeatData msg, ByteBuf byteBuf) throws Exception {
-        // 序列化
-        byte[] packedData = serialize(msg);
-
-        byteBuf.writeBytes(packedData);
+        int writerIndex = byteBuf.writerIndex();
+        output.reset(byteBuf);
+        boolean done = false;
+        try {
+            // 序列化
+            serialize(msg, byteBuf);
+            done = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            output.reset(null);
+            if (!done) {
+                // 任何异常都丢弃已写入的部分， packer 中可能残留数据， 重新创建
+                byteBuf.writerIndex(writerIndex);
+                packer = null;
+            }
+        }
     }
 
     /**
      * 序列化方法
      */
-    private static byte[] serialize(HeartbeatData data) {
-        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
-            // 打包对象的属性
-            packer.packInt(data.getType());
-            packer.packInt(data.getSeatId());
-            packer.packInt(data.getSpeed());
-            packer.packString(data.getMemo() != null ? data.getMemo() : "-");
-            packer.close();
-
-            return packer.toByteArray();
-        } catch (IOException e) {
-            e.printStackTrace();
-
-            // 返回空字节数组以表示失败
-            return new byte[0];
+    private void serialize(HeartbeatData data, ByteBuf byteBuf) throws IOException {
+        if (packer == null) {
+            packer = MessagePack.newDefaultPacker(output);
         }
+
+        // 打包对象的属性
+        packer.packInt(data.getType());
+        packer.packInt(data.getSeatId());
+        packer.packInt(data.getSpeed());
+        packString(data.getMemo() != null ? data.getMemo() : "-", byteBuf);
+        packer.flush();
+    }
+
+    /**
+     * 与 packer.packString 的格式相同， 非法的代理字符与 String.getBytes 一样替换为 '?'
+     */
+    private void packString(String s, ByteBuf byteBuf) throws IOException {
+        packer.packRawStringHeader(ByteBufUtil.utf8Bytes(s));
+        // 先把 packer 中已打包的部分写入 ByteBuf， 再直接写入字符串内容
+        packer.flush();
+        ByteBufUtil.writeUtf8(byteBuf, s);
     }
 }
@@ -75,7 +75,7 @@ public abstract class AbstractChannelInboundHandler extends ChannelInboundHandle
 
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        // IdleStateHandler 所产生的 IdleStateEvent 的处理逻辑.
+        // WheelIdleStateHandler(事件与 IdleStateHandler 相同) 所产生的 IdleStateEvent 的处理逻辑.
         if (evt instanceof IdleStateEvent) {
             IdleStateEvent e = (IdleStateEvent) evt;
             if (e.state() == IdleState.READER_IDLE) {
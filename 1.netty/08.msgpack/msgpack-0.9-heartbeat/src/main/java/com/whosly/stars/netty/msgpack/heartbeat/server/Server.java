@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.msgpack.heartbeat.server;
 
+import com.whosly.stars.netty.core.idle.WheelIdleStateHandler;
 import com.whosly.stars.netty.msgpack.heartbeat.code.MsgPackDecoder;
 import com.whosly.stars.netty.msgpack.heartbeat.code.MsgPackEncoder;
 import io.netty.bootstrap.ServerBootstrap;
@@ -7,7 +8,6 @@ import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.timeout.IdleStateHandler;
 
 import java.util.concurrent.TimeUnit;
 /**
@@ -31,9 +31,9 @@ public class Server {
                         protected void initChannel(SocketChannel socketChannel) throws Exception {
                             ChannelPipeline p = socketChannel.pipeline();
 
-                            // 添加IdleStateHandler，设置空闲检测时间
+                            // 添加空闲检测，设置空闲检测时间
                             // 参数：readerIdleTime, writerIdleTime, allIdleTime, timeUnit
-                            p.addLast(new IdleStateHandler(5, 7, 10, TimeUnit.SECONDS));
+                            p.addLast(new WheelIdleStateHandler(5, 7, 10, TimeUnit.SECONDS));
 
 //                            /**
 //                             * 参数（1）maxFrameLength：表示的是包的最大长度，超出会做一些特殊处理。
@@ -42,7 +42,8 @@ class ServerHandler extends AbstractChannelInboundHandler {
     protected void handleWriterIdle(ChannelHandlerContext ctx) {
         super.handleWriterIdle(ctx);
 
-        ctx.writeAndFlush("心跳检测\n");
+        // 编码器只处理 HeartbeatData， 以 PING 作为心跳检测
+        sendPingMsg(ctx);
     }
 
     @Override
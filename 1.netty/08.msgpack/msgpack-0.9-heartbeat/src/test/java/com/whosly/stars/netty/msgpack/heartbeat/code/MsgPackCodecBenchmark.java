@@ -0,0 +1,145 @@
+package com.whosly.stars.netty.msgpack.heartbeat.code;
+
+import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HeartbeatData 编解码的压测: 原有实现(每条消息新建 packer/unpacker 与 byte[]) vs 复用 packer/unpacker 的当前实现
+ *
+ * 输出每次操作的耗时(ns/op)、分配的字节数(bytes/op)与分配速率(MB/s)。 分配字节数通过 com.sun.management.ThreadMXBean 统计。
+ * 编码的目标是 0 bytes/op； 解码的 bytes/op 只剩解码出的 HeartbeatData 与 memo 字符串。
+ *
+ * <code>
+ *     java ... MsgPackCodecBenchmark -Dbench.ops=5000000
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-29 11:02:18
+ * @description
+ */
+public class MsgPackCodecBenchmark {
+
+    private static final int OPS = Integer.getInteger("bench.ops", 5_000_000);
+
+    private static final HeartbeatData DATA = new HeartbeatData(3, 1024, 88, "speed report 速度上报");
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        new MsgPackEncoder().encode(null, DATA, frame);
+
+        MsgPackEncoder encoder = new MsgPackEncoder();
+        MsgPackDecoder decoder = new MsgPackDecoder();
+        List<Object> out = new ArrayList<>(1);
+
+        // 与原有实现的编码结果一致
+        legacyEncode(DATA, buf);
+        if (!buf.equals(frame)) {
+            throw new IllegalStateException("encoded bytes differ from MessageBufferPacker");
+        }
+        decoder.decode(null, frame, out);
+        if (!DATA.equals(out.get(0))) {
+            throw new IllegalStateException("decoded " + out.get(0));
+        }
+
+        Op legacyEncode = () -> {
+            buf.clear();
+            legacyEncode(DATA, buf);
+        };
+        Op encode = () -> {
+            buf.clear();
+            encoder.encode(null, DATA, buf);
+        };
+        Op legacyDecode = () -> {
+            out.clear();
+            out.add(legacyDecode(frame));
+        };
+        Op decode = () -> {
+            out.clear();
+            decoder.decode(null, frame, out);
+        };
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            for (Op op : new Op[]{legacyEncode, encode, legacyDecode, decode}) {
+                run(op, OPS / 5);
+            }
+        }
+
+        print("encode   (MessageBufferPacker)", run(legacyEncode, OPS));
+        print("encode   (pooled)", run(encode, OPS));
+        print("decode   (byte[] + unpacker)", run(legacyDecode, OPS));
+        print("decode   (pooled)", run(decode, OPS));
+
+        buf.release();
+        frame.release();
+    }
+
+    /**
+     * @return {ns/op, bytes/op}
+     */
+    private static double[] run(Op op, int ops) throws Exception {
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREAD_MX.getThreadAllocatedBytes(tid);
+        long st = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+        long cost = System.nanoTime() - st;
+        long bytes = THREAD_MX.getThreadAllocatedBytes(tid) - bytes0;
+
+        return new double[]{(double) cost / ops, (double) bytes / ops};
+    }
+
+    private static void print(String name, double[] result) {
+        // bytes/op / ns/op * 1e9 / 1MB
+        double mbPerSec = result[0] == 0 ? 0 : result[1] / result[0] * 1_000_000_000D / (1024 * 1024);
+        System.out.printf("%-32s %8.1f ns/op, %8.1f bytes/op, %8.1f MB/s%n", name, result[0], result[1], mbPerSec);
+    }
+
+    /**
+     * 原有的编码: 每条消息新建 MessageBufferPacker， toByteArray 后写入
+     */
+    private static void legacyEncode(HeartbeatData data, ByteBuf out) throws Exception {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packInt(data.getType());
+            packer.packInt(data.getSeatId());
+            packer.packInt(data.getSpeed());
+            packer.packString(data.getMemo() != null ? data.getMemo() : "-");
+            packer.close();
+
+            out.writeBytes(packer.toByteArray());
+        }
+    }
+
+    /**
+     * 原有的解码: 先拷贝到 byte[]， 再新建 MessageUnpacker
+     */
+    private static HeartbeatData legacyDecode(ByteBuf in) throws Exception {
+        byte[] array = new byte[in.readableBytes()];
+        in.getBytes(in.readerIndex(), array, 0, array.length);
+
+        try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(array)) {
+            return HeartbeatData.builder()
+                    .type(unpacker.unpackInt()).seatId(unpacker.unpackInt()).speed(unpacker.unpackInt())
+                    .memo(unpacker.unpackString())
+                    .build();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void run() throws Exception;
+    }
+}
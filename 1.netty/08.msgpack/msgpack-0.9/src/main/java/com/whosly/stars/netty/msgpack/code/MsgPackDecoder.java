@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.msgpack.code;
 
+import com.whosly.stars.netty.msgpack.buffer.ByteBufMessageBufferInput;
 import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -14,42 +15,46 @@ import java.util.List;
 /**
  * 解码器
  *
+ * 每个 channel 一个实例(不可 @Sharable)， unpacker 与输入复用， 每条消息只 reset， 不再创建 byte[] 与 MessageUnpacker；
+ * 直接读取帧的内存， decode 返回前读完， 之后清除 unpacker 对帧的引用。
+ *
  * @author fengyang
  * @date 2025-08-28 14:11:30
  * @description
  */
 public class MsgPackDecoder extends MessageToMessageDecoder<ByteBuf> {
+    private final ByteBufMessageBufferInput input = new ByteBufMessageBufferInput();
+
+    private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(input);
+
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext,
                           ByteBuf msg, List<Object> list) throws Exception {
-        int length = msg.readableBytes();
-        byte[] array = new byte[length];
-        msg.getBytes(msg.readerIndex(), array, 0, length);
-
         // 反序列化
         try {
-            HeartbeatData unpackedHeartbeatData = deserialize(array);
+            input.reset(msg);
+            unpacker.reset(input);
+            HeartbeatData unpackedHeartbeatData = deserialize();
             System.out.println("Unpacked : " + unpackedHeartbeatData);
 
             list.add(unpackedHeartbeatData);
         } catch (IOException | MessagePackException e) {
             e.printStackTrace();
+        } finally {
+            input.reset(null);
+            unpacker.reset(input);
         }
     }
 
     /**
      * 反序列化方法
      */
-    private static HeartbeatData deserialize(byte[] data) throws IOException, MessagePackException {
-        try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(data)) {
-            int type = unpacker.unpackInt();
-            int seatId = unpacker.unpackInt();
-            int speed = unpacker.unpackInt();
-            String memo = unpacker.unpackString();
-
-            return HeartbeatData.builder()
-                    .type(type).seatId(seatId).speed(speed).memo(memo)
-                    .build();
-        }
+    private HeartbeatData deserialize() throws IOException, MessagePackException {
+        int type = unpacker.unpackInt();
+        int seatId = unpacker.unpackInt();
+        int speed = unpacker.unpackInt();
+        String memo = unpacker.unpackString();
+
+        return new HeartbeatData(type, seatId, speed, memo);
     }
 }
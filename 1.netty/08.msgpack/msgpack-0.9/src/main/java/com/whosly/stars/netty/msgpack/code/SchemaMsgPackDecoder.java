@@ -0,0 +1,50 @@
+package com.whosly.stars.netty.msgpack.code;
+
+import com.whosly.stars.netty.msgpack.buffer.ByteBufMessageBufferInput;
+import com.whosly.stars.netty.msgpack.schema.SchemaCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePackException;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 按 SchemaCodec 解码的解码器， 跳过未知的字段 id， 缺少的字段保持默认值
+ *
+ * 每个 channel 一个实例(不可 @Sharable)， SchemaCodec 可在多个 channel 间共享。
+ *
+ * @author fengyang
+ * @date 2025-08-29 16:05:44
+ * @description
+ */
+public class SchemaMsgPackDecoder<T> extends MessageToMessageDecoder<ByteBuf> {
+    private final SchemaCodec<T> codec;
+
+    private final ByteBufMessageBufferInput input = new ByteBufMessageBufferInput();
+
+    private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(input);
+
+    public SchemaMsgPackDecoder(SchemaCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext channelHandlerContext,
+                          ByteBuf msg, List<Object> list) throws Exception {
+        try {
+            input.reset(msg);
+            unpacker.reset(input);
+
+            list.add(codec.unpack(unpacker));
+        } catch (IOException | MessagePackException e) {
+            e.printStackTrace();
+        } finally {
+            input.reset(null);
+            unpacker.reset(input);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.whosly.stars.netty.msgpack.code;
+
+import com.whosly.stars.netty.msgpack.buffer.ByteBufMessageBufferOutput;
+import com.whosly.stars.netty.msgpack.schema.SchemaCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import java.io.IOException;
+
+/**
+ * 按 SchemaCodec 编码的编码器， 格式为 map: 字段 id -> 值， 可与字段不同的旧版本互通
+ *
+ * 每个 channel 一个实例(不可 @Sharable)， SchemaCodec 可在多个 channel 间共享。
+ *
+ * @author fengyang
+ * @date 2025-08-29 16:02:10
+ * @description
+ */
+public class SchemaMsgPackEncoder<T> extends MessageToByteEncoder<T> {
+    private final SchemaCodec<T> codec;
+
+    private final ByteBufMessageBufferOutput output = new ByteBufMessageBufferOutput();
+
+    private MessagePacker packer;
+
+    public SchemaMsgPackEncoder(SchemaCodec<T> codec) {
+        super(codec.getType());
+        this.codec = codec;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext channelHandlerContext,
+                          T msg, ByteBuf byteBuf) throws Exception {
+        int writerIndex = byteBuf.writerIndex();
+        output.reset(byteBuf);
+        boolean done = false;
+        try {
+            if (packer == null) {
+                packer = MessagePack.newDefaultPacker(output);
+            }
+            codec.pack(packer, msg);
+            packer.flush();
+            done = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            output.reset(null);
+            if (!done) {
+                // 任何异常(包括 getter 抛出的 RuntimeException)都丢弃已写入的部分， packer 中可能残留数据， 重新创建
+                byteBuf.writerIndex(writerIndex);
+                packer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.whosly.stars.netty.msgpack.schema;
+
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按字段 id 编解码 POJO 的 MessagePack 序列化器
+ *
+ * <code>
+ *     1. build() 时为每个字段查找 getter/setter 的 MethodHandle 并确定对应类型的 pack/unpack， 之后每条消息不再查找字段、不做访问检查。
+ *        MethodHandle 保存在实例字段中， JIT 不会把它当作常量内联， 调用开销高于直接访问字段。
+ *     2. 编码为 map: 字段 id -> 值， 按 id 升序写出； null 写为 nil。
+ *     3. 解码时跳过未知的字段 id(新版本发给旧版本)， 缺少的字段保持无参构造后的默认值(旧版本发给新版本)。
+ *     4. 字段 id 一旦使用不能改为其他类型； 删除字段后其 id 不要再复用。
+ * </code>
+ *
+ * 使用示例：
+ * <code>
+ *     SchemaCodec<HeartbeatData> codec = SchemaCodec.builder(HeartbeatData.class)
+ *             .field(1, "type").field(2, "seatId").field(3, "speed").field(4, "memo")
+ *             .build();
+ * </code>
+ *
+ * 支持的字段类型: boolean、byte、short、int、long、float、double 及其包装类型， String、byte[]。
+ * 线程安全， 同一个类型只需 build 一次。
+ *
+ * @author fengyang
+ * @date 2025-08-29 15:08:37
+ * @description
+ */
+public final class SchemaCodec<T> {
+    /**
+     * 字段 id 的上限， 解码时按 id 直接下标查找
+     */
+    public static final int MAX_FIELD_ID = 1023;
+
+    private final Class<T> type;
+
+    /**
+     * 无参构造， 类型 ()Object
+     */
+    private final MethodHandle constructor;
+
+    /**
+     * 按 id 升序
+     */
+    private final Slot[] slots;
+
+    /**
+     * 下标为字段 id
+     */
+    private final Slot[] byId;
+
+    private SchemaCodec(Class<T> type, MethodHandle constructor, Slot[] slots) {
+        this.type = type;
+        this.constructor = constructor;
+        this.slots = slots;
+        this.byId = new Slot[slots[slots.length - 1].id + 1];
+        for (Slot slot : slots) {
+            this.byId[slot.id] = slot;
+        }
+    }
+
+    public static <T> Builder<T> builder(Class<T> type) {
+        return new Builder<>(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * 打包为 map: 字段 id -> 值
+     */
+    public void pack(MessagePacker packer, T value) throws IOException {
+        packer.packMapHeader(slots.length);
+        try {
+            for (Slot slot : slots) {
+                packer.packInt(slot.id);
+                slot.pack(packer, value);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public T unpack(MessageUnpacker unpacker) throws IOException {
+        try {
+            T value = type.cast((Object) constructor.invokeExact());
+
+            int size = unpacker.unpackMapHeader();
+            for (int i = 0; i < size; i++) {
+                int id = unpacker.unpackInt();
+                Slot slot = id >= 0 && id < byId.length ? byId[id] : null;
+                if (slot == null) {
+                    // 对方版本较新的字段
+                    unpacker.skipValue();
+                } else if (!unpacker.tryUnpackNil()) {
+                    slot.unpack(unpacker, value);
+                }
+            }
+
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Class<T> type;
+
+        private final Map<Integer, String> fields = new TreeMap<>();
+
+        private Builder(Class<T> type) {
+            this.type = type;
+        }
+
+        public Builder<T> field(int id, String name) {
+            if (id < 0 || id > MAX_FIELD_ID) {
+                throw new IllegalArgumentException("field id out of range [0, " + MAX_FIELD_ID + "]: " + id);
+            }
+            if (fields.containsValue(name)) {
+                throw new IllegalArgumentException("duplicate field: " + name);
+            }
+            String previous = fields.putIfAbsent(id, name);
+            if (previous != null) {
+                throw new IllegalArgumentException("duplicate field id " + id + ": " + previous + ", " + name);
+            }
+
+            return this;
+        }
+
+        public SchemaCodec<T> build() {
+            if (fields.isEmpty()) {
+                throw new IllegalArgumentException("no field declared for " + type.getName());
+            }
+
+            try {
+                MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                        .findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+
+                Slot[] slots = new Slot[fields.size()];
+                int i = 0;
+                for (Map.Entry<Integer, String> entry : fields.entrySet()) {
+                    slots[i++] = slot(entry.getKey(), findField(entry.getValue()));
+                }
+
+                return new SchemaCodec<>(type, constructor, slots);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(type.getName() + " has no no-arg constructor", e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("cannot access " + type.getName(), e);
+            }
+        }
+
+        private Field findField(String name) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                try {
+                    Field field = c.getDeclaredField(name);
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                        throw new IllegalArgumentException("static or final field: " + name);
+                    }
+                    return field;
+                } catch (NoSuchFieldException e) {
+                    // 继续查找父类
+                }
+            }
+
+            throw new IllegalArgumentException("no field " + name + " in " + type.getName());
+        }
+
+        private static Slot slot(int id, Field field) throws IllegalAccessException {
+            Kind kind = Kind.of(field.getType());
+            if (kind == null) {
+                throw new IllegalArgumentException("unsupported field type " + field.getType().getName()
+                        + ": " + field.getName());
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(field.getType(), Object.class));
+            MethodHandle setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, field.getType()));
+
+            return new Slot(id, kind, getter, setter);
+        }
+    }
+
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE,
+        BOOLEAN_OBJECT, BYTE_OBJECT, SHORT_OBJECT, INT_OBJECT, LONG_OBJECT, FLOAT_OBJECT, DOUBLE_OBJECT,
+        STRING, BINARY;
+
+        static Kind of(Class<?> c) {
+            if (c == boolean.class) return BOOLEAN;
+            if (c == byte.class) return BYTE;
+            if (c == short.class) return SHORT;
+            if (c == int.class) return INT;
+            if (c == long.class) return LONG;
+            if (c == float.class) return FLOAT;
+            if (c == double.class) return DOUBLE;
+            if (c == Boolean.class) return BOOLEAN_OBJECT;
+            if (c == Byte.class) return BYTE_OBJECT;
+            if (c == Short.class) return SHORT_OBJECT;
+            if (c == Integer.class) return INT_OBJECT;
+            if (c == Long.class) return LONG_OBJECT;
+            if (c == Float.class) return FLOAT_OBJECT;
+            if (c == Double.class) return DOUBLE_OBJECT;
+            if (c == String.class) return STRING;
+            if (c == byte[].class) return BINARY;
+            return null;
+        }
+    }
+
+    /**
+     * 一个字段: getter 类型 (Object)F， setter 类型 (Object, F)void， F 为字段类型
+     */
+    private static final class Slot {
+        private final int id;
+
+        private final Kind kind;
+
+        private final MethodHandle getter;
+
+        private final MethodHandle setter;
+
+        Slot(int id, Kind kind, MethodHandle getter, MethodHandle setter) {
+            this.id = id;
+            this.kind = kind;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        void pack(MessagePacker packer, Object target) throws Throwable {
+            switch (kind) {
+                case BOOLEAN:
+                    packer.packBoolean((boolean) getter.invokeExact(target));
+                    return;
+                case BYTE:
+                    packer.packByte((byte) getter.invokeExact(target));
+                    return;
+                case SHORT:
+                    packer.packShort((short) getter.invokeExact(target));
+                    return;
+                case INT:
+                    packer.packInt((int) getter.invokeExact(target));
+                    return;
+                case LONG:
+                    packer.packLong((long) getter.invokeExact(target));
+                    return;
+                case FLOAT:
+                    packer.packFloat((float) getter.invokeExact(target));
+                    return;
+                case DOUBLE:
+                    packer.packDouble((double) getter.invokeExact(target));
+                    return;
+                default:
+                    packObject(packer, target);
+            }
+        }
+
+        private void packObject(MessagePacker packer, Object target) throws Throwable {
+            Object value;
+            switch (kind) {
+                case BOOLEAN_OBJECT:
+                    value = (Boolean) getter.invokeExact(target);
+                    break;
+                case BYTE_OBJECT:
+                    value = (Byte) getter.invokeExact(target);
+                    break;
+                case SHORT_OBJECT:
+                    value = (Short) getter.invokeExact(target);
+                    break;
+                case INT_OBJECT:
+                    value = (Integer) getter.invokeExact(target);
+                    break;
+                case LONG_OBJECT:
+                    value = (Long) getter.invokeExact(target);
+                    break;
+                case FLOAT_OBJECT:
+                    value = (Float) getter.invokeExact(target);
+                    break;
+                case DOUBLE_OBJECT:
+                    value = (Double) getter.invokeExact(target);
+                    break;
+                case STRING:
+                    value = (String) getter.invokeExact(target);
+                    break;
+                default:
+                    value = (byte[]) getter.invokeExact(target);
+            }
+
+            if (value == null) {
+                packer.packNil();
+            } else if (value instanceof String) {
+                packer.packString((String) value);
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                packer.packBinaryHeader(bytes.length);
+                packer.writePayload(bytes);
+            } else if (value instanceof Boolean) {
+                packer.packBoolean((Boolean) value);
+            } else if (value instanceof Float) {
+                packer.packFloat((Float) value);
+            } else if (value instanceof Double) {
+                packer.packDouble((Double) value);
+            } else {
+                // Byte、Short、Integer、Long 均按整数最短格式写出
+                packer.packLong(((Number) value).longValue());
+            }
+        }
+
+        void unpack(MessageUnpacker unpacker, Object target) throws Throwable {
+            switch (kind) {
+                case BOOLEAN:
+                    setter.invokeExact(target, unpacker.unpackBoolean());
+                    return;
+                case BYTE:
+                    setter.invokeExact(target, unpacker.unpackByte());
+                    return;
+                case SHORT:
+                    setter.invokeExact(target, unpacker.unpackShort());
+                    return;
+                case INT:
+                    setter.invokeExact(target, unpacker.unpackInt());
+                    return;
+                case LONG:
+                    setter.invokeExact(target, unpacker.unpackLong());
+                    return;
+                case FLOAT:
+                    setter.invokeExact(target, unpacker.unpackFloat());
+                    return;
+                case DOUBLE:
+                    setter.invokeExact(target, unpacker.unpackDouble());
+                    return;
+                case BOOLEAN_OBJECT:
+                    setter.invokeExact(target, (Boolean) unpacker.unpackBoolean());
+                    return;
+                case BYTE_OBJECT:
+                    setter.invokeExact(target, (Byte) unpacker.unpackByte());
+                    return;
+                case SHORT_OBJECT:
+                    setter.invokeExact(target, (Short) unpacker.unpackShort());
+                    return;
+                case INT_OBJECT:
+                    setter.invokeExact(target, (Integer) unpacker.unpackInt());
+                    return;
+                case LONG_OBJECT:
+                    setter.invokeExact(target, (Long) unpacker.unpackLong());
+                    return;
+                case FLOAT_OBJECT:
+                    setter.invokeExact(target, (Float) unpacker.unpackFloat());
+                    return;
+                case DOUBLE_OBJECT:
+                    setter.invokeExact(target, (Double) unpacker.unpackDouble());
+                    return;
+                case STRING:
+                    setter.invokeExact(target, unpacker.unpackString());
+                    return;
+                default:
+                    setter.invokeExact(target, unpacker.readPayload(unpacker.unpackBinaryHeader()));
+            }
+        }
+    }
+}
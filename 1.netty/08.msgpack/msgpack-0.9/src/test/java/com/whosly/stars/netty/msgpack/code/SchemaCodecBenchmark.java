@@ -0,0 +1,159 @@
+package com.whosly.stars.netty.msgpack.code;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whosly.stars.netty.msgpack.buffer.ByteBufMessageBufferInput;
+import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
+import com.whosly.stars.netty.msgpack.schema.SchemaCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HeartbeatData 编解码的压测: 手写的 MsgPackEncoder/MsgPackDecoder vs SchemaCodec vs Jackson(JSON、MessagePack)
+ *
+ * 输出每次操作的耗时(ns/op)、分配的字节数(bytes/op)与编码后的大小(bytes)。 分配字节数通过 com.sun.management.ThreadMXBean 统计。
+ * SchemaCodec 比手写的按位置编码多写了字段 id， 换取字段增删时的兼容。
+ *
+ * <code>
+ *     java ... SchemaCodecBenchmark -Dbench.ops=2000000
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-29 16:40:26
+ * @description
+ */
+public class SchemaCodecBenchmark {
+
+    private static final int OPS = Integer.getInteger("bench.ops", 2_000_000);
+
+    private static final HeartbeatData DATA = new HeartbeatData(3, 1024, 88, "speed report 速度上报");
+
+    private static final SchemaCodec<HeartbeatData> SCHEMA = SchemaCodec.builder(HeartbeatData.class)
+            .field(1, "type").field(2, "seatId").field(3, "speed").field(4, "memo")
+            .build();
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper msgpack = new ObjectMapper(new MessagePackFactory());
+
+        MsgPackEncoder handEncoder = new MsgPackEncoder();
+        // MsgPackDecoder 每条消息打印一次， 这里用相同的输入与 unpacker 直接解码
+        ByteBufMessageBufferInput handInput = new ByteBufMessageBufferInput();
+        MessageUnpacker handUnpacker = MessagePack.newDefaultUnpacker(handInput);
+        SchemaMsgPackEncoder<HeartbeatData> schemaEncoder = new SchemaMsgPackEncoder<>(SCHEMA);
+        SchemaMsgPackDecoder<HeartbeatData> schemaDecoder = new SchemaMsgPackDecoder<>(SCHEMA);
+
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ByteBuf handFrame = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ByteBuf schemaFrame = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ByteBuf jsonFrame = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ByteBuf msgpackFrame = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        handEncoder.encode(null, DATA, handFrame);
+        schemaEncoder.encode(null, DATA, schemaFrame);
+        json.writeValue((OutputStream) new ByteBufOutputStream(jsonFrame), DATA);
+        msgpack.writeValue((OutputStream) new ByteBufOutputStream(msgpackFrame), DATA);
+
+        List<Object> out = new ArrayList<>(1);
+        schemaDecoder.decode(null, schemaFrame, out);
+        if (!DATA.equals(out.get(0))) {
+            throw new IllegalStateException("decoded " + out.get(0));
+        }
+
+        Op[] ops = {
+                () -> {
+                    buf.clear();
+                    handEncoder.encode(null, DATA, buf);
+                },
+                () -> {
+                    buf.clear();
+                    schemaEncoder.encode(null, DATA, buf);
+                },
+                () -> {
+                    buf.clear();
+                    json.writeValue((OutputStream) new ByteBufOutputStream(buf), DATA);
+                },
+                () -> {
+                    buf.clear();
+                    msgpack.writeValue((OutputStream) new ByteBufOutputStream(buf), DATA);
+                },
+                () -> {
+                    handInput.reset(handFrame);
+                    handUnpacker.reset(handInput);
+                    new HeartbeatData(handUnpacker.unpackInt(), handUnpacker.unpackInt(), handUnpacker.unpackInt(),
+                            handUnpacker.unpackString());
+                },
+                () -> {
+                    out.clear();
+                    schemaDecoder.decode(null, schemaFrame, out);
+                },
+                () -> {
+                    jsonFrame.readerIndex(0);
+                    json.readValue((InputStream) new ByteBufInputStream(jsonFrame), HeartbeatData.class);
+                },
+                () -> {
+                    msgpackFrame.readerIndex(0);
+                    msgpack.readValue((InputStream) new ByteBufInputStream(msgpackFrame), HeartbeatData.class);
+                },
+        };
+        String[] names = {
+                "encode   (hand-written)", "encode   (schema)", "encode   (jackson json)", "encode   (jackson msgpack)",
+                "decode   (hand-written)", "decode   (schema)", "decode   (jackson json)", "decode   (jackson msgpack)",
+        };
+        int[] sizes = {
+                handFrame.readableBytes(), schemaFrame.readableBytes(), jsonFrame.readableBytes(), msgpackFrame.readableBytes(),
+        };
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            for (Op op : ops) {
+                run(op, OPS / 5);
+            }
+        }
+
+        for (int i = 0; i < ops.length; i++) {
+            double[] result = run(ops[i], OPS);
+            System.out.printf("%-28s %8.1f ns/op, %8.1f bytes/op, %4d bytes%n",
+                    names[i], result[0], result[1], sizes[i % sizes.length]);
+        }
+
+        buf.release();
+        handFrame.release();
+        schemaFrame.release();
+        jsonFrame.release();
+        msgpackFrame.release();
+    }
+
+    /**
+     * @return {ns/op, bytes/op}
+     */
+    private static double[] run(Op op, int ops) throws Exception {
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREAD_MX.getThreadAllocatedBytes(tid);
+        long st = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+        long cost = System.nanoTime() - st;
+        long bytes = THREAD_MX.getThreadAllocatedBytes(tid) - bytes0;
+
+        return new double[]{(double) cost / ops, (double) bytes / ops};
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void run() throws Exception;
+    }
+}
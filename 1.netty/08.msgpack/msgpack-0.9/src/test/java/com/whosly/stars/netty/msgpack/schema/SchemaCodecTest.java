@@ -0,0 +1,127 @@
+package com.whosly.stars.netty.msgpack.schema;
+
+import com.whosly.stars.netty.msgpack.domain.HeartbeatData;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SchemaCodec 的编解码与按字段 id 的版本兼容
+ *
+ * @author fengyang
+ */
+class SchemaCodecTest {
+
+    private static final SchemaCodec<HeartbeatData> HEARTBEAT = SchemaCodec.builder(HeartbeatData.class)
+            .field(1, "type").field(2, "seatId").field(3, "speed").field(4, "memo")
+            .build();
+
+    /**
+     * 旧版本： 只有 type、memo
+     */
+    static class StatusV1 {
+        private int type;
+
+        private String memo;
+    }
+
+    /**
+     * 新版本： 删除了 memo(id 2 不再使用)， 新增 seq、ratio、payload
+     */
+    static class StatusV2 {
+        private int type;
+
+        private long seq = -1;
+
+        private Double ratio;
+
+        private byte[] payload;
+    }
+
+    static class Unsupported {
+        private List<String> tags;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        HeartbeatData data = new HeartbeatData(3, 1024, -88, "速度上报");
+        assertEquals(data, HEARTBEAT.unpack(unpacker(pack(HEARTBEAT, data))));
+
+        HeartbeatData nullMemo = new HeartbeatData(1, Integer.MAX_VALUE, Integer.MIN_VALUE, null);
+        assertEquals(nullMemo, HEARTBEAT.unpack(unpacker(pack(HEARTBEAT, nullMemo))));
+    }
+
+    @Test
+    void testNewReaderOldWriter() throws IOException {
+        SchemaCodec<StatusV1> v1 = SchemaCodec.builder(StatusV1.class).field(1, "type").field(2, "memo").build();
+        SchemaCodec<StatusV2> v2 = SchemaCodec.builder(StatusV2.class)
+                .field(1, "type").field(3, "seq").field(4, "ratio").field(5, "payload").build();
+
+        StatusV1 old = new StatusV1();
+        old.type = 7;
+        old.memo = "removed in v2";
+
+        StatusV2 read = v2.unpack(unpacker(pack(v1, old)));
+        assertEquals(7, read.type);
+        // 缺少的字段保持默认值
+        assertEquals(-1, read.seq);
+        assertNull(read.ratio);
+        assertNull(read.payload);
+    }
+
+    @Test
+    void testOldReaderNewWriter() throws IOException {
+        SchemaCodec<StatusV1> v1 = SchemaCodec.builder(StatusV1.class).field(1, "type").field(2, "memo").build();
+        SchemaCodec<StatusV2> v2 = SchemaCodec.builder(StatusV2.class)
+                .field(1, "type").field(3, "seq").field(4, "ratio").field(5, "payload").build();
+
+        StatusV2 status = new StatusV2();
+        status.type = 9;
+        status.seq = 1L << 40;
+        status.ratio = 0.75;
+        status.payload = new byte[]{1, 2, 3};
+
+        byte[] bytes = pack(v2, status);
+        MessageUnpacker unpacker = unpacker(bytes);
+        StatusV1 read = v1.unpack(unpacker);
+        assertEquals(9, read.type);
+        assertNull(read.memo);
+        // 未知字段被完整跳过
+        assertFalse(unpacker.hasNext());
+
+        StatusV2 same = v2.unpack(unpacker(bytes));
+        assertEquals(status.seq, same.seq);
+        assertEquals(status.ratio, same.ratio);
+        assertArrayEquals(status.payload, same.payload);
+    }
+
+    @Test
+    void testInvalidSchema() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SchemaCodec.builder(HeartbeatData.class).field(1, "type").field(1, "speed"));
+        assertThrows(IllegalArgumentException.class,
+                () -> SchemaCodec.builder(HeartbeatData.class).field(SchemaCodec.MAX_FIELD_ID + 1, "type"));
+        assertThrows(IllegalArgumentException.class,
+                () -> SchemaCodec.builder(HeartbeatData.class).field(1, "missing").build());
+        assertThrows(IllegalArgumentException.class,
+                () -> SchemaCodec.builder(Unsupported.class).field(1, "tags").build());
+    }
+
+    private static <T> byte[] pack(SchemaCodec<T> codec, T value) throws IOException {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            codec.pack(packer, value);
+            packer.flush();
+            return packer.toByteArray();
+        }
+    }
+
+    private static MessageUnpacker unpacker(byte[] bytes) {
+        return MessagePack.newDefaultUnpacker(bytes);
+    }
+}
@@ -0,0 +1,335 @@
+package com.whosly.stars.netty.monitor.agent.codec;
+
+import com.whosly.stars.netty.monitor.agent.model.ChannelInfo;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MonitorMessage 的二进制批量编解码
+ * 
+ * 一帧(由 LengthFieldPrepender 加上长度)为一批消息:
+ * <pre>
+ * [magic 0xb1][version][applicationName][varint 消息数][消息]...
+ * 消息:      [type][varint timestamp][channelInfo 是否存在 0/1][channelInfo][data]
+ * channelInfo: [flags: active|open|writable][11 个字符串][5 个 varint long][2 个 varint int][bufferInfo]
+ * 字符串:     [varint 长度 + 1][utf-8]，null 为 0
+ * 值:        [tag][内容]，用于 data 与 bufferInfo 中的值
+ * </pre>
+ * JSON 帧以 '{' 开头，与 magic 不会冲突，接收方据此同时兼容两种格式。
+ * 
+ * @author fengyang
+ */
+public final class MonitorMessageCodec {
+    
+    public static final byte MAGIC = (byte) 0xb1;
+    
+    public static final byte VERSION = 1;
+    
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_OPEN = 1 << 1;
+    private static final int FLAG_WRITABLE = 1 << 2;
+    
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_LONG = 1;
+    private static final byte TAG_DOUBLE = 2;
+    private static final byte TAG_TRUE = 3;
+    private static final byte TAG_FALSE = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_MAP = 6;
+    
+    private MonitorMessageCodec() {
+    }
+    
+    /**
+     * 是否为二进制帧
+     */
+    public static boolean isBinary(ByteBuf frame) {
+        return frame.isReadable() && frame.getByte(frame.readerIndex()) == MAGIC;
+    }
+    
+    /**
+     * 将一批消息编码为一帧，消息的 applicationName 统一使用批次的 applicationName
+     */
+    public static void encodeBatch(String applicationName, List<MonitorMessage> messages, ByteBuf out) {
+        encodeBatchHeader(applicationName, messages.size(), out);
+        
+        for (int i = 0; i < messages.size(); i++) {
+            encodeMessage(messages.get(i), out);
+        }
+    }
+    
+    /**
+     * 只编码帧头，消息体由 {@link #encodeMessage} 单独编码，供调用方按帧大小拆分批次
+     */
+    public static void encodeBatchHeader(String applicationName, int count, ByteBuf out) {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, applicationName);
+        writeVarInt(out, count);
+    }
+    
+    /**
+     * 帧头的最大字节数：magic、version、applicationName 与最长 5 字节的消息数
+     */
+    public static int maxBatchHeaderBytes(String applicationName) {
+        int nameBytes = applicationName == null ? 0 : ByteBufUtil.utf8Bytes(applicationName);
+        return 2 + 5 + nameBytes + 5;
+    }
+    
+    /**
+     * 解码一帧中的所有消息
+     */
+    public static List<MonitorMessage> decodeBatch(ByteBuf in) {
+        if (in.readByte() != MAGIC) {
+            throw new CorruptedFrameException("not a binary monitor frame");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new CorruptedFrameException("unsupported monitor frame version: " + version);
+        }
+        
+        String applicationName = readString(in);
+        int count = readVarInt(in);
+        List<MonitorMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MonitorMessage message = decodeMessage(in);
+            message.setApplicationName(applicationName);
+            messages.add(message);
+        }
+        
+        return messages;
+    }
+    
+    /**
+     * 编码单个消息，不含帧头
+     */
+    public static void encodeMessage(MonitorMessage message, ByteBuf out) {
+        writeString(out, message.getType());
+        writeVarLong(out, message.getTimestamp());
+        
+        ChannelInfo info = message.getChannelInfo();
+        if (info == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1);
+            encodeChannelInfo(info, out);
+        }
+        
+        writeValue(out, message.getData());
+    }
+    
+    private static MonitorMessage decodeMessage(ByteBuf in) {
+        MonitorMessage message = new MonitorMessage();
+        message.setType(readString(in));
+        message.setTimestamp(readVarLong(in));
+        if (in.readByte() != 0) {
+            message.setChannelInfo(decodeChannelInfo(in));
+        }
+        message.setData(readValue(in));
+        
+        return message;
+    }
+    
+    private static void encodeChannelInfo(ChannelInfo info, ByteBuf out) {
+        int flags = (info.isActive() ? FLAG_ACTIVE : 0)
+                | (info.isOpen() ? FLAG_OPEN : 0)
+                | (info.isWritable() ? FLAG_WRITABLE : 0);
+        out.writeByte(flags);
+        
+        writeString(out, info.getChannelId());
+        writeString(out, info.getRemoteAddress());
+        writeString(out, info.getLocalAddress());
+        writeString(out, info.getState());
+        writeString(out, info.getEventLoopGroup());
+        writeString(out, info.getPipeline());
+        writeString(out, info.getErrorMessage());
+        writeString(out, info.getErrorType());
+        writeString(out, info.getStackTrace());
+        writeString(out, info.getUsername());
+        writeString(out, info.getChannelRole());
+        
+        writeVarLong(out, info.getCreateTime());
+        writeVarLong(out, info.getLastActiveTime());
+        writeVarLong(out, info.getBytesRead());
+        writeVarLong(out, info.getBytesWritten());
+        writeVarLong(out, info.getTimestamp());
+        writeVarLong(out, info.getMessagesRead());
+        writeVarLong(out, info.getMessagesWritten());
+        
+        writeValue(out, info.getBufferInfo());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static ChannelInfo decodeChannelInfo(ByteBuf in) {
+        ChannelInfo info = new ChannelInfo();
+        
+        int flags = in.readByte();
+        info.setActive((flags & FLAG_ACTIVE) != 0);
+        info.setOpen((flags & FLAG_OPEN) != 0);
+        info.setWritable((flags & FLAG_WRITABLE) != 0);
+        
+        info.setChannelId(readString(in));
+        info.setRemoteAddress(readString(in));
+        info.setLocalAddress(readString(in));
+        info.setState(readString(in));
+        info.setEventLoopGroup(readString(in));
+        info.setPipeline(readString(in));
+        info.setErrorMessage(readString(in));
+        info.setErrorType(readString(in));
+        info.setStackTrace(readString(in));
+        info.setUsername(readString(in));
+        info.setChannelRole(readString(in));
+        
+        info.setCreateTime(readVarLong(in));
+        info.setLastActiveTime(readVarLong(in));
+        info.setBytesRead(readVarLong(in));
+        info.setBytesWritten(readVarLong(in));
+        info.setTimestamp(readVarLong(in));
+        info.setMessagesRead((int) readVarLong(in));
+        info.setMessagesWritten((int) readVarLong(in));
+        
+        Object bufferInfo = readValue(in);
+        if (bufferInfo instanceof Map) {
+            info.setBufferInfo((Map<String, Object>) bufferInfo);
+        }
+        
+        return info;
+    }
+    
+    // ------------------------------------------------------------
+    //                       primitive
+    // ------------------------------------------------------------
+    
+    private static void writeValue(ByteBuf out, Object value) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+    
+    private static Object readValue(ByteBuf in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_LONG:
+                // 与 Jackson 的默认行为一致: int 范围内的整数为 Integer
+                long value = readVarLong(in);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_MAP:
+                int size = readVarInt(in);
+                Map<String, Object> map = new HashMap<>(Math.max(4, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            default:
+                throw new CorruptedFrameException("unknown value tag: " + tag);
+        }
+    }
+    
+    private static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        
+        int utf8Length = ByteBufUtil.utf8Bytes(value);
+        writeVarInt(out, utf8Length + 1);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, utf8Length);
+    }
+    
+    private static String readString(ByteBuf in) {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        
+        String value = in.toString(in.readerIndex(), length - 1, CharsetUtil.UTF_8);
+        in.skipBytes(length - 1);
+        return value;
+    }
+    
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint");
+    }
+    
+    /**
+     * zigzag 编码，负数也只占少量字节
+     */
+    static void writeVarLong(ByteBuf out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7f) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+    
+    static long readVarLong(ByteBuf in) {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new CorruptedFrameException("malformed varint");
+    }
+}
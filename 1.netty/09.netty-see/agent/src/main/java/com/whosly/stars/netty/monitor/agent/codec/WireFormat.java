@@ -0,0 +1,35 @@
+package com.whosly.stars.netty.monitor.agent.codec;
+
+/**
+ * 监控数据的传输格式
+ * 
+ * @author fengyang
+ */
+public enum WireFormat {
+    
+    /**
+     * 紧凑的二进制批量格式，见 {@link MonitorMessageCodec}
+     */
+    BINARY,
+    
+    /**
+     * 原有的 JSON 格式，每个事件一帧，兼容旧版本的 console
+     */
+    JSON;
+    
+    /**
+     * 系统属性 netty.see.wire 指定，默认 BINARY
+     */
+    public static WireFormat fromSystemProperty() {
+        String value = System.getProperty("netty.see.wire");
+        if (value == null || value.trim().isEmpty()) {
+            return BINARY;
+        }
+        
+        try {
+            return WireFormat.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return BINARY;
+        }
+    }
+}
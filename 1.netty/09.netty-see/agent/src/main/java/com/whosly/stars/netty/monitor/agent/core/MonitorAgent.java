@@ -1,10 +1,13 @@
 package com.whosly.stars.netty.monitor.agent.core;
 
+import com.whosly.stars.netty.monitor.agent.codec.MonitorMessageCodec;
+import com.whosly.stars.netty.monitor.agent.codec.WireFormat;
 import com.whosly.stars.netty.monitor.agent.model.ChannelInfo;
 import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
 import com.whosly.stars.netty.monitor.agent.util.JsonUtil;
 import com.whosly.stars.netty.monitor.agent.util.Logger;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
@@ -16,6 +19,7 @@ import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,7 +35,9 @@ public class MonitorAgent {
     private final String host;
     private final int port;
     private final EventLoopGroup group;
-    private Channel clientChannel;
+    private final WireFormat wireFormat;
+    private final MonitorEventBatcher batcher;
+    private volatile Channel clientChannel;
     private volatile boolean connected = false;
     private static MonitorAgent instance;
     
@@ -40,6 +46,8 @@ public class MonitorAgent {
         this.host = host;
         this.port = port;
         this.group = new NioEventLoopGroup(1);
+        this.wireFormat = WireFormat.fromSystemProperty();
+        this.batcher = new MonitorEventBatcher(applicationName, wireFormat);
     }
     
     /**
@@ -151,18 +159,33 @@ public class MonitorAgent {
             message.setApplicationName(applicationName);
             message.setTimestamp(System.currentTimeMillis());
             
-            String json = JsonUtil.builder()
-                    .put("type", message.getType())
-                    .put("applicationName", message.getApplicationName())
-                    .put("timestamp", message.getTimestamp())
-                    .build();
+            Channel channel = clientChannel;
+            if (channel == null || !channel.isActive()) {
+                logger.warn("Monitor Agent Cannot send application info - channel not active");
+                return;
+            }
             
-            if (clientChannel != null && clientChannel.isActive()) {
-                clientChannel.writeAndFlush(json);
-                logger.trace("Monitor Agent: Sent application registration for: %s", applicationName);
+            Object payload;
+            if (wireFormat == WireFormat.BINARY) {
+                // 只在连接可用时分配，编码失败时释放
+                ByteBuf buf = channel.alloc().buffer();
+                try {
+                    MonitorMessageCodec.encodeBatch(applicationName, Collections.singletonList(message), buf);
+                } catch (RuntimeException e) {
+                    buf.release();
+                    throw e;
+                }
+                payload = buf;
             } else {
-                logger.warn("Monitor Agent Cannot send application info - channel not active");
+                payload = JsonUtil.builder()
+                        .put("type", message.getType())
+                        .put("applicationName", message.getApplicationName())
+                        .put("timestamp", message.getTimestamp())
+                        .build();
             }
+            
+            channel.writeAndFlush(payload);
+            logger.trace("Monitor Agent: Sent application registration for: %s", applicationName);
         } catch (Exception e) {
             logger.warn("Monitor Agent: Failed to send application info: %s", e.getMessage());
         }
@@ -170,29 +193,34 @@ public class MonitorAgent {
     
     /**
      * 发送Channel信息
+     * 
+     * 只放入发送队列，由 {@link MonitorEventBatcher} 在监控连接的 EventLoop 中批量写出
      */
     public void sendChannelInfo(ChannelInfo channelInfo, String eventType) {
-        if (!connected || clientChannel == null || !clientChannel.isActive()) {
-            logger.info("Not connected to monitor server, skipping %s channel info for %s.", eventType, (channelInfo != null ? channelInfo.getChannelId() : "unknown"));
+        Channel channel = clientChannel;
+        if (!connected || channel == null || !channel.isActive()) {
+            logger.debug("Not connected to monitor server, skipping %s channel info for %s.", eventType, (channelInfo != null ? channelInfo.getChannelId() : "unknown"));
             return;
         }
         
-        try {
-            String json = JsonUtil.builder()
-                    .put("type", eventType)
-                    .put("applicationName", applicationName)
-                    .put("channelInfo", channelInfo)
-                    .put("timestamp", System.currentTimeMillis())
-                    .build();
-
-            logger.trace("MonitorAgent: Sending JSON(substring 20): %s...", json.substring(0, Math.min(20, json.length())));
-            clientChannel.writeAndFlush(json);
-            logger.trace("Sent channel info: %s for channel %s", eventType, channelInfo.getChannelId());
-        } catch (Exception e) {
-            logger.warn("Failed to send channel info: %s", e.getMessage());
+        MonitorMessage message = new MonitorMessage();
+        message.setType(eventType);
+        message.setApplicationName(applicationName);
+        message.setChannelInfo(channelInfo);
+        message.setTimestamp(System.currentTimeMillis());
+        
+        if (!batcher.offer(message, channel)) {
+            logger.debug("Monitor event queue is full, dropped %s event, total dropped: %d", eventType, batcher.getDropped());
         }
     }
     
+    /**
+     * 当前使用的传输格式
+     */
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+    
     /**
      * 安排重连
      */
@@ -239,6 +267,7 @@ public class MonitorAgent {
         public void channelInactive(ChannelHandlerContext ctx) throws Exception {
             logger.warn("Monitor client disconnected from server");
             connected = false;
+            batcher.clear();
             scheduleReconnect();
         }
         
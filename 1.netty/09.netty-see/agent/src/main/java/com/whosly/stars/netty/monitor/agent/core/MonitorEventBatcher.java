@@ -0,0 +1,232 @@
+package com.whosly.stars.netty.monitor.agent.core;
+
+import com.whosly.stars.netty.monitor.agent.codec.MonitorMessageCodec;
+import com.whosly.stars.netty.monitor.agent.codec.WireFormat;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import com.whosly.stars.netty.monitor.agent.util.JsonUtil;
+import com.whosly.stars.netty.monitor.agent.util.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 监控事件批量发送
+ * 
+ * 业务线程只把事件放入队列，由监控连接的 EventLoop 按数量(maxBatchSize)或时间(maxDelayMillis)
+ * 合并后写出，每批只 flush 一次。二进制格式下一批为一帧，超过帧大小上限(maxFrameBytes)时拆为多帧；
+ * JSON 格式下仍为每个事件一帧。
+ * 
+ * @author fengyang
+ */
+class MonitorEventBatcher {
+    
+    private static final Logger logger = Logger.getLogger(MonitorEventBatcher.class);
+    
+    static final int MAX_BATCH_SIZE = Integer.getInteger("netty.see.batch.maxSize", 256);
+    
+    static final long MAX_DELAY_MILLIS = Long.getLong("netty.see.batch.maxDelayMillis", 10L);
+    
+    /**
+     * 单帧的最大字节数(含 4 字节长度字段)，与接收方 LengthFieldBasedFrameDecoder 的 maxFrameLength(1MB) 一致
+     */
+    static final int MAX_FRAME_BYTES = Integer.getInteger("netty.see.batch.maxFrameBytes", 1024 * 1024);
+    
+    /**
+     * 监控服务器处理不过来时，超过该数量的事件直接丢弃，不影响业务
+     */
+    static final int MAX_PENDING = Integer.getInteger("netty.see.batch.maxPending", 64 * 1024);
+    
+    private final String applicationName;
+    private final WireFormat wireFormat;
+    
+    /**
+     * 一帧中消息部分的最大字节数，扣除长度字段与帧头
+     */
+    private final int maxBodyBytes;
+    
+    private final Queue<MonitorMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    
+    /**
+     * 只在 EventLoop 中使用
+     */
+    private final List<MonitorMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    
+    MonitorEventBatcher(String applicationName, WireFormat wireFormat) {
+        this(applicationName, wireFormat, MAX_FRAME_BYTES);
+    }
+    
+    MonitorEventBatcher(String applicationName, WireFormat wireFormat, int maxFrameBytes) {
+        this.applicationName = applicationName;
+        this.wireFormat = wireFormat;
+        this.maxBodyBytes = maxFrameBytes - 4 - MonitorMessageCodec.maxBatchHeaderBytes(applicationName);
+    }
+    
+    /**
+     * 放入一个事件
+     * 
+     * @return false 待发送的事件过多，已丢弃
+     */
+    boolean offer(MonitorMessage message, Channel channel) {
+        int size = pendingSize.incrementAndGet();
+        if (size > MAX_PENDING) {
+            pendingSize.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        pending.offer(message);
+        
+        if (size % MAX_BATCH_SIZE == 0) {
+            // 攒满一批，立即发送
+            scheduled.set(true);
+            channel.eventLoop().execute(() -> drain(channel));
+        } else if (scheduled.compareAndSet(false, true)) {
+            channel.eventLoop().schedule(() -> drain(channel), MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * 丢弃的事件数
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+    
+    /**
+     * 在 EventLoop 中发送所有待发送的事件
+     */
+    void drain(Channel channel) {
+        scheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        if (!channel.isActive()) {
+            clear();
+            return;
+        }
+        
+        boolean written = false;
+        MonitorMessage message;
+        while ((message = pending.poll()) != null) {
+            pendingSize.decrementAndGet();
+            batch.add(message);
+            
+            if (batch.size() >= MAX_BATCH_SIZE) {
+                write(channel);
+                written = true;
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(channel);
+            written = true;
+        }
+        
+        if (written) {
+            channel.flush();
+        }
+    }
+    
+    /**
+     * 连接断开时丢弃待发送的事件
+     */
+    void clear() {
+        int size = 0;
+        while (pending.poll() != null) {
+            pendingSize.decrementAndGet();
+            size++;
+        }
+        if (size > 0) {
+            dropped.addAndGet(size);
+            logger.debug("Monitor channel inactive, dropped %d pending events", size);
+        }
+    }
+    
+    private void write(Channel channel) {
+        try {
+            if (wireFormat == WireFormat.BINARY) {
+                writeBinary(channel);
+            } else {
+                for (int i = 0; i < batch.size(); i++) {
+                    channel.write(toJson(batch.get(i)), channel.voidPromise());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to send %d monitor events: %s", batch.size(), e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+    
+    /**
+     * 消息依次编码到同一个 buffer，累计超过 maxBodyBytes 时，之前的消息切片为一帧，当前消息留给下一帧。
+     * 单个消息超过上限时丢弃，避免接收方因帧过大断开连接。
+     */
+    private void writeBinary(Channel channel) {
+        ByteBuf body = channel.alloc().buffer(Math.min(batch.size() * 256, maxBodyBytes));
+        try {
+            int count = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                MonitorMessage message = batch.get(i);
+                int mark = body.writerIndex();
+                MonitorMessageCodec.encodeMessage(message, body);
+                
+                int size = body.writerIndex() - mark;
+                if (size > maxBodyBytes) {
+                    body.writerIndex(mark);
+                    dropped.incrementAndGet();
+                    logger.warn("Monitor %s event is %d bytes, exceeds the frame limit, dropped", message.getType(), size);
+                    continue;
+                }
+                if (body.readableBytes() > maxBodyBytes) {
+                    writeFrame(channel, count, body.readRetainedSlice(mark - body.readerIndex()));
+                    count = 0;
+                }
+                count++;
+            }
+            
+            if (count > 0) {
+                writeFrame(channel, count, body.readRetainedSlice(body.readableBytes()));
+            }
+        } finally {
+            body.release();
+        }
+    }
+    
+    /**
+     * 帧头与消息组合为一帧写出，payload 的所有权交给本方法
+     */
+    private void writeFrame(Channel channel, int count, ByteBuf payload) {
+        ByteBuf header;
+        try {
+            header = channel.alloc().buffer(MonitorMessageCodec.maxBatchHeaderBytes(applicationName));
+            MonitorMessageCodec.encodeBatchHeader(applicationName, count, header);
+        } catch (RuntimeException e) {
+            payload.release();
+            throw e;
+        }
+        
+        channel.write(channel.alloc().compositeBuffer(2).addComponents(true, header, payload), channel.voidPromise());
+    }
+    
+    private String toJson(MonitorMessage message) {
+        return JsonUtil.builder()
+                .put("type", message.getType())
+                .put("applicationName", applicationName)
+                .put("channelInfo", message.getChannelInfo())
+                .put("timestamp", message.getTimestamp())
+                .build();
+    }
+}
@@ -9,17 +9,74 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 /**
  * 监控Handler - 收集Channel信息并发送到监控服务器
  * 
+ * 读路径上只累加计数: Channel 的不变信息(id、地址、EventLoop 及由地址推断的角色)在 channelActive 时计算一次，
+ * 用户名、Pipeline 等会变化的信息在生成快照时实时读取。
+ * 每次读取只累加字节数与消息数，按时间间隔(netty.see.snapshot.intervalMillis，默认 1000)发送一次 CHANNEL_READ 快照，
+ * 所有事件中的 bytesRead/messagesRead 均为 Channel 建立以来的累计值，由控制台按 Channel 求增量，
+ * 丢失某次快照也不会少计。快照在 channelReadComplete 时检查，另有每个 EventLoop 一个的定时任务补发，
+ * 读取停止后未上报的计数不会一直滞留。
+ * 缓冲区信息每 netty.see.buffer.sampleEvery(默认 1024) 次读取采样一次。
+ * 
+ * intervalMillis 为 0 时退化为每次读取都发送事件(含 CHANNEL_READ_COMPLETE)。
+ * 
  * @author fengyang
  */
 public class MonitorHandler extends ChannelInboundHandlerAdapter {
     
     private static final Logger logger = Logger.getLogger(MonitorHandler.class);
+    
+    static final long SNAPSHOT_INTERVAL_MILLIS = Long.getLong("netty.see.snapshot.intervalMillis", 1000L);
+    
+    static final int BUFFER_SAMPLE_EVERY = Integer.getInteger("netty.see.buffer.sampleEvery", 1024);
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private static final io.netty.util.AttributeKey<Object> USERNAME = io.netty.util.AttributeKey.valueOf("username");
+    
     private final MonitorAgent agent;
     private final java.util.List<Runnable> pendingEvents = new java.util.ArrayList<>();
     private ChannelHandlerContext ctx;
     
+    private final long snapshotIntervalNanos;
+    private final int bufferSampleEvery;
+    
+    /**
+     * channelActive 时缓存的不变信息
+     */
+    private ChannelMeta meta;
+    
+    // 以下字段只在 Channel 的 EventLoop 中访问
+    private long totalBytesRead;
+    private long totalMessagesRead;
+    private int pendingMessagesRead;
+    private long readCount;
+    private long lastSnapshotNanos;
+    private java.util.Map<String, Object> sampledBufferInfo;
+    private SnapshotFlusher snapshotFlusher;
+    
     public MonitorHandler(MonitorAgent agent) {
+        this(agent, SNAPSHOT_INTERVAL_MILLIS, BUFFER_SAMPLE_EVERY);
+    }
+    
+    MonitorHandler(MonitorAgent agent, long snapshotIntervalMillis, int bufferSampleEvery) {
         this.agent = agent;
+        this.snapshotIntervalNanos = java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMillis);
+        this.bufferSampleEvery = bufferSampleEvery;
+    }
+    
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        // Handler 在 Channel 激活后才加入 pipeline 时不会收到 channelActive
+        if (ctx.channel().isActive()) {
+            startSnapshotTimer(ctx);
+        }
+        super.handlerAdded(ctx);
+    }
+    
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        stopSnapshotTimer();
+        super.handlerRemoved(ctx);
     }
     
     @Override
@@ -27,6 +84,10 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
         this.ctx = ctx; // 保存context引用
         
         try {
+            this.meta = createChannelMeta(ctx);
+            this.lastSnapshotNanos = System.nanoTime();
+            startSnapshotTimer(ctx);
+            
             ChannelInfo channelInfo = createChannelInfo(ctx);
             logger.trace("MonitorHandler: Channel active - %s", ctx.channel().id().asShortText());
             
@@ -80,9 +141,43 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
         }, 2, java.util.concurrent.TimeUnit.SECONDS);
     }
     
+    /**
+     * 定时补发读快照: 读取停止后 channelReadComplete 不再触发，由所在 EventLoop 的补发任务发送剩余的计数
+     */
+    private void startSnapshotTimer(ChannelHandlerContext ctx) {
+        if (snapshotIntervalNanos <= 0 || snapshotFlusher != null) {
+            return;
+        }
+        
+        this.ctx = ctx;
+        snapshotFlusher = SnapshotFlusher.register(this, ctx.executor(), snapshotIntervalNanos);
+    }
+    
+    private void stopSnapshotTimer() {
+        if (snapshotFlusher != null) {
+            snapshotFlusher.unregister(this);
+            snapshotFlusher = null;
+        }
+    }
+    
+    /**
+     * 由 {@link SnapshotFlusher} 在 EventLoop 中调用
+     */
+    private void flushIfDue() {
+        if (pendingMessagesRead > 0 && System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos) {
+            sendReadSnapshot(ctx);
+        }
+    }
+    
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        stopSnapshotTimer();
         try {
+            // 先发送未上报的读计数
+            if (pendingMessagesRead > 0) {
+                sendReadSnapshot(ctx);
+            }
+            
             ChannelInfo channelInfo = createChannelInfo(ctx);
             agent.sendChannelInfo(channelInfo, "CHANNEL_INACTIVE");
             logger.trace("Channel inactive: %s", ctx.channel().id().asShortText());
@@ -95,34 +190,52 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         try {
-            ChannelInfo channelInfo = createChannelInfo(ctx);
+            pendingMessagesRead++;
+            totalMessagesRead++;
             
-            // 记录读取的数据大小和缓冲区信息
+            // 记录读取的数据大小，按采样间隔收集缓冲区信息(必须在向后传递之前，之后 buf 可能已释放)
             if (msg instanceof ByteBuf) {
                 ByteBuf buf = (ByteBuf) msg;
-                channelInfo.setBytesRead(channelInfo.getBytesRead() + buf.readableBytes());
+                totalBytesRead += buf.readableBytes();
                 
-                // 收集缓冲区信息
-                collectBufferInfo(channelInfo, buf);
+                if (bufferSampleEvery > 0 && ++readCount % bufferSampleEvery == 0) {
+                    sampledBufferInfo = collectBufferInfo(buf);
+                }
             }
             
-            agent.sendChannelInfo(channelInfo, "CHANNEL_READ");
-
-            // 收到的数据流量包大小
-            logger.trace("Channel read: %d bytes", channelInfo.getBytesRead());
+            if (snapshotIntervalNanos <= 0) {
+                sendReadSnapshot(ctx);
+            }
         } catch (Exception e) {
-            logger.warn("Failed to send channel read info: %s", e.getMessage());
+            logger.warn("Failed to record channel read info: %s", e.getMessage());
         }
         super.channelRead(ctx, msg);
     }
     
+    /**
+     * 发送读快照，计数为累计值
+     */
+    private void sendReadSnapshot(ChannelHandlerContext ctx) {
+        ChannelInfo channelInfo = createChannelInfo(ctx);
+        channelInfo.setBufferInfo(sampledBufferInfo);
+        
+        pendingMessagesRead = 0;
+        sampledBufferInfo = null;
+        lastSnapshotNanos = System.nanoTime();
+        
+        agent.sendChannelInfo(channelInfo, "CHANNEL_READ");
+        
+        // 收到的数据流量包大小
+        logger.trace("Channel read: %d bytes", channelInfo.getBytesRead());
+    }
+    
     /**
      * 收集缓冲区信息
      */
-    private void collectBufferInfo(ChannelInfo channelInfo, ByteBuf buf) {
+    private java.util.Map<String, Object> collectBufferInfo(ByteBuf buf) {
         try {
             // 创建缓冲区信息映射
-            java.util.Map<String, Object> bufferInfo = new java.util.HashMap<>();
+            java.util.Map<String, Object> bufferInfo = new java.util.HashMap<>(32);
             
             bufferInfo.put("capacity", buf.capacity());
             bufferInfo.put("maxCapacity", buf.maxCapacity());
@@ -143,38 +256,45 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
             // 获取缓冲区内容的前64字节（用于调试）
             if (buf.readableBytes() > 0) {
                 int readableBytes = Math.min(buf.readableBytes(), 64);
-                byte[] content = new byte[readableBytes];
-                buf.getBytes(buf.readerIndex(), content);
-                bufferInfo.put("contentPreview", bytesToHex(content));
+                bufferInfo.put("contentPreview", toHex(buf, buf.readerIndex(), readableBytes));
             }
             
-            // 将缓冲区信息添加到ChannelInfo中
-            channelInfo.setBufferInfo(bufferInfo);
-            
             logger.trace("Collected buffer info: capacity=%d, readable=%d, writable=%d, utilization=%.2f%%",
                     buf.capacity(), buf.readableBytes(), buf.writableBytes(), utilization);
-                    
+            
+            return bufferInfo;
         } catch (Exception e) {
             logger.warn("Failed to collect buffer info: %s", e.getMessage());
+            return null;
         }
     }
     
     /**
-     * 将字节数组转换为十六进制字符串
+     * 将字节转换为以空格分隔的十六进制字符串，直接从 buf 读取，不拷贝
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x ", b));
+    private static String toHex(ByteBuf buf, int index, int length) {
+        char[] chars = new char[length * 3 - 1];
+        for (int i = 0; i < length; i++) {
+            int b = buf.getByte(index + i) & 0xff;
+            int pos = i * 3;
+            chars[pos] = HEX[b >>> 4];
+            chars[pos + 1] = HEX[b & 0x0f];
+            if (i < length - 1) {
+                chars[pos + 2] = ' ';
+            }
         }
-        return result.toString().trim();
+        return new String(chars);
     }
     
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
         try {
-            ChannelInfo channelInfo = createChannelInfo(ctx);
-            agent.sendChannelInfo(channelInfo, "CHANNEL_READ_COMPLETE");
+            if (snapshotIntervalNanos <= 0) {
+                ChannelInfo channelInfo = createChannelInfo(ctx);
+                agent.sendChannelInfo(channelInfo, "CHANNEL_READ_COMPLETE");
+            } else if (pendingMessagesRead > 0 && System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos) {
+                sendReadSnapshot(ctx);
+            }
         } catch (Exception e) {
             logger.warn("Failed to send channel read complete info: %s", e.getMessage());
         }
@@ -200,39 +320,52 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
     }
     
     /**
-     * 创建Channel信息
+     * 创建Channel信息: 不变部分取自 channelActive 时缓存的 {@link ChannelMeta}，
+     * Channel 状态、Pipeline 与用户名(连接建立后才由 /name 或客户端设置)实时读取
      */
     private ChannelInfo createChannelInfo(ChannelHandlerContext ctx) {
+        if (meta == null) {
+            // Handler 在 Channel 激活后才加入 pipeline
+            meta = createChannelMeta(ctx);
+        }
+        
         ChannelInfo info = new ChannelInfo();
         long currentTime = System.currentTimeMillis();
         
-        info.setChannelId(ctx.channel().id().asShortText());
-        info.setRemoteAddress(ctx.channel().remoteAddress() != null ? 
-                ctx.channel().remoteAddress().toString() : "unknown");
-        info.setLocalAddress(ctx.channel().localAddress() != null ? 
-                ctx.channel().localAddress().toString() : "unknown");
+        info.setChannelId(meta.channelId);
+        info.setRemoteAddress(meta.remoteAddress);
+        info.setLocalAddress(meta.localAddress);
         info.setActive(ctx.channel().isActive());
         info.setOpen(ctx.channel().isOpen());
         info.setWritable(ctx.channel().isWritable());
         
         // 设置状态
-        if (!ctx.channel().isOpen()) {
+        if (!info.isOpen()) {
             info.setState("CLOSED");
-        } else if (!ctx.channel().isActive()) {
+        } else if (!info.isActive()) {
             info.setState("INACTIVE");
         } else {
             info.setState("ACTIVE");
         }
         
         // 设置时间戳
-        info.setCreateTime(currentTime);
+        info.setCreateTime(meta.createTime);
         info.setLastActiveTime(currentTime);
         info.setTimestamp(currentTime);
         
-        // 设置EventLoop信息
-        info.setEventLoopGroup(ctx.channel().eventLoop().getClass().getSimpleName());
+        // 读计数为累计值
+        info.setBytesRead(totalBytesRead);
+        info.setMessagesRead((int) totalMessagesRead);
+        
+        info.setEventLoopGroup(meta.eventLoopGroup);
+        info.setPipeline(describePipeline(ctx));
+        info.setUsername(readUsername(ctx));
+        info.setChannelRole(meta.channelRole);
         
-        // 设置Pipeline信息
+        return info;
+    }
+    
+    private static String describePipeline(ChannelHandlerContext ctx) {
         StringBuilder pipelineInfo = new StringBuilder();
         ctx.pipeline().forEach(entry -> {
             if (pipelineInfo.length() > 0) {
@@ -241,27 +374,40 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
             pipelineInfo.append(entry.getKey()).append("(")
                     .append(entry.getValue().getClass().getSimpleName()).append(")");
         });
-        info.setPipeline(pipelineInfo.toString());
+        return pipelineInfo.toString();
+    }
+    
+    /**
+     * 从channel属性中获取用户名
+     */
+    private static String readUsername(ChannelHandlerContext ctx) {
+        Object usernameAttr = ctx.channel().attr(USERNAME).get();
+        return usernameAttr != null ? usernameAttr.toString() : null;
+    }
+    
+    /**
+     * 计算 Channel 的不变信息，每个 Channel 只计算一次。角色由地址推断，同样不变
+     */
+    private ChannelMeta createChannelMeta(ChannelHandlerContext ctx) {
+        ChannelMeta meta = new ChannelMeta();
+        meta.createTime = System.currentTimeMillis();
         
-        // 尝试从channel属性中获取用户名
-        try {
-            Object usernameAttr = ctx.channel().attr(io.netty.util.AttributeKey.valueOf("username")).get();
-            if (usernameAttr != null) {
-                info.setUsername(usernameAttr.toString());
-                logger.trace("Found username in channel attributes: %s", usernameAttr);
-            }
-        } catch (Exception e) {
-            logger.debug("No username attribute found in channel: %s", e.getMessage());
-        }
+        meta.channelId = ctx.channel().id().asShortText();
+        meta.remoteAddress = ctx.channel().remoteAddress() != null ? 
+                ctx.channel().remoteAddress().toString() : "unknown";
+        meta.localAddress = ctx.channel().localAddress() != null ? 
+                ctx.channel().localAddress().toString() : "unknown";
+        
+        // 设置EventLoop信息
+        meta.eventLoopGroup = ctx.channel().eventLoop().getClass().getSimpleName();
         
         // 根据地址信息判断channel角色
         // 如果remoteAddress包含服务器端口，说明这是客户端channel
         // 如果localAddress包含服务器端口，说明这是服务器端channel
-        String role = determineChannelRole(info.getLocalAddress(), info.getRemoteAddress());
-        info.setChannelRole(role);
-        logger.trace("Channel role determined: %s for %s", role, info.getChannelId());
+        meta.channelRole = determineChannelRole(meta.localAddress, meta.remoteAddress);
+        logger.trace("Channel role determined: %s for %s", meta.channelRole, meta.channelId);
         
-        return info;
+        return meta;
     }
     
     /**
@@ -287,6 +433,64 @@ public class MonitorHandler extends ChannelInboundHandlerAdapter {
         return sb.toString();
     }
     
+    /**
+     * 读快照的补发任务，每个 EventLoop 一个，而不是每个 Channel 一个定时任务。
+     * 注册、注销与执行都在该 EventLoop 中，handlers 无需同步；最后一个 Handler 注销时取消任务。
+     * 补发间隔取该 EventLoop 上第一个注册的 Handler 的快照间隔。
+     */
+    private static final class SnapshotFlusher implements Runnable {
+        
+        private static final java.util.concurrent.ConcurrentMap<io.netty.util.concurrent.EventExecutor, SnapshotFlusher> FLUSHERS =
+                new java.util.concurrent.ConcurrentHashMap<>();
+        
+        private final io.netty.util.concurrent.EventExecutor executor;
+        private final java.util.Set<MonitorHandler> handlers = new java.util.LinkedHashSet<>();
+        private final io.netty.util.concurrent.ScheduledFuture<?> future;
+        
+        private SnapshotFlusher(io.netty.util.concurrent.EventExecutor executor, long intervalNanos) {
+            this.executor = executor;
+            this.future = executor.scheduleWithFixedDelay(this, intervalNanos, intervalNanos,
+                    java.util.concurrent.TimeUnit.NANOSECONDS);
+        }
+        
+        static SnapshotFlusher register(MonitorHandler handler, io.netty.util.concurrent.EventExecutor executor,
+                                        long intervalNanos) {
+            SnapshotFlusher flusher = FLUSHERS.computeIfAbsent(executor, e -> new SnapshotFlusher(e, intervalNanos));
+            flusher.handlers.add(handler);
+            return flusher;
+        }
+        
+        void unregister(MonitorHandler handler) {
+            if (handlers.remove(handler) && handlers.isEmpty()) {
+                future.cancel(false);
+                FLUSHERS.remove(executor, this);
+            }
+        }
+        
+        @Override
+        public void run() {
+            for (MonitorHandler handler : handlers) {
+                try {
+                    handler.flushIfDue();
+                } catch (Exception e) {
+                    logger.warn("Failed to send scheduled read snapshot: %s", e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Channel 的不变信息
+     */
+    private static final class ChannelMeta {
+        private String channelId;
+        private String remoteAddress;
+        private String localAddress;
+        private String eventLoopGroup;
+        private String channelRole;
+        private long createTime;
+    }
+    
     /**
      * 根据地址信息判断channel角色
      */
@@ -0,0 +1,127 @@
+package com.whosly.stars.netty.monitor.agent.codec;
+
+import com.whosly.stars.netty.monitor.agent.model.ChannelInfo;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MonitorMessageCodec单元测试
+ * 
+ * @author fengyang
+ */
+class MonitorMessageCodecTest {
+    
+    @Test
+    void testRoundTrip() {
+        MonitorMessage active = message("CHANNEL_ACTIVE", channelInfo("a1b2c3d4"));
+        MonitorMessage read = message("CHANNEL_READ", channelInfo("e5f6a7b8"));
+        Map<String, Object> bufferInfo = new HashMap<>();
+        bufferInfo.put("capacity", 1024);
+        bufferInfo.put("maxCapacity", Integer.MAX_VALUE);
+        bufferInfo.put("isDirect", true);
+        bufferInfo.put("memoryUtilization", 12.5D);
+        bufferInfo.put("bufferType", "PooledUnsafeDirectByteBuf");
+        bufferInfo.put("contentPreview", "68 65 6c 6c 6f");
+        read.getChannelInfo().setBufferInfo(bufferInfo);
+        MonitorMessage register = message("APP_REGISTER", null);
+        
+        ByteBuf buf = Unpooled.buffer();
+        MonitorMessageCodec.encodeBatch("test-app", Arrays.asList(active, read, register), buf);
+        assertTrue(MonitorMessageCodec.isBinary(buf));
+        
+        List<MonitorMessage> decoded = MonitorMessageCodec.decodeBatch(buf);
+        assertFalse(buf.isReadable());
+        assertEquals(3, decoded.size());
+        
+        MonitorMessage decodedActive = decoded.get(0);
+        assertEquals("CHANNEL_ACTIVE", decodedActive.getType());
+        assertEquals("test-app", decodedActive.getApplicationName());
+        assertEquals(active.getTimestamp(), decodedActive.getTimestamp());
+        assertChannelInfoEquals(active.getChannelInfo(), decodedActive.getChannelInfo());
+        
+        assertEquals(bufferInfo, decoded.get(1).getChannelInfo().getBufferInfo());
+        assertNull(decoded.get(2).getChannelInfo());
+        
+        buf.release();
+    }
+    
+    @Test
+    void testJsonFrameIsNotBinary() {
+        ByteBuf json = Unpooled.copiedBuffer("{\"type\":\"APP_REGISTER\"}", CharsetUtil.UTF_8);
+        
+        assertFalse(MonitorMessageCodec.isBinary(json));
+        json.release();
+    }
+    
+    @Test
+    void testVarLong() {
+        long[] values = {0, 1, -1, 127, 128, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, System.currentTimeMillis()};
+        ByteBuf buf = Unpooled.buffer();
+        for (long value : values) {
+            MonitorMessageCodec.writeVarLong(buf, value);
+        }
+        for (long value : values) {
+            assertEquals(value, MonitorMessageCodec.readVarLong(buf));
+        }
+        buf.release();
+    }
+    
+    private static void assertChannelInfoEquals(ChannelInfo expected, ChannelInfo actual) {
+        assertEquals(expected.getChannelId(), actual.getChannelId());
+        assertEquals(expected.getRemoteAddress(), actual.getRemoteAddress());
+        assertEquals(expected.getLocalAddress(), actual.getLocalAddress());
+        assertEquals(expected.isActive(), actual.isActive());
+        assertEquals(expected.isOpen(), actual.isOpen());
+        assertEquals(expected.isWritable(), actual.isWritable());
+        assertEquals(expected.getState(), actual.getState());
+        assertEquals(expected.getCreateTime(), actual.getCreateTime());
+        assertEquals(expected.getBytesRead(), actual.getBytesRead());
+        assertEquals(expected.getMessagesRead(), actual.getMessagesRead());
+        assertEquals(expected.getPipeline(), actual.getPipeline());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getChannelRole(), actual.getChannelRole());
+        assertNull(actual.getErrorMessage());
+    }
+    
+    static MonitorMessage message(String type, ChannelInfo channelInfo) {
+        MonitorMessage message = new MonitorMessage();
+        message.setType(type);
+        message.setApplicationName("test-app");
+        message.setChannelInfo(channelInfo);
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+    
+    static ChannelInfo channelInfo(String channelId) {
+        long now = System.currentTimeMillis();
+        
+        ChannelInfo info = new ChannelInfo();
+        info.setChannelId(channelId);
+        info.setRemoteAddress("/127.0.0.1:52314");
+        info.setLocalAddress("/127.0.0.1:8080");
+        info.setActive(true);
+        info.setOpen(true);
+        info.setWritable(true);
+        info.setState("ACTIVE");
+        info.setCreateTime(now);
+        info.setLastActiveTime(now);
+        info.setTimestamp(now);
+        info.setBytesRead(4096);
+        info.setMessagesRead(3);
+        info.setEventLoopGroup("NioEventLoop");
+        info.setPipeline("MonitorHandler#0(MonitorHandler) -> ServerHandler#0(ServerHandler)");
+        info.setUsername("张三");
+        info.setChannelRole("SERVER");
+        return info;
+    }
+}
@@ -0,0 +1,96 @@
+package com.whosly.stars.netty.monitor.agent.core;
+
+import com.whosly.stars.netty.monitor.agent.codec.MonitorMessageCodec;
+import com.whosly.stars.netty.monitor.agent.codec.WireFormat;
+import com.whosly.stars.netty.monitor.agent.model.ChannelInfo;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MonitorEventBatcher单元测试
+ *
+ * @author fengyang
+ */
+class MonitorEventBatcherTest {
+
+    private static final int MAX_FRAME_BYTES = 4096;
+
+    @Test
+    void testBatchSplitByFrameBytes() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MonitorEventBatcher batcher = new MonitorEventBatcher("test-app", WireFormat.BINARY, MAX_FRAME_BYTES);
+
+        int events = 100;
+        for (int i = 0; i < events; i++) {
+            assertTrue(batcher.offer(message("CHANNEL_READ", i, 200), channel));
+        }
+        batcher.drain(channel);
+
+        int frames = 0;
+        int decoded = 0;
+        ByteBuf frame;
+        while ((frame = channel.readOutbound()) != null) {
+            frames++;
+            // 加上 4 字节长度字段后不超过接收方的帧大小上限
+            assertTrue(frame.readableBytes() + 4 <= MAX_FRAME_BYTES, "frame bytes: " + frame.readableBytes());
+
+            List<MonitorMessage> messages = MonitorMessageCodec.decodeBatch(frame);
+            for (MonitorMessage message : messages) {
+                assertEquals("ch-" + decoded, message.getChannelInfo().getChannelId());
+                decoded++;
+            }
+            assertFalse(frame.isReadable());
+            frame.release();
+        }
+
+        assertEquals(events, decoded);
+        assertTrue(frames > 1);
+        assertEquals(0, batcher.getDropped());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testOversizedMessageDropped() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MonitorEventBatcher batcher = new MonitorEventBatcher("test-app", WireFormat.BINARY, MAX_FRAME_BYTES);
+
+        batcher.offer(message("CHANNEL_READ", 0, 10), channel);
+        batcher.offer(message("EXCEPTION_CAUGHT", 1, MAX_FRAME_BYTES * 2), channel);
+        batcher.offer(message("CHANNEL_READ", 2, 10), channel);
+        batcher.drain(channel);
+
+        ByteBuf frame = channel.readOutbound();
+        List<MonitorMessage> messages = MonitorMessageCodec.decodeBatch(frame);
+        frame.release();
+
+        assertEquals(2, messages.size());
+        assertEquals("ch-0", messages.get(0).getChannelInfo().getChannelId());
+        assertEquals("ch-2", messages.get(1).getChannelInfo().getChannelId());
+        assertNull(channel.readOutbound());
+        assertEquals(1, batcher.getDropped());
+        channel.finishAndReleaseAll();
+    }
+
+    private static MonitorMessage message(String type, int index, int errorLength) {
+        StringBuilder error = new StringBuilder(errorLength);
+        for (int i = 0; i < errorLength; i++) {
+            error.append((char) ('a' + i % 26));
+        }
+
+        ChannelInfo info = new ChannelInfo();
+        info.setChannelId("ch-" + index);
+        info.setErrorMessage(error.toString());
+
+        MonitorMessage message = new MonitorMessage();
+        message.setType(type);
+        message.setChannelInfo(info);
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+}
@@ -0,0 +1,128 @@
+package com.whosly.stars.netty.monitor.agent.core;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+
+/**
+ * MonitorHandler 读路径开销压测: 同一 pipeline 在有无 MonitorHandler 时的读吞吐
+ *
+ * 1. baseline:  不加 MonitorHandler
+ * 2. per-event: 每次读取都发送事件(intervalMillis=0，每次读取都采样缓冲区)，即原有方式
+ * 3. sampled:   默认配置，按时间间隔发送快照
+ *
+ * overhead = 1 - 吞吐 / baseline 吞吐，sampled 应低于 2%。
+ *
+ * @author fengyang
+ */
+public class MonitorHandlerOverheadBenchmark {
+
+    private static final int READS = Integer.getInteger("bench.reads", 5_000_000);
+
+    private static final int READS_PER_LOOP = 16;
+
+    private static final int MESSAGE_SIZE = 256;
+
+    public static void main(String[] args) throws Exception {
+        EventLoopGroup sinkGroup = new NioEventLoopGroup(1);
+
+        try {
+            // 接收端只丢弃数据
+            Channel server = new ServerBootstrap()
+                    .group(sinkGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new ReleaseHandler());
+                        }
+                    })
+                    .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+
+            MonitorAgent.initialize("bench", "127.0.0.1", ((InetSocketAddress) server.localAddress()).getPort());
+            MonitorAgent agent = MonitorAgent.getInstance();
+            while (!agent.isConnected()) {
+                Thread.sleep(10);
+            }
+
+            // 预热
+            for (int i = 0; i < 3; i++) {
+                run(null, READS / 4);
+                run(new MonitorHandler(agent, 0, 1), READS / 4);
+                run(new MonitorHandler(agent), READS / 4);
+            }
+
+            double baseline = run(null, READS);
+            double perEvent = run(new MonitorHandler(agent, 0, 1), READS);
+            double sampled = run(new MonitorHandler(agent), READS);
+
+            print("baseline", baseline, baseline);
+            print("per-event", perEvent, baseline);
+            print("sampled", sampled, baseline);
+
+            agent.shutdown();
+            server.close().sync();
+        } finally {
+            sinkGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * @return reads/sec
+     */
+    private static double run(ChannelHandler monitorHandler, int reads) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        if (monitorHandler != null) {
+            channel.pipeline().addLast("monitor", monitorHandler);
+        }
+        channel.pipeline().addLast("business", new ReleaseHandler());
+        // EmbeddedChannel 注册时已激活，补发 channelActive 让 MonitorHandler 完成初始化
+        channel.pipeline().fireChannelActive();
+
+        ByteBuf payload = Unpooled.directBuffer(MESSAGE_SIZE).writeZero(MESSAGE_SIZE);
+        Object[] batch = new Object[READS_PER_LOOP];
+
+        long st = System.nanoTime();
+        for (int i = 0; i < reads; i += READS_PER_LOOP) {
+            for (int j = 0; j < READS_PER_LOOP; j++) {
+                batch[j] = payload.retainedDuplicate();
+            }
+            // 逐条 channelRead 后触发一次 channelReadComplete，与一次 NIO 读循环相同
+            channel.writeInbound(batch);
+        }
+        long cost = System.nanoTime() - st;
+
+        channel.finishAndReleaseAll();
+        payload.release();
+
+        return reads * 1_000_000_000D / cost;
+    }
+
+    private static void print(String name, double readsPerSec, double baseline) {
+        System.out.printf("%-10s reads/sec:%14.1f, overhead:%6.2f%%%n",
+                name, readsPerSec, (1 - readsPerSec / baseline) * 100);
+    }
+
+    /**
+     * 业务 handler 与接收端: 消费并释放数据
+     */
+    private static class ReleaseHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
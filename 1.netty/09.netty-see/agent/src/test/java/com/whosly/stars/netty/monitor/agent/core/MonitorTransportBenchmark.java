@@ -0,0 +1,194 @@
+package com.whosly.stars.netty.monitor.agent.core;
+
+import com.whosly.stars.netty.monitor.agent.codec.MonitorMessageCodec;
+import com.whosly.stars.netty.monitor.agent.codec.WireFormat;
+import com.whosly.stars.netty.monitor.agent.model.ChannelInfo;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import com.whosly.stars.netty.monitor.agent.util.JsonUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 监控事件发送压测: events/sec 与 agent 侧每个事件的 CPU 时间
+ * 
+ * 1. json-per-event: 原有方式，JsonUtil 序列化后逐条 writeAndFlush
+ * 2. json-batched:   MonitorEventBatcher，JSON 逐帧写出，每批 flush 一次
+ * 3. binary-batched: MonitorEventBatcher，二进制批量帧
+ * 
+ * agent 侧 CPU 为发送线程与 agent EventLoop 线程的 CPU 时间之和，不含接收端。
+ * 
+ * @author fengyang
+ */
+public class MonitorTransportBenchmark {
+    
+    private static final int EVENTS = Integer.getInteger("bench.events", 200_000);
+    
+    private static final AtomicLong received = new AtomicLong();
+    
+    public static void main(String[] args) throws Exception {
+        EventLoopGroup sinkGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("bench-sink"));
+        EventLoopGroup agentGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("bench-agent"));
+        
+        try {
+            Channel server = new ServerBootstrap()
+                    .group(sinkGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(16 * 1024 * 1024, 0, 4, 0, 4));
+                            ch.pipeline().addLast(new CountingHandler());
+                        }
+                    })
+                    .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+            
+            // 预热
+            run("warmup", server, agentGroup, null, EVENTS / 4);
+            run("warmup", server, agentGroup, WireFormat.BINARY, EVENTS / 4);
+            
+            run("json-per-event", server, agentGroup, null, EVENTS);
+            run("json-batched", server, agentGroup, WireFormat.JSON, EVENTS);
+            run("binary-batched", server, agentGroup, WireFormat.BINARY, EVENTS);
+            
+            server.close().sync();
+        } finally {
+            agentGroup.shutdownGracefully();
+            sinkGroup.shutdownGracefully();
+        }
+    }
+    
+    /**
+     * @param wireFormat null 时为原有的逐条 writeAndFlush
+     */
+    private static void run(String name, Channel server, EventLoopGroup agentGroup,
+                            WireFormat wireFormat, int events) throws Exception {
+        Channel client = new Bootstrap()
+                .group(agentGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new LengthFieldPrepender(4));
+                        ch.pipeline().addLast(new StringEncoder(CharsetUtil.UTF_8));
+                    }
+                })
+                .connect(server.localAddress()).sync().channel();
+        MonitorEventBatcher batcher = wireFormat == null ? null : new MonitorEventBatcher("bench", wireFormat);
+        
+        received.set(0);
+        long cpuStart = agentCpuNanos();
+        long st = System.nanoTime();
+        
+        for (int i = 0; i < events; i++) {
+            ChannelInfo info = channelInfo(i);
+            if (batcher == null) {
+                String json = JsonUtil.builder()
+                        .put("type", "CHANNEL_READ")
+                        .put("applicationName", "bench")
+                        .put("channelInfo", info)
+                        .put("timestamp", System.currentTimeMillis())
+                        .build();
+                client.writeAndFlush(json);
+            } else {
+                MonitorMessage message = new MonitorMessage();
+                message.setType("CHANNEL_READ");
+                message.setApplicationName("bench");
+                message.setChannelInfo(info);
+                message.setTimestamp(System.currentTimeMillis());
+                while (!batcher.offer(message, client)) {
+                    Thread.yield();
+                }
+            }
+            
+            // 控制在途数量，避免 writeAndFlush 无限堆积
+            while (i - received.get() > 64 * 1024) {
+                Thread.yield();
+            }
+        }
+        while (received.get() < events) {
+            Thread.sleep(1);
+        }
+        
+        long cost = System.nanoTime() - st;
+        long cpu = agentCpuNanos() - cpuStart;
+        client.close().sync();
+        
+        if (!"warmup".equals(name)) {
+            System.out.printf("%-16s events:%8d, events/sec:%12.1f, agent cpu/event(ns):%8d%n",
+                    name, events, events * 1_000_000_000D / cost, cpu / events);
+        }
+    }
+    
+    /**
+     * 当前线程与 agent EventLoop 线程的 CPU 时间
+     */
+    private static long agentCpuNanos() {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        long total = mxBean.getCurrentThreadCpuTime();
+        for (ThreadInfo info : mxBean.getThreadInfo(mxBean.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("bench-agent")) {
+                total += Math.max(0, mxBean.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+    
+    private static ChannelInfo channelInfo(int i) {
+        long now = System.currentTimeMillis();
+        
+        ChannelInfo info = new ChannelInfo();
+        info.setChannelId(Integer.toHexString(0x10000000 + (i & 0xff)));
+        info.setRemoteAddress("/127.0.0.1:52314");
+        info.setLocalAddress("/127.0.0.1:8080");
+        info.setActive(true);
+        info.setOpen(true);
+        info.setWritable(true);
+        info.setState("ACTIVE");
+        info.setCreateTime(now);
+        info.setLastActiveTime(now);
+        info.setTimestamp(now);
+        info.setBytesRead(i);
+        info.setEventLoopGroup("NioEventLoop");
+        info.setPipeline("MonitorHandler#0(MonitorHandler) -> ServerHandler#0(ServerHandler)");
+        info.setChannelRole("SERVER");
+        return info;
+    }
+    
+    /**
+     * 接收端只统计事件数
+     */
+    private static class CountingHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                received.addAndGet(MonitorMessageCodec.isBinary(frame)
+                        ? MonitorMessageCodec.decodeBatch(frame).size() : 1);
+            } finally {
+                ReferenceCountUtil.release(frame);
+            }
+        }
+    }
+}
@@ -117,6 +117,16 @@ public class ApplicationStats {
         updateLastSeen();
     }
     
+    /**
+     * 记录一批成功的请求（不包含响应时间）
+     */
+    public void recordSuccessfulRequests(long count) {
+        totalRequests.addAndGet(count);
+        successfulRequests.addAndGet(count);
+        updateErrorRate();
+        updateLastSeen();
+    }
+    
     /**
      * 记录请求
      */
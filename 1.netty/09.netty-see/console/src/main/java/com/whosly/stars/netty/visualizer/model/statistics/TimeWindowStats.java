@@ -125,6 +125,20 @@ public class TimeWindowStats {
         totalMessagesWritten.incrementAndGet();
     }
     
+    /**
+     * 记录一批消息读取
+     */
+    public void recordMessagesRead(long count) {
+        totalMessagesRead.addAndGet(count);
+    }
+    
+    /**
+     * 记录一批消息写入
+     */
+    public void recordMessagesWritten(long count) {
+        totalMessagesWritten.addAndGet(count);
+    }
+    
     /**
      * 记录请求
      */
@@ -147,6 +161,14 @@ public class TimeWindowStats {
         totalRequests.incrementAndGet();
     }
     
+    /**
+     * 记录一批成功的请求（不包含响应时间）
+     */
+    public void recordSuccessfulRequests(long count) {
+        totalRequests.addAndGet(count);
+        successfulRequests.addAndGet(count);
+    }
+    
     /**
      * 记录成功请求
      */
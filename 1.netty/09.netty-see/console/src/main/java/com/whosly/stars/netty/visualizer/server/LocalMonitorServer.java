@@ -1,6 +1,6 @@
 package com.whosly.stars.netty.visualizer.server;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
 import com.whosly.stars.netty.visualizer.service.NettyMonitorService;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
@@ -11,7 +11,6 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import lombok.RequiredArgsConstructor;
@@ -37,7 +36,7 @@ import java.util.Map;
 public class LocalMonitorServer {
     
     private final NettyMonitorService monitorService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MonitorFrameDecoder frameDecoder = new MonitorFrameDecoder();
     
     // 跟踪应用连接和其Channel
     private final Map<String, String> channelToApp = new ConcurrentHashMap<>();
@@ -135,8 +134,8 @@ public class LocalMonitorServer {
         pipeline.addLast(new LengthFieldBasedFrameDecoder(1024 * 1024, 0, 4, 0, 4));
         pipeline.addLast(new LengthFieldPrepender(4));
         
-        // 添加字符串编解码器
-        pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
+        // 监控数据解码: 二进制批量帧或 JSON 帧
+        pipeline.addLast(frameDecoder);
         pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
         
         // 添加监控数据处理器
@@ -208,12 +207,9 @@ public class LocalMonitorServer {
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             try {
-                String json = (String) msg;
-                log.info("Received monitor data: {}", json);
-                System.out.println("📥 LocalMonitorServer: Received JSON: " + json);
-                
-                // 解析监控消息
-                MonitorMessage message = objectMapper.readValue(json, MonitorMessage.class);
+                // 已由 MonitorFrameDecoder 解码
+                MonitorMessage message = (MonitorMessage) msg;
+                log.debug("Received monitor data: {}", message.getType());
                 
                 // 处理不同类型的消息
                 switch (message.getType()) {
@@ -411,33 +407,5 @@ public class LocalMonitorServer {
             return consoleInfo;
         }
     }
-    
-    /**
-     * 监控消息模型（内部类，避免依赖问题）
-     */
-    private static class MonitorMessage {
-        private String type;
-        private String applicationName;
-        private com.whosly.stars.netty.monitor.agent.model.ChannelInfo channelInfo;
-        private long timestamp;
-        private Object data;
-        
-        // Getters and Setters
-        public String getType() { return type; }
-        public void setType(String type) { this.type = type; }
-        
-        public String getApplicationName() { return applicationName; }
-        public void setApplicationName(String applicationName) { this.applicationName = applicationName; }
-        
-        public com.whosly.stars.netty.monitor.agent.model.ChannelInfo getChannelInfo() { return channelInfo; }
-        public void setChannelInfo(com.whosly.stars.netty.monitor.agent.model.ChannelInfo channelInfo) {
-            this.channelInfo = channelInfo; 
-        }
-        
-        public long getTimestamp() { return timestamp; }
-        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
-        
-        public Object getData() { return data; }
-        public void setData(Object data) { this.data = data; }
-    }
+
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.whosly.stars.netty.visualizer.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.whosly.stars.netty.monitor.agent.codec.MonitorMessageCodec;
+import com.whosly.stars.netty.monitor.agent.model.MonitorMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 监控数据帧解码器，同时兼容两种格式:
+ * 二进制批量帧(以 {@link MonitorMessageCodec#MAGIC} 开头)解码为多条 MonitorMessage；
+ * 其它帧按 JSON 解析为一条 MonitorMessage，兼容旧版本的 agent。
+ * 
+ * @author fengyang
+ */
+@ChannelHandler.Sharable
+public class MonitorFrameDecoder extends MessageToMessageDecoder<ByteBuf> {
+    
+    /**
+     * ObjectReader 线程安全，复用已解析的类型信息
+     */
+    private static final ObjectReader JSON_READER = new ObjectMapper().readerFor(MonitorMessage.class);
+    
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) throws Exception {
+        if (MonitorMessageCodec.isBinary(frame)) {
+            out.addAll(MonitorMessageCodec.decodeBatch(frame));
+            return;
+        }
+        
+        // 直接从 ByteBuf 解析，不转为 String
+        MonitorMessage message = JSON_READER.readValue((InputStream) new ByteBufInputStream(frame));
+        out.add(message);
+    }
+}
@@ -49,9 +49,8 @@ public class StatisticsAggregationService {
     private static final int MAX_HOUR_WINDOWS = 24; // 保留24小时
     private static final int MAX_DAY_WINDOWS = 30; // 保留30天
 
-    // 性能监控
-    private final Map<String, Long> lastRequestTime = new ConcurrentHashMap<>();
-    private final Map<String, Double> responseTimeBuffer = new ConcurrentHashMap<>();
+    // 各 Channel 上一次事件中的累计计数， 用于计算增量
+    private final Map<String, ChannelCounters> lastCounters = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() {
@@ -109,6 +108,9 @@ public class StatisticsAggregationService {
 
     /**
      * 处理Channel事件
+     * 
+     * 事件中的字节数、消息数为 Channel 建立以来的累计值(agent 按时间间隔发送快照，而不是每次读写一个事件)，
+     * 统计时按 Channel 与上一次事件求增量。
      */
     public void processChannelEvent(ChannelInfo channelInfo, String eventType) {
         try {
@@ -117,17 +119,19 @@ public class StatisticsAggregationService {
             String eventLoopType = channelInfo.getEventLoopGroup() != null ? channelInfo.getEventLoopGroup()
                     : "Unknown";
 
+            ChannelCounters delta = counterDelta(channelInfo, eventType);
+
             // 更新实时统计
-            updateRealTimeStats(channelInfo, eventType);
+            updateRealTimeStats(channelInfo, eventType, delta);
 
             // 更新应用统计
-            updateApplicationStats(channelInfo, eventType, applicationName);
+            updateApplicationStats(channelInfo, eventType, applicationName, delta);
 
             // 更新EventLoop统计
-            updateEventLoopStats(channelInfo, eventType, eventLoopType);
+            updateEventLoopStats(channelInfo, eventType, eventLoopType, delta);
 
             // 记录性能指标
-            recordPerformanceMetrics(channelInfo, eventType);
+            recordPerformanceMetrics(channelInfo, eventType, delta);
 
             log.debug("Processed channel event: {} for channel: {} from app: {}",
                     eventType, channelInfo.getChannelId(), applicationName);
@@ -164,10 +168,27 @@ public class StatisticsAggregationService {
         }
     }
 
+    /**
+     * 计算本次事件相对该 Channel 上一次事件的计数增量。
+     * 累计值变小(agent 重启或 Channel id 复用)时以本次的累计值作为增量；Channel 关闭后丢弃记录。
+     */
+    private ChannelCounters counterDelta(ChannelInfo channelInfo, String eventType) {
+        ChannelCounters current = new ChannelCounters(channelInfo.getBytesRead(), channelInfo.getBytesWritten(),
+                channelInfo.getMessagesRead(), channelInfo.getMessagesWritten());
+
+        ChannelCounters last;
+        if ("CHANNEL_INACTIVE".equals(eventType)) {
+            last = lastCounters.remove(channelInfo.getChannelId());
+        } else {
+            last = lastCounters.put(channelInfo.getChannelId(), current);
+        }
+        return current.minus(last);
+    }
+
     /**
      * 更新实时统计
      */
-    private void updateRealTimeStats(ChannelInfo channelInfo, String eventType) {
+    private void updateRealTimeStats(ChannelInfo channelInfo, String eventType, ChannelCounters delta) {
         switch (eventType) {
             case "CHANNEL_ACTIVE":
                 realTimeStats.recordNewConnection();
@@ -175,26 +196,31 @@ public class StatisticsAggregationService {
             case "CHANNEL_INACTIVE":
                 realTimeStats.recordConnectionClosed();
                 break;
-            case "CHANNEL_READ":
-                realTimeStats.recordBytesRead(channelInfo.getBytesRead());
-                realTimeStats.recordMessageRead();
-                break;
-            case "CHANNEL_WRITE":
-                realTimeStats.recordBytesWritten(channelInfo.getBytesWritten());
-                realTimeStats.recordMessageWritten();
-                break;
             case "CHANNEL_EXCEPTION":
                 realTimeStats.recordError();
                 break;
         }
+
+        // 任何事件都可能带有上一次快照之后的读写计数
+        realTimeStats.recordBytesRead(delta.bytesRead);
+        realTimeStats.recordMessagesRead(delta.messagesRead);
+        realTimeStats.recordBytesWritten(delta.bytesWritten);
+        realTimeStats.recordMessagesWritten(delta.messagesWritten);
     }
 
     /**
      * 更新应用统计
      */
-    private void updateApplicationStats(ChannelInfo channelInfo, String eventType, String applicationName) {
+    private void updateApplicationStats(ChannelInfo channelInfo, String eventType, String applicationName,
+                                        ChannelCounters delta) {
         ApplicationStats appStats = getOrCreateApplicationStats(applicationName);
 
+        if (!delta.isEmpty()) {
+            // 记录数据传输
+            appStats.recordDataTransfer(delta.bytesRead, delta.bytesWritten,
+                    (int) (delta.messagesRead + delta.messagesWritten));
+        }
+
         switch (eventType) {
             case "CHANNEL_ACTIVE":
                 appStats.recordNewConnection(channelInfo.getRemoteAddress());
@@ -202,14 +228,6 @@ public class StatisticsAggregationService {
             case "CHANNEL_INACTIVE":
                 appStats.recordConnectionClosed();
                 break;
-            case "CHANNEL_READ":
-            case "CHANNEL_WRITE":
-                // 记录数据传输
-                appStats.recordDataTransfer(
-                        channelInfo.getBytesRead(),
-                        channelInfo.getBytesWritten(),
-                        channelInfo.getMessagesRead() + channelInfo.getMessagesWritten());
-                break;
             case "CHANNEL_EXCEPTION":
                 String errorType = channelInfo.getErrorType() != null ? channelInfo.getErrorType() : "UnknownError";
                 appStats.recordError(errorType);
@@ -225,13 +243,19 @@ public class StatisticsAggregationService {
     /**
      * 更新EventLoop统计
      */
-    private void updateEventLoopStats(ChannelInfo channelInfo, String eventType, String eventLoopType) {
+    private void updateEventLoopStats(ChannelInfo channelInfo, String eventType, String eventLoopType,
+                                      ChannelCounters delta) {
         EventLoopStats elStats = getOrCreateEventLoopStats(eventLoopType);
 
         String applicationName = channelInfo.getApplicationName() != null ? channelInfo.getApplicationName()
                 : "Unknown";
         String channelType = determineChannelType(channelInfo);
 
+        if (!delta.isEmpty()) {
+            elStats.recordDataProcessed(delta.bytesRead + delta.bytesWritten,
+                    (int) (delta.messagesRead + delta.messagesWritten));
+        }
+
         switch (eventType) {
             case "CHANNEL_ACTIVE":
                 elStats.recordChannelRegistered(channelInfo.getChannelId(), applicationName, channelType);
@@ -239,12 +263,6 @@ public class StatisticsAggregationService {
             case "CHANNEL_INACTIVE":
                 elStats.recordChannelUnregistered(channelInfo.getChannelId(), applicationName, channelType);
                 break;
-            case "CHANNEL_READ":
-            case "CHANNEL_WRITE":
-                elStats.recordDataProcessed(
-                        channelInfo.getBytesRead() + channelInfo.getBytesWritten(),
-                        channelInfo.getMessagesRead() + channelInfo.getMessagesWritten());
-                break;
             case "CHANNEL_EXCEPTION":
                 String errorType = channelInfo.getErrorType() != null ? channelInfo.getErrorType() : "UnknownError";
                 elStats.recordChannelError(errorType);
@@ -254,65 +272,24 @@ public class StatisticsAggregationService {
 
     /**
      * 记录性能指标
+     * 
+     * agent 不再逐条上报读写事件，无法把一次读与一次写配对成响应时间；
+     * 每条读入的消息按一次成功请求计数，不记录响应时间，异常按失败请求计数。
      */
-    private void recordPerformanceMetrics(ChannelInfo channelInfo, String eventType) {
-        String channelId = channelInfo.getChannelId();
-        long currentTime = System.currentTimeMillis();
+    private void recordPerformanceMetrics(ChannelInfo channelInfo, String eventType, ChannelCounters delta) {
+        String applicationName = channelInfo.getApplicationName() != null ?
+                channelInfo.getApplicationName() : "Unknown";
+        ApplicationStats appStats = getOrCreateApplicationStats(applicationName);
 
-        // 改进的请求-响应配对逻辑
-        switch (eventType) {
-            case "CHANNEL_READ":
-                // 读取事件可能是请求的开始
-                lastRequestTime.put(channelId, currentTime);
-                // 记录一个请求（不包含响应时间）
-                realTimeStats.recordRequest();
-                break;
-                
-            case "CHANNEL_WRITE":
-                // 写入事件可能是响应的发送
-                Long requestTime = lastRequestTime.remove(channelId); // 移除以避免重复计算
-                if (requestTime != null) {
-                    double responseTime = currentTime - requestTime;
-                    responseTimeBuffer.put(channelId, responseTime);
-
-                    // 记录到实时统计（包含响应时间）
-                    realTimeStats.recordRequest(responseTime);
-                    realTimeStats.recordSuccessfulRequest();
-
-                    // 记录到应用统计
-                    String applicationName = channelInfo.getApplicationName() != null ? 
-                            channelInfo.getApplicationName() : "Unknown";
-                    ApplicationStats appStats = getOrCreateApplicationStats(applicationName);
-                    appStats.recordRequest(responseTime, true);
-                    
-                    log.debug("Recorded successful request for channel {} with response time {}ms", 
-                            channelId, responseTime);
-                } else {
-                    // 没有对应的读取事件，可能是单独的写入操作
-                    realTimeStats.recordRequest();
-                    realTimeStats.recordSuccessfulRequest();
-                }
-                break;
-                
-            case "CHANNEL_EXCEPTION":
-                // 异常事件，记录错误
-                realTimeStats.recordError();
-                
-                // 如果有未完成的请求，也要记录为请求
-                Long pendingRequestTime = lastRequestTime.remove(channelId);
-                if (pendingRequestTime != null) {
-                    double responseTime = currentTime - pendingRequestTime;
-                    realTimeStats.recordRequest(responseTime);
-                }
-                
-                // 记录到应用统计
-                String applicationName = channelInfo.getApplicationName() != null ? 
-                        channelInfo.getApplicationName() : "Unknown";
-                ApplicationStats appStats = getOrCreateApplicationStats(applicationName);
-                appStats.recordRequest(0, false); // 错误请求，响应时间设为0
-                
-                log.debug("Recorded error for channel {}", channelId);
-                break;
+        if (delta.messagesRead > 0) {
+            realTimeStats.recordSuccessfulRequests(delta.messagesRead);
+            appStats.recordSuccessfulRequests(delta.messagesRead);
+        }
+
+        if ("CHANNEL_EXCEPTION".equals(eventType)) {
+            appStats.recordRequest(0, false); // 错误请求，响应时间设为0
+
+            log.debug("Recorded error for channel {}", channelInfo.getChannelId());
         }
     }
 
@@ -478,9 +455,6 @@ public class StatisticsAggregationService {
                 return windowTime.isBefore(dayThreshold);
             });
 
-            // 清理过期的性能数据
-            responseTimeBuffer.clear();
-
             log.debug("Cleaned up expired statistics data");
 
         } catch (Exception e) {
@@ -704,9 +678,44 @@ public class StatisticsAggregationService {
         dayWindows.clear();
         applicationStats.values().forEach(ApplicationStats::reset);
         eventLoopStats.values().forEach(EventLoopStats::reset);
-        responseTimeBuffer.clear();
-        lastRequestTime.clear();
+        lastCounters.clear();
 
         log.info("All statistics data has been reset");
     }
-}
\ No newline at end of file
+
+    /**
+     * Channel 的读写计数
+     */
+    private static final class ChannelCounters {
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long messagesRead;
+        private final long messagesWritten;
+
+        private ChannelCounters(long bytesRead, long bytesWritten, long messagesRead, long messagesWritten) {
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.messagesRead = messagesRead;
+            this.messagesWritten = messagesWritten;
+        }
+
+        private ChannelCounters minus(ChannelCounters last) {
+            if (last == null) {
+                return this;
+            }
+            return new ChannelCounters(
+                    delta(bytesRead, last.bytesRead),
+                    delta(bytesWritten, last.bytesWritten),
+                    delta(messagesRead, last.messagesRead),
+                    delta(messagesWritten, last.messagesWritten));
+        }
+
+        private static long delta(long current, long last) {
+            return current >= last ? current - last : current;
+        }
+
+        private boolean isEmpty() {
+            return bytesRead == 0 && bytesWritten == 0 && messagesRead == 0 && messagesWritten == 0;
+        }
+    }
+}
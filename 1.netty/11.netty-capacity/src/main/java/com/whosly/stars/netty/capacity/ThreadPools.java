@@ -1,5 +1,6 @@
 package com.whosly.stars.netty.capacity;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 
 import java.util.concurrent.ScheduledExecutorService;
@@ -15,10 +16,13 @@ public class ThreadPools
     /**
      * 创建ScheduledExecutorService
      *
-     * 核心线程数为1， 最大线程数为 Integer.MAX_VALUE, keepAliveTime 0 的无限 DelayedWorkQueue 队列
+     * 核心线程数为1， 最大线程数为 Integer.MAX_VALUE, keepAliveTime 0 的无限 DelayedWorkQueue 队列。
+     * 线程为 daemon， 以 namePrefix 命名; 取消的任务立即从队列移除
      */
     public static ScheduledExecutorService createSingleScheduledExecutor(String namePrefix, Logger log) {
-        ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
+        ScheduledThreadPoolExecutor scheduledExecutorService =
+                new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory(namePrefix, true));
+        scheduledExecutorService.setRemoveOnCancelPolicy(true);
 
         return scheduledExecutorService;
     }
@@ -0,0 +1,153 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 根据每次采集的 ByteBufPoolStats 决定是否切换到新一代分配器， 以及新一代的配置。
+ *
+ * 1. 空闲回收: 已分配的内存(activeBytes)持续 idleTicks 次低于常驻内存(usedDirectMemory)的 1/4，
+ *    且可回收的部分不小于 minReclaimBytes 时切换。 碎片率超过 50% 时新一代的 chunk 缩小一半(maxOrder - 1)。
+ * 2. huge 分配过多: 两次采集之间 huge 分配占 arena 分配的 20% 以上时， chunk 扩大一倍(maxOrder + 1)， 让大 buffer 也能池化。
+ * 3. arena 竞争: 持有线程缓存的线程数超过 arena 数的 2 倍时， arena 数增加到线程数(不超过 2 * cpu 核数)。
+ *
+ * 两次切换之间至少间隔 cooldown。 由 DirectByteBufPooledAllocator.adapt 在 actionLock 内调用， 本身非线程安全。
+ *
+ * @author fengyang
+ * @date 2023/8/17 上午10:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+final class AdaptivePoolPolicy
+{
+    private static final double IDLE_RATIO = 0.25;
+
+    private static final double FRAGMENTATION_SHRINK = 0.5;
+
+    private static final double HUGE_SHARE_GROW = 0.2;
+
+    private static final int MIN_MAX_ORDER = 5;
+
+    private static final int MAX_MAX_ORDER = 11;
+
+    private static final int MAX_ARENAS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 默认配置: 默认关闭， -Dnetty.capacity.adaptive=true 开启。 关闭时分配器始终使用初始配置， 与未引入自适应前一致
+     */
+    static AdaptivePoolPolicy fromSystemProperties()
+    {
+        return new AdaptivePoolPolicy(
+                Boolean.parseBoolean(System.getProperty("netty.capacity.adaptive", "false")),
+                Integer.getInteger("netty.capacity.adaptive.idleTicks", 30),
+                Long.getLong("netty.capacity.adaptive.minReclaimBytes", 16L * Allocators._1MB),
+                Long.getLong("netty.capacity.adaptive.cooldownMillis", 60_000L)
+        );
+    }
+
+    private final boolean enabled;
+
+    private final int idleTicks;
+
+    private final long minReclaimBytes;
+
+    private final long cooldownNanos;
+
+    /**
+     * 计算 cooldown 的时钟， 单位 ns
+     */
+    private final LongSupplier nanoClock;
+
+    private int idleCount;
+
+    private long lastSwapNanos;
+
+    private int lastGeneration = -1;
+
+    private long lastHuge;
+
+    private long lastArenaAllocations;
+
+    AdaptivePoolPolicy(boolean enabled, int idleTicks, long minReclaimBytes, long cooldownMillis)
+    {
+        this(enabled, idleTicks, minReclaimBytes, cooldownMillis, System::nanoTime);
+    }
+
+    AdaptivePoolPolicy(boolean enabled, int idleTicks, long minReclaimBytes, long cooldownMillis, LongSupplier nanoClock)
+    {
+        this.enabled = enabled;
+        this.idleTicks = idleTicks;
+        this.minReclaimBytes = minReclaimBytes;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        this.nanoClock = nanoClock;
+        this.lastSwapNanos = nanoClock.getAsLong();
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @return 新一代的配置， 不需要切换时返回 null
+     */
+    PoolGeneration.Spec decide(ByteBufPoolStats stats, PoolGeneration.Spec current)
+    {
+        if (!enabled) {
+            return null;
+        }
+
+        if (stats.getGeneration() != lastGeneration) {
+            // 新一代的计数从 0 开始
+            lastGeneration = stats.getGeneration();
+            lastHuge = 0;
+            lastArenaAllocations = 0;
+            idleCount = 0;
+        }
+
+        long huge = stats.getNumHugeAllocations();
+        long arenaAllocations = stats.getNumSmallAllocations() + stats.getNumNormalAllocations() + huge;
+        long hugeDelta = huge - lastHuge;
+        long arenaDelta = arenaAllocations - lastArenaAllocations;
+        lastHuge = huge;
+        lastArenaAllocations = arenaAllocations;
+
+        long reclaimable = stats.getUsedDirectMemory() - stats.getNumActiveBytes();
+        boolean idle = stats.getNumActiveBytes() < stats.getUsedDirectMemory() * IDLE_RATIO
+                && reclaimable >= minReclaimBytes;
+        idleCount = idle ? idleCount + 1 : 0;
+
+        if (nanoClock.getAsLong() - lastSwapNanos < cooldownNanos) {
+            return null;
+        }
+
+        int arenas = current.getNumDirectArenas();
+        int maxOrder = current.getMaxOrder();
+        boolean swap = false;
+
+        if (arenaDelta > 0 && (double) hugeDelta / arenaDelta > HUGE_SHARE_GROW && maxOrder < MAX_MAX_ORDER) {
+            maxOrder++;
+            swap = true;
+        }
+
+        int threads = stats.getNumThreadLocalCaches();
+        if (threads > arenas * 2 && arenas < MAX_ARENAS) {
+            arenas = Math.min(MAX_ARENAS, threads);
+            swap = true;
+        }
+
+        if (idleCount >= idleTicks) {
+            if (!swap && stats.getFragmentation() > FRAGMENTATION_SHRINK && maxOrder > MIN_MAX_ORDER) {
+                maxOrder--;
+            }
+            swap = true;
+        }
+
+        if (!swap) {
+            return null;
+        }
+
+        idleCount = 0;
+        lastSwapNanos = nanoClock.getAsLong();
+        return new PoolGeneration.Spec(arenas, current.getPageSize(), maxOrder);
+    }
+}
@@ -5,39 +5,157 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 定时采集分配器的统计快照， 并通过 JMX(ByteBufPoolStatsMXBean) 暴露
+ *
+ * 所有分配器的采集共用一个 daemon 线程， 分配器不再使用时调用 {@link #close()} 停止采集。
+ *
  * @author fengyang
  * @date 2023/8/14 下午4:56
  * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
  */
 @Slf4j
 public class BufAllocatorMonitor
+        implements ByteBufPoolStatsMXBean
 {
+    /**
+     * 统计快照的采集间隔， -Dnetty.capacity.statsIntervalMillis 配置， 默认 1s
+     */
+    private static final long STATS_INTERVAL_MILLIS = Long.getLong("netty.capacity.statsIntervalMillis", 1000L);
+
+    private static final ScheduledExecutorService SCHEDULER =
+            ThreadPools.createSingleScheduledExecutor("connBufAllocM", log);
+
     private final IDirectByteBufPooledAllocator allocatorManager;
-    private final ScheduledExecutorService scheduledExecutorService;
+    private final ScheduledFuture<?> scheduledFuture;
+
+    /**
+     * 本实例注册的 MBean， 同名 MBean 已被其他实例注册时为 null
+     */
+    private volatile ObjectName mbeanName;
+
+    /**
+     * 按 owner 的 buffer 统计， 未开启时为 null
+     */
+    private final ByteBufAccounting accounting;
 
     /**
      * 当前分配器分配的所有的堆外内存总大小。单位 byte
      */
     private AtomicLong totalAllocatorMem;
 
+    /**
+     * 最近一次采集的统计快照
+     */
+    private volatile ByteBufPoolStats lastStats;
+
     public BufAllocatorMonitor(IDirectByteBufPooledAllocator allocatorManager)
+    {
+        this(allocatorManager, null);
+    }
+
+    public BufAllocatorMonitor(IDirectByteBufPooledAllocator allocatorManager, ByteBufAccounting accounting)
     {
         this.allocatorManager = allocatorManager;
+        this.accounting = accounting;
         this.totalAllocatorMem = new AtomicLong(0L);
 
         // start monitor
-        this.scheduledExecutorService = ThreadPools.createSingleScheduledExecutor("connBufAllocM", log);
-
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ConnectionBufAllocatorMontorRunner(this, this.allocatorManager),
+        this.scheduledFuture = SCHEDULER.scheduleWithFixedDelay(new ConnectionBufAllocatorMontorRunner(this, this.allocatorManager),
                 0,
-                10,
-                TimeUnit.SECONDS
+                STATS_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS
         );
+
+        registerMBean();
+    }
+
+    /**
+     * 停止采集并注销 MBean
+     */
+    public void close()
+    {
+        this.scheduledFuture.cancel(false);
+
+        ObjectName name = this.mbeanName;
+        if (name == null) {
+            return;
+        }
+        this.mbeanName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+            log.warn("unregister ByteBufPoolStats MBean fail, cause: {}", e.getMessage());
+        }
+    }
+
+    private void registerMBean()
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.whosly.stars.netty.capacity:type=ByteBufPool,name="
+                    + ObjectName.quote(this.allocatorManager.alias()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                this.mbeanName = name;
+            }
+        } catch (Exception e) {
+            log.warn("register ByteBufPoolStats MBean fail, cause: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public ByteBufPoolStats getStats()
+    {
+        ByteBufPoolStats stats = this.lastStats;
+        return stats == null ? refresh() : stats;
+    }
+
+    @Override
+    public long getUsedDirectMemory()
+    {
+        return getStats().getUsedDirectMemory();
+    }
+
+    @Override
+    public long getAllocatedMemory()
+    {
+        return getStats().getAllocatedMemory();
+    }
+
+    @Override
+    public long getNumActiveAllocations()
+    {
+        return getStats().getNumActiveAllocations();
+    }
+
+    @Override
+    public double getCacheHitRatio()
+    {
+        return getStats().getCacheHitRatio();
+    }
+
+    @Override
+    public double getFragmentation()
+    {
+        return getStats().getFragmentation();
+    }
+
+    @Override
+    public ByteBufPoolStats refresh()
+    {
+        ByteBufPoolStats stats = this.allocatorManager.getPoolStats();
+        this.lastStats = stats;
+
+        return stats;
     }
 
     public AtomicLong getTotalAllocatorMem()
@@ -65,57 +183,32 @@ public class BufAllocatorMonitor
         @Override
         public void run()
         {
-            log.info("ConnectionBufAllocatorMontorRunner start.");
-
             if(this.allocatorManager == null) {
                 log.warn("allocatorManager is null. ConnectionBufAllocatorMontorRunner finish.");
                 return;
             }
 
-//            try {
-//                // loop 每一个conn 的 buffer。 如果失败，则忽略
-//                Map<Long, ByteBufStaticInfo> staticInfoMap = this.allocatorManager.getByteBufStaticInfo();
-//
-//                // 当前分配器分配的所有的堆外内存总大小。单位 byte
-//                long totalAllocatorMem = staticInfoMap.entrySet().stream()
-//                        .collect(Collectors.summarizingInt(x->x.getValue().getCapacity())).getSum();
-//                this.monitor.setTotalAllocatorMem(totalAllocatorMem);
-//
-//                // buffer存在检测机制，当当前使用大小小于256k时，缩容至512k. 缩容时存在互斥锁
-//                Set<Long> resizeConnId = new HashSet<>();
-//                for (Map.Entry<Long, ByteBufStaticInfo> staticInfoEntry : staticInfoMap.entrySet()) {
-//                    try{
-//                        long connId = staticInfoEntry.getKey();
-//                        ByteBufStaticInfo staticInfo = staticInfoEntry.getValue();
-//
-//                        // 容量大于初始分配容量，且写索引小于256k
-//                        if(staticInfo.getCapacity() > ByteBufPooledAllocator.getInstance().getConfigInitialCapacity() &&
-//                                staticInfo.getWriterIndex() < Allocators._1K * 256) {
-//                            this.allocatorManager.resize(connId);
-//                            resizeConnId.add(connId);
-//                        }
-//                    }catch (Exception e) {
-//                        e.printStackTrace();
-//                    }
-//                }
-//
-//                if(resizeConnId.isEmpty()) {
-//                    log.info("ConnectionBufAllocatorMontorRunner finish. do nothing...");
-//                }else{
-//                    List<Map.Entry<Long, ByteBufStaticInfo>> resizeConnStatList = staticInfoMap.entrySet().stream().filter(k -> {
-//                        return resizeConnId.contains(k.getKey());
-//                    }).collect(Collectors.toList());
-//
-//                    log.info("ConnectionBufAllocatorMontorRunner finish. 当前分配器分配的所有的堆外内存总大小:{}," +
-//                                    "缩容信息:{}.",
-//                            BytesUtil.byteToM(totalAllocatorMem),
-//                            resizeConnStatList);
-//                }
-//            } catch (Throwable e) {
-//                log.error("ConnectionBufAllocatorMontorRunner fail, cause :", e);
-//
-//                e.printStackTrace();
-//            }
+            try {
+                ByteBufPoolStats stats = this.monitor.refresh();
+                this.monitor.setTotalAllocatorMem(stats.getAllocatedMemory());
+
+                this.allocatorManager.adapt(stats);
+
+                if (accounting != null) {
+                    accounting.scan();
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("ByteBufPool stats, usedDirectMemory:{}, allocatedMemory:{}, activeAllocations:{}, " +
+                                    "cacheHitRatio:{}, fragmentation:{}.",
+                            BytesUtil.byteToM(stats.getUsedDirectMemory()), BytesUtil.byteToM(stats.getAllocatedMemory()),
+                            stats.getNumActiveAllocations(),
+                            String.format("%.3f", stats.getCacheHitRatio()), String.format("%.3f", stats.getFragmentation()));
+                }
+            } catch (Throwable e) {
+                // 异常不能抛出， 否则后续的调度会被取消
+                log.error("ByteBufPool stats collect fail, cause :", e);
+            }
         }
     }
 }
@@ -0,0 +1,419 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import com.whosly.stars.netty.capacity.buffer.ByteBufReleaseListener;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按持有者(owner， 如连接的 channel id、组件名)统计未释放的 buffer。
+ *
+ * 1. 每次分配都计入 owner 的未释放字节数与 buffer 数(无锁)， 引用计数归零时扣减。
+ *    没有未释放 buffer 的 owner 在 scan 时清理: 清理前先把 counter 标记为已退役， 之后的分配不会再计入该 counter。
+ * 2. 按 sampleRate 采样记录分配点(调用栈)、线程与分配时间。 采样只弱引用 buffer，
+ *    buffer 未 release 就被 GC 回收时记为泄漏， 存活时间长但仍被引用的 buffer 不算泄漏。
+ *
+ * 字节数按分配时的初始容量计， 不含之后扩容的部分(扩容只计入内存配额)。
+ *
+ * @author fengyang
+ * @date 2023/8/18 上午10:20
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@Slf4j
+public final class ByteBufAccounting
+{
+    /**
+     * 未指定 owner 时的归属
+     */
+    public static final String UNOWNED = "unowned";
+
+    /**
+     * 调用栈中属于分配器自身的帧， 展示分配点时跳过
+     */
+    private static final String[] SELF_CLASSES = {
+            ByteBufAccounting.class.getName(),
+            DirectByteBufPooledAllocator.class.getName()
+    };
+
+    private static final int MAX_SITE_FRAMES = 8;
+
+    /**
+     * 保留的泄漏记录数， 超过时丢弃最早的
+     */
+    private static final int MAX_LEAK_RECORDS = 100;
+
+    /**
+     * 默认配置: -Dnetty.capacity.accounting=true 开启
+     *
+     * @return 未开启时返回 null
+     */
+    static ByteBufAccounting fromSystemProperties()
+    {
+        if (!Boolean.getBoolean("netty.capacity.accounting")) {
+            return null;
+        }
+
+        return new ByteBufAccounting(
+                Double.parseDouble(System.getProperty("netty.capacity.accounting.sampleRate", "0.01"))
+        );
+    }
+
+    /**
+     * 当前线程的 owner， 未显式指定 owner 的分配归属于它
+     */
+    private static final FastThreadLocal<String> CURRENT_OWNER = new FastThreadLocal<>();
+
+    /**
+     * 设置当前线程的 owner， 如在 handler 处理连接的消息前设置为 channel id
+     *
+     * @param owner 为 null 时清除
+     */
+    public static void setCurrentOwner(String owner)
+    {
+        if (owner == null) {
+            CURRENT_OWNER.remove();
+        } else {
+            CURRENT_OWNER.set(owner);
+        }
+    }
+
+    private final double sampleRate;
+
+    private final Map<String, OwnerCounter> owners = new ConcurrentHashMap<>();
+
+    /**
+     * 采样中、尚未释放的 buffer。 key is 采样 id
+     */
+    private final Map<Long, Sample> samples = new ConcurrentHashMap<>();
+
+    /**
+     * 被 GC 回收的采样 buffer
+     */
+    private final ReferenceQueue<ByteBuf> collected = new ReferenceQueue<>();
+
+    /**
+     * 未 release 就被回收的采样 buffer， 按发现的先后顺序
+     */
+    private final Deque<ByteBufLeakRecord> leaks = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger leakCount = new AtomicInteger();
+
+    private final AtomicLong sampleIds = new AtomicLong();
+
+    ByteBufAccounting(double sampleRate)
+    {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 记录一次分配
+     *
+     * @param owner 为 null 时使用当前线程的 owner
+     * @param bytes 计入 owner 的字节数
+     * @param releaseListener 原有的释放回调， 可为 null
+     * @return 释放时扣减统计并调用原有回调的 listener
+     */
+    ByteBufReleaseListener track(String owner, int bytes, ByteBufReleaseListener releaseListener)
+    {
+        String key = resolveOwner(owner);
+        OwnerCounter counter;
+        while (true) {
+            counter = owners.get(key);
+            if (counter == null) {
+                counter = owners.computeIfAbsent(key, OwnerCounter::new);
+            }
+            if (counter.tryAlloc(bytes)) {
+                break;
+            }
+            // 已退役， 帮助清理后重新取
+            owners.remove(key, counter);
+        }
+
+        final OwnerCounter c = counter;
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return buf -> {
+                c.onRelease(bytes);
+                if (releaseListener != null) {
+                    releaseListener.onReleased(buf);
+                }
+            };
+        }
+
+        // buffer 在 wrap 之后才存在， 由 onWrapped 创建采样记录
+        return new SampledReleaseListener(sampleIds.incrementAndGet(), key, c, bytes,
+                new Throwable("allocation site"), releaseListener);
+    }
+
+    /**
+     * 分配完成后为采样的 buffer 创建采样记录， 只弱引用 buffer
+     */
+    void onWrapped(ByteBufReleaseListener listener, ByteBuf buf)
+    {
+        if (listener instanceof SampledReleaseListener) {
+            SampledReleaseListener sampled = (SampledReleaseListener) listener;
+            samples.put(sampled.id, new Sample(buf, collected, sampled.id, sampled.owner, sampled.bytes, sampled.site));
+            sampled.site = null;
+        }
+    }
+
+    /**
+     * 未释放字节数最多的 n 个 owner
+     */
+    public List<ByteBufOwnerStats> topOwners(int n)
+    {
+        List<ByteBufOwnerStats> result = new ArrayList<>();
+        for (OwnerCounter counter : owners.values()) {
+            long bytes = counter.outstandingBytes.sum();
+            if (bytes <= 0) {
+                continue;
+            }
+            result.add(ByteBufOwnerStats.builder()
+                    .owner(counter.owner)
+                    .outstandingBytes(bytes)
+                    .outstandingBuffers(Math.max(0, counter.outstandingBuffers.get()))
+                    .totalAllocations(counter.totalAllocations.sum())
+                    .build());
+        }
+
+        result.sort(Comparator.comparingLong(ByteBufOwnerStats::getOutstandingBytes).reversed());
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    /**
+     * 未 release 就被 GC 回收的采样 buffer， 按发现的先后顺序， 最多保留 MAX_LEAK_RECORDS 条
+     */
+    public List<ByteBufLeakRecord> suspectedLeaks()
+    {
+        collectLeaks();
+
+        return new ArrayList<>(leaks);
+    }
+
+    /**
+     * 由 BufAllocatorMonitor 定时调用: 新发现的泄漏打印一次告警， 并清理已没有未释放 buffer 的 owner
+     */
+    void scan()
+    {
+        collectLeaks();
+
+        for (Map.Entry<String, OwnerCounter> entry : owners.entrySet()) {
+            OwnerCounter counter = entry.getValue();
+            // 退役后 tryAlloc 失败， 并发的分配会重新创建 counter， 不会计入被清理的 counter
+            if (counter.tryRetire()) {
+                owners.remove(entry.getKey(), counter);
+            }
+        }
+    }
+
+    /**
+     * 取出被回收的采样 buffer， 仍在 samples 中的(未经 release)记为泄漏
+     */
+    private void collectLeaks()
+    {
+        Sample sample;
+        while ((sample = (Sample) collected.poll()) != null) {
+            if (samples.remove(sample.id, sample)) {
+                ByteBufLeakRecord record = sample.toRecord(System.nanoTime());
+                log.warn("ByteBuf leak, garbage collected without release: {}.", record);
+
+                leaks.addLast(record);
+                if (leakCount.incrementAndGet() > MAX_LEAK_RECORDS && leaks.pollFirst() != null) {
+                    leakCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static String resolveOwner(String owner)
+    {
+        if (owner != null) {
+            return owner;
+        }
+
+        String current = CURRENT_OWNER.get();
+        return current == null ? UNOWNED : current;
+    }
+
+    private static String formatSite(Throwable site)
+    {
+        StringBuilder sb = new StringBuilder();
+        int frames = 0;
+        for (StackTraceElement element : site.getStackTrace()) {
+            if (frames == 0 && isSelf(element.getClassName())) {
+                continue;
+            }
+            if (frames > 0) {
+                sb.append(" <- ");
+            }
+            sb.append(element);
+            if (++frames >= MAX_SITE_FRAMES) {
+                break;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isSelf(String className)
+    {
+        for (String self : SELF_CLASSES) {
+            if (self.equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class OwnerCounter
+    {
+        private final String owner;
+
+        private final LongAdder outstandingBytes = new LongAdder();
+
+        /**
+         * 未释放的 buffer 数， -1 表示已退役
+         */
+        private final AtomicLong outstandingBuffers = new AtomicLong();
+
+        private final LongAdder totalAllocations = new LongAdder();
+
+        OwnerCounter(String owner)
+        {
+            this.owner = owner;
+        }
+
+        /**
+         * @return false 已退役， 需要重新取 counter
+         */
+        boolean tryAlloc(int bytes)
+        {
+            while (true) {
+                long n = outstandingBuffers.get();
+                if (n < 0) {
+                    return false;
+                }
+                if (outstandingBuffers.compareAndSet(n, n + 1)) {
+                    break;
+                }
+            }
+
+            outstandingBytes.add(bytes);
+            totalAllocations.increment();
+            return true;
+        }
+
+        void onRelease(int bytes)
+        {
+            outstandingBytes.add(-bytes);
+            outstandingBuffers.decrementAndGet();
+        }
+
+        /**
+         * 没有未释放的 buffer 时退役， 退役后不再接受分配
+         */
+        boolean tryRetire()
+        {
+            return outstandingBuffers.compareAndSet(0, -1);
+        }
+    }
+
+    private final class SampledReleaseListener
+            implements ByteBufReleaseListener
+    {
+        private final long id;
+
+        private final String owner;
+
+        private final OwnerCounter counter;
+
+        private final int bytes;
+
+        /**
+         * 分配点， 创建采样记录后置为 null
+         */
+        private Throwable site;
+
+        private final ByteBufReleaseListener delegate;
+
+        SampledReleaseListener(long id, String owner, OwnerCounter counter, int bytes, Throwable site,
+                               ByteBufReleaseListener delegate)
+        {
+            this.id = id;
+            this.owner = owner;
+            this.counter = counter;
+            this.bytes = bytes;
+            this.site = site;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onReleased(ByteBuf buf)
+        {
+            Sample sample = samples.remove(id);
+            if (sample != null) {
+                sample.clear();
+            }
+            counter.onRelease(bytes);
+            if (delegate != null) {
+                delegate.onReleased(buf);
+            }
+        }
+    }
+
+    /**
+     * 弱引用采样的 buffer， buffer 被回收后进入 ReferenceQueue
+     */
+    private static final class Sample
+            extends WeakReference<ByteBuf>
+    {
+        private final long id;
+
+        private final String owner;
+
+        private final int bytes;
+
+        private final long allocNanos = System.nanoTime();
+
+        private final long allocTimeMillis = System.currentTimeMillis();
+
+        private final String thread = Thread.currentThread().getName();
+
+        private final Throwable site;
+
+        Sample(ByteBuf buf, ReferenceQueue<ByteBuf> queue, long id, String owner, int bytes, Throwable site)
+        {
+            super(buf, queue);
+            this.id = id;
+            this.owner = owner;
+            this.bytes = bytes;
+            this.site = site;
+        }
+
+        ByteBufLeakRecord toRecord(long now)
+        {
+            return ByteBufLeakRecord.builder()
+                    .owner(owner)
+                    .bytes(bytes)
+                    .allocTimeMillis(allocTimeMillis)
+                    .ageMillis(TimeUnit.NANOSECONDS.toMillis(now - allocNanos))
+                    .thread(thread)
+                    .allocationSite(formatSite(site))
+                    .build();
+        }
+    }
+}
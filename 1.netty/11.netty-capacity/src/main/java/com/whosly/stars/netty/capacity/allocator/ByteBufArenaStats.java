@@ -0,0 +1,77 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 单个 direct arena 的统计信息
+ *
+ * arena 的分配次数只统计未命中线程缓存、实际从 arena 分配的次数。
+ *
+ * @author fengyang
+ * @date 2023/8/16 上午10:20
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@Builder
+@Getter
+@ToString
+public class ByteBufArenaStats
+{
+    private int index;
+
+    /**
+     * 绑定到该 arena 的线程缓存数
+     */
+    private int numThreadCaches;
+
+    private long numTinyAllocations;
+
+    private long numSmallAllocations;
+
+    private long numNormalAllocations;
+
+    private long numHugeAllocations;
+
+    private long numDeallocations;
+
+    private long numActiveAllocations;
+
+    private long numActiveBytes;
+
+    /**
+     * arena 中所有 chunk 的总大小。 单位 byte
+     */
+    private long chunkBytes;
+
+    /**
+     * arena 中所有 chunk 的空闲大小。 单位 byte
+     */
+    private long freeBytes;
+
+    /**
+     * 碎片率: 已申请的 chunk 中空闲的比例 freeBytes / chunkBytes
+     */
+    private double fragmentation;
+
+    /**
+     * 按使用率划分的 chunk list 占用情况 (qInit、q000、q025、q050、q075、q100)
+     */
+    private List<ChunkListStats> chunkLists;
+
+    @Builder
+    @Getter
+    @ToString
+    public static class ChunkListStats
+    {
+        private int minUsage;
+
+        private int maxUsage;
+
+        private int chunks;
+
+        private long freeBytes;
+    }
+}
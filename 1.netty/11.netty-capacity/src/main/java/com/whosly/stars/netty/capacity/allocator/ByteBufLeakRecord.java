@@ -0,0 +1,42 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 采样的、未 release 就被 GC 回收的 buffer(泄漏)
+ *
+ * @author fengyang
+ * @date 2023/8/18 上午10:45
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@Builder
+@Getter
+@ToString
+public class ByteBufLeakRecord
+{
+    private String owner;
+
+    /**
+     * 分配时的初始容量。 单位 byte
+     */
+    private int bytes;
+
+    private long allocTimeMillis;
+
+    /**
+     * 从分配到发现被回收的时间
+     */
+    private long ageMillis;
+
+    /**
+     * 分配线程
+     */
+    private String thread;
+
+    /**
+     * 分配点的调用栈， 已跳过分配器自身的帧
+     */
+    private String allocationSite;
+}
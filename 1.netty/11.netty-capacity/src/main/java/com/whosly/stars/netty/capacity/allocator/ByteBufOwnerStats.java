@@ -0,0 +1,38 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 单个 owner 持有的 buffer 统计
+ *
+ * @author fengyang
+ * @date 2023/8/18 上午10:40
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@Builder
+@Getter
+@ToString
+public class ByteBufOwnerStats
+{
+    /**
+     * 持有者， 如连接的 channel id、组件名
+     */
+    private String owner;
+
+    /**
+     * 未释放的字节数(按分配时的初始容量)。 单位 byte
+     */
+    private long outstandingBytes;
+
+    /**
+     * 未释放的 buffer 数
+     */
+    private long outstandingBuffers;
+
+    /**
+     * 累计分配次数
+     */
+    private long totalAllocations;
+}
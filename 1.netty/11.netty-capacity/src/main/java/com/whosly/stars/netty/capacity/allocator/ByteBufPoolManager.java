@@ -3,6 +3,8 @@ package com.whosly.stars.netty.capacity.allocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -75,6 +77,28 @@ public class ByteBufPoolManager
         return -1L;
     }
 
+    /**
+     * 未释放字节数最多的 n 个 owner
+     *
+     * @return 不存在分配器或未开启 buffer 统计时为空
+     */
+    public List<ByteBufOwnerStats> getTopOwners(String allocatorName, int n) {
+        return getAllocatorManager(allocatorName)
+                .map(allocator -> allocator.getTopOwners(n))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * 采样的、未 release 就被 GC 回收的 buffer， 用于定位泄漏
+     *
+     * @return 不存在分配器或未开启 buffer 统计时为空
+     */
+    public List<ByteBufLeakRecord> getSuspectedLeaks(String allocatorName) {
+        return getAllocatorManager(allocatorName)
+                .map(IDirectByteBufPooledAllocator::getSuspectedLeaks)
+                .orElse(Collections.emptyList());
+    }
+
     /**
      * 是否存在指定 allocatorName 的内存分配器
      *
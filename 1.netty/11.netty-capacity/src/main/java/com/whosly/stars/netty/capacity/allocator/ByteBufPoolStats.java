@@ -0,0 +1,84 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 池化分配器的统计快照， 由 ByteBufPoolStatsCollector 基于 PooledByteBufAllocatorMetric 生成
+ *
+ * @author fengyang
+ * @date 2023/8/16 上午10:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@Builder
+@Getter
+@ToString
+public class ByteBufPoolStats
+{
+    private long timestamp;
+
+    /**
+     * 当前分配器的代， 每次 adapt 切换后加 1。 以下统计均为当前这一代的
+     */
+    private int generation;
+
+    /**
+     * 分配器从系统申请的堆外内存。 单位 byte
+     */
+    private long usedDirectMemory;
+
+    /**
+     * 已切换、等待归还的旧一代分配器仍占用的堆外内存。 单位 byte
+     */
+    private long drainingDirectMemory;
+
+    /**
+     * 已分配(未释放)的 buffer 占用的内存配额。 单位 byte
+     */
+    private long allocatedMemory;
+
+    private int numDirectArenas;
+
+    private int numThreadLocalCaches;
+
+    private int chunkSize;
+
+    private int smallCacheSize;
+
+    private int normalCacheSize;
+
+    /**
+     * 分配器收到的分配请求数
+     */
+    private long numRequests;
+
+    private long numTinyAllocations;
+
+    private long numSmallAllocations;
+
+    private long numNormalAllocations;
+
+    private long numHugeAllocations;
+
+    private long numActiveAllocations;
+
+    /**
+     * 已分配(含线程缓存中)的字节数
+     */
+    private long numActiveBytes;
+
+    /**
+     * 线程缓存命中率: 1 - arena 分配次数(small + normal) / 分配请求数。 无请求时为 0
+     */
+    private double cacheHitRatio;
+
+    /**
+     * 碎片率: 所有 arena 已申请的 chunk 中空闲的比例
+     */
+    private double fragmentation;
+
+    private List<ByteBufArenaStats> arenas;
+}
@@ -0,0 +1,127 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 PooledByteBufAllocatorMetric 生成 ByteBufPoolStats
+ *
+ * 只读取 arena 的计数器并遍历 chunk list (chunk 数量为 arena 数 * 少量 chunk)，
+ * 开销与 buffer 数量无关， 可以每秒采集。
+ *
+ * @author fengyang
+ * @date 2023/8/16 上午10:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+final class ByteBufPoolStatsCollector
+{
+    private ByteBufPoolStatsCollector() {
+    }
+
+    /**
+     * @param generation 分配器的代
+     * @param numRequests 分配器收到的分配请求数
+     * @param allocatedMemory 已分配(未释放)的 buffer 占用的内存配额
+     * @param drainingDirectMemory 旧一代分配器仍占用的堆外内存
+     */
+    @SuppressWarnings("deprecation")
+    static ByteBufPoolStats collect(PooledByteBufAllocatorMetric metric, int generation, long numRequests,
+                                   long allocatedMemory, long drainingDirectMemory)
+    {
+        List<PoolArenaMetric> arenaMetrics = metric.directArenas();
+        List<ByteBufArenaStats> arenas = new ArrayList<>(arenaMetrics.size());
+
+        long tiny = 0, small = 0, normal = 0, huge = 0, active = 0, activeBytes = 0;
+        long chunkBytes = 0, freeBytes = 0;
+        for (int i = 0; i < arenaMetrics.size(); i++) {
+            ByteBufArenaStats arena = collectArena(i, arenaMetrics.get(i));
+            arenas.add(arena);
+
+            tiny += arena.getNumTinyAllocations();
+            small += arena.getNumSmallAllocations();
+            normal += arena.getNumNormalAllocations();
+            huge += arena.getNumHugeAllocations();
+            active += arena.getNumActiveAllocations();
+            activeBytes += arena.getNumActiveBytes();
+            chunkBytes += arena.getChunkBytes();
+            freeBytes += arena.getFreeBytes();
+        }
+
+        double cacheHitRatio = numRequests <= 0 ? 0 : Math.max(0, 1 - (double) (small + normal) / numRequests);
+
+        return ByteBufPoolStats.builder()
+                .timestamp(System.currentTimeMillis())
+                .generation(generation)
+                .usedDirectMemory(metric.usedDirectMemory())
+                .drainingDirectMemory(drainingDirectMemory)
+                .allocatedMemory(allocatedMemory)
+                .numDirectArenas(metric.numDirectArenas())
+                .numThreadLocalCaches(metric.numThreadLocalCaches())
+                .chunkSize(metric.chunkSize())
+                .smallCacheSize(metric.smallCacheSize())
+                .normalCacheSize(metric.normalCacheSize())
+                .numRequests(numRequests)
+                .numTinyAllocations(tiny)
+                .numSmallAllocations(small)
+                .numNormalAllocations(normal)
+                .numHugeAllocations(huge)
+                .numActiveAllocations(active)
+                .numActiveBytes(activeBytes)
+                .cacheHitRatio(cacheHitRatio)
+                .fragmentation(ratio(freeBytes, chunkBytes))
+                .arenas(arenas)
+                .build();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static ByteBufArenaStats collectArena(int index, PoolArenaMetric arena)
+    {
+        List<PoolChunkListMetric> chunkListMetrics = arena.chunkLists();
+        List<ByteBufArenaStats.ChunkListStats> chunkLists = new ArrayList<>(chunkListMetrics.size());
+
+        long chunkBytes = 0, freeBytes = 0;
+        for (PoolChunkListMetric chunkList : chunkListMetrics) {
+            int chunks = 0;
+            long listFree = 0;
+            for (PoolChunkMetric chunk : chunkList) {
+                chunks++;
+                chunkBytes += chunk.chunkSize();
+                listFree += chunk.freeBytes();
+            }
+            freeBytes += listFree;
+
+            chunkLists.add(ByteBufArenaStats.ChunkListStats.builder()
+                    .minUsage(chunkList.minUsage())
+                    .maxUsage(chunkList.maxUsage())
+                    .chunks(chunks)
+                    .freeBytes(listFree)
+                    .build());
+        }
+
+        return ByteBufArenaStats.builder()
+                .index(index)
+                .numThreadCaches(arena.numThreadCaches())
+                .numTinyAllocations(arena.numTinyAllocations())
+                .numSmallAllocations(arena.numSmallAllocations())
+                .numNormalAllocations(arena.numNormalAllocations())
+                .numHugeAllocations(arena.numHugeAllocations())
+                .numDeallocations(arena.numDeallocations())
+                .numActiveAllocations(arena.numActiveAllocations())
+                .numActiveBytes(arena.numActiveBytes())
+                .chunkBytes(chunkBytes)
+                .freeBytes(freeBytes)
+                .fragmentation(ratio(freeBytes, chunkBytes))
+                .chunkLists(chunkLists)
+                .build();
+    }
+
+    private static double ratio(long part, long total)
+    {
+        return total <= 0 ? 0 : (double) part / total;
+    }
+}
@@ -0,0 +1,33 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+/**
+ * 池化分配器统计信息的 JMX 接口， ObjectName 为 com.whosly.stars.netty.capacity:type=ByteBufPool,name={alias}
+ *
+ * 属性取自 BufAllocatorMonitor 最近一次采集的快照。
+ *
+ * @author fengyang
+ * @date 2023/8/16 上午11:00
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public interface ByteBufPoolStatsMXBean
+{
+    /**
+     * 最近一次采集的完整快照(含每个 arena)
+     */
+    ByteBufPoolStats getStats();
+
+    long getUsedDirectMemory();
+
+    long getAllocatedMemory();
+
+    long getNumActiveAllocations();
+
+    double getCacheHitRatio();
+
+    double getFragmentation();
+
+    /**
+     * 立即采集一次
+     */
+    ByteBufPoolStats refresh();
+}
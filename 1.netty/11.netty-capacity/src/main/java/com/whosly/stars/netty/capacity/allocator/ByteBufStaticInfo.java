@@ -1,58 +1,105 @@
 package com.whosly.stars.netty.capacity.allocator;
 
-import lombok.Builder;
-import lombok.Getter;
-import lombok.ToString;
+import java.util.List;
 
 /**
- * 每个 buffer 的统计信息
+ * 分配器的统计信息， 是最近一次采集的统计快照 ByteBufPoolStats 的视图， 不单独采集
+ *
+ * 用于按实际使用调整池的配置(arena 数、页大小、maxOrder)
  *
  * @author fengyang
  * @date 2023/8/14 下午4:58
  * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
  */
-@Builder
-@Getter
-@ToString
 public class ByteBufStaticInfo
 {
-    /**
-     *  the number of bytes (octets) this buffer can contain.
-     */
-    private int capacity;
+    private final ByteBufPoolStats stats;
 
-    /**
-     *  the maximum allowed capacity of this buffer
-     */
-    private int maxCapacity;
+    ByteBufStaticInfo(ByteBufPoolStats stats)
+    {
+        this.stats = stats;
+    }
 
     /**
-     * the writerIndex of this buffer.
+     * 完整的统计快照
      */
-    private int writerIndex;
+    public ByteBufPoolStats getStats()
+    {
+        return stats;
+    }
 
-    /**
-     * Returns the readerIndex of this buffer.
-     */
-    private int readerIndex;
+    public long getTimestamp()
+    {
+        return stats.getTimestamp();
+    }
 
-    /**
-     * Returns the number of writable bytes which is equal to (this.capacity - this.writerIndex).
-     */
-    private int writableBytes;
+    public int getNumDirectArenas()
+    {
+        return stats.getNumDirectArenas();
+    }
+
+    public int getChunkSize()
+    {
+        return stats.getChunkSize();
+    }
 
     /**
-     * Returns the number of readable bytes which is equal to (this.writerIndex - this.readerIndex).
+     * 分配器从系统申请的堆外内存(含旧一代)。 单位 byte
      */
-    private int readableBytes;
+    public long getUsedDirectMemory()
+    {
+        return stats.getUsedDirectMemory() + stats.getDrainingDirectMemory();
+    }
 
     /**
-     * Returns the maximum possible number of writable bytes, which is equal to (this.maxCapacity - this.writerIndex).
+     * 已分配(未释放)的 buffer 占用的内存配额。 单位 byte
      */
-    private int maxWritableBytes;
+    public long getAllocatedMemory()
+    {
+        return stats.getAllocatedMemory();
+    }
+
+    public long getNumTinyAllocations()
+    {
+        return stats.getNumTinyAllocations();
+    }
+
+    public long getNumSmallAllocations()
+    {
+        return stats.getNumSmallAllocations();
+    }
+
+    public long getNumNormalAllocations()
+    {
+        return stats.getNumNormalAllocations();
+    }
+
+    public long getNumHugeAllocations()
+    {
+        return stats.getNumHugeAllocations();
+    }
+
+    public double getCacheHitRatio()
+    {
+        return stats.getCacheHitRatio();
+    }
+
+    public double getFragmentation()
+    {
+        return stats.getFragmentation();
+    }
 
     /**
-     * is Direct
+     * 每个 arena 的使用情况与 chunk list 占用
      */
-    private boolean isDirect;
+    public List<ByteBufArenaStats> getArenas()
+    {
+        return stats.getArenas();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ByteBufStaticInfo(" + stats + ")";
+    }
 }
@@ -1,16 +1,24 @@
 package com.whosly.stars.netty.capacity.allocator;
 
-import com.google.common.collect.ImmutableMap;
+import com.whosly.stars.netty.capacity.buffer.ByteBufCapacityListener;
+import com.whosly.stars.netty.capacity.buffer.ByteBufChunkAllocator;
+import com.whosly.stars.netty.capacity.buffer.ByteBufFlushSink;
+import com.whosly.stars.netty.capacity.buffer.ByteBufReleaseListener;
 import com.whosly.stars.netty.capacity.buffer.ByteBufWrappers;
 import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocatorMetric;
-import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 面向连接(Connection) 的 buffer 分配
@@ -39,16 +47,26 @@ public class DirectByteBufPooledAllocator
      */
     public static final long DEFAULT_MAX_ALLOCATOR_MEM = 3 * Allocators._512MB;
 
-    ////////////////////////////////////////////////////////
-    //                  AllocatorManager                  //
-    ////////////////////////////////////////////////////////
     /**
-     * heap arena默认数量. [设置不会影响 usedDirectMemory]
-     *
-     * 默认 min(cpu核数，maxMemory/chunkSize/6)，一般来说会=cpu核数
+     * 分配器允许占用的最大内存， -Dnetty.capacity.maxAllocatorMem 配置， 默认 DEFAULT_MAX_ALLOCATOR_MEM
      */
-    private static final int DEFAULT_ALLOC_NUM_HEAP_ARENA = 0;
+    private static final long CONFIG_MAX_ALLOCATOR_MEM =
+            Long.getLong("netty.capacity.maxAllocatorMem", DEFAULT_MAX_ALLOCATOR_MEM);
 
+    /**
+     * 达到内存上限后的处理策略， -Dnetty.capacity.ceilingPolicy 配置(FAIL/WAIT/UNPOOLED)， 默认 FAIL
+     */
+    private static final MemoryCeilingPolicy CONFIG_CEILING_POLICY =
+            MemoryCeilingPolicy.of(System.getProperty("netty.capacity.ceilingPolicy"), MemoryCeilingPolicy.FAIL);
+
+    /**
+     * WAIT 策略的最长等待时间， -Dnetty.capacity.ceilingWaitMillis 配置， 默认 100ms
+     */
+    private static final long CONFIG_CEILING_WAIT_MILLIS = Long.getLong("netty.capacity.ceilingWaitMillis", 100L);
+
+    ////////////////////////////////////////////////////////
+    //                  AllocatorManager                  //
+    ////////////////////////////////////////////////////////
     /**
      * direct arena默认数量 [设置不会影响 usedDirectMemory]
      *
@@ -119,15 +137,37 @@ public class DirectByteBufPooledAllocator
     //////////////////////////////////////////////////////
     //                    BufAllocatorManager           //
     //////////////////////////////////////////////////////
-    private final PooledByteBufAllocator alloc;
+    /**
+     * 当前一代分配器， adapt 时整体切换
+     */
+    private volatile PoolGeneration generation;
+
+    /**
+     * 已切换、等待所有分配归还的旧分配器
+     */
+    private final List<PoolGeneration> draining = new CopyOnWriteArrayList<>();
 
     /**
-     * destory、alloc 的互斥锁
+     * 当前线程最近一次分配所在的代， 切换后用于 trim 旧一代的线程缓存
      */
-    private final Object allocLock;
+    private final FastThreadLocal<PoolGeneration> threadGeneration = new FastThreadLocal<>();
+
+    private final AdaptivePoolPolicy adaptivePolicy;
 
     /**
-     * resize 的互斥锁
+     * 内存上限的配额。 alloc、release 不加锁， 直接由 PooledByteBufAllocator 的线程缓存与 arena 处理并发
+     */
+    private final DirectMemoryQuota quota;
+
+    private final MemoryCeilingPolicy ceilingPolicy;
+
+    /**
+     * 按 owner 统计未释放的 buffer， -Dnetty.capacity.accounting=true 开启， 未开启时为 null
+     */
+    private final ByteBufAccounting accounting;
+
+    /**
+     * adapt、切换分配器的互斥锁。 分配、释放、resize 只读取一次 generation， 不加锁
      */
     private final Object actionLock;
 //
@@ -148,6 +188,18 @@ public class DirectByteBufPooledAllocator
     private final BufAllocatorMonitor monitor;
 
     private DirectByteBufPooledAllocator() {
+        this(AdaptivePoolPolicy.fromSystemProperties(), ByteBufAccounting.fromSystemProperties());
+    }
+
+    DirectByteBufPooledAllocator(AdaptivePoolPolicy adaptivePolicy) {
+        this(adaptivePolicy, null);
+    }
+
+    DirectByteBufPooledAllocator(AdaptivePoolPolicy adaptivePolicy, ByteBufAccounting accounting) {
+        this(adaptivePolicy, accounting, CONFIG_MAX_ALLOCATOR_MEM);
+    }
+
+    DirectByteBufPooledAllocator(AdaptivePoolPolicy adaptivePolicy, ByteBufAccounting accounting, long maxAllocatorMem) {
         // numThreadCaches 用于判断最少使用的PoolArena。
         //
         // Here is how the system property is used:
@@ -158,18 +210,19 @@ public class DirectByteBufPooledAllocator
         // * >  0  - Don't use cleaner. This will limit Netty's total direct memory
         //           (note: that JDK's direct memory limit is independent of this).
 
-        this.alloc = new PooledByteBufAllocator(
-                true,
-                DEFAULT_ALLOC_NUM_HEAP_ARENA,
+        this.generation = new PoolGeneration(0, new PoolGeneration.Spec(
                 DEFAULT_ALLOC_NUM_DIRECT_ARENA,
                 DEFAULT_ALLOC_PAGE_SIZE,
                 DEFAULT_ALLOC_MAX_ORDER
-        );
+        ));
+        this.adaptivePolicy = adaptivePolicy;
 
-        this.allocLock = new Object();
+        this.quota = new DirectMemoryQuota(maxAllocatorMem);
+        this.ceilingPolicy = CONFIG_CEILING_POLICY;
         this.actionLock = new Object();
+        this.accounting = accounting;
 
-        this.monitor = new BufAllocatorMonitor(this);
+        this.monitor = new BufAllocatorMonitor(this, accounting);
 
         ByteBufPoolManager.getInstance().register(this);
     }
@@ -178,7 +231,18 @@ public class DirectByteBufPooledAllocator
      * MYSQL 协议层允许占用的最大内存。 默认2G
      */
     public long getConfigMaxAllocatorMem() {
-        return DEFAULT_MAX_ALLOCATOR_MEM;
+        return quota.getLimit();
+    }
+
+    public MemoryCeilingPolicy getConfigCeilingPolicy() {
+        return ceilingPolicy;
+    }
+
+    /**
+     * 当前已分配(未释放)的 buffer 占用的内存配额。单位 byte
+     */
+    public long getAllocatedMemory() {
+        return quota.getUsed();
     }
 
     public int getConfigInitialCapacity() {
@@ -204,8 +268,9 @@ public class DirectByteBufPooledAllocator
     @Override
     public int cacheSize()
     {
-        return this.alloc.metric().normalCacheSize() +
-                this.alloc.metric().smallCacheSize();
+        PooledByteBufAllocatorMetric metric = this.generation.getAlloc().metric();
+
+        return metric.normalCacheSize() + metric.smallCacheSize();
     }
 
     /**
@@ -214,15 +279,27 @@ public class DirectByteBufPooledAllocator
     @Override
     public ByteBufAllocatorMetric allocatorMetric()
     {
-        PooledByteBufAllocatorMetric metric = alloc.metric();
+        PooledByteBufAllocatorMetric metric = generation.getAlloc().metric();
 
         return metric;
     }
 
+    /**
+     * 含旧一代分配器仍占用的堆外内存
+     */
     @Override
     public long getUsedDirectMemory()
     {
-        return this.allocatorMetric().usedDirectMemory();
+        return this.generation.usedDirectMemory() + getDrainingDirectMemory();
+    }
+
+    private long getDrainingDirectMemory()
+    {
+        long used = 0;
+        for (PoolGeneration gen : draining) {
+            used += gen.usedDirectMemory();
+        }
+        return used;
     }
 
     @Override
@@ -252,43 +329,339 @@ public class DirectByteBufPooledAllocator
     @Override
     public WrappedAutoFlushByteBuf allocByteBuf(int initialCapacity, Long maxCapacity, boolean scaleDown)
     {
+        return allocate(null, initialCapacity, maxCapacity.intValue(), 4 * Allocators._1MB, null, scaleDown);
+    }
+
+    @Override
+    public WrappedAutoFlushByteBuf allocByteBuf(String owner, int initialCapacity, Long maxCapacity)
+    {
+        return allocate(owner, initialCapacity, maxCapacity.intValue(), 4 * Allocators._1MB, null, true);
+    }
+
+    @Override
+    public WrappedAutoFlushByteBuf allocAutoFlushByteBuf(int autoFlushSize, ByteBufFlushSink sink)
+    {
+        return allocate(null, autoFlushSize, Math.max(autoFlushSize, getConfigMaxCapacity().intValue()),
+                autoFlushSize, sink, true);
+    }
+
+    private WrappedAutoFlushByteBuf allocate(String owner, int initialCapacity, int maxCapacity, int autoFlushSize,
+                                             ByteBufFlushSink sink, boolean scaleDown)
+    {
+        if (sink != null) {
+            // 每个 chunk 都是单独的一次分配， 各自计入配额与 owner， 交给 sink 后由 sink release 归还
+            ByteBufChunkAllocator chunks = (capacity, max) -> allocate(owner, capacity, max, capacity, null, scaleDown);
+
+            return ByteBufWrappers.autoFlush(autoFlushSize, chunks.allocate(initialCapacity, maxCapacity), sink, chunks);
+        }
+
+        PoolGeneration gen = attach();
+        gen.onRequest();
+
+        // 按 size class 取整后的容量计入配额
+        long normalized = gen.normalizeCapacity(initialCapacity);
+        if (!acquire(normalized)) {
+            if (ceilingPolicy == MemoryCeilingPolicy.UNPOOLED) {
+                log.debug("Allocator memory ceiling {} reached, fallback to unpooled heap buffer.", quota.getLimit());
+
+                return ByteBufWrappers.wrapper(autoFlushSize, Unpooled.buffer(initialCapacity, maxCapacity), null,
+                        null, scaleDown ? null : FIXED_CAPACITY, null);
+            }
+
+            throw ceilingReached(normalized);
+        }
+
         ByteBuf byteBuf;
-        synchronized (allocLock) {
-            // check size
-            //.
+        try {
+            byteBuf = gen.getAlloc().directBuffer(initialCapacity, maxCapacity);
+        } catch (Throwable e) {
+            quota.release(normalized);
+            throw e;
+        }
+
+        // 扩容时追加配额， 引用计数归零时归还全部配额
+        QuotaCharge charge = new QuotaCharge(initialCapacity, normalized, scaleDown);
+        ByteBufReleaseListener listener = charge;
+        if (accounting == null) {
+            return ByteBufWrappers.wrapper(autoFlushSize, byteBuf, null, listener, charge, null);
+        }
+
+        listener = accounting.track(owner, initialCapacity, listener);
+        WrappedAutoFlushByteBuf wrapped = ByteBufWrappers.wrapper(autoFlushSize, byteBuf, null, listener, charge, null);
+        accounting.onWrapped(listener, wrapped);
+        return wrapped;
+    }
+
+    private OutOfMemoryError ceilingReached(long bytes)
+    {
+        return new OutOfMemoryError("failed to allocate " + bytes + " byte(s) of direct memory (used: "
+                + quota.getUsed() + ", max: " + quota.getLimit() + ", policy: " + ceilingPolicy + ")");
+    }
 
-            byteBuf = alloc.directBuffer(initialCapacity, maxCapacity.intValue());
+    /**
+     * 返回当前一代分配器。 当前线程上次分配在旧的一代时， 先 trim 旧一代的线程缓存
+     */
+    private PoolGeneration attach()
+    {
+        PoolGeneration gen = this.generation;
+        PoolGeneration last = threadGeneration.get();
+        if (last != gen) {
+            if (last != null) {
+                last.trimCurrentThreadCache();
+            }
+            gen.onThreadAttached();
+            threadGeneration.set(gen);
         }
 
-        return ByteBufWrappers.wrapper(byteBuf, null);
+        return gen;
+    }
+
+    /**
+     * 申请内存配额， WAIT 策略下等待其他 buffer 释放
+     */
+    private boolean acquire(long bytes)
+    {
+        if (quota.tryAcquire(bytes)) {
+            return true;
+        }
+        if (ceilingPolicy != MemoryCeilingPolicy.WAIT) {
+            return false;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONFIG_CEILING_WAIT_MILLIS);
+        long parkNanos = TimeUnit.MICROSECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(parkNanos);
+            if (quota.tryAcquire(bytes)) {
+                return true;
+            }
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        return false;
     }
 
     @Override
     public void release(ByteBuf byteBuf) {
-        synchronized (allocLock) {
-            byteBuf.release();
+        byteBuf.release();
+
+        // 释放到旧一代的线程缓存后， 及时 trim
+        PoolGeneration last = threadGeneration.get();
+        if (last != null && last != this.generation) {
+            last.trimCurrentThreadCache();
+            threadGeneration.remove();
         }
     }
 
+    /**
+     * 可读数据不超过初始容量时， 丢弃已读数据并缩容至初始容量。 只能由 buffer 的持有线程调用。
+     *
+     * 本分配器分配的 buffer 把可读数据复制到当前一代的新 buffer 中， 使旧一代的分配尽快归还; 其他 buffer 原地缩容。
+     */
     @Override
     public void resize(ByteBuf byteBuf)
     {
+        int initialCapacity = getConfigInitialCapacity();
+        if (byteBuf.capacity() <= initialCapacity || byteBuf.readableBytes() > initialCapacity) {
+            return;
+        }
+
+        ByteBufCapacityListener listener = byteBuf instanceof WrappedAutoFlushByteBuf
+                ? ((WrappedAutoFlushByteBuf) byteBuf).getCapacityListener() : null;
+        if (listener == FIXED_CAPACITY || (listener instanceof QuotaCharge && !((QuotaCharge) listener).scaleDown)) {
+            // 分配时指定不允许缩容
+            return;
+        }
+
+        int capacity = byteBuf.capacity();
+        if (byteBuf.refCnt() == 1 && listener instanceof QuotaCharge) {
+            PoolGeneration gen = attach();
+            ((WrappedAutoFlushByteBuf) byteBuf).migrate(gen.getAlloc().directBuffer(initialCapacity, byteBuf.maxCapacity()));
+        } else {
+            byteBuf.discardReadBytes();
+            byteBuf.capacity(initialCapacity);
+        }
+
+        log.debug("ByteBuf resized, capacity: {} -> {}.", capacity, byteBuf.capacity());
+    }
+
+    /**
+     * 当前一代分配器
+     */
+    PoolGeneration currentGeneration() {
+        return this.generation;
+    }
+
+    @Override
+    public ByteBufPoolStats getPoolStats() {
+        PoolGeneration gen = this.generation;
+
+        return ByteBufPoolStatsCollector.collect(gen.getAlloc().metric(), gen.getId(), gen.getRequests(),
+                quota.getUsed(), getDrainingDirectMemory());
+    }
+
+    @Override
+    public ByteBufStaticInfo getByteBufStaticInfo() {
+        return new ByteBufStaticInfo(monitor.getStats());
+    }
+
+    @Override
+    public void adapt(ByteBufPoolStats stats) {
+        synchronized (actionLock) {
+            if (adaptivePolicy.isEnabled()) {
+                PoolGeneration.Spec spec = adaptivePolicy.decide(stats, this.generation.getSpec());
+                if (spec != null) {
+                    rebalance(spec);
+                }
+            }
+
+            drain();
+        }
+    }
+
+    /**
+     * 切换到新一代分配器。 可用于根据 ByteBufPoolStats 手动调整
+     *
+     * @param numDirectArenas direct arena 数量
+     * @param pageSize 页大小
+     * @param maxOrder chunk 大小为 pageSize << maxOrder
+     */
+    public void rebalance(int numDirectArenas, int pageSize, int maxOrder) {
+        rebalance(new PoolGeneration.Spec(numDirectArenas, pageSize, maxOrder));
+    }
+
+    private void rebalance(PoolGeneration.Spec spec) {
         synchronized (actionLock) {
-            if(byteBuf.capacity() > getConfigInitialCapacity()) {
-                log.warn("Inconsistency between actual capacity and expected capacity after downsizing. " +
-                                "actual capacity: {}, expected capacity: {}.",
-                        byteBuf.capacity(), getConfigInitialCapacity());
+            PoolGeneration old = this.generation;
+            PoolGeneration next = new PoolGeneration(old.getId() + 1, spec);
 
-                // add conn warnings
+            this.generation = next;
+            this.draining.add(old);
+            old.trimThreadCaches();
+
+            log.info("ByteBufPool switch generation {} -> {}, spec: {} -> {}, usedDirectMemory: {}.",
+                    old.getId(), next.getId(), old.getSpec(), spec, BytesUtil.byteToM(old.usedDirectMemory()));
+        }
+    }
+
+    /**
+     * 丢弃所有分配都已归还的旧分配器， 其余的继续 trim 线程缓存
+     */
+    private void drain() {
+        for (PoolGeneration gen : draining) {
+            if (gen.activeAllocations() == 0) {
+                draining.remove(gen);
+
+                log.info("ByteBufPool generation {} drained, remaining usedDirectMemory: {}.",
+                        gen.getId(), BytesUtil.byteToM(gen.usedDirectMemory()));
+                continue;
             }
+
+            gen.trimThreadCaches();
         }
     }
 
+    /**
+     * 分配器统计信息的 JMX 接口
+     */
+    public ByteBufPoolStatsMXBean getStatsMBean() {
+        return monitor;
+    }
+
     @Override
-    public Map<Long, ByteBufStaticInfo> getByteBufStaticInfo() {
-        ImmutableMap.Builder<Long, ByteBufStaticInfo> staticInfoBuilder = ImmutableMap.builder();
+    public List<ByteBufOwnerStats> getTopOwners(int n) {
+        return accounting == null ? Collections.emptyList() : accounting.topOwners(n);
+    }
+
+    @Override
+    public List<ByteBufLeakRecord> getSuspectedLeaks() {
+        return accounting == null ? Collections.emptyList() : accounting.suspectedLeaks();
+    }
+
+    /**
+     * 分配时指定 scaleDown 为 false、退化为 UNPOOLED 的 buffer 的标记， 不计配额， resize 时跳过
+     */
+    private static final ByteBufCapacityListener FIXED_CAPACITY = new ByteBufCapacityListener()
+    {
+        @Override
+        public void onExpand(ByteBuf buf, int bytes)
+        {
+        }
 
-        return staticInfoBuilder.build();
+        @Override
+        public void onShrink(ByteBuf buf, int bytes)
+        {
+        }
+    };
+
+    /**
+     * 一个 buffer 占用的配额: 按容量在当前一代取整到 size class 后的大小计算， 分配时申请， 扩容时追加、缩容时归还，
+     * 引用计数归零时归还剩余部分。
+     *
+     * 超过上限时扩容失败(抛出 OutOfMemoryError)， WAIT 策略下先等待; 已分配的 buffer 无法退化为 UNPOOLED。
+     */
+    private final class QuotaCharge
+            implements ByteBufReleaseListener, ByteBufCapacityListener
+    {
+        /**
+         * 是否允许 resize 缩容
+         */
+        private final boolean scaleDown;
+
+        /**
+         * 只由 buffer 的持有线程修改， 释放时的可见性由引用计数的 CAS 保证
+         */
+        private int capacity;
+
+        private long charged;
+
+        QuotaCharge(int capacity, long charged, boolean scaleDown)
+        {
+            this.capacity = capacity;
+            this.charged = charged;
+            this.scaleDown = scaleDown;
+        }
+
+        @Override
+        public void onExpand(ByteBuf buf, int bytes)
+        {
+            int next = capacity + bytes;
+            long more = generation.normalizeCapacity(next) - charged;
+            if (more > 0) {
+                if (!acquire(more)) {
+                    throw ceilingReached(more);
+                }
+                charged += more;
+            }
+            capacity = next;
+        }
+
+        @Override
+        public void onShrink(ByteBuf buf, int bytes)
+        {
+            capacity -= bytes;
+            long less = charged - generation.normalizeCapacity(capacity);
+            if (less > 0) {
+                charged -= less;
+                quota.release(less);
+            }
+        }
+
+        @Override
+        public void onReleased(ByteBuf buf)
+        {
+            long bytes = charged;
+            charged = 0;
+            quota.release(bytes);
+        }
+    }
+
+    /**
+     * 停止统计采集并注销 MBean。 分配器不再使用时调用， 已分配的 buffer 仍可正常释放
+     */
+    @Override
+    public void close() {
+        monitor.close();
     }
 
 }
@@ -0,0 +1,161 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段的内存配额， 用于在不加锁的前提下限制分配器的内存上限
+ *
+ * 总配额 limit 分为全局剩余配额 global 与每个分段(stripe)预取的配额。
+ * 分配时线程只对自己所在的分段做 CAS，分段配额不足时再从 global 批量预取 BATCH 字节，
+ * global 也不足时回收所有分段的配额后重试， 仍不足则失败。
+ *
+ * 已分配 + global + 所有分段 = limit， 因此已分配的内存永远不会超过 limit。
+ *
+ * @author fengyang
+ * @date 2023/8/15 下午5:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+final class DirectMemoryQuota
+{
+    /**
+     * 每次从 global 预取的配额
+     */
+    private static final long BATCH = 256 * Allocators._1K;
+
+    /**
+     * 分段之间间隔 8 个 long(64 byte)， 避免伪共享
+     */
+    private static final int PADDING = 8;
+
+    private final long limit;
+
+    private final AtomicLong global;
+
+    private final AtomicLongArray stripes;
+
+    private final int mask;
+
+    DirectMemoryQuota(long limit)
+    {
+        this(limit, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    DirectMemoryQuota(long limit, int stripeCount)
+    {
+        int n = 1;
+        while (n < stripeCount) {
+            n <<= 1;
+        }
+
+        this.limit = limit;
+        this.global = new AtomicLong(limit);
+        this.stripes = new AtomicLongArray(n * PADDING);
+        this.mask = n - 1;
+    }
+
+    /**
+     * 配额上限。单位 byte
+     */
+    long getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * 已分配的配额。 单位 byte， 并发时为近似值
+     */
+    long getUsed()
+    {
+        long free = global.get();
+        for (int i = 0; i <= mask; i++) {
+            free += stripes.get(i * PADDING);
+        }
+
+        return limit - free;
+    }
+
+    /**
+     * 申请配额
+     *
+     * @return false 超出上限
+     */
+    boolean tryAcquire(long bytes)
+    {
+        if (bytes > limit) {
+            return false;
+        }
+
+        int idx = stripe();
+        while (true) {
+            long cur = stripes.get(idx);
+            if (cur >= bytes) {
+                if (stripes.compareAndSet(idx, cur, cur - bytes)) {
+                    return true;
+                }
+                continue;
+            }
+
+            // 分段配额不足， 从 global 预取
+            long g = global.get();
+            long need = bytes - cur;
+            if (g < need) {
+                break;
+            }
+            long take = Math.min(g, need + BATCH);
+            if (global.compareAndSet(g, g - take)) {
+                stripes.addAndGet(idx, take);
+            }
+        }
+
+        return acquireSlow(bytes);
+    }
+
+    /**
+     * 归还配额
+     */
+    void release(long bytes)
+    {
+        int idx = stripe();
+        long cur = stripes.addAndGet(idx, bytes);
+
+        // 分段中积压的配额过多时归还给 global， 让其他线程可以使用
+        if (cur > 2 * BATCH) {
+            long back = cur - BATCH;
+            if (stripes.compareAndSet(idx, cur, BATCH)) {
+                global.addAndGet(back);
+            }
+        }
+    }
+
+    /**
+     * 回收所有分段的配额后直接从 global 申请
+     */
+    private boolean acquireSlow(long bytes)
+    {
+        for (int i = 0; i <= mask; i++) {
+            long drained = stripes.getAndSet(i * PADDING, 0);
+            if (drained > 0) {
+                global.addAndGet(drained);
+            }
+        }
+
+        while (true) {
+            long g = global.get();
+            if (g < bytes) {
+                return false;
+            }
+            if (global.compareAndSet(g, g - bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private int stripe()
+    {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+
+        return ((h ^ (h >>> 16)) & mask) * PADDING;
+    }
+}
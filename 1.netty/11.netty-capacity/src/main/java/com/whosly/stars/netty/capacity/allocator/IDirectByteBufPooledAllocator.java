@@ -2,11 +2,12 @@ package com.whosly.stars.netty.capacity.allocator;
 
 import com.whosly.stars.netty.capacity.alloc.AllocatorType;
 import com.whosly.stars.netty.capacity.alloc.IAllocator;
+import com.whosly.stars.netty.capacity.buffer.ByteBufFlushSink;
 import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocatorMetric;
 
-import java.util.Map;
+import java.util.List;
 
 /**
  * 堆外内存分配管理器
@@ -73,11 +74,30 @@ public interface IDirectByteBufPooledAllocator
      *
      * @param initialCapacity 初始容量
      * @param maxCapacity 最大容量
-     * @param scaleDown buffer 是记否允许缩容
+     * @param scaleDown buffer 是否允许被 resize 缩容
      * @return
      */
     WrappedAutoFlushByteBuf allocByteBuf(int initialCapacity, Long maxCapacity, boolean scaleDown);
 
+    /**
+     * 分配 [堆外] buffer， 开启 buffer 统计时计入 owner
+     *
+     * @param owner 持有者， 如连接的 channel id、组件名。 为 null 时使用 ByteBufAccounting.setCurrentOwner 设置的当前线程的 owner
+     * @param initialCapacity 初始容量
+     * @param maxCapacity 最大容量
+     * @return
+     */
+    WrappedAutoFlushByteBuf allocByteBuf(String owner, int initialCapacity, Long maxCapacity);
+
+    /**
+     * 分配 [堆外] 自动 flush 的 buffer， 每写满 autoFlushSize 把 chunk 交给 sink
+     *
+     * @param autoFlushSize 自动 flush 的大小， 不超过分配器的 chunkSize 时 chunk 可由内存池复用
+     * @param sink 接收写满的 chunk
+     * @return
+     */
+    WrappedAutoFlushByteBuf allocAutoFlushByteBuf(int autoFlushSize, ByteBufFlushSink sink);
+
     /**
      * 销毁 ByteBuf
      */
@@ -90,14 +110,37 @@ public interface IDirectByteBufPooledAllocator
     void resize(ByteBuf byteBuf);
 
     /**
-     * 得到 ByteBuf 中的每个连接分配的 buffer 的统计信息
-     *
-     * key is connIdIBufAllocatorManager
+     * 未释放字节数最多的 n 个 owner。 未开启 buffer 统计(-Dnetty.capacity.accounting=true)时为空
+     */
+    List<ByteBufOwnerStats> getTopOwners(int n);
+
+    /**
+     * 采样的、未 release 就被 GC 回收的 buffer。 未开启 buffer 统计时为空
      */
-    Map<Long, ByteBufStaticInfo> getByteBufStaticInfo();
+    List<ByteBufLeakRecord> getSuspectedLeaks();
 
     /**
      * 当前分配器缓存分配的所有的堆外内存总大小。单位 byte
      */
     long getUsedDirectMemory();
+
+    /**
+     * 分配器的统计快照: 每个 arena 的使用情况、chunk list 占用、各 size class 的分配次数、线程缓存命中率与碎片率
+     */
+    ByteBufPoolStats getPoolStats();
+
+    /**
+     * 最近一次采集的统计快照的视图， 尚未采集时立即采集一次
+     */
+    ByteBufStaticInfo getByteBufStaticInfo();
+
+    /**
+     * 根据统计快照调整分配器: 必要时切换到新一代分配器(arena 数、chunk 大小)， 并回收已切换的旧分配器
+     */
+    void adapt(ByteBufPoolStats stats);
+
+    /**
+     * 停止统计采集等后台任务
+     */
+    void close();
 }
@@ -0,0 +1,40 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+/**
+ * 分配器内存达到上限后的处理策略
+ *
+ * @author fengyang
+ * @date 2023/8/15 下午5:12
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public enum MemoryCeilingPolicy
+{
+    /**
+     * 直接失败， 抛出 OutOfMemoryError(与 netty 堆外内存不足时一致)
+     */
+    FAIL,
+
+    /**
+     * 等待其他 buffer 释放， 超时后失败
+     */
+    WAIT,
+
+    /**
+     * 退化为非池化的堆内 buffer， 不占用堆外内存配额
+     */
+    UNPOOLED;
+
+    public static MemoryCeilingPolicy of(String name, MemoryCeilingPolicy defaultPolicy)
+    {
+        if (name == null) {
+            return defaultPolicy;
+        }
+
+        for (MemoryCeilingPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        return defaultPolicy;
+    }
+}
@@ -0,0 +1,182 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.SizeClassesMetric;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ThreadExecutorMap;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分配器的一代: 一个 PooledByteBufAllocator 及其配置。
+ *
+ * 切换到新的一代后， 旧的一代不再分配， 已分配的 buffer 释放后回到旧的 arena，
+ * 待线程缓存被 trim、所有分配都归还后即可丢弃。
+ *
+ * @author fengyang
+ * @date 2023/8/17 上午10:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+final class PoolGeneration
+{
+    @Getter
+    private final int id;
+
+    @Getter
+    private final Spec spec;
+
+    @Getter
+    private final PooledByteBufAllocator alloc;
+
+    /**
+     * size class 的划分， 各 arena 相同
+     */
+    private final SizeClassesMetric sizeClasses;
+
+    /**
+     * 本代的分配请求数， 用于计算线程缓存命中率
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * 在本代分配过的 EventLoop， 切换后在这些线程上 trim 本代的线程缓存
+     */
+    private final Set<EventExecutor> executors = ConcurrentHashMap.newKeySet();
+
+    PoolGeneration(int id, Spec spec)
+    {
+        this.id = id;
+        this.spec = spec;
+        // 只分配堆外内存， 不创建 heap arena
+        this.alloc = new PooledByteBufAllocator(
+                true,
+                0,
+                spec.getNumDirectArenas(),
+                spec.getPageSize(),
+                spec.getMaxOrder()
+        );
+        this.sizeClasses = alloc.metric().directArenas().isEmpty() ? null : alloc.metric().directArenas().get(0);
+    }
+
+    /**
+     * 一个容量为 capacity 的 buffer 在本代实际占用的内存: 不超过 chunkSize 时向上取整到 size class，
+     * 超过时为单独分配的 huge chunk， 按原大小
+     */
+    long normalizeCapacity(int capacity)
+    {
+        if (capacity <= 0 || sizeClasses == null || capacity > spec.chunkSize()) {
+            return Math.max(capacity, 0);
+        }
+        return sizeClasses.normalizeSize(capacity);
+    }
+
+    void onRequest()
+    {
+        requests.increment();
+    }
+
+    long getRequests()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * 当前线程第一次在本代分配时调用
+     */
+    void onThreadAttached()
+    {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        if (executor != null) {
+            executors.add(executor);
+        }
+    }
+
+    /**
+     * trim 当前线程在本代的线程缓存
+     */
+    void trimCurrentThreadCache()
+    {
+        // trim 只释放上次 trim 后未被使用的缓存， 本代已不再分配， 第二次 trim 会释放全部
+        alloc.trimCurrentThreadCache();
+        alloc.trimCurrentThreadCache();
+    }
+
+    /**
+     * 在本代分配过的所有 EventLoop 上 trim 线程缓存。 非 EventLoop 线程在下一次分配或释放时 trim
+     */
+    void trimThreadCaches()
+    {
+        for (EventExecutor executor : executors) {
+            if (executor.isShuttingDown()) {
+                executors.remove(executor);
+                continue;
+            }
+            executor.execute(this::trimCurrentThreadCache);
+        }
+    }
+
+    long usedDirectMemory()
+    {
+        return alloc.metric().usedDirectMemory();
+    }
+
+    /**
+     * 未归还的分配数(含线程缓存中的)， 为 0 时本代可丢弃
+     */
+    long activeAllocations()
+    {
+        long active = 0;
+        for (PoolArenaMetric arena : alloc.metric().directArenas()) {
+            active += arena.numActiveAllocations();
+        }
+        return active;
+    }
+
+    /**
+     * 未归还的分配占用的字节数(含线程缓存中的)
+     */
+    long activeBytes()
+    {
+        long active = 0;
+        for (PoolArenaMetric arena : alloc.metric().directArenas()) {
+            active += arena.numActiveBytes();
+        }
+        return active;
+    }
+
+    /**
+     * 一代分配器的配置
+     */
+    @Getter
+    @ToString
+    static final class Spec
+    {
+        private final int numDirectArenas;
+
+        private final int pageSize;
+
+        private final int maxOrder;
+
+        Spec(int numDirectArenas, int pageSize, int maxOrder)
+        {
+            this.numDirectArenas = numDirectArenas;
+            this.pageSize = pageSize;
+            this.maxOrder = maxOrder;
+        }
+
+        int chunkSize()
+        {
+            return pageSize << maxOrder;
+        }
+
+        boolean sameAs(Spec other)
+        {
+            return numDirectArenas == other.numDirectArenas && pageSize == other.pageSize && maxOrder == other.maxOrder;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.whosly.stars.netty.capacity.buffer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * buffer 容量变化时的回调， 用于按实际容量申请、归还内存配额
+ *
+ * @author fengyang
+ * @date 2023/8/21 上午10:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public interface ByteBufCapacityListener
+{
+    /**
+     * 扩容前调用， 配额不足时抛出 OutOfMemoryError， buffer 不会扩容
+     *
+     * @param bytes 扩容增加的字节数
+     */
+    void onExpand(ByteBuf buf, int bytes);
+
+    /**
+     * 缩容后、扩容失败后调用
+     *
+     * @param bytes 减少的字节数
+     */
+    void onShrink(ByteBuf buf, int bytes);
+}
@@ -0,0 +1,19 @@
+package com.whosly.stars.netty.capacity.buffer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * WrappedAutoFlushByteBuf flush 后分配下一个 chunk， 由所属的分配器实现， 使 chunk 计入内存配额与 buffer 统计
+ *
+ * @author fengyang
+ * @date 2023/8/21 下午2:40
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@FunctionalInterface
+public interface ByteBufChunkAllocator
+{
+    /**
+     * @return 新的 chunk， 交给 sink 后由 sink release
+     */
+    ByteBuf allocate(int initialCapacity, int maxCapacity);
+}
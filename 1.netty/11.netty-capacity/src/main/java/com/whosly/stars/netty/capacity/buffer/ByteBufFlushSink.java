@@ -0,0 +1,23 @@
+package com.whosly.stars.netty.capacity.buffer;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * WrappedAutoFlushByteBuf 写满 autoFlushSize 后， 接收已写满的 chunk
+ *
+ * chunk 的所有权随调用转移给 sink， 由 sink 负责 release(包括失败时)， release 后 chunk 归还内存池。
+ *
+ * @author fengyang
+ * @date 2023/8/16 下午2:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@FunctionalInterface
+public interface ByteBufFlushSink
+{
+    /**
+     * @param chunk 可读部分为待输出的数据
+     */
+    void flush(ByteBuf chunk) throws IOException;
+}
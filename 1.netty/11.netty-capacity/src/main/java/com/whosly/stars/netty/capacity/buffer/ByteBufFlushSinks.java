@@ -0,0 +1,55 @@
+package com.whosly.stars.netty.capacity.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 常用的 ByteBufFlushSink
+ *
+ * @author fengyang
+ * @date 2023/8/16 下午2:15
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public final class ByteBufFlushSinks
+{
+    private ByteBufFlushSinks() {
+    }
+
+    /**
+     * 写入 Channel， 由 netty 在写完后 release。
+     *
+     * Channel 不可写(超过高水位)时， 非 EventLoop 线程会等待本次写入完成，
+     * 使在途的 chunk 受 WriteBufferWaterMark 限制。
+     */
+    public static ByteBufFlushSink channel(Channel channel)
+    {
+        return chunk -> {
+            ChannelFuture future = channel.writeAndFlush(chunk);
+            if (!channel.isWritable() && !channel.eventLoop().inEventLoop()) {
+                future.syncUninterruptibly();
+            }
+        };
+    }
+
+    /**
+     * 同步写入 FileChannel 的当前位置， 写完后立即 release， chunk 可马上被下一次分配复用
+     */
+    public static ByteBufFlushSink fileChannel(FileChannel fileChannel)
+    {
+        return chunk -> {
+            try {
+                for (ByteBuffer nioBuffer : chunk.nioBuffers()) {
+                    while (nioBuffer.hasRemaining()) {
+                        fileChannel.write(nioBuffer);
+                    }
+                }
+            } finally {
+                chunk.release();
+            }
+        };
+    }
+}
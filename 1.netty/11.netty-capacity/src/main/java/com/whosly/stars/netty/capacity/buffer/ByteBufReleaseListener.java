@@ -0,0 +1,16 @@
+package com.whosly.stars.netty.capacity.buffer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * ByteBuf 引用计数归零(内存已归还)时的回调
+ *
+ * @author fengyang
+ * @date 2023/8/15 下午5:20
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+@FunctionalInterface
+public interface ByteBufReleaseListener
+{
+    void onReleased(ByteBuf buf);
+}
@@ -25,4 +25,48 @@ public final class ByteBufWrappers
     {
         return new WrappedAutoFlushByteBuf(autoFlushSize, buf, allocator);
     }
+
+    /**
+     * @param releaseListener 引用计数归零时回调
+     */
+    public static final WrappedAutoFlushByteBuf wrapper(ByteBuf buf, ByteBufAllocator allocator,
+                                                        ByteBufReleaseListener releaseListener)
+    {
+        return new WrappedAutoFlushByteBuf(4 * Allocators._1MB, buf, allocator, releaseListener);
+    }
+
+    /**
+     * @param releaseListener 引用计数归零时回调
+     * @param sink 写满 autoFlushSize 后接收 chunk， 为 null 时不自动 flush
+     */
+    public static final WrappedAutoFlushByteBuf wrapper(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                                        ByteBufReleaseListener releaseListener, ByteBufFlushSink sink)
+    {
+        return new WrappedAutoFlushByteBuf(autoFlushSize, buf, allocator, releaseListener, sink);
+    }
+
+    /**
+     * @param releaseListener 引用计数归零时回调
+     * @param capacityListener 扩容、缩容时回调
+     * @param sink 写满 autoFlushSize 后接收 chunk， 为 null 时不自动 flush
+     */
+    public static final WrappedAutoFlushByteBuf wrapper(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                                        ByteBufReleaseListener releaseListener,
+                                                        ByteBufCapacityListener capacityListener, ByteBufFlushSink sink)
+    {
+        return new WrappedAutoFlushByteBuf(autoFlushSize, buf, allocator, releaseListener, capacityListener, sink);
+    }
+
+    /**
+     * 自动 flush 的 buffer， 每个 chunk 由 chunkAllocator 分配并各自计入内存配额
+     *
+     * @param first 第一个 chunk
+     * @param sink 写满 autoFlushSize 后接收 chunk
+     * @param chunkAllocator 分配 flush 后的新 chunk
+     */
+    public static final WrappedAutoFlushByteBuf autoFlush(long autoFlushSize, ByteBuf first, ByteBufFlushSink sink,
+                                                          ByteBufChunkAllocator chunkAllocator)
+    {
+        return new WrappedAutoFlushByteBuf(autoFlushSize, first, null, null, null, sink, chunkAllocator);
+    }
 }
\ No newline at end of file
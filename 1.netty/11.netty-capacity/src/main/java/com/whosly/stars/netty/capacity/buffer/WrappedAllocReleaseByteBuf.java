@@ -6,6 +6,9 @@ import io.netty.buffer.ByteBufAllocator;
 /**
  * 扩展增强 Release 的 ByteBuf Wrapper
  *
+ * 设置了 ByteBufCapacityListener 时， 扩容(写入、ensureWritable、capacity(int))前先按增加的容量申请配额，
+ * 再由本类显式扩容， 被包装的 buffer 不会自行扩容; 缩容后归还减少的部分。
+ *
  * @author fengyang
  * @date 2023/8/15 下午12:39
  * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
@@ -13,26 +16,159 @@ import io.netty.buffer.ByteBufAllocator;
 class WrappedAllocReleaseByteBuf
         extends WrappedAllocByteBuf
 {
+    /**
+     * 引用计数归零时回调， 可为 null
+     */
+    private final ByteBufReleaseListener releaseListener;
+
+    /**
+     * 容量变化时回调， 可为 null
+     */
+    private final ByteBufCapacityListener capacityListener;
+
     protected WrappedAllocReleaseByteBuf(ByteBuf buf, ByteBufAllocator allocator)
+    {
+        this(buf, allocator, null);
+    }
+
+    protected WrappedAllocReleaseByteBuf(ByteBuf buf, ByteBufAllocator allocator, ByteBufReleaseListener releaseListener)
+    {
+        this(buf, allocator, releaseListener, null);
+    }
+
+    protected WrappedAllocReleaseByteBuf(ByteBuf buf, ByteBufAllocator allocator, ByteBufReleaseListener releaseListener,
+                                         ByteBufCapacityListener capacityListener)
     {
         super(buf, allocator);
+
+        this.releaseListener = releaseListener;
+        this.capacityListener = capacityListener;
+    }
+
+    /**
+     * 容量变化时的回调， 可为 null
+     */
+    public ByteBufCapacityListener getCapacityListener()
+    {
+        return capacityListener;
+    }
+
+    /**
+     * 把可读数据复制到 target， 用 target 替换被包装的 buffer 并 release 原 buffer， 配额按容量之差增减。
+     * 只能由 buffer 的持有线程在引用计数为 1 时调用
+     */
+    public void migrate(ByteBuf target)
+    {
+        ByteBuf old = this.buf;
+        try {
+            target.writeBytes(old, old.readerIndex(), old.readableBytes());
+            replace(target);
+        } catch (Throwable e) {
+            target.release();
+            throw e;
+        }
+        old.release();
+    }
+
+    /**
+     * 写入 length 字节前调用， 可写空间不足时先申请配额再扩容。 超过 maxCapacity 时不处理， 由写入抛出异常
+     */
+    protected final void reserve(int length)
+    {
+        ByteBuf b = this.buf;
+        if (capacityListener == null || length <= b.writableBytes() || length > b.maxWritableBytes()) {
+            return;
+        }
+
+        expand(b.alloc().calculateNewCapacity(b.writerIndex() + length, b.maxCapacity()));
+    }
+
+    /**
+     * 切换被包装的 buffer， 按新旧容量之差申请或归还配额。 申请失败时不切换
+     */
+    protected final void replace(ByteBuf next)
+    {
+        int bytes = next.capacity() - buf.capacity();
+        if (capacityListener != null && bytes > 0) {
+            capacityListener.onExpand(this, bytes);
+        }
+        this.buf = next;
+        if (capacityListener != null && bytes < 0) {
+            capacityListener.onShrink(this, -bytes);
+        }
+    }
+
+    private void expand(int newCapacity)
+    {
+        ByteBuf b = this.buf;
+        int bytes = newCapacity - b.capacity();
+        capacityListener.onExpand(this, bytes);
+        try {
+            b.capacity(newCapacity);
+        } catch (Throwable e) {
+            capacityListener.onShrink(this, bytes);
+            throw e;
+        }
     }
 
     @Override
-    public boolean release()
+    public ByteBuf capacity(int newCapacity)
+    {
+        if (capacityListener == null) {
+            return super.capacity(newCapacity);
+        }
+
+        int oldCapacity = buf.capacity();
+        if (newCapacity > oldCapacity) {
+            if (newCapacity > buf.maxCapacity()) {
+                // 由被包装的 buffer 抛出 IllegalArgumentException
+                return super.capacity(newCapacity);
+            }
+            expand(newCapacity);
+            return this;
+        }
+
+        super.capacity(newCapacity);
+        int shrunk = oldCapacity - buf.capacity();
+        if (shrunk > 0) {
+            capacityListener.onShrink(this, shrunk);
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf ensureWritable(int minWritableBytes)
     {
-        // donothing
-        // ByteBufPoolManager.getInstance().release
+        reserve(minWritableBytes);
+        return super.ensureWritable(minWritableBytes);
+    }
 
-        return super.release();
+    @Override
+    public int ensureWritable(int minWritableBytes, boolean force)
+    {
+        // force 时超过 maxCapacity 的部分扩容至 maxCapacity
+        reserve(force ? Math.min(minWritableBytes, buf.maxWritableBytes()) : minWritableBytes);
+        return super.ensureWritable(minWritableBytes, force);
+    }
+
+    @Override
+    public boolean release()
+    {
+        return released(super.release());
     }
 
     @Override
     public boolean release(int decrement)
     {
-        // donothing
-        // ByteBufPoolManager.getInstance().release
+        return released(super.release(decrement));
+    }
+
+    private boolean released(boolean deallocated)
+    {
+        if (deallocated && releaseListener != null) {
+            releaseListener.onReleased(this);
+        }
 
-        return super.release(decrement);
+        return deallocated;
     }
 }
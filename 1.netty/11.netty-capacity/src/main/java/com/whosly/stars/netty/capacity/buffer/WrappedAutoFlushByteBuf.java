@@ -2,9 +2,12 @@ package com.whosly.stars.netty.capacity.buffer;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.CharsetUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ScatteringByteChannel;
@@ -15,6 +18,15 @@ import java.nio.charset.Charset;
  *
  * 默认 4MB  flush
  *
+ * 设置了 ByteBufFlushSink 时， 写入前若可读数据 + 本次写入超过 autoFlushSize，
+ * 先把当前 chunk 整个交给 sink， 再通过 ByteBufChunkAllocator 从所属的分配器取一个 autoFlushSize 大小的新 chunk 继续写，
+ * 新 chunk 与第一个 chunk 一样计入内存配额。 未设置 ByteBufChunkAllocator 时从当前 chunk 的 alloc() 分配。
+ * 大于 autoFlushSize 的写入(含 InputStream/Channel、CharSequence)会按 chunk 切分， 因此写入端占用的内存不超过 autoFlushSize
+ * (加上 sink 中在途的 chunk)。 autoFlushSize 不超过分配器的 chunkSize 时 chunk 由内存池复用。
+ *
+ * 写完后需调用 {@link #flush()} 输出剩余数据。 flush 后可读数据已交给 sink， 不能再从本 buffer 读取；
+ * 未设置 sink 时与普通 buffer 相同。 只允许单线程写入， 且不支持 retain 后共享。
+ *
  * @author fengyang
  * @date 2023/8/14 下午4:53
  * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
@@ -27,157 +39,452 @@ public class WrappedAutoFlushByteBuf
      */
     private long autoFlushSize;
 
+    /**
+     * 接收写满的 chunk， 为 null 时不自动 flush
+     */
+    private final ByteBufFlushSink sink;
+
+    /**
+     * 分配 flush 后的新 chunk， 为 null 时从当前 chunk 的 alloc() 分配
+     */
+    private final ByteBufChunkAllocator chunkAllocator;
+
+    /**
+     * 已交给 sink 的字节数
+     */
+    private long flushedBytes;
+
+    /**
+     * 已交给 sink 的 chunk 数
+     */
+    private long flushedChunks;
+
     protected WrappedAutoFlushByteBuf(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator)
     {
-        super(buf, allocator);
+        this(autoFlushSize, buf, allocator, null);
+    }
+
+    protected WrappedAutoFlushByteBuf(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                      ByteBufReleaseListener releaseListener)
+    {
+        this(autoFlushSize, buf, allocator, releaseListener, null);
+    }
+
+    protected WrappedAutoFlushByteBuf(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                      ByteBufReleaseListener releaseListener, ByteBufFlushSink sink)
+    {
+        this(autoFlushSize, buf, allocator, releaseListener, null, sink);
+    }
+
+    protected WrappedAutoFlushByteBuf(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                      ByteBufReleaseListener releaseListener, ByteBufCapacityListener capacityListener,
+                                      ByteBufFlushSink sink)
+    {
+        this(autoFlushSize, buf, allocator, releaseListener, capacityListener, sink, null);
+    }
+
+    protected WrappedAutoFlushByteBuf(long autoFlushSize, ByteBuf buf, ByteBufAllocator allocator,
+                                      ByteBufReleaseListener releaseListener, ByteBufCapacityListener capacityListener,
+                                      ByteBufFlushSink sink, ByteBufChunkAllocator chunkAllocator)
+    {
+        super(buf, allocator, releaseListener, capacityListener);
+
+        if (sink != null && (autoFlushSize <= 0 || autoFlushSize > buf.maxCapacity())) {
+            throw new IllegalArgumentException("autoFlushSize: " + autoFlushSize
+                    + " (expected: 0 < autoFlushSize <= maxCapacity(" + buf.maxCapacity() + "))");
+        }
 
         this.autoFlushSize = autoFlushSize;
+        this.sink = sink;
+        this.chunkAllocator = chunkAllocator;
+    }
+
+    public long getAutoFlushSize()
+    {
+        return autoFlushSize;
+    }
+
+    public long getFlushedBytes()
+    {
+        return flushedBytes;
+    }
+
+    public long getFlushedChunks()
+    {
+        return flushedChunks;
+    }
+
+    /**
+     * 把当前可读数据交给 sink， 并切换到新的 chunk。 未设置 sink 或没有可读数据时不做任何事。
+     *
+     * chunk 的所有权随 sink.flush 的调用转移给 sink， sink 抛出异常时也由 sink release， 这里不再 release
+     */
+    public void flush()
+    {
+        if (sink == null || !buf.isReadable()) {
+            return;
+        }
+
+        ByteBuf full = buf;
+        // 先分配新的 chunk， 分配失败时数据仍在当前 buffer 中
+        ByteBuf next = nextChunk(full);
+        try {
+            replace(next);
+        } catch (Throwable e) {
+            next.release();
+            throw e;
+        }
+
+        int readable = full.readableBytes();
+        try {
+            sink.flush(full);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        flushedBytes += readable;
+        flushedChunks++;
+    }
+
+    private ByteBuf nextChunk(ByteBuf full)
+    {
+        if (chunkAllocator != null) {
+            return chunkAllocator.allocate((int) autoFlushSize, full.maxCapacity());
+        }
+
+        return full.isDirect()
+                ? full.alloc().directBuffer((int) autoFlushSize, full.maxCapacity())
+                : full.alloc().heapBuffer((int) autoFlushSize, full.maxCapacity());
+    }
+
+    /**
+     * 写入 length 字节前， 当前 chunk 放不下时先 flush， 再按需扩容
+     */
+    private void beforeWrite(int length)
+    {
+        if (sink != null && (long) buf.readableBytes() + length > autoFlushSize) {
+            flush();
+        }
+        reserve(length);
+    }
+
+    /**
+     * 当前 chunk 在 flush 前还能写入的字节数
+     */
+    private int chunkWritable()
+    {
+        return (int) (autoFlushSize - buf.readableBytes());
     }
 
     @Override
     public ByteBuf writeBoolean(boolean value)
     {
+        beforeWrite(1);
         return super.writeBoolean(value);
     }
 
     @Override
     public ByteBuf writeByte(int value)
     {
+        beforeWrite(1);
         return super.writeByte(value);
     }
 
     @Override
     public ByteBuf writeShort(int value)
     {
+        beforeWrite(2);
         return super.writeShort(value);
     }
 
     @Override
     public ByteBuf writeShortLE(int value)
     {
+        beforeWrite(2);
         return super.writeShortLE(value);
     }
 
     @Override
     public ByteBuf writeMedium(int value)
     {
+        beforeWrite(3);
         return super.writeMedium(value);
     }
 
     @Override
     public ByteBuf writeMediumLE(int value)
     {
+        beforeWrite(3);
         return super.writeMediumLE(value);
     }
 
     @Override
     public ByteBuf writeInt(int value)
     {
+        beforeWrite(4);
         return super.writeInt(value);
     }
 
     @Override
     public ByteBuf writeIntLE(int value)
     {
+        beforeWrite(4);
         return super.writeIntLE(value);
     }
 
     @Override
     public ByteBuf writeLong(long value)
     {
+        beforeWrite(8);
         return super.writeLong(value);
     }
 
     @Override
     public ByteBuf writeLongLE(long value)
     {
+        beforeWrite(8);
         return super.writeLongLE(value);
     }
 
     @Override
     public ByteBuf writeChar(int value)
     {
+        beforeWrite(2);
         return super.writeChar(value);
     }
 
     @Override
     public ByteBuf writeFloat(float value)
     {
+        beforeWrite(4);
         return super.writeFloat(value);
     }
 
     @Override
     public ByteBuf writeDouble(double value)
     {
+        beforeWrite(8);
         return super.writeDouble(value);
     }
 
     @Override
     public ByteBuf writeBytes(ByteBuf src)
     {
-        return super.writeBytes(src);
+        if (sink == null) {
+            beforeWrite(src.readableBytes());
+            return super.writeBytes(src);
+        }
+        return writeBytes(src, src.readableBytes());
     }
 
     @Override
     public ByteBuf writeBytes(ByteBuf src, int length)
     {
-        return super.writeBytes(src, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(src, length);
+        }
+
+        if (length > src.readableBytes()) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "length(%d) exceeds src.readableBytes(%d) where src is: %s", length, src.readableBytes(), src));
+        }
+        writeBytes(src, src.readerIndex(), length);
+        src.readerIndex(src.readerIndex() + length);
+        return this;
     }
 
     @Override
     public ByteBuf writeBytes(ByteBuf src, int srcIndex, int length)
     {
-        return super.writeBytes(src, srcIndex, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(src, srcIndex, length);
+        }
+
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int n = Math.min(length, chunkWritable());
+            super.writeBytes(src, srcIndex, n);
+            srcIndex += n;
+            length -= n;
+        }
+        return this;
     }
 
     @Override
     public ByteBuf writeBytes(byte[] src)
     {
-        return super.writeBytes(src);
+        if (sink == null) {
+            beforeWrite(src.length);
+            return super.writeBytes(src);
+        }
+        return writeBytes(src, 0, src.length);
     }
 
     @Override
     public ByteBuf writeBytes(byte[] src, int srcIndex, int length)
     {
-        return super.writeBytes(src, srcIndex, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(src, srcIndex, length);
+        }
+
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int n = Math.min(length, chunkWritable());
+            super.writeBytes(src, srcIndex, n);
+            srcIndex += n;
+            length -= n;
+        }
+        return this;
     }
 
     @Override
     public ByteBuf writeBytes(ByteBuffer src)
     {
-        return super.writeBytes(src);
+        if (sink == null) {
+            beforeWrite(src.remaining());
+            return super.writeBytes(src);
+        }
+
+        int limit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                beforeWrite(Math.min(src.remaining(), (int) autoFlushSize));
+                int n = Math.min(src.remaining(), chunkWritable());
+                src.limit(src.position() + n);
+                super.writeBytes(src);
+                src.limit(limit);
+            }
+        } finally {
+            src.limit(limit);
+        }
+        return this;
     }
 
+    /**
+     * 设置了 sink 时按 chunk 切分读取， 某一段未读满(数据暂时不足)时返回已读取的字节数
+     */
     @Override
     public int writeBytes(InputStream in, int length)
             throws IOException
     {
-        return super.writeBytes(in, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(in, length);
+        }
+
+        int written = 0;
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int piece = Math.min(length, chunkWritable());
+            int n = super.writeBytes(in, piece);
+            if (n < 0) {
+                return written == 0 ? n : written;
+            }
+            written += n;
+            length -= n;
+            if (n < piece) {
+                break;
+            }
+        }
+        return written;
     }
 
     @Override
     public int writeBytes(ScatteringByteChannel in, int length)
             throws IOException
     {
-        return super.writeBytes(in, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(in, length);
+        }
+
+        int written = 0;
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int piece = Math.min(length, chunkWritable());
+            int n = super.writeBytes(in, piece);
+            if (n < 0) {
+                return written == 0 ? n : written;
+            }
+            written += n;
+            length -= n;
+            if (n < piece) {
+                break;
+            }
+        }
+        return written;
     }
 
     @Override
     public int writeBytes(FileChannel in, long position, int length)
             throws IOException
     {
-        return super.writeBytes(in, position, length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeBytes(in, position, length);
+        }
+
+        int written = 0;
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int piece = Math.min(length, chunkWritable());
+            int n = super.writeBytes(in, position + written, piece);
+            if (n < 0) {
+                return written == 0 ? n : written;
+            }
+            written += n;
+            length -= n;
+            if (n < piece) {
+                break;
+            }
+        }
+        return written;
     }
 
     @Override
     public ByteBuf writeZero(int length)
     {
-        return super.writeZero(length);
+        if (sink == null) {
+            beforeWrite(length);
+            return super.writeZero(length);
+        }
+
+        while (length > 0) {
+            beforeWrite(Math.min(length, (int) autoFlushSize));
+            int n = Math.min(length, chunkWritable());
+            super.writeZero(n);
+            length -= n;
+        }
+        return this;
     }
 
     @Override
     public int writeCharSequence(CharSequence sequence, Charset charset)
     {
-        return super.writeCharSequence(sequence, charset);
+        int length = encodedLength(sequence, charset);
+        if (sink == null || length <= autoFlushSize) {
+            beforeWrite(length);
+            return super.writeCharSequence(sequence, charset);
+        }
+
+        // 超过 autoFlushSize 时先编码， 再按 chunk 切分写入
+        byte[] bytes = sequence.toString().getBytes(charset);
+        writeBytes(bytes, 0, bytes.length);
+        return bytes.length;
+    }
+
+    private static int encodedLength(CharSequence sequence, Charset charset)
+    {
+        if (CharsetUtil.UTF_8.equals(charset)) {
+            return ByteBufUtil.utf8Bytes(sequence);
+        }
+        if (CharsetUtil.US_ASCII.equals(charset) || CharsetUtil.ISO_8859_1.equals(charset)) {
+            return sequence.length();
+        }
+        // 其他编码按最大字节数估算
+        return (int) (sequence.length() * CharsetUtil.getEncoder(charset).maxBytesPerChar());
     }
 }
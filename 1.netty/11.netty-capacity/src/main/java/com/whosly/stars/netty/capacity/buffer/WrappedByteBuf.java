@@ -27,7 +27,10 @@ import java.nio.charset.Charset;
 class WrappedByteBuf
         extends ByteBuf
 {
-    protected final ByteBuf buf;
+    /**
+     * 被包装的 buffer。 WrappedAutoFlushByteBuf 在 flush 后会替换为新的 chunk
+     */
+    protected ByteBuf buf;
 
     protected WrappedByteBuf(ByteBuf buf) {
         this.buf = ObjectUtil.checkNotNull(buf, "buf");
@@ -59,7 +62,7 @@ class WrappedByteBuf
     }
 
     @Override
-    public final ByteBuf capacity(int newCapacity) {
+    public ByteBuf capacity(int newCapacity) {
         buf.capacity(newCapacity);
         return this;
     }
@@ -200,13 +203,13 @@ class WrappedByteBuf
     }
 
     @Override
-    public final ByteBuf ensureWritable(int minWritableBytes) {
+    public ByteBuf ensureWritable(int minWritableBytes) {
         buf.ensureWritable(minWritableBytes);
         return this;
     }
 
     @Override
-    public final int ensureWritable(int minWritableBytes, boolean force) {
+    public int ensureWritable(int minWritableBytes, boolean force) {
         return buf.ensureWritable(minWritableBytes, force);
     }
 
@@ -0,0 +1,161 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 owner 的 buffer 统计与疑似泄漏的 case
+ *
+ * @author fengyang
+ * @date 2023/8/18 下午2:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufAccountingTest
+{
+    private static Logger log = LoggerFactory.getLogger(ByteBufAccountingTest.class);
+
+    private static final AdaptivePoolPolicy STATIC_POLICY = new AdaptivePoolPolicy(false, 0, 0, 0);
+
+    @Test
+    public void testTopOwners()
+    {
+        DirectByteBufPooledAllocator pool =
+                new DirectByteBufPooledAllocator(STATIC_POLICY, new ByteBufAccounting(0));
+
+        List<ByteBuf> bufs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bufs.add(pool.allocByteBuf("conn-1", 8 * Allocators._1K, pool.getConfigMaxCapacity()));
+        }
+        bufs.add(pool.allocByteBuf("conn-2", 4 * Allocators._1K, pool.getConfigMaxCapacity()));
+
+        ByteBufAccounting.setCurrentOwner("decoder");
+        try {
+            bufs.add(pool.allocByteBuf());
+        } finally {
+            ByteBufAccounting.setCurrentOwner(null);
+        }
+
+        List<ByteBufOwnerStats> top = pool.getTopOwners(2);
+        log.info("top owners:{}.", top);
+
+        Assert.assertEquals(2, top.size());
+        Assert.assertEquals("conn-1", top.get(0).getOwner());
+        Assert.assertEquals(3 * 8 * Allocators._1K, top.get(0).getOutstandingBytes());
+        Assert.assertEquals(3, top.get(0).getOutstandingBuffers());
+        Assert.assertEquals(3, pool.getTopOwners(10).size());
+
+        for (ByteBuf buf : bufs) {
+            pool.release(buf);
+        }
+        Assert.assertTrue(pool.getTopOwners(10).isEmpty());
+        // 不采样时没有泄漏记录
+        Assert.assertTrue(pool.getSuspectedLeaks().isEmpty());
+        pool.close();
+    }
+
+    /**
+     * 没有未释放 buffer 的 owner 被清理后， 新的分配计入新的 counter
+     */
+    @Test
+    public void testOwnerEviction()
+    {
+        ByteBufAccounting accounting = new ByteBufAccounting(0);
+        DirectByteBufPooledAllocator pool = new DirectByteBufPooledAllocator(STATIC_POLICY, accounting);
+
+        ByteBuf buf = pool.allocByteBuf("conn-1", 4 * Allocators._1K, pool.getConfigMaxCapacity());
+        accounting.scan();
+        Assert.assertEquals(1, pool.getTopOwners(10).size());
+
+        pool.release(buf);
+        accounting.scan();
+
+        ByteBuf again = pool.allocByteBuf("conn-1", 4 * Allocators._1K, pool.getConfigMaxCapacity());
+        List<ByteBufOwnerStats> top = pool.getTopOwners(10);
+        Assert.assertEquals(1, top.size());
+        Assert.assertEquals(1, top.get(0).getOutstandingBuffers());
+        Assert.assertEquals(1, top.get(0).getTotalAllocations());
+
+        pool.release(again);
+        pool.close();
+    }
+
+    /**
+     * 只有未 release 就被回收的 buffer 记为泄漏， 仍被引用的 buffer 不算
+     */
+    @Test
+    public void testSuspectedLeaks() throws InterruptedException
+    {
+        DirectByteBufPooledAllocator pool =
+                new DirectByteBufPooledAllocator(STATIC_POLICY, new ByteBufAccounting(1));
+
+        ByteBuf held = pool.allocByteBuf("conn-held", 4 * Allocators._1K, pool.getConfigMaxCapacity());
+        pool.release(pool.allocByteBuf("conn-released", 4 * Allocators._1K, pool.getConfigMaxCapacity()));
+        allocAndDrop(pool);
+
+        List<ByteBufLeakRecord> leaks = pool.getSuspectedLeaks();
+        for (int i = 0; i < 50 && leaks.isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(20);
+            leaks = pool.getSuspectedLeaks();
+        }
+        log.info("suspected leaks:{}.", leaks);
+
+        Assert.assertEquals(1, leaks.size());
+        ByteBufLeakRecord leak = leaks.get(0);
+        Assert.assertEquals("conn-leak", leak.getOwner());
+        Assert.assertEquals(4 * Allocators._1K, leak.getBytes());
+        Assert.assertTrue(leak.getAllocationSite().contains(ByteBufAccountingTest.class.getName()));
+
+        pool.release(held);
+        Assert.assertEquals(1, pool.getSuspectedLeaks().size());
+        pool.close();
+    }
+
+    private static void allocAndDrop(DirectByteBufPooledAllocator pool)
+    {
+        ByteBuf leaked = pool.allocByteBuf("conn-leak", 4 * Allocators._1K, pool.getConfigMaxCapacity());
+        leaked.writeZero(16 * Allocators._1K);
+    }
+
+    /**
+     * 统计关闭、1% 采样两种情况下单线程分配与释放的耗时
+     */
+    @Test
+    public void testSamplingOverhead()
+    {
+        int loops = Integer.getInteger("bench.loops", 1_000_000);
+
+        DirectByteBufPooledAllocator off = new DirectByteBufPooledAllocator(STATIC_POLICY, null);
+        DirectByteBufPooledAllocator sampled =
+                new DirectByteBufPooledAllocator(STATIC_POLICY, new ByteBufAccounting(0.01));
+
+        // 预热
+        allocRelease(off, loops);
+        allocRelease(sampled, loops);
+
+        long offNanos = allocRelease(off, loops);
+        long sampledNanos = allocRelease(sampled, loops);
+
+        log.info("alloc+release, accounting off: {} ns/op, 1% sampled: {} ns/op.",
+                offNanos / loops, sampledNanos / loops);
+        Assert.assertTrue(sampled.getTopOwners(1).isEmpty());
+        off.close();
+        sampled.close();
+    }
+
+    private static long allocRelease(DirectByteBufPooledAllocator pool, int loops)
+    {
+        long st = System.nanoTime();
+        for (int i = 0; i < loops; i++) {
+            ByteBuf buf = pool.allocByteBuf("bench", 512, pool.getConfigMaxCapacity());
+            pool.release(buf);
+        }
+        return System.nanoTime() - st;
+    }
+}
@@ -0,0 +1,107 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import com.whosly.stars.netty.capacity.buffer.ByteBufFlushSinks;
+import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写入 1GB 到文件时的堆外内存峰值与吞吐
+ *
+ * 1. plain:      普通 buffer， 全部写入后一次写文件
+ * 2. auto-flush: 每 256KB 交给 FileChannel sink， chunk 由内存池复用
+ *
+ * 数据量通过 -Dbench.totalMB 配置， 默认 1024。 plain 方式需要 -XX:MaxDirectMemorySize 大于 2 倍数据量，
+ * 因此不作为单元测试运行， 通过 main 方法单独执行。
+ *
+ * @author fengyang
+ * @date 2023/8/16 下午3:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufAutoFlush1GBBenchmark
+{
+    private static Logger log = LoggerFactory.getLogger(ByteBufAutoFlush1GBBenchmark.class);
+
+    private static final long TOTAL = Integer.getInteger("bench.totalMB", 1024) * (long) Allocators._1MB;
+
+    private static final int AUTO_FLUSH_SIZE = 256 * Allocators._1K;
+
+    private static final byte[] PIECE = new byte[64 * Allocators._1K];
+
+    public static void main(String[] args) throws Exception
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        run(pool, true);
+        run(pool, false);
+    }
+
+    private static void run(DirectByteBufPooledAllocator pool, boolean autoFlush) throws Exception
+    {
+        File file = File.createTempFile("auto-flush", ".bin");
+        file.deleteOnExit();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong peak = new AtomicLong();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peak.accumulateAndGet(pool.getUsedDirectMemory(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "direct-memory-sampler");
+        sampler.start();
+
+        long st = System.nanoTime();
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            WrappedAutoFlushByteBuf wrappedByteBuf = autoFlush
+                    ? pool.allocAutoFlushByteBuf(AUTO_FLUSH_SIZE, ByteBufFlushSinks.fileChannel(fileChannel))
+                    : pool.allocByteBuf(pool.getConfigInitialCapacity(), TOTAL);
+
+            for (long written = 0; written < TOTAL; written += PIECE.length) {
+                wrappedByteBuf.writeBytes(PIECE);
+            }
+
+            if (autoFlush) {
+                wrappedByteBuf.flush();
+            } else {
+                write(fileChannel, wrappedByteBuf.nioBuffer());
+            }
+            peak.accumulateAndGet(pool.getUsedDirectMemory(), Math::max);
+
+            wrappedByteBuf.release();
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        long cost = System.nanoTime() - st;
+
+        log.info("{}, total:{}, peak usedDirectMemory:{}, cost(ms):{}, throughput(MB/s):{}.",
+                autoFlush ? "auto-flush" : "plain",
+                BytesUtil.byteToM(TOTAL), BytesUtil.byteToM(peak.get()),
+                cost / 1_000_000,
+                String.format("%.1f", TOTAL * 1_000D / cost * 1_000 / Allocators._1MB));
+
+        file.delete();
+    }
+
+    private static void write(FileChannel fileChannel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+}
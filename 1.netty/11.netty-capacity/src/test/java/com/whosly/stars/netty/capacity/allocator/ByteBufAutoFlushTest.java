@@ -0,0 +1,162 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 自动 flush 的 case
+ *
+ * @author fengyang
+ * @date 2023/8/16 下午3:00
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufAutoFlushTest
+{
+    private static final int AUTO_FLUSH_SIZE = 64 * Allocators._1K;
+
+    private DirectByteBufPooledAllocator pool;
+
+    @Before
+    public void before() {
+        this.pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+    }
+
+    @Test
+    public void testAutoFlush()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<Integer> chunkSizes = new ArrayList<>();
+        long allocatedBefore = pool.getAllocatedMemory();
+
+        WrappedAutoFlushByteBuf wrappedByteBuf = pool.allocAutoFlushByteBuf(AUTO_FLUSH_SIZE, chunk -> {
+            chunkSizes.add(chunk.readableBytes());
+            out.write(ByteBufUtil.getBytes(chunk), 0, chunk.readableBytes());
+            chunk.release();
+        });
+
+        Random random = new Random(7);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 2000; i++) {
+            switch (i % 4) {
+                case 0:
+                    wrappedByteBuf.writeLong(i);
+                    expected.write(new byte[]{0, 0, 0, 0, 0, 0, (byte) (i >>> 8), (byte) i}, 0, 8);
+                    break;
+                case 1: {
+                    // 大于 autoFlushSize 的写入会被切分
+                    byte[] bytes = new byte[random.nextInt(3 * AUTO_FLUSH_SIZE)];
+                    random.nextBytes(bytes);
+                    wrappedByteBuf.writeBytes(bytes);
+                    expected.write(bytes, 0, bytes.length);
+                    break;
+                }
+                case 2: {
+                    byte[] bytes = new byte[random.nextInt(AUTO_FLUSH_SIZE)];
+                    random.nextBytes(bytes);
+                    ByteBuf src = Unpooled.wrappedBuffer(bytes);
+                    wrappedByteBuf.writeBytes(src);
+                    Assert.assertEquals(0, src.readableBytes());
+                    expected.write(bytes, 0, bytes.length);
+                    break;
+                }
+                default: {
+                    byte[] bytes = new byte[random.nextInt(2 * AUTO_FLUSH_SIZE)];
+                    random.nextBytes(bytes);
+                    wrappedByteBuf.writeBytes(ByteBuffer.wrap(bytes));
+                    expected.write(bytes, 0, bytes.length);
+                    break;
+                }
+            }
+
+            Assert.assertTrue(wrappedByteBuf.readableBytes() <= AUTO_FLUSH_SIZE);
+        }
+        wrappedByteBuf.flush();
+        Assert.assertEquals(0, wrappedByteBuf.readableBytes());
+
+        Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        Assert.assertEquals(expected.size(), wrappedByteBuf.getFlushedBytes());
+        Assert.assertEquals(chunkSizes.size(), wrappedByteBuf.getFlushedChunks());
+        for (Integer chunkSize : chunkSizes) {
+            Assert.assertTrue(chunkSize <= AUTO_FLUSH_SIZE);
+        }
+
+        wrappedByteBuf.release();
+        Assert.assertEquals(allocatedBefore, pool.getAllocatedMemory());
+    }
+
+    /**
+     * InputStream、CharSequence 的写入同样按 chunk 切分， 每个 chunk 都计入配额， sink release 后归还
+     */
+    @Test
+    public void testStreamAndCharSequenceChunked() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<Integer> chunkSizes = new ArrayList<>();
+        long allocatedBefore = pool.getAllocatedMemory();
+        long[] maxAllocated = new long[1];
+
+        WrappedAutoFlushByteBuf wrappedByteBuf = pool.allocAutoFlushByteBuf(AUTO_FLUSH_SIZE, chunk -> {
+            // 新 chunk 已计入配额， 当前 chunk 尚未 release
+            maxAllocated[0] = Math.max(maxAllocated[0], pool.getAllocatedMemory() - allocatedBefore);
+            chunkSizes.add(chunk.readableBytes());
+            out.write(ByteBufUtil.getBytes(chunk), 0, chunk.readableBytes());
+            chunk.release();
+        });
+
+        byte[] bytes = new byte[3 * AUTO_FLUSH_SIZE + 17];
+        new Random(11).nextBytes(bytes);
+        Assert.assertEquals(bytes.length, wrappedByteBuf.writeBytes(new ByteArrayInputStream(bytes), bytes.length));
+
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2 * AUTO_FLUSH_SIZE) {
+            sb.append("chunk-中文-");
+        }
+        String text = sb.toString();
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(textBytes.length, wrappedByteBuf.writeCharSequence(text, StandardCharsets.UTF_8));
+        wrappedByteBuf.flush();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(bytes, 0, bytes.length);
+        expected.write(textBytes, 0, textBytes.length);
+        Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        for (Integer chunkSize : chunkSizes) {
+            Assert.assertTrue(chunkSize <= AUTO_FLUSH_SIZE);
+        }
+        Assert.assertEquals(2L * AUTO_FLUSH_SIZE, maxAllocated[0]);
+
+        wrappedByteBuf.release();
+        Assert.assertEquals(allocatedBefore, pool.getAllocatedMemory());
+    }
+
+    /**
+     * 未设置 sink 时与普通 buffer 相同
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWithoutSink()
+    {
+        WrappedAutoFlushByteBuf wrappedByteBuf = pool.allocByteBuf(1024, 2048L);
+        try {
+            wrappedByteBuf.writeBytes(new byte[4096]);
+        } finally {
+            Assert.assertEquals(0, wrappedByteBuf.getFlushedChunks());
+            wrappedByteBuf.release();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 突发分配后空闲时常驻堆外内存的时间序列: 固定配置的分配器 vs 自适应切换的分配器
+ *
+ * 突发阶段在多个 EventLoop 上同时持有大量 buffer SPIKE_SECONDS 秒， 全部释放后空闲 IDLE_SECONDS 秒，
+ * 两个阶段每秒采样一次 usedDirectMemory(含旧一代)。 adapt 由分配器自身的统计采集每秒驱动一次。
+ *
+ * 时长通过 -Dbench.spikeSeconds(默认 3)、-Dbench.idleSeconds(默认 10) 配置。
+ *
+ * @author fengyang
+ * @date 2023/8/17 下午2:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufPoolAdaptiveResizeBenchmark
+{
+    private static final int LOOPS = 4;
+
+    private static final int BUFS_PER_LOOP = 500;
+
+    private static final int SPIKE_SECONDS = Integer.getInteger("bench.spikeSeconds", 3);
+
+    private static final int IDLE_SECONDS = Integer.getInteger("bench.idleSeconds", 10);
+
+    public static void main(String[] args) throws Exception
+    {
+        DirectByteBufPooledAllocator staticPool =
+                new DirectByteBufPooledAllocator(new AdaptivePoolPolicy(false, 0, 0, 0));
+        DirectByteBufPooledAllocator adaptivePool =
+                new DirectByteBufPooledAllocator(new AdaptivePoolPolicy(true, 3, Allocators._1MB, 0));
+
+        try {
+            Sample[] staticSeries = spikeThenIdle(staticPool);
+            Sample[] adaptiveSeries = spikeThenIdle(adaptivePool);
+
+            System.out.printf("%5s %6s %14s %16s %11s%n", "t(s)", "phase", "static", "adaptive", "generation");
+            for (int i = 0; i < staticSeries.length; i++) {
+                System.out.printf("%5d %6s %14s %16s %11d%n",
+                        i + 1, i < SPIKE_SECONDS ? "spike" : "idle",
+                        BytesUtil.byteToM(staticSeries[i].usedDirectMemory),
+                        BytesUtil.byteToM(adaptiveSeries[i].usedDirectMemory),
+                        adaptiveSeries[i].generation);
+            }
+        } finally {
+            staticPool.close();
+            adaptivePool.close();
+        }
+    }
+
+    /**
+     * @return 突发与空闲阶段每秒一次的采样
+     */
+    private static Sample[] spikeThenIdle(DirectByteBufPooledAllocator pool) throws Exception
+    {
+        Sample[] series = new Sample[SPIKE_SECONDS + IDLE_SECONDS];
+        int t = 0;
+
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(LOOPS);
+        try {
+            List<ByteBuf> held = spike(pool, group);
+            for (int i = 0; i < SPIKE_SECONDS; i++) {
+                TimeUnit.SECONDS.sleep(1);
+                series[t++] = new Sample(pool);
+            }
+
+            for (ByteBuf buf : held) {
+                buf.release();
+            }
+            for (int i = 0; i < IDLE_SECONDS; i++) {
+                TimeUnit.SECONDS.sleep(1);
+                series[t++] = new Sample(pool);
+            }
+
+            return series;
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    /**
+     * 每个 EventLoop 同时持有 BUFS_PER_LOOP 个 64KB 的 buffer
+     */
+    private static List<ByteBuf> spike(DirectByteBufPooledAllocator pool, DefaultEventLoopGroup group) throws Exception
+    {
+        List<Future<List<ByteBuf>>> spikes = new ArrayList<>();
+        for (EventExecutor loop : group) {
+            spikes.add(loop.submit(() -> {
+                List<ByteBuf> bufs = new ArrayList<>(BUFS_PER_LOOP);
+                for (int i = 0; i < BUFS_PER_LOOP; i++) {
+                    ByteBuf buf = pool.allocByteBuf();
+                    buf.writeZero(64 * Allocators._1K);
+                    bufs.add(buf);
+                }
+                return bufs;
+            }));
+        }
+
+        List<ByteBuf> held = new ArrayList<>();
+        for (Future<List<ByteBuf>> spike : spikes) {
+            held.addAll(spike.get());
+        }
+        return held;
+    }
+
+    private static final class Sample
+    {
+        private final long usedDirectMemory;
+
+        private final int generation;
+
+        private Sample(DirectByteBufPooledAllocator pool)
+        {
+            this.usedDirectMemory = pool.getUsedDirectMemory();
+            this.generation = pool.currentGeneration().getId();
+        }
+    }
+}
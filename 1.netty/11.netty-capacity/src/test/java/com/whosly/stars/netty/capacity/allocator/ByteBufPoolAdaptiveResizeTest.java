@@ -0,0 +1,145 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应切换分配器的 case
+ *
+ * 突发阶段在多个 EventLoop 上同时持有大量 buffer， 全部释放后由测试推进时钟并逐次调用 adapt(代替每秒一次的采集)，
+ * 断言切换到新一代后旧一代的分配全部归还、被丢弃。
+ *
+ * @author fengyang
+ * @date 2023/8/17 下午2:10
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufPoolAdaptiveResizeTest
+{
+    private static Logger log = LoggerFactory.getLogger(ByteBufPoolAdaptiveResizeTest.class);
+
+    private static final int LOOPS = 4;
+
+    private static final int BUFS_PER_LOOP = 500;
+
+    private static final int IDLE_TICKS = 3;
+
+    @Test
+    public void testSpikeThenIdle() throws Exception
+    {
+        AtomicLong clock = new AtomicLong();
+        DirectByteBufPooledAllocator pool = new DirectByteBufPooledAllocator(
+                new AdaptivePoolPolicy(true, IDLE_TICKS, Allocators._1MB, 1000L, clock::get));
+        // 停止后台采集， 由测试驱动 adapt
+        pool.close();
+
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(LOOPS);
+        try {
+            spike(pool, group);
+            PoolGeneration old = pool.currentGeneration();
+            log.info("spike usedDirectMemory: {}.", BytesUtil.byteToM(pool.getUsedDirectMemory()));
+
+            // 空闲 IDLE_TICKS 次且超过 cooldown 后切换
+            for (int tick = 0; tick < IDLE_TICKS && pool.currentGeneration() == old; tick++) {
+                clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+                pool.adapt(pool.getPoolStats());
+            }
+            Assert.assertNotSame(old, pool.currentGeneration());
+            Assert.assertEquals(old.getId() + 1, pool.getPoolStats().getGeneration());
+
+            // 切换时已向各 EventLoop 提交 trim 旧一代线程缓存的任务， 等待其执行完
+            for (EventExecutor loop : group) {
+                loop.submit(() -> { }).sync();
+            }
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            pool.adapt(pool.getPoolStats());
+
+            Assert.assertEquals(0, old.activeAllocations());
+            Assert.assertEquals(0, old.activeBytes());
+            Assert.assertEquals(0, pool.getPoolStats().getDrainingDirectMemory());
+            Assert.assertEquals(pool.currentGeneration().usedDirectMemory(), pool.getUsedDirectMemory());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testRebalance()
+    {
+        DirectByteBufPooledAllocator pool =
+                new DirectByteBufPooledAllocator(new AdaptivePoolPolicy(false, 0, 0, 0));
+
+        ByteBuf held = pool.allocByteBuf();
+        held.writeZero(1024);
+        int generation = pool.getPoolStats().getGeneration();
+
+        pool.rebalance(2, 4 * Allocators._1K, 6);
+
+        ByteBufPoolStats stats = pool.getPoolStats();
+        Assert.assertEquals(generation + 1, stats.getGeneration());
+        Assert.assertEquals(2, stats.getNumDirectArenas());
+        Assert.assertEquals(4 * Allocators._1K << 6, stats.getChunkSize());
+        // 旧一代仍有未归还的 buffer
+        Assert.assertTrue(stats.getDrainingDirectMemory() > 0);
+
+        pool.release(held);
+        pool.adapt(pool.getPoolStats());
+        Assert.assertEquals(0, pool.getPoolStats().getDrainingDirectMemory());
+        pool.close();
+    }
+
+    @Test
+    public void testResize()
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        ByteBuf buf = pool.allocByteBuf();
+        buf.writeZero(pool.getConfigInitialCapacity() * 4);
+        buf.skipBytes(pool.getConfigInitialCapacity() * 4 - 16);
+
+        pool.resize(buf);
+
+        Assert.assertEquals(pool.getConfigInitialCapacity(), buf.capacity());
+        Assert.assertEquals(16, buf.readableBytes());
+        pool.release(buf);
+    }
+
+    /**
+     * 每个 EventLoop 同时持有 BUFS_PER_LOOP 个 64KB 的 buffer， 然后全部释放
+     */
+    private void spike(DirectByteBufPooledAllocator pool, DefaultEventLoopGroup group) throws Exception
+    {
+        List<Future<List<ByteBuf>>> spikes = new ArrayList<>();
+        for (EventExecutor loop : group) {
+            spikes.add(loop.submit(() -> {
+                List<ByteBuf> bufs = new ArrayList<>(BUFS_PER_LOOP);
+                for (int i = 0; i < BUFS_PER_LOOP; i++) {
+                    ByteBuf buf = pool.allocByteBuf();
+                    buf.writeZero(64 * Allocators._1K);
+                    bufs.add(buf);
+                }
+                return bufs;
+            }));
+        }
+
+        List<ByteBuf> held = new ArrayList<>();
+        for (Future<List<ByteBuf>> spike : spikes) {
+            held.addAll(spike.get());
+        }
+        for (ByteBuf buf : held) {
+            buf.release();
+        }
+    }
+}
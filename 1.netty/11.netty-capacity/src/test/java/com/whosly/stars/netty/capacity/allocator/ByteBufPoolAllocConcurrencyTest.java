@@ -0,0 +1,105 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程 alloc + release 的吞吐， 1~32 线程
+ *
+ * 对比两种方式:
+ * 1. synchronized: 原有实现， alloc、release 共用一把全局锁
+ * 2. lock-free:    当前实现， 直接由 PooledByteBufAllocator 的线程缓存处理
+ *
+ * @author fengyang
+ * @date 2023/8/15 下午5:40
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufPoolAllocConcurrencyTest
+{
+    private static Logger log = LoggerFactory.getLogger(ByteBufPoolAllocConcurrencyTest.class);
+
+    private static final long DURATION_MILLIS = 1000;
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    private static final Object GLOBAL_LOCK = new Object();
+
+    @Test
+    public void testThroughput() throws InterruptedException
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        // 预热
+        run(pool, 4, true);
+        run(pool, 4, false);
+
+        for (int threads : THREADS) {
+            double locked = run(pool, threads, true);
+            double lockFree = run(pool, threads, false);
+
+            log.info("threads:{}, synchronized ops/sec:{}, lock-free ops/sec:{}, speedup:{}.",
+                    threads, String.format("%.0f", locked), String.format("%.0f", lockFree),
+                    String.format("%.2f", lockFree / locked));
+        }
+
+        // 全部归还
+        Assert.assertEquals(0, pool.getAllocatedMemory());
+    }
+
+    /**
+     * @return ops/sec
+     */
+    private double run(DirectByteBufPooledAllocator pool, int threads, boolean synchronize)
+            throws InterruptedException
+    {
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                long count = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        for (int i = 0; i < 64; i++) {
+                            WrappedAutoFlushByteBuf buf;
+                            if (synchronize) {
+                                synchronized (GLOBAL_LOCK) {
+                                    buf = pool.allocByteBuf();
+                                }
+                            } else {
+                                buf = pool.allocByteBuf();
+                            }
+
+                            buf.writeLong(i);
+
+                            if (synchronize) {
+                                synchronized (GLOBAL_LOCK) {
+                                    pool.release(buf);
+                                }
+                            } else {
+                                pool.release(buf);
+                            }
+                        }
+                        count += 64;
+                    }
+                } finally {
+                    ops.addAndGet(count);
+                    latch.countDown();
+                }
+            }, "alloc-bench-" + t).start();
+        }
+        latch.await();
+
+        return ops.get() * 1000D / DURATION_MILLIS;
+    }
+}
@@ -0,0 +1,89 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import com.whosly.stars.netty.capacity.buffer.WrappedAutoFlushByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分配器统计快照与 JMX 的 case
+ *
+ * @author fengyang
+ * @date 2023/8/16 上午11:20
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class ByteBufPoolStatsTest
+{
+    private static Logger log = LoggerFactory.getLogger(ByteBufPoolStatsTest.class);
+
+    @Test
+    public void testPoolStats()
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        ByteBufPoolStats before = pool.getPoolStats();
+
+        List<WrappedAutoFlushByteBuf> bufs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            bufs.add(pool.allocByteBuf());
+        }
+
+        ByteBufPoolStats stats = pool.getPoolStats();
+        log.info("stats:{}.", stats);
+
+        Assert.assertEquals(before.getNumRequests() + 100, stats.getNumRequests());
+        Assert.assertEquals(stats.getNumDirectArenas(), stats.getArenas().size());
+        Assert.assertTrue(stats.getNumActiveAllocations() >= 100);
+        Assert.assertTrue(stats.getAllocatedMemory() >= 100L * pool.getConfigInitialCapacity());
+        Assert.assertTrue(stats.getCacheHitRatio() >= 0 && stats.getCacheHitRatio() <= 1);
+        Assert.assertTrue(stats.getFragmentation() >= 0 && stats.getFragmentation() <= 1);
+        Assert.assertEquals(6, stats.getArenas().get(0).getChunkLists().size());
+
+        for (WrappedAutoFlushByteBuf buf : bufs) {
+            pool.release(buf);
+        }
+        Assert.assertEquals(before.getAllocatedMemory(), pool.getPoolStats().getAllocatedMemory());
+    }
+
+    @Test
+    public void testStaticInfo()
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        ByteBufStaticInfo info = pool.getByteBufStaticInfo();
+        log.info("staticInfo:{}.", info);
+
+        Assert.assertNotNull(info.getStats());
+        Assert.assertEquals(info.getNumDirectArenas(), info.getArenas().size());
+        Assert.assertTrue(info.getChunkSize() > 0);
+        Assert.assertTrue(info.getCacheHitRatio() >= 0 && info.getCacheHitRatio() <= 1);
+    }
+
+    @Test
+    public void testMBean() throws Exception
+    {
+        DirectByteBufPooledAllocator pool = ByteBufPoolManager
+                .getInstance()
+                .createDirectByteBufPooled();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.whosly.stars.netty.capacity:type=ByteBufPool,name="
+                + ObjectName.quote(pool.alias()));
+        Assert.assertTrue(server.isRegistered(name));
+
+        Object usedDirectMemory = server.getAttribute(name, "UsedDirectMemory");
+        Assert.assertTrue(usedDirectMemory instanceof Long);
+        Assert.assertNotNull(server.getAttribute(name, "Stats"));
+    }
+}
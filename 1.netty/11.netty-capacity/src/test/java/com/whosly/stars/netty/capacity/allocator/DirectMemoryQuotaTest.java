@@ -0,0 +1,149 @@
+package com.whosly.stars.netty.capacity.allocator;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DirectMemoryQuota 的 case
+ *
+ * @author fengyang
+ * @date 2023/8/15 下午5:30
+ * @see <a href="yueny09@163.com">mailTo: yueny09@163.com</a>
+ */
+public class DirectMemoryQuotaTest
+{
+    @Test
+    public void testAcquireRelease()
+    {
+        DirectMemoryQuota quota = new DirectMemoryQuota(Allocators._1MB, 4);
+
+        Assert.assertTrue(quota.tryAcquire(Allocators._1MB / 2));
+        Assert.assertTrue(quota.tryAcquire(Allocators._1MB / 2));
+        Assert.assertEquals(Allocators._1MB, quota.getUsed());
+
+        // 已满
+        Assert.assertFalse(quota.tryAcquire(1));
+        Assert.assertFalse(quota.tryAcquire(Allocators._1MB + 1));
+
+        quota.release(Allocators._1MB / 2);
+        Assert.assertEquals(Allocators._1MB / 2, quota.getUsed());
+        Assert.assertTrue(quota.tryAcquire(Allocators._1MB / 2));
+    }
+
+    /**
+     * 多线程申请时已分配的配额不超过上限， 全部归还后为 0
+     */
+    @Test
+    public void testConcurrentLimit() throws InterruptedException
+    {
+        long limit = 64 * Allocators._1K;
+        DirectMemoryQuota quota = new DirectMemoryQuota(limit, 8);
+        AtomicLong inUse = new AtomicLong();
+        AtomicLong maxInUse = new AtomicLong();
+
+        int threads = 16;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100_000; i++) {
+                        int bytes = 1 + (i % 8) * 1024;
+                        if (quota.tryAcquire(bytes)) {
+                            maxInUse.accumulateAndGet(inUse.addAndGet(bytes), Math::max);
+                            inUse.addAndGet(-bytes);
+                            quota.release(bytes);
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+
+        Assert.assertTrue(maxInUse.get() <= limit);
+        Assert.assertEquals(0, quota.getUsed());
+    }
+
+    /**
+     * 扩容按增加的容量计入配额， 超过剩余配额时扩容失败， 缩容、释放后归还
+     */
+    @Test
+    public void testGrowPastQuotaRejected()
+    {
+        DirectByteBufPooledAllocator pool = new DirectByteBufPooledAllocator(
+                new AdaptivePoolPolicy(false, 0, 0, 0), null, 64 * Allocators._1K);
+
+        ByteBuf buf = pool.allocByteBuf(4 * Allocators._1K);
+        ByteBuf other = pool.allocByteBuf(48 * Allocators._1K);
+        Assert.assertEquals(52 * Allocators._1K, pool.getAllocatedMemory());
+
+        // 扩容至 8K 在剩余配额内
+        buf.writeZero(6 * Allocators._1K);
+        Assert.assertEquals(8 * Allocators._1K, buf.capacity());
+        Assert.assertEquals(56 * Allocators._1K, pool.getAllocatedMemory());
+
+        // 扩容至 64K 超过剩余配额
+        try {
+            buf.writeZero(32 * Allocators._1K);
+            Assert.fail("expected quota exceeded");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        Assert.assertEquals(8 * Allocators._1K, buf.capacity());
+        Assert.assertEquals(6 * Allocators._1K, buf.writerIndex());
+        Assert.assertEquals(56 * Allocators._1K, pool.getAllocatedMemory());
+
+        try {
+            buf.capacity(32 * Allocators._1K);
+            Assert.fail("expected quota exceeded");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        Assert.assertEquals(8 * Allocators._1K, buf.capacity());
+
+        // 释放其他 buffer 后可以扩容
+        pool.release(other);
+        buf.writeZero(32 * Allocators._1K);
+        Assert.assertEquals(64 * Allocators._1K, buf.capacity());
+        Assert.assertEquals(64 * Allocators._1K, pool.getAllocatedMemory());
+
+        // 缩容归还
+        buf.skipBytes(buf.readableBytes() - 16);
+        pool.resize(buf);
+        Assert.assertEquals(pool.getConfigInitialCapacity(), buf.capacity());
+        Assert.assertEquals(pool.getConfigInitialCapacity(), pool.getAllocatedMemory());
+
+        pool.release(buf);
+        Assert.assertEquals(0, pool.getAllocatedMemory());
+        pool.close();
+    }
+
+    /**
+     * 配额按 size class 取整后的容量计算; scaleDown 为 false 的 buffer 不被 resize 缩容
+     */
+    @Test
+    public void testChargeNormalizedCapacity()
+    {
+        DirectByteBufPooledAllocator pool = new DirectByteBufPooledAllocator(
+                new AdaptivePoolPolicy(false, 0, 0, 0), null, 64 * Allocators._1K);
+
+        // 33K 取整到 40K 的 size class
+        ByteBuf buf = pool.allocByteBuf(33 * Allocators._1K, pool.getConfigMaxCapacity(), false);
+        Assert.assertEquals(40 * Allocators._1K, pool.getAllocatedMemory());
+
+        // 不允许缩容
+        buf.writeZero(16);
+        pool.resize(buf);
+        Assert.assertEquals(33 * Allocators._1K, buf.capacity());
+        Assert.assertEquals(40 * Allocators._1K, pool.getAllocatedMemory());
+
+        pool.release(buf);
+        Assert.assertEquals(0, pool.getAllocatedMemory());
+        pool.close();
+    }
+}
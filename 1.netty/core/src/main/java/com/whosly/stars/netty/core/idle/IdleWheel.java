@@ -0,0 +1,250 @@
+package com.whosly.stars.netty.core.idle;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空闲检测时间轮， 每个 EventLoop 一个
+ *
+ * <code>
+ *     1. 同一 EventLoop 上的所有连接共用一个周期任务(tick)， 不再每个连接各自 schedule 读、写、读写空闲的定时任务，
+ *        EventLoop 的定时任务队列大小与连接数无关。
+ *     2. 读写只更新连接的最后读写时间， 不操作时间轮； 连接到期时按最后读写时间算出下次检查时间， 放入对应的槽。
+ *     3. 每个 tick 只处理当前槽中的连接； 加入、移除为 O(1)(槽内双向链表)。 超过一圈的连接记录剩余圈数。
+ *     4. 只在所属 EventLoop 线程中访问， 不加锁。 没有连接时停止 tick。
+ * </code>
+ *
+ * tick 间隔 -Dnetty.idle.tickMillis(默认 100ms)， 槽数 -Dnetty.idle.wheelSize(默认 512， 取 2 的幂)。
+ * 空闲事件最多比 IdleStateHandler 晚一个 tick。
+ *
+ * @author fengyang
+ * @date 2025-08-30 10:12:36
+ * @description
+ */
+final class IdleWheel {
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(1, SystemPropertyUtil.getLong("netty.idle.tickMillis", 100)));
+
+    static final int WHEEL_SIZE = normalize(SystemPropertyUtil.getInt("netty.idle.wheelSize", 512));
+
+    private static final ConcurrentMap<EventExecutor, IdleWheel> WHEELS = new ConcurrentHashMap<>();
+
+    /**
+     * 时间轮中的一个连接
+     */
+    abstract static class Entry {
+        private Entry prev;
+
+        private Entry next;
+
+        /**
+         * 所在的槽， -1 表示不在槽中
+         */
+        private int slot = -1;
+
+        /**
+         * 剩余圈数
+         */
+        private long rounds;
+
+        /**
+         * add 与 remove 之间为 true
+         */
+        private boolean tracked;
+
+        /**
+         * 到期时调用
+         *
+         * @return 距下次检查的纳秒数； 小于 0 时不再检查
+         */
+        abstract long expire(long now);
+    }
+
+    private final EventExecutor executor;
+
+    private final long tickNanos;
+
+    private final int mask;
+
+    private final Entry[] heads;
+
+    /**
+     * 本轮 tick 到期的连接， 复用
+     */
+    private final List<Entry> expired = new ArrayList<>();
+
+    private int cursor;
+
+    /**
+     * 处理 cursor + 1 槽的时间
+     */
+    private long nextTickTime;
+
+    private int size;
+
+    private ScheduledFuture<?> tickFuture;
+
+    /**
+     * @param executor 所属 EventLoop； 为 null 时不启动 tick， 由调用方驱动 advance
+     */
+    IdleWheel(EventExecutor executor, long tickNanos, int wheelSize) {
+        this.executor = executor;
+        this.tickNanos = tickNanos;
+        this.mask = normalize(wheelSize) - 1;
+        this.heads = new Entry[mask + 1];
+    }
+
+    /**
+     * 所属 EventLoop 的时间轮， EventLoop 终止后移除
+     */
+    static IdleWheel of(EventExecutor executor) {
+        IdleWheel wheel = WHEELS.get(executor);
+        if (wheel != null) {
+            return wheel;
+        }
+
+        IdleWheel created = new IdleWheel(executor, TICK_NANOS, WHEEL_SIZE);
+        wheel = WHEELS.putIfAbsent(executor, created);
+        if (wheel != null) {
+            return wheel;
+        }
+        executor.terminationFuture().addListener(f -> WHEELS.remove(executor, created));
+
+        return created;
+    }
+
+    /**
+     * 加入， delay 纳秒后检查
+     */
+    void add(Entry entry, long now, long delay) {
+        if (entry.tracked) {
+            return;
+        }
+        entry.tracked = true;
+        if (size++ == 0) {
+            start(now);
+        }
+        schedule(entry, now, delay);
+    }
+
+    void remove(Entry entry) {
+        if (!entry.tracked) {
+            return;
+        }
+        entry.tracked = false;
+        unlink(entry);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 处理到 now 为止的所有槽， tick 被延迟时依次补上
+     */
+    void advance(long now) {
+        while (now - nextTickTime >= 0) {
+            cursor = (cursor + 1) & mask;
+            nextTickTime += tickNanos;
+            expireSlot(cursor, now);
+        }
+
+        if (size == 0 && tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+    private void start(long now) {
+        nextTickTime = now + tickNanos;
+        if (executor != null && tickFuture == null) {
+            tickFuture = executor.scheduleAtFixedRate(
+                    () -> advance(System.nanoTime()), tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void expireSlot(int slot, long now) {
+        // 先从槽中摘下到期的连接再回调， 回调中加入、移除其他连接不影响遍历
+        for (Entry e = heads[slot]; e != null; ) {
+            Entry next = e.next;
+            if (e.rounds > 0) {
+                e.rounds--;
+            } else {
+                unlink(e);
+                expired.add(e);
+            }
+            e = next;
+        }
+
+        for (int i = 0; i < expired.size(); i++) {
+            Entry e = expired.get(i);
+            // 回调前可能已被移除
+            if (!e.tracked) {
+                continue;
+            }
+
+            long delay = e.expire(now);
+            if (!e.tracked || e.slot >= 0) {
+                continue;
+            }
+            if (delay < 0) {
+                remove(e);
+            } else {
+                schedule(e, now, delay);
+            }
+        }
+        expired.clear();
+    }
+
+    /**
+     * 放入第一个处理时间不早于 now + delay 的槽
+     */
+    private void schedule(Entry entry, long now, long delay) {
+        long deadline = now + Math.max(0, delay);
+        long late = deadline - nextTickTime;
+        long ticks = late <= 0 ? 1 : 1 + (late + tickNanos - 1) / tickNanos;
+
+        int slot = (int) ((cursor + ticks) & mask);
+        entry.rounds = (ticks - 1) / heads.length;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = heads[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        heads[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.slot < 0) {
+            return;
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            heads[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+
+    private static int normalize(int wheelSize) {
+        int n = 1;
+        while (n < wheelSize && n < (1 << 16)) {
+            n <<= 1;
+        }
+        return n;
+    }
+}
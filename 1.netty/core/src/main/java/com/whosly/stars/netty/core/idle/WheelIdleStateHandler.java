@@ -0,0 +1,246 @@
+package com.whosly.stars.netty.core.idle;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 EventLoop 共享时间轮的空闲检测， 可直接替换 IdleStateHandler
+ *
+ * <code>
+ *     1. 触发的事件与 IdleStateHandler 相同(IdleStateEvent， 含 first 标记)， 下游的 userEventTriggered 不需要修改。
+ *     2. IdleStateHandler 每个连接最多 3 个定时任务， 且每次到期都重新 schedule；
+ *        这里每个连接只是时间轮中的一个节点， 同一 EventLoop 上的连接共用一个 tick 任务， 见 IdleWheel。
+ *     3. 空闲事件最多晚一个 tick(默认 100ms)。 不支持 IdleStateHandler 的 observeOutput。
+ * </code>
+ *
+ * 每个 channel 一个实例， 不可共享。
+ *
+ * @author fengyang
+ * @date 2025-08-30 10:48:15
+ * @description
+ * @see IdleStateHandler
+ */
+public class WheelIdleStateHandler extends ChannelDuplexHandler {
+    private static final byte ST_INITIAL = 0;
+    private static final byte ST_INITIALIZED = 1;
+    private static final byte ST_DESTROYED = 2;
+
+    private final long readerIdleTimeNanos;
+
+    private final long writerIdleTimeNanos;
+
+    private final long allIdleTimeNanos;
+
+    private final IdleWheel.Entry entry = new IdleWheel.Entry() {
+        @Override
+        long expire(long now) {
+            return check(now);
+        }
+    };
+
+    private final ChannelFutureListener writeListener = future -> {
+        lastWriteTime = System.nanoTime();
+        firstWriterIdleEvent = firstAllIdleEvent = true;
+    };
+
+    private ChannelHandlerContext ctx;
+
+    private IdleWheel wheel;
+
+    private byte state;
+
+    private boolean reading;
+
+    private long lastReadTime;
+
+    private long lastWriteTime;
+
+    private boolean firstReaderIdleEvent = true;
+
+    private boolean firstWriterIdleEvent = true;
+
+    private boolean firstAllIdleEvent = true;
+
+    /**
+     * @param readerIdleTimeSeconds 读空闲时间(秒)， 0 表示不检测
+     * @param writerIdleTimeSeconds 写空闲时间(秒)， 0 表示不检测
+     * @param allIdleTimeSeconds    读写空闲时间(秒)， 0 表示不检测
+     */
+    public WheelIdleStateHandler(int readerIdleTimeSeconds, int writerIdleTimeSeconds, int allIdleTimeSeconds) {
+        this(readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds, TimeUnit.SECONDS);
+    }
+
+    public WheelIdleStateHandler(long readerIdleTime, long writerIdleTime, long allIdleTime, TimeUnit unit) {
+        this.readerIdleTimeNanos = Math.max(0, unit.toNanos(readerIdleTime));
+        this.writerIdleTimeNanos = Math.max(0, unit.toNanos(writerIdleTime));
+        this.allIdleTimeNanos = Math.max(0, unit.toNanos(allIdleTime));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        Channel channel = ctx.channel();
+        if (channel.isActive() && channel.isRegistered()) {
+            initialize(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            initialize(ctx);
+        }
+        super.channelRegistered(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        initialize(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (readerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+            reading = true;
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (reading) {
+            lastReadTime = System.nanoTime();
+            reading = false;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (writerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+            ctx.write(msg, promise.unvoid()).addListener(writeListener);
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    /**
+     * 触发空闲事件， 默认传递给下一个处理器
+     */
+    protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    private void initialize(ChannelHandlerContext ctx) {
+        if (state != ST_INITIAL) {
+            return;
+        }
+        state = ST_INITIALIZED;
+        this.ctx = ctx;
+
+        long now = System.nanoTime();
+        lastReadTime = lastWriteTime = now;
+
+        long delay = Long.MAX_VALUE;
+        for (long idle : new long[]{readerIdleTimeNanos, writerIdleTimeNanos, allIdleTimeNanos}) {
+            if (idle > 0) {
+                delay = Math.min(delay, idle);
+            }
+        }
+        if (delay != Long.MAX_VALUE) {
+            wheel = IdleWheel.of(ctx.executor());
+            wheel.add(entry, now, delay);
+        }
+    }
+
+    private void destroy() {
+        state = ST_DESTROYED;
+        if (wheel != null) {
+            wheel.remove(entry);
+            wheel = null;
+        }
+    }
+
+    /**
+     * 到期检查， 在 EventLoop 线程中由时间轮调用
+     *
+     * @return 距下次检查的纳秒数； -1 表示不再检查
+     */
+    private long check(long now) {
+        if (state != ST_INITIALIZED || !ctx.channel().isOpen()) {
+            return -1;
+        }
+
+        long next = Long.MAX_VALUE;
+        try {
+            if (readerIdleTimeNanos > 0) {
+                long delay = reading ? readerIdleTimeNanos : readerIdleTimeNanos - (now - lastReadTime);
+                if (delay <= 0) {
+                    boolean first = firstReaderIdleEvent;
+                    firstReaderIdleEvent = false;
+                    channelIdle(ctx, newIdleStateEvent(IdleState.READER_IDLE, first));
+                    delay = readerIdleTimeNanos;
+                }
+                next = Math.min(next, delay);
+            }
+
+            if (writerIdleTimeNanos > 0) {
+                long delay = writerIdleTimeNanos - (now - lastWriteTime);
+                if (delay <= 0) {
+                    boolean first = firstWriterIdleEvent;
+                    firstWriterIdleEvent = false;
+                    channelIdle(ctx, newIdleStateEvent(IdleState.WRITER_IDLE, first));
+                    delay = writerIdleTimeNanos;
+                }
+                next = Math.min(next, delay);
+            }
+
+            if (allIdleTimeNanos > 0) {
+                long delay = reading ? allIdleTimeNanos
+                        : allIdleTimeNanos - (now - Math.max(lastReadTime, lastWriteTime));
+                if (delay <= 0) {
+                    boolean first = firstAllIdleEvent;
+                    firstAllIdleEvent = false;
+                    channelIdle(ctx, newIdleStateEvent(IdleState.ALL_IDLE, first));
+                    delay = allIdleTimeNanos;
+                }
+                next = Math.min(next, delay);
+            }
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+
+        return state == ST_INITIALIZED ? next : -1;
+    }
+
+    private static IdleStateEvent newIdleStateEvent(IdleState state, boolean first) {
+        switch (state) {
+            case READER_IDLE:
+                return first ? IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT : IdleStateEvent.READER_IDLE_STATE_EVENT;
+            case WRITER_IDLE:
+                return first ? IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT : IdleStateEvent.WRITER_IDLE_STATE_EVENT;
+            default:
+                return first ? IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT : IdleStateEvent.ALL_IDLE_STATE_EVENT;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.whosly.stars.netty.core.idle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IdleWheel 的到期时间： 不早于期望时间， 最多晚一个 tick(加上驱动间隔)， 移除后不再回调
+ *
+ * @author fengyang
+ */
+class IdleWheelTest {
+
+    private static final long TICK = 100;
+
+    private static final class Probe extends IdleWheel.Entry {
+        private final long period;
+
+        private long due;
+
+        private int fired;
+
+        private long maxLate;
+
+        private boolean tracked = true;
+
+        Probe(long period, long now) {
+            this.period = period;
+            this.due = now + period;
+        }
+
+        @Override
+        long expire(long now) {
+            assertTrue(tracked, "expired after remove");
+            assertTrue(now >= due, "expired early");
+            maxLate = Math.max(maxLate, now - due);
+            fired++;
+            due = now + period;
+            return period;
+        }
+    }
+
+    @Test
+    void testExpireOnTime() {
+        IdleWheel wheel = new IdleWheel(null, TICK, 8);
+        long now = 0;
+        Probe probe = new Probe(250, now);
+        wheel.add(probe, now, probe.period);
+
+        for (int i = 0; i < 100; i++) {
+            now += 10;
+            wheel.advance(now);
+        }
+        // 1000 内应到期 3 次(250 向上取整到 300， 之后每 300)
+        assertEquals(3, probe.fired);
+        assertTrue(probe.maxLate < TICK);
+    }
+
+    @Test
+    void testMultipleRounds() {
+        // 8 个槽， 一圈 800， 周期 2000 需要多圈
+        IdleWheel wheel = new IdleWheel(null, TICK, 8);
+        Probe probe = new Probe(2000, 0);
+        wheel.add(probe, 0, probe.period);
+
+        wheel.advance(1900);
+        assertEquals(0, probe.fired);
+        wheel.advance(2000);
+        assertEquals(1, probe.fired);
+    }
+
+    @Test
+    void testRandomAddRemove() {
+        IdleWheel wheel = new IdleWheel(null, TICK, 8);
+        Random random = new Random(7);
+        long now = 1_000_000;
+        long maxStep = 150;
+
+        List<Probe> probes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Probe probe = new Probe(1 + random.nextInt(3000), now);
+            wheel.add(probe, now, probe.period);
+            probes.add(probe);
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            now += 1 + random.nextInt((int) maxStep);
+            wheel.advance(now);
+
+            if (random.nextInt(10) == 0) {
+                Probe probe = probes.get(random.nextInt(probes.size()));
+                wheel.remove(probe);
+                probe.tracked = false;
+                if (random.nextBoolean()) {
+                    probe.due = now + probe.period;
+                    probe.tracked = true;
+                    wheel.add(probe, now, probe.period);
+                }
+            }
+        }
+
+        int tracked = 0;
+        for (Probe probe : probes) {
+            assertTrue(probe.maxLate < TICK + maxStep);
+            if (probe.tracked) {
+                tracked++;
+                // 没有丢失的连接
+                assertTrue(probe.due >= now - TICK - maxStep);
+            }
+        }
+        assertEquals(tracked, wheel.size());
+    }
+}
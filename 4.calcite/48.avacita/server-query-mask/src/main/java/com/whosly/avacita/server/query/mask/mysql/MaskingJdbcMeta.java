@@ -2,8 +2,7 @@ package com.whosly.avacita.server.query.mask.mysql;
 
 import com.whosly.avacita.server.query.mask.ResultSetMeta;
 import com.whosly.avacita.server.query.mask.rule.MaskingConfigMeta;
-import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
-import com.whosly.avacita.server.query.mask.util.ValueMaskingStrategy;
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleIndex;
 import com.whosly.calcite.schema.Schemas;
 import com.whosly.com.whosly.calcite.schema.mysql.MysqlSchemaLoader;
 import org.apache.calcite.avatica.*;
@@ -20,13 +19,11 @@ import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.tools.Frameworks;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.*;
-import java.util.stream.Collectors;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 
@@ -49,8 +46,8 @@ public class MaskingJdbcMeta extends JdbcMeta {
      */
     private final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
 
-    // 用于缓存 statementId -> signature
-    private final Map<String, Signature> signatureCache = new ConcurrentHashMap<>();
+    // 用于缓存 statementId -> 脱敏计划（按 signature 的列解析好的规则数组）
+    private final Map<String, MaskingPlan> planCache = new ConcurrentHashMap<>();
 
     public MaskingJdbcMeta(String url, Properties info, MaskingConfigMeta maskingConfigMeta) throws SQLException {
         super(url, info);
@@ -124,18 +121,19 @@ public class MaskingJdbcMeta extends JdbcMeta {
 
         final ExecuteResult result = super.prepareAndExecute(sh, sql, maxRowCount, maxRowsInFirstFrame, callback);
 
-        // 缓存 signature，便于 fetch 时使用
-        if (result.resultSets != null && !result.resultSets.isEmpty()) {
-            MetaResultSet mrs = result.resultSets.get(0);
-            if (mrs.signature != null) {
-                signatureCache.put(String.valueOf(sh.id), mrs.signature);
+        // 每个结果集按 signature 解析一次脱敏计划，第一个结果集的计划缓存起来，便于 fetch 时使用
+        // 同一次执行只读取一次规则快照，热加载不影响执行中的语句
+        final MaskingRuleIndex ruleIndex = maskingConfigMeta.getRuleIndex();
+        final List<MetaResultSet> maskedResultSets = new ArrayList<>(result.resultSets.size());
+        for (MetaResultSet mrs : result.resultSets) {
+            MaskingPlan plan = mrs.signature == null ? null : MaskingPlan.resolve(ruleIndex, mrs.signature.columns);
+            if (plan != null && mrs == result.resultSets.get(0)) {
+                planCache.put(String.valueOf(sh.id), plan);
+                LOG.debug("statement {} 使用脱敏规则版本: {}", sh.id, plan.getVersion());
             }
+            maskedResultSets.add(maskResultSet(mrs, plan));
         }
 
-        final List<MetaResultSet> maskedResultSets = result.resultSets.stream()
-                .map(this::maskResultSet)
-                .collect(Collectors.toList());
-
         return new ExecuteResult(maskedResultSets);
     }
 
@@ -146,87 +144,29 @@ public class MaskingJdbcMeta extends JdbcMeta {
 
         Frame originalFrame = super.fetch(sh, offset, fetchMaxRowCount);
 
-        Signature signature = sh.signature;
-        if (signature == null) {
-            signature = signatureCache.get(String.valueOf(sh.id));
+        MaskingPlan plan = planCache.get(String.valueOf(sh.id));
+        if (plan == null && sh.signature != null) {
+            plan = MaskingPlan.resolve(maskingConfigMeta.getRuleIndex(), sh.signature.columns);
+            planCache.put(String.valueOf(sh.id), plan);
         }
-        if (signature != null) {
-            return desensitizeFrame(originalFrame, signature);
+        if (plan != null) {
+            return plan.desensitize(originalFrame);
         }
         return originalFrame;
     }
 
     /**
-     * 对单个 MetaResultSet（包括其 firstFrame）进行脱敏
+     * 对单个 MetaResultSet（包括其 firstFrame）进行脱敏， firstFrame 的行在原数组上改写
      */
-    private MetaResultSet maskResultSet(MetaResultSet resultSet) {
-        // 只处理包含查询结果的 ResultSet
-        if (resultSet.updateCount != -1 || resultSet.signature == null || resultSet.firstFrame == null) {
+    private MetaResultSet maskResultSet(MetaResultSet resultSet, MaskingPlan plan) {
+        // 只处理包含查询结果、且有列需要脱敏的 ResultSet
+        if (resultSet.updateCount != -1 || plan == null || !plan.masksAny() || resultSet.firstFrame == null) {
             return resultSet;
         }
 
         // 对 firstFrame 进行脱敏
-        Frame maskedFrame = desensitizeFrame(resultSet.firstFrame, resultSet.signature);
-
-        // 使用脱敏后的 Frame 创建新的 MetaResultSet
-        return MetaResultSet.create(
-                resultSet.connectionId,
-                resultSet.statementId,
-                resultSet.ownStatement,
-                resultSet.signature,
-                maskedFrame,
-                resultSet.updateCount
-        );
-    }
-
-    /**
-     * 对数据帧（Frame）中的行数据进行脱敏处理
-     */
-    private Frame desensitizeFrame(Frame originalFrame, Signature signature) {
-        if (originalFrame.rows == null) {
-            return originalFrame;
-        }
-        return desensitizeFrame(originalFrame, signature.columns);
-    }
-
-    private Frame desensitizeFrame(Frame originalFrame, List<ColumnMetaData> columns) {
-        List<Object> maskedRows = new ArrayList<>();
-
-        for (Object row : originalFrame.rows) {
-            Object[] dataRow = (Object[]) row;
-            Object[] maskedRow = new Object[dataRow.length];
-
-            for (int i = 0; i < dataRow.length; i++) {
-                ColumnMetaData column = columns.get(i);
-                // 根据列元数据和规则应用脱敏
-                maskedRow[i] = applyMask(
-                        dataRow[i],
-                        StringUtils.defaultIfEmpty(column.schemaName, column.catalogName),
-                        column.tableName,
-                        column.columnName
-                );
-            }
-            maskedRows.add(maskedRow);
-        }
-
-        return new Frame(originalFrame.offset, originalFrame.done, maskedRows);
-    }
-
-    /**
-     * 根据规则应用脱敏策略
-     */
-    private Object applyMask(Object value, String schema, String table, String column) {
-        if (value == null) {
-            return null;
-        }
-
-        MaskingRuleConfig columnRule = maskingConfigMeta.getMatchingRule(schema, table, column);
-
-        if (columnRule == null) {
-            return value;
-        }
-
-        return ValueMaskingStrategy.mask(value, columnRule);
+        plan.desensitize(resultSet.firstFrame);
+        return resultSet;
     }
 
     // ====================== SQL 改写逻辑 ======================
@@ -249,8 +189,8 @@ public class MaskingJdbcMeta extends JdbcMeta {
 
     @Override
     public void closeStatement(StatementHandle sh) {
-        // 每当 Avatica Server 关闭一个 Statement 时，都会移除对应的 signature 缓存。 Statement 生命周期和 signature 是一一对应的。
+        // 每当 Avatica Server 关闭一个 Statement 时，都会移除对应的脱敏计划缓存。 Statement 生命周期和 signature 是一一对应的。
         super.closeStatement(sh);
-        signatureCache.remove(String.valueOf(sh.id));
+        planCache.remove(String.valueOf(sh.id));
     }
 }
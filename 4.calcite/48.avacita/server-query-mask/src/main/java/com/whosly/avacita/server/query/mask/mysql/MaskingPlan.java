@@ -0,0 +1,119 @@
+package com.whosly.avacita.server.query.mask.mysql;
+
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleIndex;
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleType;
+import com.whosly.avacita.server.query.mask.util.ValueMaskingStrategy;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta.Frame;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 语句的脱敏计划：按 signature 的列解析一次规则，得到按列下标排列的规则数组
+ *
+ * <code>
+ *     1. prepareAndExecute 时解析，fetch 时复用，逐行脱敏时只按下标取规则，不再查找规则。
+ *     2. 未配置规则或规则为 KEEP 的列不做处理；所有列都不需要脱敏时直接返回原数据帧。
+ *     3. 计划持有解析时的规则快照版本，规则热加载后已执行的语句继续使用原有规则，同一个结果集的各数据帧脱敏一致。
+ *     4. 按列脱敏：只遍历需要脱敏的列，每列使用同一条规则处理所有行，未配置规则的列不会访问。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-27 10:20:15
+ * @description
+ */
+final class MaskingPlan {
+
+    /**
+     * 按列下标排列的规则，不需要脱敏的列为 null
+     */
+    private final MaskingRuleConfig[] rules;
+
+    /**
+     * 需要脱敏的列下标
+     */
+    private final int[] maskedColumns;
+
+    /**
+     * 解析时的规则快照版本
+     */
+    private final long version;
+
+    private MaskingPlan(long version, MaskingRuleConfig[] rules, int[] maskedColumns) {
+        this.version = version;
+        this.rules = rules;
+        this.maskedColumns = maskedColumns;
+    }
+
+    static MaskingPlan resolve(MaskingRuleIndex index, List<ColumnMetaData> columns) {
+        MaskingRuleConfig[] rules = new MaskingRuleConfig[columns.size()];
+        int[] maskedColumns = new int[rules.length];
+        int maskedCount = 0;
+
+        for (int i = 0; i < rules.length; i++) {
+            ColumnMetaData column = columns.get(i);
+            MaskingRuleConfig rule = index.find(
+                    StringUtils.defaultIfEmpty(column.schemaName, column.catalogName),
+                    column.tableName,
+                    column.columnName);
+            if (rule != null && rule.getRuleType() != MaskingRuleType.KEEP) {
+                rules[i] = rule;
+                maskedColumns[maskedCount++] = i;
+            }
+        }
+
+        return new MaskingPlan(index.getVersion(), rules, Arrays.copyOf(maskedColumns, maskedCount));
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    boolean masksAny() {
+        return maskedColumns.length > 0;
+    }
+
+    /**
+     * 对数据帧（Frame）中的行数据进行脱敏处理
+     *
+     * JdbcMeta 每次返回数据帧时都为每行创建新的 Object[]，这些数组只属于该数据帧，因此直接在原数组上按列改写，
+     * 不再复制行，也不创建新的 Frame。
+     */
+    Frame desensitize(Frame originalFrame) {
+        if (originalFrame.rows == null || maskedColumns.length == 0) {
+            return originalFrame;
+        }
+
+        ValueMaskingStrategy.MaskBuffer buffer = ValueMaskingStrategy.buffer();
+        if (originalFrame.rows instanceof List && originalFrame.rows instanceof RandomAccess) {
+            List<Object> rows = (List<Object>) originalFrame.rows;
+            for (int column : maskedColumns) {
+                MaskingRuleConfig rule = rules[column];
+                for (int r = 0, size = rows.size(); r < size; r++) {
+                    mask((Object[]) rows.get(r), column, rule, buffer);
+                }
+            }
+        } else {
+            for (Object row : originalFrame.rows) {
+                for (int column : maskedColumns) {
+                    mask((Object[]) row, column, rules[column], buffer);
+                }
+            }
+        }
+
+        return originalFrame;
+    }
+
+    private static void mask(Object[] row, int column, MaskingRuleConfig rule, ValueMaskingStrategy.MaskBuffer buffer) {
+        if (column < row.length) {
+            Object value = row[column];
+            if (value != null) {
+                row[column] = ValueMaskingStrategy.mask(value, rule, buffer);
+            }
+        }
+    }
+}
@@ -5,44 +5,95 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 脱敏的配置
+ *
+ * <code>
+ *     1. 配置文件路径在文件系统中存在时直接读取，否则从 classpath 查找。
+ *     2. 热加载时在旁边构建完整的新规则快照(MaskingRuleIndex)，再一次性替换，查询不会看到空的或只加载了一部分的规则。
+ *     3. 文件的修改时间、大小都未变化时跳过；变化时比较内容摘要，内容相同也不重新解析。
+ *     4. 每个快照有递增的版本号，执行中的语句持有解析时的快照。
+ *     5. 任何一条规则不合法(如 HASH 未配置密钥)时整个文件加载失败，保留原有的规则快照；文件再次修改后重新加载。
+ * </code>
+ *
+ * 修改配置文件时建议先写临时文件再重命名覆盖，避免读到写了一半的文件。
  */
 public class MaskingConfigMeta {
     private static final Logger LOG = LoggerFactory.getLogger(MaskingConfigMeta.class);
     private final String configPath;
-    private final Map<String, List<MaskingRuleConfig>> maskingRules = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
-    private long lastLoadTime = 0L;
-    
+    /**
+     * 当前的规则快照，只整体替换
+     */
+    private volatile MaskingRuleIndex ruleIndex = MaskingRuleIndex.EMPTY;
+
+    // 已加载的配置文件的修改时间、大小、内容摘要，由 reload 的锁保护
+    private long loadedModified = -1L;
+    private long loadedLength = -1L;
+    private byte[] loadedDigest;
+
     public MaskingConfigMeta(String configPath) {
         this.configPath = configPath;
 
-        loadConfig();
+        reload();
         startWatching();
     }
 
-    // 加载脱敏配置文件
-    private void loadConfig() {
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
-        if (inputStream == null) {
-            throw new RuntimeException("资源未找到: " + configPath);
+    /**
+     * 检查配置文件，有变化时构建新的规则快照并替换
+     *
+     * @return 是否发布了新的规则快照
+     */
+    public synchronized boolean reload() {
+        // 先取修改时间再读内容：读取期间文件又被修改时，下次检查会发现修改时间变化
+        File configFile = configFile();
+        long modified = configFile == null ? 0L : configFile.lastModified();
+        long length = configFile == null ? 0L : configFile.length();
+        if (loadedDigest != null && modified == loadedModified && length == loadedLength) {
+            return false;
+        }
+
+        byte[] content = readConfig(configFile);
+        byte[] digest = digest(content);
+        loadedModified = modified;
+        loadedLength = length;
+        if (Arrays.equals(digest, loadedDigest)) {
+            LOG.debug("脱敏配置内容未变化: {}", configPath);
+            return false;
         }
 
-        // 清空旧规则
-        maskingRules.clear();
+        MaskingRuleIndex index = MaskingRuleIndex.build(ruleIndex.getVersion() + 1, loadConfig(content));
+        this.ruleIndex = index;
+        loadedDigest = digest;
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+        LOG.info("成功加载脱敏配置: {}，版本: {}，规则数量: {}", configPath, index.getVersion(), index.size());
+        return true;
+    }
+
+    // 解析脱敏配置文件
+    private List<MaskingRuleConfig> loadConfig(byte[] content) {
+        List<MaskingRuleConfig> rules = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
             String line;
+            int lineNumber = 0;
             boolean isHeader = true;
             while ((line = reader.readLine()) != null) {
+                lineNumber++;
                 if (isHeader) {
                     isHeader = false;
                     continue;
@@ -55,69 +106,101 @@ public class MaskingConfigMeta {
                     String ruleType = parts[3];
                     String[] ruleParams = Arrays.copyOfRange(parts, 4, parts.length);
 
-                    MaskingRuleConfig rule = new MaskingRuleConfig(
-                            schema, table, column, ruleType, ruleParams
-                    );
-
-                    String key = schema + "." + table;
-                    // 使用 computeIfAbsent 初始化列表，但直接添加规则（不检查是否存在）
-                    maskingRules.computeIfAbsent(key, k -> new ArrayList<>()).add(rule);
+                    try {
+                        rules.add(new MaskingRuleConfig(
+                                schema, table, column, ruleType, ruleParams
+                        ));
+                    } catch (IllegalArgumentException e) {
+                        // 不输出整行，rule_params 中可能有密钥
+                        throw new IllegalArgumentException("脱敏规则不合法，第 " + lineNumber + " 行 "
+                                + schema + "." + table + "." + column + ": " + e.getMessage(), e);
+                    }
                 }
             }
+        } catch (IOException e) {
+            throw new RuntimeException("加载脱敏配置失败", e);
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("脱敏配置: {}， 规则：{}。", configPath, StringUtils.join(
+                    rules.stream().map(r -> r.getSchema() + "." + r.getTable() + "." + r.getColumn()).toList(),
+                    ","));
+        }
+        return rules;
+    }
+
+    // 配置文件：文件系统中存在时直接使用，否则查找 classpath 中的文件；jar 中的资源返回 null
+    private File configFile() {
+        File file = new File(configPath);
+        if (file.isFile()) {
+            return file;
+        }
+
+        URL url = getClass().getClassLoader().getResource(configPath);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI()).toFile();
+        } catch (URISyntaxException e) {
+            return new File(url.getFile());
+        }
+    }
+
+    private byte[] readConfig(File configFile) {
+        try {
+            if (configFile != null) {
+                return Files.readAllBytes(configFile.toPath());
+            }
 
-            LOG.trace("成功加载脱敏配置: {}，规则数量: {}， 规则：{}。",
-                    configPath,
-                    maskingRules.values().stream().mapToInt(List::size).sum(),
-                    StringUtils.join(
-                            maskingRules.values().stream().map(rs ->{
-                                        return rs.stream().map(r ->{
-                                            return r.getSchema() + "." + r.getTable() + "." + r.getColumn();
-                                        }).toList();
-                                    }).toList()
-                                    .stream().flatMap(List::stream).toList(),
-                            ",")
-            );
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(configPath)) {
+                if (inputStream == null) {
+                    throw new RuntimeException("资源未找到: " + configPath);
+                }
+                return inputStream.readAllBytes();
+            }
         } catch (IOException e) {
             throw new RuntimeException("加载脱敏配置失败", e);
         }
     }
 
-    // 新增热加载检测
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 新增热加载检测，加载失败时保留原有的规则快照
     private void startWatching() {
-        scheduler.scheduleAtFixedRate(() -> {
+        scheduler.scheduleWithFixedDelay(() -> {
             try {
-                File configFile = new File(getClass().getClassLoader().getResource(configPath).getFile());
-                long lastModified = configFile.lastModified();
-                if (lastModified > this.lastLoadTime) {
-                    loadConfig();
-                    this.lastLoadTime = System.currentTimeMillis();
-                }
+                reload();
             } catch (Exception e) {
                 LOG.error("配置文件监控异常", e);
             }
         }, 5, 5, TimeUnit.SECONDS);
     }
 
-    // 新增按列名匹配规则
+    // 新增按列名匹配规则， 支持通配规则
     public MaskingRuleConfig getMatchingRule(String schema, String table, String column) {
-        return maskingRules.values().stream()
-            .flatMap(List::stream)
-            .filter(rule -> rule.match(schema, table, column))
-            .findFirst()
-            .orElse(null);
+        return ruleIndex.find(schema, table, column);
+    }
+
+    // 当前的规则快照， 执行语句时按列解析一次
+    public MaskingRuleIndex getRuleIndex() {
+        return ruleIndex;
     }
 
     // 根据表名和字段名查找脱敏规则
     public List<MaskingRuleConfig> getRule(String schema, String table) {
-        String key = schema + "." + table;
-        List<MaskingRuleConfig> tableRules = maskingRules.getOrDefault(key, Collections.emptyList());
-        return tableRules;
+        return ruleIndex.getRules(schema, table);
     }
 
     // 根据表名和字段名查找脱敏规则
     public MaskingRuleConfig getRule(String schema, String table, String column) {
-        String key = schema + "." + table;
-        List<MaskingRuleConfig> tableRules = maskingRules.getOrDefault(key, Collections.emptyList());
+        List<MaskingRuleConfig> tableRules = ruleIndex.getRules(schema, table);
 
         MaskingRuleConfig columnRole = tableRules.stream()
                 .filter(r -> r.getColumn().equalsIgnoreCase(column))
@@ -14,14 +14,35 @@ import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Statement;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * 脱敏的 ResultSet
+ *
+ * <code>
+ *     1. 创建时按列名解析一次脱敏函数，得到按列下标排列的数组；读取时只按下标取函数，不再查询列名、查找 Map。
+ *     2. 列标签 -> 列下标同样在创建时解析一次，按列标签读取时不再经过驱动的 findColumn；与 JDBC 一致，不区分大小写，同名的列取第一列。
+ *     3. 未配置脱敏函数的列直接返回驱动的结果。
+ * </code>
+ */
 public class MaskingResultSet implements ResultSet {
     private final ResultSet delegate;
     private final ResultSetMetaData metaData;
-    private final Map<String, Function<Object, Object>> maskingFunctions;
 
+    /**
+     * 按列下标(从 1 开始)排列的脱敏函数，不需要脱敏的列为 null
+     */
+    private final Function<Object, Object>[] columnMaskings;
+
+    /**
+     * 列标签 -> 列下标；小写标签取第一列，原始标签指向同一列，按原始标签读取时不需要转小写
+     */
+    private final Map<String, Integer> columnIndexes;
+
+    @SuppressWarnings("unchecked")
     public MaskingResultSet(
             ResultSet delegate,
             ResultSetMetaData metaData,
@@ -29,22 +50,39 @@ public class MaskingResultSet implements ResultSet {
     ) throws SQLException {
         this.delegate = delegate;
         this.metaData = new MaskingResultSetMetaData(metaData, maskingFunctions);
-        this.maskingFunctions = maskingFunctions;
+
+        int columnCount = metaData.getColumnCount();
+        this.columnMaskings = new Function[columnCount + 1];
+        this.columnIndexes = new HashMap<>(columnCount * 4);
+        for (int i = 1; i <= columnCount; i++) {
+            columnMaskings[i] = maskingFunctions.get(metaData.getColumnName(i));
+
+            String label = metaData.getColumnLabel(i);
+            if (label != null) {
+                // 以不区分大小写的标签确定第一列，原始标签不能覆盖，否则 "NAME" 会指向后面的同名列
+                Integer first = columnIndexes.putIfAbsent(label.toLowerCase(Locale.ROOT), i);
+                columnIndexes.putIfAbsent(label, first != null ? first : i);
+            }
+        }
     }
 
     // 数据获取方法 - 应用脱敏逻辑
     @Override
     public Object getObject(int columnIndex) throws SQLException {
-        Object value = delegate.getObject(columnIndex);
-        String columnName = metaData.getColumnName(columnIndex);
-        return applyMasking(value, columnName);
+        Function<Object, Object> masking = masking(columnIndex);
+        if (masking == null) {
+            return delegate.getObject(columnIndex);
+        }
+        return applyMasking(delegate.getObject(columnIndex), masking);
     }
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        String value = delegate.getString(columnIndex);
-        String columnName = metaData.getColumnName(columnIndex);
-        return (String) applyMasking(value, columnName);
+        Function<Object, Object> masking = masking(columnIndex);
+        if (masking == null) {
+            return delegate.getString(columnIndex);
+        }
+        return (String) applyMasking(delegate.getString(columnIndex), masking);
     }
 
     @Override
@@ -124,9 +162,11 @@ public class MaskingResultSet implements ResultSet {
 
     @Override
     public String getNString(int columnIndex) throws SQLException {
-        String value = delegate.getNString(columnIndex);
-        String columnName = metaData.getColumnName(columnIndex);
-        return (String) applyMasking(value, columnName);
+        Function<Object, Object> masking = masking(columnIndex);
+        if (masking == null) {
+            return delegate.getNString(columnIndex);
+        }
+        return (String) applyMasking(delegate.getNString(columnIndex), masking);
     }
 
     @Override
@@ -141,12 +181,29 @@ public class MaskingResultSet implements ResultSet {
 
     @Override
     public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
-        return delegate.getObject(columnIndex, map);
+        Function<Object, Object> masking = masking(columnIndex);
+        if (masking == null) {
+            return delegate.getObject(columnIndex, map);
+        }
+        return applyMasking(delegate.getObject(columnIndex, map), masking);
     }
 
     @Override
     public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
-        return delegate.getObject(columnIndex, type);
+        Function<Object, Object> masking = masking(columnIndex);
+        if (masking == null) {
+            return delegate.getObject(columnIndex, type);
+        }
+
+        // 脱敏后的值一般为字符串，不能转换为 type 时抛出异常，不返回原值
+        Object masked = applyMasking(delegate.getObject(columnIndex), masking);
+        if (masked == null || type.isInstance(masked)) {
+            return type.cast(masked);
+        }
+        if (type == String.class) {
+            return type.cast(masked.toString());
+        }
+        throw new SQLException("masked column " + columnIndex + " cannot be converted to " + type.getName());
     }
 
     @Override
@@ -589,10 +646,14 @@ public class MaskingResultSet implements ResultSet {
         return delegate.wasNull();
     }
 
-    // 根据列名查找列索引
+    // 根据列名查找列索引， 未找到时交给驱动处理(抛出异常)
     @Override
     public int findColumn(String columnLabel) throws SQLException {
-        return delegate.findColumn(columnLabel);
+        Integer columnIndex = columnIndexes.get(columnLabel);
+        if (columnIndex == null && columnLabel != null) {
+            columnIndex = columnIndexes.get(columnLabel.toLowerCase(Locale.ROOT));
+        }
+        return columnIndex != null ? columnIndex : delegate.findColumn(columnLabel);
     }
 
     // 获取指定列名对应的Ref对象
@@ -1137,10 +1198,14 @@ public class MaskingResultSet implements ResultSet {
     }
 
     // 内部辅助方法
-    private Object applyMasking(Object value, String columnName) {
-        if (value == null || !maskingFunctions.containsKey(columnName)) {
-            return value;
+    private Function<Object, Object> masking(int columnIndex) {
+        return columnIndex > 0 && columnIndex < columnMaskings.length ? columnMaskings[columnIndex] : null;
+    }
+
+    private static Object applyMasking(Object value, Function<Object, Object> masking) {
+        if (value == null) {
+            return null;
         }
-        return maskingFunctions.get(columnName).apply(value);
+        return masking.apply(value);
     }
 }
\ No newline at end of file
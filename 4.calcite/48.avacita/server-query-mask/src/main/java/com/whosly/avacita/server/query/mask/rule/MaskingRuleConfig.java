@@ -1,5 +1,6 @@
 package com.whosly.avacita.server.query.mask.rule;
 
+import com.whosly.avacita.server.query.mask.util.ValueMaskingStrategy;
 import lombok.ToString;
 
 @ToString
@@ -8,14 +9,26 @@ public class MaskingRuleConfig {
     private final String table;
     private final String column;
     private final MaskingRuleType ruleType;
+
+    /**
+     * HASH 规则的参数中含密钥，不输出
+     */
+    @ToString.Exclude
     private final String[] ruleParams;
 
+    /**
+     * 按规则类型与参数准备好的脱敏函数，参数不合法时创建规则失败
+     */
+    @ToString.Exclude
+    private final ValueMaskingStrategy.Masker masker;
+
     public MaskingRuleConfig(String schema, String table, String column, String ruleType, String[] ruleParams) {
         this.schema = schema;
         this.table = table;
         this.column = column;
         this.ruleType = MaskingRuleType.getByName(ruleType);
         this.ruleParams = ruleParams;
+        this.masker = ValueMaskingStrategy.compile(this.ruleType, ruleParams);
     }
 
     // Getters
@@ -24,6 +37,7 @@ public class MaskingRuleConfig {
     public String getColumn() { return column; }
     public MaskingRuleType getRuleType() { return ruleType; }
     public String[] getRuleParams() { return ruleParams; }
+    public ValueMaskingStrategy.Masker getMasker() { return masker; }
 
     public boolean match(String schema, String table, String column) {
         return this.schema.equalsIgnoreCase(schema)
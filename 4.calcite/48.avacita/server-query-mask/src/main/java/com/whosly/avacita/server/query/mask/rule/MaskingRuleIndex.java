@@ -0,0 +1,227 @@
+package com.whosly.avacita.server.query.mask.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 脱敏规则索引，加载配置时一次性构建，构建后不再修改
+ *
+ * <code>
+ *     1. 精确规则按 schema.table.column(忽略大小写) 放入 HashMap，查找为 O(1)。
+ *     2. schema、table、column 中含通配符(* 任意个字符，? 单个字符)的规则在构建时编译为正则，按配置文件中的顺序匹配。
+ *     3. 精确规则优先于通配规则；同一列配置了多条规则时，取配置文件中靠前的一条。
+ *     4. 存在通配规则时，按列缓存查找结果(包括未匹配)，同一列只匹配一次。
+ * </code>
+ *
+ * 执行语句时按 signature 的列解析一次，得到按列下标排列的规则数组，逐行脱敏时只需按下标取规则。
+ * 索引即规则快照：热加载时构建新的索引后整体替换，版本号递增；执行中的语句持有解析时的快照，不受重新加载影响。
+ *
+ * @author fengyang
+ * @date 2025-08-27 10:20:15
+ * @description
+ */
+public final class MaskingRuleIndex {
+
+    public static final MaskingRuleIndex EMPTY = build(0, Collections.emptyList());
+
+    /**
+     * 通配规则的查找结果缓存上限，超过后不再缓存
+     */
+    private static final int MAX_RESOLVED = 10_000;
+
+    /**
+     * 缓存中表示未匹配到规则
+     */
+    private static final MaskingRuleConfig NONE = new MaskingRuleConfig("", "", "", null, new String[0]);
+
+    private final long version;
+
+    private final List<MaskingRuleConfig> rules;
+
+    /**
+     * schema.table -> 该表的规则
+     */
+    private final Map<String, List<MaskingRuleConfig>> tableRules;
+
+    private final Map<String, MaskingRuleConfig> exactRules;
+
+    private final PatternRule[] patternRules;
+
+    private final Map<String, MaskingRuleConfig> resolved = new ConcurrentHashMap<>();
+
+    private MaskingRuleIndex(long version, List<MaskingRuleConfig> rules,
+                             Map<String, List<MaskingRuleConfig>> tableRules,
+                             Map<String, MaskingRuleConfig> exactRules, PatternRule[] patternRules) {
+        this.version = version;
+        this.rules = rules;
+        this.tableRules = tableRules;
+        this.exactRules = exactRules;
+        this.patternRules = patternRules;
+    }
+
+    public static MaskingRuleIndex build(List<MaskingRuleConfig> rules) {
+        return build(0, rules);
+    }
+
+    /**
+     * @param version 快照版本号
+     * @param rules   按配置文件顺序排列的规则
+     */
+    public static MaskingRuleIndex build(long version, List<MaskingRuleConfig> rules) {
+        Map<String, List<MaskingRuleConfig>> tableRules = new HashMap<>();
+        Map<String, MaskingRuleConfig> exactRules = new HashMap<>(Math.max(16, rules.size() * 2));
+        List<PatternRule> patternRules = new ArrayList<>();
+
+        for (MaskingRuleConfig rule : rules) {
+            tableRules.computeIfAbsent(rule.getSchema() + "." + rule.getTable(), k -> new ArrayList<>()).add(rule);
+
+            if (isPattern(rule.getSchema()) || isPattern(rule.getTable()) || isPattern(rule.getColumn())) {
+                patternRules.add(new PatternRule(rule));
+            } else {
+                exactRules.putIfAbsent(key(rule.getSchema(), rule.getTable(), rule.getColumn()), rule);
+            }
+        }
+
+        tableRules.replaceAll((k, v) -> Collections.unmodifiableList(v));
+
+        return new MaskingRuleIndex(
+                version,
+                Collections.unmodifiableList(new ArrayList<>(rules)),
+                tableRules,
+                exactRules,
+                patternRules.toArray(new PatternRule[0]));
+    }
+
+    /**
+     * 查找列的脱敏规则
+     *
+     * @return 未配置规则时返回 null
+     */
+    public MaskingRuleConfig find(String schema, String table, String column) {
+        String key = key(schema, table, column);
+        MaskingRuleConfig rule = exactRules.get(key);
+        if (rule != null || patternRules.length == 0) {
+            return rule;
+        }
+
+        rule = resolved.get(key);
+        if (rule == null) {
+            rule = matchPattern(schema, table, column);
+            if (resolved.size() < MAX_RESOLVED) {
+                resolved.putIfAbsent(key, rule);
+            }
+        }
+
+        return rule == NONE ? null : rule;
+    }
+
+    /**
+     * 表的全部规则，schema、table 区分大小写
+     */
+    public List<MaskingRuleConfig> getRules(String schema, String table) {
+        return tableRules.getOrDefault(schema + "." + table, Collections.emptyList());
+    }
+
+    /**
+     * 全部规则，按配置文件顺序排列
+     */
+    public List<MaskingRuleConfig> getRules() {
+        return rules;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    private MaskingRuleConfig matchPattern(String schema, String table, String column) {
+        for (PatternRule patternRule : patternRules) {
+            if (patternRule.matches(schema, table, column)) {
+                return patternRule.rule;
+            }
+        }
+
+        return NONE;
+    }
+
+    private static String key(String schema, String table, String column) {
+        return (nullToEmpty(schema) + "." + nullToEmpty(table) + "." + nullToEmpty(column)).toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static boolean isPattern(String s) {
+        return s != null && (s.indexOf('*') >= 0 || s.indexOf('?') >= 0);
+    }
+
+    /**
+     * 通配规则，schema、table、column 各自编译为正则；不含通配符的部分按忽略大小写比较
+     */
+    private static final class PatternRule {
+        private final MaskingRuleConfig rule;
+
+        private final Pattern schema;
+
+        private final Pattern table;
+
+        private final Pattern column;
+
+        PatternRule(MaskingRuleConfig rule) {
+            this.rule = rule;
+            this.schema = compile(rule.getSchema());
+            this.table = compile(rule.getTable());
+            this.column = compile(rule.getColumn());
+        }
+
+        boolean matches(String schema, String table, String column) {
+            return matches(this.schema, rule.getSchema(), schema)
+                    && matches(this.table, rule.getTable(), table)
+                    && matches(this.column, rule.getColumn(), column);
+        }
+
+        private static boolean matches(Pattern pattern, String expected, String actual) {
+            if (pattern == null) {
+                return expected.equalsIgnoreCase(actual);
+            }
+            return pattern.matcher(nullToEmpty(actual)).matches();
+        }
+
+        /**
+         * @return 不含通配符时返回 null
+         */
+        private static Pattern compile(String glob) {
+            if (!isPattern(glob)) {
+                return null;
+            }
+
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > start) {
+                        regex.append(Pattern.quote(glob.substring(start, i)));
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            if (start < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(start)));
+            }
+
+            return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+        }
+    }
+}
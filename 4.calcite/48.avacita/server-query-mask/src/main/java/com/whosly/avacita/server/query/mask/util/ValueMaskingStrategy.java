@@ -2,10 +2,70 @@ package com.whosly.avacita.server.query.mask.util;
 
 import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
 import com.whosly.avacita.server.query.mask.rule.MaskingRuleType;
+import org.apache.commons.lang3.StringUtils;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 值脱敏
+ *
+ * 字符串脱敏写入可复用的 char[]，最后只创建一次结果字符串，不再使用 StringBuilder。
+ * 逐列脱敏时先通过 buffer() 取得当前线程的缓冲区，再逐个单元格调用 mask(value, rule, buffer)。
+ *
+ * 每条规则加载时通过 compile 解析参数、准备好状态(正则、HMAC 密钥等)，脱敏时不再解析参数。
+ * Mac、Matcher 等不是线程安全的对象按密钥、正则缓存在当前线程的缓冲区中，规则重新加载后相同配置继续复用，不随规则实例累积。
+ * 参数为配置文件中的 rule_params 列，多个参数以分号分隔，未配置的参数使用默认值：
+ * <code>
+ *     MASK_FULL   替换文本                 默认 ******
+ *     MASK_LEFT   保留左侧位数             默认 4
+ *     MASK_RIGHT  保留右侧位数             默认 4
+ *     MASK_MIDDLE 前缀位数;后缀位数;间隔    默认 3;2;4，中间每隔 4 个字符显示 1 个，间隔为 0 时中间全部掩码
+ *     PARTIAL     前缀位数;后缀位数         默认 1;1，中间全部掩码
+ *     ROUND       取整单位                 默认 100，非数值按全掩码处理
+ *     HASH        密钥;保留的十六进制位数    HMAC-SHA256，密钥为空时取 -Dmask.hash.key，仍为空时加载规则失败；位数默认 64(不截断)
+ *     REGEX       正则;替换文本             替换文本默认 *，正则中不能包含逗号、分号
+ * </code>
+ */
 public class ValueMaskingStrategy {
+    private static final String MASK_FULL = "******";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MaskBuffer> BUFFER = ThreadLocal.withInitial(MaskBuffer::new);
+
+    /**
+     * 按规则准备好的脱敏函数
+     */
+    public interface Masker {
+        /**
+         * @param value 非 null
+         */
+        Object mask(Object value, MaskBuffer buffer);
+    }
+
+    /**
+     * 当前线程的脱敏缓冲区，只能在当前线程使用
+     */
+    public static MaskBuffer buffer() {
+        return BUFFER.get();
+    }
 
     public static Object mask(Object value, MaskingRuleConfig rule) {
+        if (value == null || rule == null) {
+            return value;
+        }
+        return mask(value, rule, BUFFER.get());
+    }
+
+    public static Object mask(Object value, MaskingRuleConfig rule, MaskBuffer buffer) {
         if (value == null) {
             return null;
         }
@@ -13,112 +73,360 @@ public class ValueMaskingStrategy {
             return value;
         }
 
-        MaskingRuleType ruleType = rule.getRuleType();
-        String[] params = rule.getRuleParams();
+        return rule.getMasker().mask(value, buffer);
+    }
+
+    /**
+     * 按规则类型与参数准备脱敏函数
+     *
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public static Masker compile(MaskingRuleType ruleType, String[] ruleParams) {
+        String[] params = splitParams(ruleParams);
 
         switch (ruleType) {
-            case KEEP:
-                return value;
             case MASK_FULL:
-                return maskFullValue(value);
+                return new FullMasker(param(params, 0, MASK_FULL));
             case MASK_MIDDLE:
-                return maskMiddleValue(value);
+                return new MiddleMasker(intParam(params, 0, 3), intParam(params, 1, 2), intParam(params, 2, 4));
             case MASK_LEFT:
-                return maskLeftValue(value);
+                return new LeftMasker(intParam(params, 0, 4));
             case MASK_RIGHT:
-                return maskRightValue(value, params);
+                return new RightMasker(intParam(params, 0, 4));
+            case PARTIAL:
+                return new MiddleMasker(intParam(params, 0, 1), intParam(params, 1, 1), 0);
             case ROUND:
-                long num = ((Number)value).longValue();
-                long divisor = Long.parseLong(params[0]);
-                return (num / divisor) * divisor;
-//            case HASH/PARTIAL/REGEX
+                return new RoundMasker(intParam(params, 0, 100));
+            case HASH:
+                return new HashMasker(param(params, 0, ""), intParam(params, 1, 64));
+            case REGEX:
+                return new RegexMasker(param(params, 0, ""), param(params, 1, "*"));
+            case KEEP:
             default:
-                return value;
+                return (value, buffer) -> value;
+        }
+    }
+
+    /**
+     * rule_params 列按分号拆分；其余列(是否启用等)不是脱敏参数
+     */
+    private static String[] splitParams(String[] ruleParams) {
+        if (ruleParams == null || ruleParams.length == 0 || StringUtils.isBlank(ruleParams[0])) {
+            return new String[0];
+        }
+        return ruleParams[0].split(";", -1);
+    }
+
+    private static String param(String[] params, int index, String defaultValue) {
+        return index < params.length ? params[index] : defaultValue;
+    }
+
+    private static int intParam(String[] params, int index, int defaultValue) {
+        if (index >= params.length || StringUtils.isBlank(params[index])) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(params[index].trim());
+            if (value < 0) {
+                throw new IllegalArgumentException("脱敏参数不能为负数: " + params[index]);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("脱敏参数不是整数: " + params[index], e);
         }
     }
 
     /**
      * 全掩码处理
      */
-    private static Object maskFullValue(Object value) {
-        return "******";
+    private static final class FullMasker implements Masker {
+        private final String mask;
+
+        FullMasker(String mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            return mask;
+        }
+    }
+
+    /**
+     * 中间掩码处理（保留前preLength位和后postLength位，中间每隔step个字符显示1个；step为0时中间全部掩码）
+     */
+    private static final class MiddleMasker implements Masker {
+        private final int preLength;
+        private final int postLength;
+        private final int step;
+
+        MiddleMasker(int preLength, int postLength, int step) {
+            this.preLength = preLength;
+            this.postLength = postLength;
+            this.step = step;
+        }
+
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            String strValue = value.toString();
+
+            int length = strValue.length();
+            if (length <= preLength + postLength) {
+                return MASK_FULL; // 长度不足，降级为全掩码
+            }
+
+            char[] masked = buffer.chars(length);
+            strValue.getChars(0, length, masked, 0);
+
+            int visibleCount = 0;
+            for (int i = preLength; i < length - postLength; i++) {
+                if (step == 0 || visibleCount % step != 0) {
+                    masked[i] = '*';
+                }
+                visibleCount++;
+            }
+
+            return new String(masked, 0, length);
+        }
+    }
+
+    /**
+     * 左掩码处理（保留左侧preLength位）
+     */
+    private static final class LeftMasker implements Masker {
+        private final int preLength;
+
+        LeftMasker(int preLength) {
+            this.preLength = preLength;
+        }
+
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            String strValue = value.toString();
+
+            int length = strValue.length();
+            if (length <= preLength) {
+                return value; // 长度不足或为空，不做掩码
+            }
+
+            char[] masked = buffer.chars(length);
+            strValue.getChars(0, preLength, masked, 0);
+            Arrays.fill(masked, preLength, length, '*');
+            return new String(masked, 0, length);
+        }
     }
 
     /**
-     * 中间掩码处理（保留前preLength位和后postLength位，中间间隔显示）
+     * 右掩码处理（保留右侧postLength位）
      */
-    private static Object maskMiddleValue(Object value) {
-        String strValue = value != null ? value.toString() : "";
+    private static final class RightMasker implements Masker {
+        private final int postLength;
 
-        int preLength = 3;  // 前缀保留长度
-        int postLength = 2; // 后缀保留长度
+        RightMasker(int postLength) {
+            this.postLength = postLength;
+        }
+
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            String strValue = value.toString();
+
+            int length = strValue.length();
+            if (length <= postLength) {
+                return value; // 长度不足，不做掩码
+            }
 
-        if (strValue.length() <= preLength + postLength) {
-            return maskFullValue(value); // 长度不足，降级为全掩码
+            char[] masked = buffer.chars(length);
+            Arrays.fill(masked, 0, length - postLength, '*');
+            strValue.getChars(length - postLength, length, masked, length - postLength);
+            return new String(masked, 0, length);
         }
+    }
 
-        StringBuilder masked = new StringBuilder();
-        masked.append(strValue, 0, preLength);
+    /**
+     * 数值按取整单位向零取整
+     */
+    private static final class RoundMasker implements Masker {
+        private final long divisor;
 
-        int visibleCount = 0;
-        for (int i = preLength; i < strValue.length() - postLength; i++) {
-            if (visibleCount % 4 == 0) { // 每4个字符显示1个
-                masked.append(strValue.charAt(i));
-            } else {
-                masked.append('*');
+        RoundMasker(long divisor) {
+            if (divisor <= 0) {
+                throw new IllegalArgumentException("ROUND 的取整单位必须大于 0: " + divisor);
             }
-            visibleCount++;
+            this.divisor = divisor;
         }
 
-        masked.append(strValue.substring(strValue.length() - postLength));
-        return masked.toString();
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            if (!(value instanceof Number)) {
+                return MASK_FULL;
+            }
+            long num = ((Number) value).longValue();
+            return (num / divisor) * divisor;
+        }
     }
 
     /**
-     * 左掩码处理（保留左侧preLength位）
+     * 哈希脱敏：HMAC-SHA256，输出小写十六进制，可截断
+     *
+     * 不带密钥的哈希可以通过穷举还原手机号、证件号等取值范围小的值，因此必须配置密钥。
+     * Mac 不是线程安全的，每个线程按密钥缓存一份初始化好的实例后复用。
      */
-    private static Object maskLeftValue(Object value) {
-        String strValue = value != null ? value.toString() : "";
+    private static final class HashMasker implements Masker {
+        private static final int DIGEST_LENGTH = 32;
+
+        private final String secret;
+
+        private final SecretKeySpec key;
+
+        private final int hexLength;
 
-        int preLength = 4; // 前缀保留长度
+        HashMasker(String key, int hexLength) {
+            this.secret = StringUtils.isNotBlank(key) ? key : System.getProperty("mask.hash.key", "");
+            if (StringUtils.isBlank(secret)) {
+                throw new IllegalArgumentException("HASH 脱敏未配置密钥，请在 rule_params 或 -Dmask.hash.key 中配置");
+            }
+            this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+            this.hexLength = hexLength == 0 ? DIGEST_LENGTH * 2 : Math.min(hexLength, DIGEST_LENGTH * 2);
 
-        if (strValue == null || strValue.length() <= preLength) {
-            return value; // 长度不足或为空，不做掩码
+            // 提前校验密钥
+            newMac();
         }
 
-        StringBuilder masked = new StringBuilder(strValue.substring(0, preLength));
-        for (int i = preLength; i < strValue.length(); i++) {
-            masked.append('*');
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            String strValue = value.toString();
+            byte[] bytes = buffer.bytes(strValue.length() * 3 + DIGEST_LENGTH);
+            int length = encodeUtf8(strValue, bytes);
+
+            Mac mac = buffer.macs.get(secret);
+            if (mac == null) {
+                mac = newMac();
+                buffer.macs.put(secret, mac);
+            }
+            try {
+                mac.update(bytes, 0, length);
+                mac.doFinal(bytes, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HASH 脱敏失败", e);
+            }
+
+            char[] hex = buffer.chars(hexLength);
+            for (int i = 0; i < hexLength; i++) {
+                int b = bytes[i >> 1];
+                hex[i] = HEX[(i & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F];
+            }
+            return new String(hex, 0, hexLength);
         }
-        return masked.toString();
 
-//        return StringUtils.leftPad("", ((String)value).length(), '*');
+        private Mac newMac() {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("HASH 脱敏密钥不可用", e);
+            }
+        }
+
+        /**
+         * 与 String.getBytes(UTF_8) 结果一致，单独的代理字符写为 '?'
+         *
+         * @return 写入的字节数
+         */
+        private static int encodeUtf8(String s, byte[] out) {
+            int n = 0;
+            for (int i = 0, length = s.length(); i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    out[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[n++] = (byte) (0xC0 | (c >> 6));
+                    out[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, s.charAt(++i));
+                        out[n++] = (byte) (0xF0 | (cp >> 18));
+                        out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        out[n++] = (byte) (0x80 | (cp & 0x3F));
+                    } else {
+                        out[n++] = '?';
+                    }
+                } else {
+                    out[n++] = (byte) (0xE0 | (c >> 12));
+                    out[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[n++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return n;
+        }
     }
 
     /**
-     * 右掩码处理（保留右侧postLength位）
+     * 正则脱敏：匹配的部分替换为替换文本(支持 $1 等分组引用)
+     *
+     * 正则在加载时编译；Matcher 不是线程安全的，每个线程按正则缓存一个 Matcher 后复用。
      */
-    private static Object maskRightValue(Object value, String[] params) {
-        String strValue = value != null ? value.toString() : "";
+    private static final class RegexMasker implements Masker {
+        private final String regex;
+
+        private final Pattern pattern;
 
-        int postLength = 4; // 后缀保留长度
+        private final String replacement;
 
-        if (strValue.length() <= postLength) {
-            return value; // 长度不足，不做掩码
+        RegexMasker(String regex, String replacement) {
+            if (regex.isEmpty()) {
+                throw new IllegalArgumentException("REGEX 脱敏未配置正则");
+            }
+            this.regex = regex;
+            this.pattern = Pattern.compile(regex);
+            this.replacement = replacement;
         }
 
-        StringBuilder masked = new StringBuilder();
-        for (int i = 0; i < strValue.length() - postLength; i++) {
-            masked.append('*');
+        @Override
+        public Object mask(Object value, MaskBuffer buffer) {
+            Matcher matcher = buffer.matchers.get(regex);
+            if (matcher == null) {
+                matcher = pattern.matcher("");
+                buffer.matchers.put(regex, matcher);
+            }
+            String masked = matcher.reset(value.toString()).replaceAll(replacement);
+            // 不再引用脱敏前的值
+            matcher.reset("");
+            return masked;
         }
+    }
+
+    /**
+     * 字符串脱敏的缓冲区，按需扩容后复用
+     */
+    public static final class MaskBuffer {
+        private char[] chars = new char[64];
+
+        private byte[] bytes = new byte[256];
 
-        masked.append(strValue.substring(strValue.length() - postLength));
-        return masked.toString();
+        /**
+         * 密钥 -> 初始化好的 Mac，数量为配置中不同密钥的个数
+         */
+        private final Map<String, Mac> macs = new HashMap<>(4);
 
-//        int keepRight = Integer.parseInt(params[0]);
-//        String strVal = value.toString();
-//        return strVal.length() > keepRight ?
-//                StringUtils.leftPad(strVal.substring(strVal.length() - keepRight), strVal.length(), '*')
-//                : strVal;
+        /**
+         * 正则 -> Matcher，数量为配置中不同正则的个数
+         */
+        private final Map<String, Matcher> matchers = new HashMap<>(4);
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            return chars;
+        }
+
+        byte[] bytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            return bytes;
+        }
     }
 }
@@ -0,0 +1,211 @@
+package com.whosly.avacita.server.query.mask.mysql;
+
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleIndex;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta.Frame;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.sql.DatabaseMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 宽结果集 fetch 的压测: 原有实现(每行复制 Object[]、StringBuilder 脱敏) vs 按列原地脱敏
+ *
+ * <code>
+ *     1. 模拟 JdbcMeta 的 fetch：每帧新建行数组并填入列值，再脱敏；40 列，分别有 0%、10%、100% 的列需要脱敏。
+ *     2. 输出 rows/sec、每行分配的字节数，以及 GC 次数、GC 耗时与分配速率(MB/s)。
+ *     3. 分配字节数通过 com.sun.management.ThreadMXBean 统计。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-27 16:40:05
+ * @description
+ */
+public class MaskingFetchBenchmark {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 1_000_000);
+
+    private static final int FRAME_ROWS = Integer.getInteger("bench.frameRows", 100);
+
+    private static final int COLUMNS = Integer.getInteger("bench.columns", 40);
+
+    private static final String[] TYPES = {"mask_middle", "mask_left", "mask_right", "mask_full"};
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        List<ColumnMetaData> columns = new ArrayList<>(COLUMNS);
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(column(i, "c" + i));
+        }
+
+        // 数据源中的列值，fetch 时填入新建的行数组
+        String[][] source = new String[1_000][COLUMNS];
+        for (int r = 0; r < source.length; r++) {
+            for (int i = 0; i < COLUMNS; i++) {
+                source[r][i] = "user" + r + "_col" + i + "@example.com";
+            }
+        }
+
+        for (int percent : new int[]{0, 10, 100}) {
+            int maskedColumns = COLUMNS * percent / 100;
+            List<MaskingRuleConfig> rules = new ArrayList<>();
+            for (int i = 0; i < maskedColumns; i++) {
+                rules.add(new MaskingRuleConfig("demo", "t_wide", "c" + i, TYPES[i % TYPES.length],
+                        new String[]{"", "TRUE"}));
+            }
+            MaskingPlan plan = MaskingPlan.resolve(MaskingRuleIndex.build(rules), columns);
+            MaskingRuleConfig[] legacyRules = new MaskingRuleConfig[COLUMNS];
+            for (int i = 0; i < maskedColumns; i++) {
+                legacyRules[i] = rules.get(i);
+            }
+
+            Fetch legacy = frame -> legacyDesensitize(frame, legacyRules);
+            Fetch columnar = plan::desensitize;
+
+            // 预热
+            for (int i = 0; i < 3; i++) {
+                run(legacy, source, ROWS / 5);
+                run(columnar, source, ROWS / 5);
+            }
+
+            print("legacy  ", percent, run(legacy, source, ROWS));
+            print("columnar", percent, run(columnar, source, ROWS));
+        }
+    }
+
+    /**
+     * @return {rows, cost nanos, allocated bytes, gc count, gc millis}
+     */
+    private static long[] run(Fetch fetch, String[][] source, int rows) {
+        long tid = Thread.currentThread().getId();
+        long[] gc0 = gc();
+        long bytes0 = THREAD_MX.getThreadAllocatedBytes(tid);
+        long st = System.nanoTime();
+
+        long sink = 0;
+        for (int offset = 0; offset < rows; offset += FRAME_ROWS) {
+            sink += fetch.apply(fetchFrame(source, offset)).offset;
+        }
+
+        long cost = System.nanoTime() - st;
+        long bytes = THREAD_MX.getThreadAllocatedBytes(tid) - bytes0;
+        long[] gc1 = gc();
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+
+        return new long[]{rows, cost, bytes, gc1[0] - gc0[0], gc1[1] - gc0[1]};
+    }
+
+    private static void print(String name, int percent, long[] result) {
+        double seconds = result[1] / 1_000_000_000D;
+        System.out.printf("%s masked: %3d%%, rows/sec: %12.1f, bytes/row: %8.1f, alloc MB/s: %8.1f, gc: %d (%d ms)%n",
+                name, percent, result[0] / seconds, (double) result[2] / result[0],
+                result[2] / seconds / (1024 * 1024), result[3], result[4]);
+    }
+
+    /**
+     * 与 JdbcResultSet.frame 一样，每帧新建行数组
+     */
+    private static Frame fetchFrame(String[][] source, int offset) {
+        List<Object> rows = new ArrayList<>(FRAME_ROWS);
+        for (int r = 0; r < FRAME_ROWS; r++) {
+            String[] values = source[(offset + r) % source.length];
+            Object[] row = new Object[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                row[i] = values[i];
+            }
+            rows.add(row);
+        }
+        return new Frame(offset, false, rows);
+    }
+
+    private static long[] gc() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    /**
+     * 原有实现：每行复制 Object[]，每个单元格调用一次脱敏
+     */
+    private static Frame legacyDesensitize(Frame originalFrame, MaskingRuleConfig[] rules) {
+        List<Object> maskedRows = new ArrayList<>();
+        for (Object row : originalFrame.rows) {
+            Object[] dataRow = (Object[]) row;
+            Object[] maskedRow = new Object[dataRow.length];
+            for (int i = 0; i < dataRow.length; i++) {
+                maskedRow[i] = legacyMask(dataRow[i], rules[i]);
+            }
+            maskedRows.add(maskedRow);
+        }
+        return new Frame(originalFrame.offset, originalFrame.done, maskedRows);
+    }
+
+    /**
+     * 原有的 StringBuilder 字符串脱敏
+     */
+    private static Object legacyMask(Object value, MaskingRuleConfig rule) {
+        if (value == null || rule == null) {
+            return value;
+        }
+        String s = value.toString();
+        StringBuilder masked = new StringBuilder();
+        switch (rule.getRuleType()) {
+            case MASK_FULL:
+                return "******";
+            case MASK_MIDDLE:
+                if (s.length() <= 5) {
+                    return "******";
+                }
+                masked.append(s, 0, 3);
+                for (int i = 3, visible = 0; i < s.length() - 2; i++, visible++) {
+                    masked.append(visible % 4 == 0 ? s.charAt(i) : '*');
+                }
+                masked.append(s.substring(s.length() - 2));
+                return masked.toString();
+            case MASK_LEFT:
+                if (s.length() <= 4) {
+                    return value;
+                }
+                masked.append(s.substring(0, 4));
+                for (int i = 4; i < s.length(); i++) {
+                    masked.append('*');
+                }
+                return masked.toString();
+            case MASK_RIGHT:
+                if (s.length() <= 4) {
+                    return value;
+                }
+                for (int i = 0; i < s.length() - 4; i++) {
+                    masked.append('*');
+                }
+                masked.append(s.substring(s.length() - 4));
+                return masked.toString();
+            default:
+                return value;
+        }
+    }
+
+    private static ColumnMetaData column(int ordinal, String name) {
+        return new ColumnMetaData(ordinal, false, true, false, false,
+                DatabaseMetaData.columnNullable, false, 64, name, name, "demo", 64, 0, "t_wide", "def",
+                ColumnMetaData.scalar(Types.VARCHAR, "VARCHAR", ColumnMetaData.Rep.STRING),
+                true, false, false, String.class.getName());
+    }
+
+    @FunctionalInterface
+    private interface Fetch {
+        Frame apply(Frame frame);
+    }
+}
@@ -0,0 +1,184 @@
+package com.whosly.avacita.server.query.mask.mysql;
+
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleIndex;
+import com.whosly.avacita.server.query.mask.util.ValueMaskingStrategy;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta.Frame;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据帧脱敏的压测: 原有实现(每个单元格遍历全部规则) vs 规则索引 + 按语句解析的脱敏计划
+ *
+ * <code>
+ *     1. 结果集 20 列，其中 10 列配置了脱敏规则；规则总数分别为 10、1k、10k，其余规则属于其他表，含少量通配规则。
+ *     2. 共 1M 行，按 bench.frameRows 行一帧(默认 100，与 avatica 默认的 fetch 大小一致)，输出 frames/sec 与 rows/sec。
+ *     3. 原有实现的耗时与规则数成正比，只跑 bench.legacyRows 行后按速率折算。
+ *     4. 每次运行都从原始数据新建帧(脱敏计划原地改写行)，两种实现都包含建帧的开销。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-27 10:20:15
+ * @description
+ */
+public class MaskingFrameBenchmark {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 1_000_000);
+
+    private static final int LEGACY_ROWS = Integer.getInteger("bench.legacyRows", 10_000);
+
+    private static final int FRAME_ROWS = Integer.getInteger("bench.frameRows", 100);
+
+    private static final int COLUMNS = 20;
+
+    private static final int MASKED_COLUMNS = 10;
+
+    private static final String[] TYPES = {"mask_middle", "mask_left", "mask_right", "mask_full"};
+
+    public static void main(String[] args) {
+        List<ColumnMetaData> columns = new ArrayList<>(COLUMNS);
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(column(i, "c" + i));
+        }
+        String[][] source = source(ROWS);
+        int frameCount = (ROWS + FRAME_ROWS - 1) / FRAME_ROWS;
+
+        for (int ruleCount : new int[]{10, 1_000, 10_000}) {
+            List<MaskingRuleConfig> rules = rules(ruleCount);
+            MaskingRuleIndex index = MaskingRuleIndex.build(rules);
+
+            // 预热
+            for (int i = 0; i < 3; i++) {
+                runLegacy(rules, columns, source, Math.min(LEGACY_ROWS, 1_000) / FRAME_ROWS + 1);
+                runIndexed(index, columns, source, frameCount / 5);
+            }
+
+            print("legacy ", ruleCount, runLegacy(rules, columns, source, Math.max(1, LEGACY_ROWS / FRAME_ROWS)));
+            print("indexed", ruleCount, runIndexed(index, columns, source, frameCount));
+        }
+    }
+
+    /**
+     * @return {frames, cost nanos}
+     */
+    private static long[] runLegacy(List<MaskingRuleConfig> rules, List<ColumnMetaData> columns,
+                                    String[][] source, int frameCount) {
+        long st = System.nanoTime();
+        long sink = 0;
+        for (int f = 0; f < frameCount; f++) {
+            Frame frame = fetchFrame(source, f);
+            List<Object> maskedRows = new ArrayList<>();
+            for (Object row : frame.rows) {
+                Object[] dataRow = (Object[]) row;
+                Object[] maskedRow = new Object[dataRow.length];
+                for (int i = 0; i < dataRow.length; i++) {
+                    ColumnMetaData column = columns.get(i);
+                    MaskingRuleConfig rule = rules.stream()
+                            .filter(r -> r.match(column.schemaName, column.tableName, column.columnName))
+                            .findFirst()
+                            .orElse(null);
+                    maskedRow[i] = rule == null ? dataRow[i] : ValueMaskingStrategy.mask(dataRow[i], rule);
+                }
+                maskedRows.add(maskedRow);
+            }
+            sink += new Frame(frame.offset, frame.done, maskedRows).offset;
+        }
+        long cost = System.nanoTime() - st;
+        consume(sink);
+
+        return new long[]{frameCount, cost};
+    }
+
+    private static long[] runIndexed(MaskingRuleIndex index, List<ColumnMetaData> columns,
+                                     String[][] source, int frameCount) {
+        long st = System.nanoTime();
+        long sink = 0;
+        // 与 MaskingJdbcMeta 一致：每个语句解析一次计划，每帧复用
+        MaskingPlan plan = MaskingPlan.resolve(index, columns);
+        for (int f = 0; f < frameCount; f++) {
+            // desensitize 原地改写行，每次都脱敏新取出的帧
+            sink += plan.desensitize(fetchFrame(source, f)).offset;
+        }
+        long cost = System.nanoTime() - st;
+        consume(sink);
+
+        return new long[]{frameCount, cost};
+    }
+
+    private static void print(String name, int ruleCount, long[] result) {
+        double seconds = result[1] / 1_000_000_000D;
+        System.out.printf("%s rules: %6d, frames/sec: %12.1f, rows/sec: %14.1f%n",
+                name, ruleCount, result[0] / seconds, result[0] * FRAME_ROWS / seconds);
+    }
+
+    /**
+     * 前 MASKED_COLUMNS 列配置规则，其余规则属于其他表；每 100 条规则中有 1 条通配规则
+     */
+    private static List<MaskingRuleConfig> rules(int ruleCount) {
+        List<MaskingRuleConfig> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            String type = TYPES[i % TYPES.length];
+            if (i < MASKED_COLUMNS) {
+                rules.add(rule("demo", "t_wide", "c" + i, type));
+            } else if (i % 100 == 0) {
+                rules.add(rule("demo", "t_log_" + i + "_*", "*", type));
+            } else {
+                rules.add(rule("demo", "t_other_" + (i / COLUMNS), "c" + (i % COLUMNS), type));
+            }
+        }
+        return rules;
+    }
+
+    private static MaskingRuleConfig rule(String schema, String table, String column, String type) {
+        return new MaskingRuleConfig(schema, table, column, type, new String[]{"", "TRUE"});
+    }
+
+    /**
+     * 原始数据只生成一次，帧在每次运行时由 fetchFrame 新建
+     */
+    private static String[][] source(int rows) {
+        String[][] source = new String[rows][COLUMNS];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < COLUMNS; i++) {
+                source[r][i] = "1380013" + r % 10_000 + "-" + i;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * 与 JdbcResultSet.frame 一样，每帧新建行数组
+     */
+    private static Frame fetchFrame(String[][] source, int frameIndex) {
+        int frames = (source.length + FRAME_ROWS - 1) / FRAME_ROWS;
+        int offset = (frameIndex % frames) * FRAME_ROWS;
+        int count = Math.min(FRAME_ROWS, source.length - offset);
+        List<Object> rows = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            String[] values = source[offset + r];
+            Object[] row = new Object[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                row[i] = values[i];
+            }
+            rows.add(row);
+        }
+        return new Frame(offset, offset + count >= source.length, rows);
+    }
+
+    private static ColumnMetaData column(int ordinal, String name) {
+        return new ColumnMetaData(ordinal, false, true, false, false,
+                DatabaseMetaData.columnNullable, false, 64, name, name, "demo", 64, 0, "t_wide", "def",
+                ColumnMetaData.scalar(Types.VARCHAR, "VARCHAR", ColumnMetaData.Rep.STRING),
+                true, false, false, String.class.getName());
+    }
+
+    private static void consume(long sink) {
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.whosly.avacita.server.query.mask.rule;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 脱敏规则热加载测试：加载 100k 条规则的配置文件期间，并发查询不会看到空的或只加载了一部分的规则
+ */
+public class MaskingConfigMetaReloadTest {
+    private static final Logger LOG = LoggerFactory.getLogger(MaskingConfigMetaReloadTest.class);
+
+    private static final int RULES = Integer.getInteger("test.rules", 100_000);
+
+    private static final int RELOADS = Integer.getInteger("test.reloads", 10);
+
+    private static final int READERS = 4;
+
+    private static final String[] TYPES = {"mask_full", "mask_left"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReloadNeverExposesPartialRuleSet() throws Exception {
+        Path config = dir.resolve("masking_rules.csv");
+        write(config, 0);
+        MaskingConfigMeta meta = new MaskingConfigMeta(config.toString());
+        // 由测试线程触发加载
+        meta.shutdown();
+        assertEquals(1, meta.getRuleIndex().getVersion());
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong checks = new AtomicLong();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < READERS; t++) {
+            Thread reader = new Thread(() -> {
+                long lastVersion = 0;
+                try {
+                    while (!done.get()) {
+                        MaskingRuleIndex index = meta.getRuleIndex();
+                        assertTrue(index.getVersion() >= lastVersion, "version went backwards");
+                        lastVersion = index.getVersion();
+
+                        // 同一个快照中的规则完整，且都来自同一个配置文件
+                        assertEquals(RULES, index.size());
+                        MaskingRuleType expected = index.getRules().get(0).getRuleType();
+                        assertEquals(expected, index.getRules().get(RULES - 1).getRuleType());
+                        String column = "c" + ThreadLocalRandom.current().nextInt(RULES);
+                        MaskingRuleConfig rule = index.find("demo", "t_big", column);
+                        assertNotNull(rule, column);
+                        assertEquals(expected, rule.getRuleType());
+
+                        assertNotNull(meta.getMatchingRule("demo", "t_big", column), column);
+                        checks.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "reader-" + t);
+            reader.start();
+            readers.add(reader);
+        }
+
+        long st = System.nanoTime();
+        for (int i = 1; i <= RELOADS; i++) {
+            write(config, i);
+            assertTrue(meta.reload());
+        }
+        long cost = System.nanoTime() - st;
+
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.peek());
+        }
+
+        LOG.info("rules: {}, reloads: {}, avg reload: {} ms, reader checks: {}",
+                RULES, RELOADS, cost / RELOADS / 1_000_000, checks.get());
+        assertEquals(1 + RELOADS, meta.getRuleIndex().getVersion());
+        assertTrue(checks.get() > 0);
+    }
+
+    @Test
+    void testUnchangedFileSkippedAndSnapshotPinned() throws Exception {
+        Path config = dir.resolve("masking_rules.csv");
+        write(config, 0);
+        MaskingConfigMeta meta = new MaskingConfigMeta(config.toString());
+        meta.shutdown();
+
+        MaskingRuleIndex pinned = meta.getRuleIndex();
+        assertEquals(1, pinned.getVersion());
+
+        // 修改时间、大小都未变化
+        assertFalse(meta.reload());
+        // 只有修改时间变化，内容相同
+        Files.setLastModifiedTime(config, FileTime.fromMillis(Files.getLastModifiedTime(config).toMillis() + 10_000));
+        assertFalse(meta.reload());
+        assertSame(pinned, meta.getRuleIndex());
+
+        write(config, 1);
+        assertTrue(meta.reload());
+        assertEquals(2, meta.getRuleIndex().getVersion());
+        assertEquals(MaskingRuleType.MASK_LEFT, meta.getMatchingRule("demo", "t_big", "c0").getRuleType());
+
+        // 重新加载前取得的快照不受影响
+        assertEquals(MaskingRuleType.MASK_FULL, pinned.find("demo", "t_big", "c0").getRuleType());
+        assertEquals(RULES, pinned.size());
+    }
+
+    @Test
+    void testInvalidRuleKeepsSnapshot() throws Exception {
+        Path config = dir.resolve("masking_rules.csv");
+        write(config, 0);
+        MaskingConfigMeta meta = new MaskingConfigMeta(config.toString());
+        meta.shutdown();
+        MaskingRuleIndex loaded = meta.getRuleIndex();
+
+        // HASH 未配置密钥：整个文件加载失败，保留原有的规则快照
+        Files.write(config, ("schema,table,column,rule_type,rule_params,enabled\n"
+                + "demo,t_big,c0,mask_left,,TRUE\n"
+                + "demo,t_big,c1,hash,,TRUE\n").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(config, FileTime.fromMillis(1_800_000_000_000L));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, meta::reload);
+        assertTrue(e.getMessage().contains("demo.t_big.c1"), e.getMessage());
+        assertSame(loaded, meta.getRuleIndex());
+        assertEquals(MaskingRuleType.MASK_FULL, meta.getMatchingRule("demo", "t_big", "c0").getRuleType());
+    }
+
+    /**
+     * 先写临时文件再重命名覆盖；第 generation 次写入的规则类型交替变化，修改时间递增
+     */
+    private static void write(Path config, int generation) throws IOException {
+        Path tmp = config.resolveSibling(config.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write("schema,table,column,rule_type,rule_params,enabled,generation-" + generation + "\n");
+            String type = TYPES[generation % TYPES.length];
+            for (int i = 0; i < RULES; i++) {
+                writer.write("demo,t_big,c" + i + "," + type + ",,TRUE\n");
+            }
+        }
+        Files.setLastModifiedTime(tmp, FileTime.fromMillis(1_700_000_000_000L + generation * 2_000L));
+        Files.move(tmp, config, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,187 @@
+package com.whosly.avacita.server.query.mask.rule;
+
+import com.whosly.calcite.schema.Schemas;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * MaskingResultSet 逐行读取的压测: 直接使用驱动的 ResultSet vs MaskingResultSet
+ *
+ * <code>
+ *     1. 驱动为 calcite(ReflectiveSchema 内存表)，默认 1M 行 x 10 列，共 10M 个单元格，每个单元格调用一次 getString。
+ *     2. 分别统计：驱动、原有的每次读取按列名查找脱敏函数、未脱敏、按列标签读取且未脱敏、1 列脱敏。
+ *     3. 每种方式跑 bench.rounds 轮取最快的一轮，只统计遍历耗时，输出 ns/cell 与相对驱动的开销；未脱敏列的目标开销 < 5%。
+ * </code>
+ *
+ * @author fengyang
+ * @date 2025-08-28 09:35:20
+ * @description
+ */
+public class MaskingResultSetBenchmark {
+
+    private static final int CELLS = Integer.getInteger("bench.cells", 10_000_000);
+
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+
+    private static final int COLUMNS = 10;
+
+    private static final String SQL = "select * from bench.t_wide";
+
+    public static void main(String[] args) throws Exception {
+        Row[] rows = new Row[CELLS / COLUMNS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Row(i);
+        }
+
+        Connection connection = Schemas.getConnection();
+        connection.unwrap(CalciteConnection.class).getRootSchema()
+                .add("bench", new ReflectiveSchema(new BenchSchema(rows)));
+
+        Map<String, Function<Object, Object>> masked = new HashMap<>();
+        masked.put("c3", value -> "******");
+
+        double driver = run(connection, "driver", rs -> iterate(rs));
+        double legacy = run(connection, "legacy lookup (unmasked)", rs -> iterateLegacy(rs, Collections.emptyMap()));
+        double unmasked = run(connection, "masking (unmasked)",
+                rs -> iterate(new MaskingResultSet(rs, rs.getMetaData(), Collections.emptyMap())));
+        double label = run(connection, "masking by label (unmasked)",
+                rs -> iterateByLabel(new MaskingResultSet(rs, rs.getMetaData(), Collections.emptyMap())));
+        double oneMasked = run(connection, "masking (1 column masked)",
+                rs -> iterate(new MaskingResultSet(rs, rs.getMetaData(), masked)));
+
+        System.out.printf("overhead vs driver: legacy lookup %.1f%%, unmasked %.1f%%, by label %.1f%%, 1 masked %.1f%%%n",
+                overhead(legacy, driver), overhead(unmasked, driver), overhead(label, driver), overhead(oneMasked, driver));
+        connection.close();
+    }
+
+    /**
+     * @return 最快一轮的 ns/cell
+     */
+    private static double run(Connection connection, String name, Iteration iteration) throws SQLException {
+        double best = Double.MAX_VALUE;
+        // 多跑一轮预热
+        for (int round = 0; round <= ROUNDS; round++) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(SQL)) {
+                long st = System.nanoTime();
+                long sink = iteration.iterate(rs);
+                long cost = System.nanoTime() - st;
+                if (sink == Long.MIN_VALUE) {
+                    System.out.println(sink);
+                }
+                if (round > 0) {
+                    best = Math.min(best, (double) cost / CELLS);
+                }
+            }
+        }
+
+        System.out.printf("%-30s %8.2f ns/cell%n", name, best);
+        return best;
+    }
+
+    private static double overhead(double value, double base) {
+        return (value - base) * 100 / base;
+    }
+
+    private static long iterate(ResultSet rs) throws SQLException {
+        long sink = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= COLUMNS; i++) {
+                String value = rs.getString(i);
+                if (value != null) {
+                    sink += value.length();
+                }
+            }
+        }
+        return sink;
+    }
+
+    private static long iterateByLabel(ResultSet rs) throws SQLException {
+        String[] labels = new String[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            labels[i] = "c" + i;
+        }
+
+        long sink = 0;
+        while (rs.next()) {
+            for (String label : labels) {
+                String value = rs.getString(label);
+                if (value != null) {
+                    sink += value.length();
+                }
+            }
+        }
+        return sink;
+    }
+
+    /**
+     * 原有的 MaskingResultSet：每次读取都查询列名，再查找脱敏函数
+     */
+    private static long iterateLegacy(ResultSet rs, Map<String, Function<Object, Object>> maskingFunctions)
+            throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        long sink = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= COLUMNS; i++) {
+                Object value = rs.getString(i);
+                String columnName = metaData.getColumnName(i);
+                if (value != null && maskingFunctions.containsKey(columnName)) {
+                    value = maskingFunctions.get(columnName).apply(value);
+                }
+                if (value != null) {
+                    sink += ((String) value).length();
+                }
+            }
+        }
+        return sink;
+    }
+
+    @FunctionalInterface
+    private interface Iteration {
+        long iterate(ResultSet rs) throws SQLException;
+    }
+
+    public static class BenchSchema {
+        public final Row[] t_wide;
+
+        public BenchSchema(Row[] rows) {
+            this.t_wide = rows;
+        }
+    }
+
+    public static class Row {
+        public final String c0;
+        public final String c1;
+        public final String c2;
+        public final String c3;
+        public final String c4;
+        public final String c5;
+        public final String c6;
+        public final String c7;
+        public final String c8;
+        public final String c9;
+
+        public Row(int i) {
+            this.c0 = "id-" + i;
+            this.c1 = "name-" + i;
+            this.c2 = "1380013" + i % 10_000;
+            this.c3 = "cert-" + i;
+            this.c4 = "user" + i + "@example.com";
+            this.c5 = "addr-" + i % 1_000;
+            this.c6 = "dept-" + i % 100;
+            this.c7 = "title-" + i % 50;
+            this.c8 = "city-" + i % 300;
+            this.c9 = "memo-" + i % 7;
+        }
+    }
+}
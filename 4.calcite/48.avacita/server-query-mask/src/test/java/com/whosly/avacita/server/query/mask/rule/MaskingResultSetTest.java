@@ -0,0 +1,75 @@
+package com.whosly.avacita.server.query.mask.rule;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 脱敏 ResultSet 测试
+ */
+public class MaskingResultSetTest {
+
+    private static final String[] LABELS = {"Name", "NAME", "tel"};
+
+    private static final Object[] VALUES = {"alice", "bob", "13812345678"};
+
+    @Test
+    void testFindColumnFirstMatchIgnoreCase() throws SQLException {
+        MaskingResultSet rs = new MaskingResultSet(resultSet(), metaData(), Collections.emptyMap());
+
+        assertEquals(1, rs.findColumn("Name"));
+        assertEquals(1, rs.findColumn("NAME"));
+        assertEquals(1, rs.findColumn("name"));
+        assertEquals(3, rs.findColumn("TEL"));
+    }
+
+    @Test
+    void testGetObjectWithTypeMasked() throws SQLException {
+        Map<String, Function<Object, Object>> maskings = new HashMap<>();
+        maskings.put("tel", value -> "138****5678");
+        MaskingResultSet rs = new MaskingResultSet(resultSet(), metaData(), maskings);
+
+        assertEquals("138****5678", rs.getObject(3, String.class));
+        assertEquals("138****5678", rs.getObject("tel", Object.class));
+        assertEquals("138****5678", rs.getObject(3, Collections.emptyMap()));
+        assertThrows(SQLException.class, () -> rs.getObject(3, Long.class));
+
+        // 未脱敏的列直接返回驱动的结果
+        assertEquals("alice", rs.getObject(1, String.class));
+    }
+
+    private static ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(MaskingResultSetTest.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return LABELS.length;
+                        case "getColumnName":
+                            return LABELS[(int) args[0] - 1].toLowerCase();
+                        case "getColumnLabel":
+                            return LABELS[(int) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(MaskingResultSetTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getObject") && args[0] instanceof Integer) {
+                        return VALUES[(int) args[0] - 1];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
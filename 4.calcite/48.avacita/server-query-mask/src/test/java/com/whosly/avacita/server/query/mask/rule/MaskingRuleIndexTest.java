@@ -0,0 +1,62 @@
+package com.whosly.avacita.server.query.mask.rule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 脱敏规则索引测试
+ */
+public class MaskingRuleIndexTest {
+
+    @Test
+    void testExactMatchIgnoreCase() {
+        MaskingRuleIndex index = MaskingRuleIndex.build(Arrays.asList(
+                rule("demo", "t_emp", "tel", "mask_middle"),
+                rule("demo", "t_emp", "email", "mask_left")));
+
+        assertEquals(MaskingRuleType.MASK_MIDDLE, index.find("DEMO", "T_Emp", "TEL").getRuleType());
+        assertEquals(MaskingRuleType.MASK_LEFT, index.find("demo", "t_emp", "email").getRuleType());
+        assertNull(index.find("demo", "t_emp", "name"));
+        assertNull(index.find(null, "t_emp", "tel"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testPatternRules() {
+        MaskingRuleIndex index = MaskingRuleIndex.build(Arrays.asList(
+                rule("*", "t_log_*", "*", "mask_full"),
+                rule("demo", "t_emp", "cert_?o", "mask_right"),
+                rule("demo", "t_emp", "cert_no", "partial")));
+
+        assertEquals(MaskingRuleType.MASK_FULL, index.find("other", "T_LOG_2025", "msg").getRuleType());
+        assertEquals(MaskingRuleType.MASK_FULL, index.find(null, "t_log_", "msg").getRuleType());
+        assertNull(index.find("demo", "t_logs", "msg"));
+
+        // 精确规则优先于通配规则
+        assertEquals(MaskingRuleType.PARTIAL, index.find("demo", "t_emp", "cert_no").getRuleType());
+        assertEquals(MaskingRuleType.MASK_RIGHT, index.find("demo", "t_emp", "cert_Xo").getRuleType());
+
+        // 缓存的结果(包括未匹配)与首次查找一致
+        assertNull(index.find("demo", "t_logs", "msg"));
+        assertEquals(MaskingRuleType.MASK_RIGHT, index.find("demo", "t_emp", "cert_Xo").getRuleType());
+    }
+
+    @Test
+    void testFirstRuleWins() {
+        MaskingRuleIndex index = MaskingRuleIndex.build(Arrays.asList(
+                rule("demo", "t_emp", "tel", "mask_middle"),
+                rule("demo", "t_emp", "tel", "mask_full"),
+                rule("demo", "*", "tel", "mask_left"),
+                rule("demo", "t_*", "tel", "mask_right")));
+
+        assertEquals(MaskingRuleType.MASK_MIDDLE, index.find("demo", "t_emp", "tel").getRuleType());
+        assertEquals(MaskingRuleType.MASK_LEFT, index.find("demo", "t_user", "tel").getRuleType());
+    }
+
+    private static MaskingRuleConfig rule(String schema, String table, String column, String type) {
+        return new MaskingRuleConfig(schema, table, column, type, new String[]{"", "TRUE"});
+    }
+}
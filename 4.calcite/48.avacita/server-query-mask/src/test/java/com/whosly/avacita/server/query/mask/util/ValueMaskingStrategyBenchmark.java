@@ -0,0 +1,86 @@
+package com.whosly.avacita.server.query.mask.util;
+
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 各脱敏策略的压测：输出每个单元格的耗时(ns/cell)与分配的字节数(bytes/cell)
+ *
+ * 与 MaskingPlan 一致，先取得当前线程的缓冲区，再逐个单元格脱敏。分配字节数通过 com.sun.management.ThreadMXBean 统计。
+ *
+ * @author fengyang
+ * @date 2025-08-28 15:10:30
+ * @description
+ */
+public class ValueMaskingStrategyBenchmark {
+
+    private static final int CELLS = Integer.getInteger("bench.cells", 5_000_000);
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * {规则类型, 参数}
+     */
+    private static final String[][] RULES = {
+            {"keep", ""},
+            {"mask_full", ""},
+            {"mask_left", "4"},
+            {"mask_right", "4"},
+            {"mask_middle", "3;4"},
+            {"partial", "1;1"},
+            {"round", "100"},
+            {"hash", "bench-secret"},
+            {"hash", "bench-secret;16"},
+            {"regex", "\\d;*"},
+            {"regex", "(\\d{3})\\d+(\\d{4});$1****$2"},
+    };
+
+    public static void main(String[] args) {
+        String[] strings = new String[1024];
+        Long[] numbers = new Long[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = "1380013" + String.format("%04d", i) + (i % 3 == 0 ? "张三" : "");
+            numbers[i] = 1_000_000L + i * 37L;
+        }
+
+        for (String[] config : RULES) {
+            MaskingRuleConfig rule = new MaskingRuleConfig("demo", "t_emp", "c", config[0], new String[]{config[1], "TRUE"});
+            Object[] values = "round".equals(config[0]) ? numbers : strings;
+
+            // 预热
+            for (int i = 0; i < 3; i++) {
+                run(rule, values, CELLS / 5);
+            }
+
+            double[] result = run(rule, values, CELLS);
+            System.out.printf("%-12s %-32s %8.1f ns/cell, %8.1f bytes/cell%n",
+                    config[0], config[1], result[0], result[1]);
+        }
+    }
+
+    /**
+     * @return {ns/cell, bytes/cell}
+     */
+    private static double[] run(MaskingRuleConfig rule, Object[] values, int cells) {
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREAD_MX.getThreadAllocatedBytes(tid);
+        long st = System.nanoTime();
+
+        ValueMaskingStrategy.MaskBuffer buffer = ValueMaskingStrategy.buffer();
+        int sink = 0;
+        for (int i = 0; i < cells; i++) {
+            Object masked = ValueMaskingStrategy.mask(values[i & (values.length - 1)], rule, buffer);
+            sink += masked.hashCode();
+        }
+
+        long cost = System.nanoTime() - st;
+        long bytes = THREAD_MX.getThreadAllocatedBytes(tid) - bytes0;
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+
+        return new double[]{(double) cost / cells, (double) bytes / cells};
+    }
+}
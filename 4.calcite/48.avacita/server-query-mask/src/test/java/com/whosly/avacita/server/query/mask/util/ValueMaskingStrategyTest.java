@@ -0,0 +1,117 @@
+package com.whosly.avacita.server.query.mask.util;
+
+import com.whosly.avacita.server.query.mask.rule.MaskingRuleConfig;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 各脱敏策略及其参数测试
+ */
+public class ValueMaskingStrategyTest {
+
+    @Test
+    void testDefaults() {
+        assertEquals("******", mask("mask_full", "", "13800138000"));
+        assertEquals("1380***8*00", mask("mask_middle", "", "13800138000"));
+        assertEquals("1380*******", mask("mask_left", "", "13800138000"));
+        assertEquals("*******8000", mask("mask_right", "", "13800138000"));
+        assertEquals("1*********0", mask("partial", "", "13800138000"));
+        assertEquals(12300L, mask("round", "", 12345L));
+        assertEquals("13800138000", mask("keep", "", "13800138000"));
+
+        // 长度不足
+        assertEquals("******", mask("mask_middle", "", "abcde"));
+        assertEquals("abcd", mask("mask_left", "", "abcd"));
+        assertEquals("abcd", mask("mask_right", "", "abcd"));
+        assertNull(mask("mask_full", "", null));
+    }
+
+    @Test
+    void testParams() {
+        assertEquals("#", mask("mask_full", "#", "abcdef"));
+        assertEquals("ab****", mask("mask_left", "2", "abcdef"));
+        assertEquals("***def", mask("mask_right", "3", "abcdef"));
+        assertEquals("ab**ef", mask("mask_middle", "2;2;0", "abcdef"));
+        assertEquals("ab*d*f*", mask("mask_middle", "1;0;2", "abcdefg"));
+        assertEquals("ab***f", mask("partial", "2;1", "abcdef"));
+        assertEquals(12000L, mask("round", "1000", 12345L));
+        assertEquals("******", mask("round", "1000", "not a number"));
+
+        assertThrows(IllegalArgumentException.class, () -> rule("round", "0"));
+        assertThrows(IllegalArgumentException.class, () -> rule("mask_left", "x"));
+        assertThrows(IllegalArgumentException.class, () -> rule("mask_right", "-1"));
+    }
+
+    @Test
+    void testHash() throws Exception {
+        String value = "张三 abc 😀 \uD800x";
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String hmac = hex(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(hmac, mask("hash", "secret", value));
+        assertEquals(hmac.substring(0, 16), mask("hash", "secret;16", value));
+
+        assertEquals(mask("hash", "secret", "13800138000"), mask("hash", "secret", 13800138000L));
+
+        // 未配置密钥(也没有 -Dmask.hash.key)时加载规则失败
+        assertThrows(IllegalArgumentException.class, () -> rule("hash", ""));
+        assertThrows(IllegalArgumentException.class, () -> rule("hash", ";16"));
+
+        // 重新加载的规则与原规则复用同一个 Mac，结果一致
+        assertEquals(hmac, mask("hash", "secret", value));
+
+        // 同一条规则在多个线程中结果一致
+        MaskingRuleConfig rule = rule("hash", "secret");
+        String[] results = new String[4];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < 1_000; n++) {
+                    results[index] = (String) ValueMaskingStrategy.mask(value, rule);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals(hmac, result);
+        }
+    }
+
+    @Test
+    void testRegex() {
+        assertEquals("tel ###-####", mask("regex", "\\d;#", "tel 138-0013"));
+        assertEquals("tel ***-****", mask("regex", "\\d", "tel 138-0013"));
+        assertEquals("138****", mask("regex", "(\\d{3})\\d+;$1****", "13800138000"));
+        assertEquals("a@example.com", mask("regex", "^[^@]+;a", "someone@example.com"));
+        assertEquals("no digits", mask("regex", "\\d;#", "no digits"));
+
+        assertThrows(IllegalArgumentException.class, () -> rule("regex", ""));
+        assertThrows(IllegalArgumentException.class, () -> rule("regex", "(unclosed"));
+    }
+
+    private static Object mask(String type, String params, Object value) {
+        return ValueMaskingStrategy.mask(value, rule(type, params));
+    }
+
+    private static MaskingRuleConfig rule(String type, String params) {
+        return new MaskingRuleConfig("demo", "t_emp", "c", type, new String[]{params, "TRUE"});
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -14,9 +14,20 @@ import java.util.concurrent.*;
 public class AsynConsoleServiceImpl implements IAsynConsoleService {
     private static final Logger logger = LoggerFactory.getLogger(AsynConsoleServiceImpl.class);
 
-    private static final BlockingQueue<FutureCompact> activeQueue = new LinkedBlockingQueue<FutureCompact>(100);
+    /**
+     * 队列容量默认 100， 可通过 -Dasyn.console.queue.capacity 配置
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = Math.max(1, Integer.getInteger("asyn.console.queue.capacity", 100));
+
+    private final BlockingQueue<FutureCompact> activeQueue;
 
     public AsynConsoleServiceImpl() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    AsynConsoleServiceImpl(int queueCapacity) {
+        this.activeQueue = new LinkedBlockingQueue<>(queueCapacity);
+
         final ReaderThread t = new ReaderThread();
         t.setName("demo_Asyn_Console#1");
         t.setDaemon(true);
@@ -28,30 +39,23 @@ public class AsynConsoleServiceImpl implements IAsynConsoleService {
         FutureCompact futureCompact = FutureCompact.builder()
                 .body(reqData)
                 .build();
-        activeQueue.offer(futureCompact);
-        logger.info("Queue offer");
+        if(!activeQueue.offer(futureCompact)){
+            logger.warn("Queue offer rejected, queue is full");
 
-        return CompletableFuture.supplyAsync(() -> {
-            while(futureCompact.getFuture() == null) {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(1L);
-                    logger.info("supplyAsync sleep 1 ms");
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-
-            try {
-                logger.info("submit finish");
-                return futureCompact.getFuture().get();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-            }
-
-            return null;
-        });
+            futureCompact.completeExceptionally(new RejectedExecutionException("console queue is full"));
+            return futureCompact.getFuture();
+        }
+        logger.debug("Queue offer");
+
+        // 由 ReaderThread 消费后直接 complete
+        return futureCompact.getFuture();
+    }
+
+    /**
+     * 队列中等待消费的条数
+     */
+    int queueDepth() {
+        return activeQueue.size();
     }
 
     // ---------------------------------------------------------------------
@@ -68,22 +72,18 @@ public class AsynConsoleServiceImpl implements IAsynConsoleService {
             while (true) {
                 try {
                     FutureCompact futureCompact = activeQueue.take();
-                    logger.info("Queue take");
+                    logger.debug("Queue take");
 
                     WALBlockBody req = futureCompact.getBody();
 
                     if(req != null){
-                        logger.info("completedFuture start");
-
-                        CompletableFuture<WALBlockResult>  ff = CompletableFuture.completedFuture(
-                                WALBlockResult.builder()
-                                        .lsn(66L)
-                                        .build()
-                        );
-
-                        logger.info("completedFuture finish");
+                        futureCompact.complete(WALBlockResult.builder()
+                                .lsn(66L)
+                                .build());
 
-                        futureCompact.setFuture(ff);
+                        logger.debug("completedFuture finish");
+                    } else {
+                        futureCompact.completeExceptionally(new IllegalArgumentException("console 数据为空"));
                     }
                 } catch (InterruptedException e) {
                     e.printStackTrace();
@@ -45,6 +45,11 @@ public class WALBlocksLog implements IByte<WALBlocksLog> {
         return fromBytes(mm);
     }
 
+    /**
+     * 段文件预分配的未写区域以 0 填充。 record 首字节为 crc 的长度， 不会为 0
+     */
+    public static final byte PADDING_MARK = (byte) 0;
+
     /**
      * bytes 转 IByte bean
      */
@@ -54,29 +59,25 @@ public class WALBlocksLog implements IByte<WALBlocksLog> {
 
         List<WALBlockLog> entryList = new ArrayList<>();
         while (mm.hasRemaining()){
-            WALBlockLog blockLog = WALBlockLog.fromBytes(mm);
-
-            entryList.add(blockLog);
-
-            try{
-                // 查看是否为结束标记。 是的话，尝试读取 trailer
-                int position = mm.position();
-                if(mm.hasRemaining()){
-                    byte flag = mm.read();
-                    mm.position(position);
-
-                    if(flag == WALTrailer.NULL_MARK){
-                        trailer = WALTrailer.fromBytes(mm);
-
-                        break;
-                    }
+            // 查看是否为结束标记。 是的话，尝试读取 trailer
+            byte flag = mm.read(mm.position());
+            if(flag == PADDING_MARK){
+                break;
+            }
+            if(flag == WALTrailer.NULL_MARK){
+                try{
+                    trailer = WALTrailer.fromBytes(mm);
+                }catch (Exception ex){
+                    // ignore
+                    ex.printStackTrace();
                 }
 
-                // do nothing
-            }catch (Exception ex){
-                // ignore
-                ex.printStackTrace();
+                break;
             }
+
+            WALBlockLog blockLog = WALBlockLog.fromBytes(mm);
+
+            entryList.add(blockLog);
         }
 
         return new WALBlocksLog(walHeader, entryList, trailer);
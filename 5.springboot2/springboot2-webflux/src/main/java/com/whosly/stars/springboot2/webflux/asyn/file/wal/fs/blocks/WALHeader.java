@@ -16,6 +16,19 @@ public class WALHeader implements IByte<WALHeader> {
      */
     private static final byte[] DEFAULT_FILLER = new byte[9];
 
+    /**
+     * 格式版本 1: record 的 crc 为 CRC4 的十六进制字符串
+     */
+    public static final byte VERSION_1 = (byte) 1;
+
+    /**
+     * 格式版本 2: record 的 crc 为 4 byte 的 CRC32C。
+     * record 的 crc 字段自带算法标记， 读取时不依赖该版本号， 版本 1 的段文件追加写入版本 2 的 record 后仍可读取
+     */
+    public static final byte VERSION_2 = (byte) 2;
+
+    public static final byte CURRENT_VERSION = VERSION_2;
+
     private final byte type;
     private final byte version;
 
@@ -47,12 +60,12 @@ public class WALHeader implements IByte<WALHeader> {
     }
 
     public WALHeader(byte type, Long startLsn, String prev, int length) {
-        this(type, startLsn, prev, length, DateFormatUtil.format(DateFormatType.FORMAT_S));
+        this(type, CURRENT_VERSION, startLsn, prev, length, DateFormatUtil.format(DateFormatType.FORMAT_S));
     }
 
-    private WALHeader(byte type, Long startLsn, String prev, int length, String createAt) {
+    private WALHeader(byte type, byte version, Long startLsn, String prev, int length, String createAt) {
         this.type = type;
-        this.version = (byte) 1;
+        this.version = version;
         this.startLsn = startLsn;
         this.prev = prev;
         this.length = length;
@@ -104,7 +117,7 @@ public class WALHeader implements IByte<WALHeader> {
         byte [] filters = mm.readBytes(DEFAULT_FILLER.length);
         String createAt = mm.readStringWithLength();
 
-        return new WALHeader(type, startLsn, prev, length, createAt);
+        return new WALHeader(type, version, startLsn, prev, length, createAt);
     }
 
 }
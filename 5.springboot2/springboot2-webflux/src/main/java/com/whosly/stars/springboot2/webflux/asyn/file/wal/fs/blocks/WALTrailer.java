@@ -18,10 +18,14 @@ public class WALTrailer implements IByte<WALTrailer> {
      * NULL is sent as 0xfb, is -5
      */
     public static final byte NULL_MARK = (byte) 0xfb;
+    /**
+     * 预留字段长度
+     */
+    public static final int FILLER_LENGTH = 23;
     /**
      * NULL is sent as 0xfb
      */
-    private static final byte[] DEFAULT_FILLER = new byte[23];
+    private static final byte[] DEFAULT_FILLER = new byte[FILLER_LENGTH];
 
     /**
      * 结束标记
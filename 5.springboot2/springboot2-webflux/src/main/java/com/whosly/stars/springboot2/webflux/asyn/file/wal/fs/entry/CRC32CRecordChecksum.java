@@ -0,0 +1,51 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
+
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C(Castagnoli)， 由 JDK 实现， 在支持 SSE4.2/ARMv8 crc 指令的平台上为硬件加速。
+ *
+ * crc 字段: [标记 0xc2][crc 4 byte， 低位在前]， 固定 5 byte
+ */
+class CRC32CRecordChecksum implements IRecordChecksum {
+
+    /**
+     * 不能与 0 填充、trailer 的 0xfb、旧版本 crc 字符串的长度(1~4)冲突
+     */
+    static final byte MARK = (byte) 0xc2;
+
+    private static final int FIELD_LENGTH = 1 + 4;
+
+    @Override
+    public boolean accept(byte first) {
+        return first == MARK;
+    }
+
+    @Override
+    public int fieldLength(byte first) {
+        return FIELD_LENGTH;
+    }
+
+    @Override
+    public Checksum newChecksum() {
+        return new CRC32C();
+    }
+
+    @Override
+    public void write(BytesBuffers buffers, int crc) {
+        buffers.put(MARK);
+        buffers.writeInt(crc);
+    }
+
+    @Override
+    public int read(BytesMessage mm) {
+        mm.move(1);
+
+        return mm.readInt();
+    }
+
+}
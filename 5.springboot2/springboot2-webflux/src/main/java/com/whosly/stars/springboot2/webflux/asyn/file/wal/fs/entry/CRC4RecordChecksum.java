@@ -0,0 +1,87 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
+
+import java.util.zip.Checksum;
+
+/**
+ * 旧版本(WAL 格式版本 1)的校验: {@link CRC4#getCRC(byte[])} 的十六进制字符串。
+ *
+ * crc 字段: [字符串长度 1~4][crc 十六进制字符串]。 只用于校验已有的数据， 新数据不再使用。
+ */
+class CRC4RecordChecksum implements IRecordChecksum {
+
+    /**
+     * 16 位的 crc 转为十六进制最多 4 个字符
+     */
+    private static final int MAX_HEX_LENGTH = 4;
+
+    @Override
+    public boolean accept(byte first) {
+        return first >= 1 && first <= MAX_HEX_LENGTH;
+    }
+
+    @Override
+    public int fieldLength(byte first) {
+        return 1 + first;
+    }
+
+    @Override
+    public Checksum newChecksum() {
+        return new CRC16Modbus();
+    }
+
+    @Override
+    public void write(BytesBuffers buffers, int crc) {
+        buffers.writeWithLength(Integer.toHexString(crc));
+    }
+
+    @Override
+    public int read(BytesMessage mm) {
+        String crc = mm.readStringWithLength();
+
+        return Integer.parseInt(crc, 16);
+    }
+
+    /**
+     * 与 {@link CRC4#getCRC(byte[])} 逐位一致的增量实现， 包括其对负数 byte 的符号扩展
+     */
+    static class CRC16Modbus implements Checksum {
+        private static final int POLYNOMIAL = 0x0000a001;
+
+        private int crc = 0x0000ffff;
+
+        @Override
+        public void update(int b) {
+            crc ^= (int) (byte) b;
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 0x00000001) == 1) {
+                    crc >>= 1;
+                    crc ^= POLYNOMIAL;
+                } else {
+                    crc >>= 1;
+                }
+            }
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                update(b[i]);
+            }
+        }
+
+        @Override
+        public long getValue() {
+            // 高低位转换
+            return ((crc & 0x0000FF00) >> 8) | ((crc & 0x000000FF) << 8);
+        }
+
+        @Override
+        public void reset() {
+            crc = 0x0000ffff;
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
+
+import java.util.zip.Checksum;
+
+/**
+ * record 的校验算法。
+ *
+ * crc 字段位于 record 最前面， 其首字节标识所用的算法， 校验范围为 crc 字段之后的 header 与整个数据体，
+ * 在文件中是连续的一段， 可以直接在读取的数组或 ByteBuffer 上计算， 不需要拷贝。
+ */
+public interface IRecordChecksum {
+
+    /**
+     * 按首字节判断是否为该算法写入的 crc 字段
+     */
+    boolean accept(byte first);
+
+    /**
+     * crc 字段(含首字节)占用的字节数
+     *
+     * @param first crc 字段的首字节
+     */
+    int fieldLength(byte first);
+
+    /**
+     * 新建一个计算实例， 非线程安全
+     */
+    Checksum newChecksum();
+
+    /**
+     * 写入 crc 字段
+     */
+    void write(BytesBuffers buffers, int crc);
+
+    /**
+     * 读取 crc 字段， mm 的当前位置为 crc 字段的首字节
+     */
+    int read(BytesMessage mm);
+
+}
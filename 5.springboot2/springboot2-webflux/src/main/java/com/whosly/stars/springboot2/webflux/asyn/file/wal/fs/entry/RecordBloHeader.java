@@ -2,19 +2,31 @@ package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
 
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatType;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatUtil;
-import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.SumUtil;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
 /**
- * 固定长度 33
+ * crc 字段 5 + 固定长度 29
+ *
+ * crc 字段的格式由 {@link IRecordChecksum} 决定， 旧版本为 CRC4 的十六进制字符串， 当前为 4 byte 的 CRC32C
  */
 @ToString
 @Getter
 public class RecordBloHeader implements IByte<RecordBloHeader> {
-    private final String crc;
+    /**
+     * 校验范围中 crc 字段之后的 header 固定部分: type 1, lsn 8, length 4, writeAt 的长度 1
+     */
+    private static final int CHECKED_HEADER_FIXED = 1 + 8 + 4 + 1;
+
+    @ToString.Exclude
+    private final IRecordChecksum checksum;
+
+    private final int crc;
 
     /**
      * 1个字节， 1字节（byte）占8位（bit），2byte占16bit，4byte占32bit，8byte就是64bit
@@ -55,32 +67,35 @@ public class RecordBloHeader implements IByte<RecordBloHeader> {
         this.length = bodyBytes.length;
         this.writeAt = DateFormatUtil.format(DateFormatType.FORMAT_S);
 
-        byte[] crcBytes = getCrcBytes(type, lsn, length, writeAt, bodyBytes);
-        String crc = CRC4.getCRC(crcBytes);
-        this.crc = crc;
+        this.checksum = RecordChecksums.CURRENT;
+
+        // 分两段计算， 不拼接 header 与数据体
+        Checksum c = checksum.newChecksum();
+        byte[] checkedHeader = getCheckedHeaderBytes();
+        c.update(checkedHeader, 0, checkedHeader.length);
+        c.update(bodyBytes, 0, bodyBytes.length);
+        this.crc = (int) c.getValue();
     }
 
-    private RecordBloHeader(String crc,
+    private RecordBloHeader(IRecordChecksum checksum, int crc,
                             byte type, Long lsn, int length, String writeAt) {
         this.type = type;
         this.lsn = lsn;
         this.length = length;
         this.writeAt = writeAt;
 
+        this.checksum = checksum;
         this.crc = crc;
     }
 
     @Override
     public byte[] toBytes() {
-        // 固定长度 31 + 2(crc len and writeAt len)
-        int capacity = getSum(this.crc.length() + 1, 1, 8, 4, writeAt.length() + 1);
+        byte[] checkedHeader = getCheckedHeaderBytes();
 
-        BytesBuffers instance = BytesBuffers.build(capacity, false);
-        instance.writeWithLength(this.crc);
-        instance.put(this.type);
-        instance.writeLong(lsn);
-        instance.writeInt(length);
-        instance.writeWithLength(writeAt);
+        // crc 字段最长 5
+        BytesBuffers instance = BytesBuffers.build(getSum(5, checkedHeader.length));
+        checksum.write(instance, crc);
+        instance.put(checkedHeader);
 
         return instance.array();
     }
@@ -98,29 +113,67 @@ public class RecordBloHeader implements IByte<RecordBloHeader> {
      * bytes 转 IByte bean
      */
     public static final RecordBloHeader fromBytes(BytesMessage mm) {
-        int position = mm.position();
+        IRecordChecksum checksum = RecordChecksums.of(mm.read(mm.position()));
+        if(checksum == null){
+            throw new IllegalStateException("unknown record checksum mark: " + mm.read(mm.position()));
+        }
 
-        String crc = mm.readStringWithLength();
+        int crc = checksum.read(mm);
         byte type = mm.read();
         Long lsn = mm.readLong();
         Integer bodyLength = mm.readInt();
         String writeAt = mm.readStringWithLength();
 
-        return new RecordBloHeader(crc, type, lsn, bodyLength, writeAt);
+        return new RecordBloHeader(checksum, crc, type, lsn, bodyLength, writeAt);
+    }
+
+    /**
+     * 在原数组上校验 record 的 crc
+     *
+     * @param bytes record 所在的数组
+     * @param recordOffset record(crc 字段的首字节)在数组中的位置
+     */
+    public boolean verify(byte[] bytes, int recordOffset) {
+        return verify(ByteBuffer.wrap(bytes), recordOffset);
     }
 
-    private static final byte[] getCrcBytes(byte type, long lsn, int bodyLen, String writeAt, byte[] bodyBytes){
-        // 计算 crc,  byte type 1, lsn 8, body-length length, writeAt
-        int capacity = SumUtil.getSum(1, 8, 4, writeAt.length() + 1, bodyBytes.length);
-        BytesBuffers instance = BytesBuffers.build(capacity);
+    /**
+     * 在原 ByteBuffer(heap 或 direct/mmap)上校验 record 的 crc， 不改变 buffer 的 position/limit
+     *
+     * @param buffer record 所在的 buffer
+     * @param recordOffset record(crc 字段的首字节)在 buffer 中的绝对位置
+     */
+    public boolean verify(ByteBuffer buffer, int recordOffset) {
+        if(recordOffset < 0 || recordOffset >= buffer.capacity()){
+            return false;
+        }
+
+        int checkedOffset = recordOffset + checksum.fieldLength(buffer.get(recordOffset));
+        int checkedLength = CHECKED_HEADER_FIXED + writeAt.length() + length;
+        if(checkedOffset + checkedLength > buffer.capacity()){
+            return false;
+        }
+
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(checkedOffset + checkedLength);
+        checked.position(checkedOffset);
+
+        Checksum c = checksum.newChecksum();
+        c.update(checked);
+
+        return (int) c.getValue() == crc;
+    }
+
+    /**
+     * 参与校验的 header 部分， 与写入文件的顺序一致: type, lsn, body-length, writeAt
+     */
+    private byte[] getCheckedHeaderBytes(){
+        BytesBuffers instance = BytesBuffers.build(CHECKED_HEADER_FIXED + writeAt.length(), false);
         instance.put(type);
         instance.writeLong(lsn);
-        instance.writeInt(bodyLen);
+        instance.writeInt(length);
         instance.writeWithLength(writeAt);
-        instance.put(bodyBytes);
-
-        byte[] crcBytes = instance.array();
 
-        return crcBytes;
+        return instance.array();
     }
 }
@@ -0,0 +1,43 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+/**
+ * 已知的 record 校验算法
+ */
+public final class RecordChecksums {
+
+    /**
+     * WAL 格式版本 1
+     */
+    public static final IRecordChecksum CRC4 = new CRC4RecordChecksum();
+
+    /**
+     * WAL 格式版本 2
+     */
+    public static final IRecordChecksum CRC32C = new CRC32CRecordChecksum();
+
+    /**
+     * 新写入的 record 使用的算法
+     */
+    public static final IRecordChecksum CURRENT = CRC32C;
+
+    private static final IRecordChecksum[] ALL = {CRC32C, CRC4};
+
+    private RecordChecksums() {
+    }
+
+    /**
+     * 按 crc 字段的首字节找到对应的算法
+     *
+     * @return null 时表示无法识别， 数据已损坏
+     */
+    public static IRecordChecksum of(byte first) {
+        for (IRecordChecksum checksum : ALL) {
+            if (checksum.accept(first)) {
+                return checksum;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -8,18 +8,19 @@ import com.whosly.stars.springboot2.webflux.asyn.file.wal.rs.FutureCompact;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.IFileHandler;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.IQueueManager;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALHeader;
-import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer.FileWriter;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read.WALScanResult;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read.WALSegmentReader;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer.IFileWriter;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer.SegmentWriter;
 import lombok.Getter;
-import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
     private static final Logger logger = LoggerFactory.getLogger(FileHandlerImpl.class);
@@ -45,9 +46,19 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
     private static final Long M4_SIEZE_BYTE = 4L * M1_SIEZE_BYTE;
 
     /**
-     * 文件最大 4MB
+     * 文件最大 64MB
+     */
+    private static final Long M64_SIEZE_BYTE = 16L * M4_SIEZE_BYTE;
+
+    /**
+     * 段文件大小， 打开时预分配。 可通过 -Dwal.segment.sizeBytes 配置， 默认 64MB
      */
-    private static final Long MAX_SIEZE_BYTE = M1_SIEZE_BYTE;
+    private static final Long MAX_SIEZE_BYTE = Long.getLong("wal.segment.sizeBytes", M64_SIEZE_BYTE);
+
+    /**
+     * 段尾为 trailer 预留的空间
+     */
+    private static final int TRAILER_RESERVE_BYTE = 50;
 
     /**
      * 当前实例锁
@@ -70,16 +81,14 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
     private String fileName;
 
     /**
-     * 当前最新的未分配的 lsn的值
+     * 没有预留 lsn。 lsn 均为正数
      */
-    @Setter
-    private Long nextLSN;
+    private static final long NO_LSN = 0L;
 
     /**
-     * 当前已经分配的 lsn的值
+     * 当前最新的未分配的 lsn的值， 新文件 header 的 startLsn 预留给下一条 record
      */
-    @Setter
-    private Long lasterLSN;
+    private final AtomicLong nextLSN = new AtomicLong(NO_LSN);
 
     /**
      * 句柄是否关闭
@@ -109,11 +118,11 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
 
         this.fileName = compatibilityAction.getFileName();
         this.file = new File(WALCompatibilityAction.getFilePath(compatibilityAction));
-        this.writer = new FileWriter(file);
+        long openPosition = getOpenPosition(compatibilityAction, file);
+        this.writer = new SegmentWriter(file, MAX_SIEZE_BYTE, openPosition);
 
         // write header
-        if(compatibilityAction.getModel().isOpenAndCreate()
-                || compatibilityAction.getModel().getOpenSize() == 0) {
+        if(compatibilityAction.getModel().isOpenAndCreate() || openPosition == 0) {
             setNextLSN(LSNId.getN());
 
             WALHeader walHeader = new WALHeader((byte)1, getNextLSN(), prevFileName);
@@ -131,29 +140,49 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
         this.isClosed = false;
     }
 
-    private Long getLasterLSN() {
-        return lasterLSN;
+    /**
+     * 打开时的写入位置。 已有文件可能是预分配后未正常关闭的， 以实际数据长度为准
+     */
+    private static long getOpenPosition(WALCompatibilityAction compatibilityAction, File file) throws IOException {
+        if(compatibilityAction.getModel().getOpenSize() == 0){
+            return 0;
+        }
+
+        // 流式扫描到最后一条完整且校验通过的 record
+        WALScanResult scanResult = WALSegmentReader.scan(file);
+        if(!scanResult.getEndReason().isClean()){
+            logger.warn("wal文件 {} 尾部数据不完整, 从 {} 处继续写入, 扫描结果:{}",
+                    file, scanResult.getValidLength(), scanResult);
+        }
+
+        // 重启后 lsn 从 CURRENT 指向的文件中最后一个 lsn 之后继续分配
+        if(scanResult.getLastLsn() != null){
+            LSNId.resumeFrom(scanResult.getLastLsn());
+        } else if(scanResult.getStartLsn() != null){
+            LSNId.resumeFrom(scanResult.getStartLsn());
+        }
+
+        return scanResult.getValidLength();
     }
 
-    private Long getNextLSN() {
-        return nextLSN;
+    private long getNextLSN() {
+        return nextLSN.get();
     }
 
-    public Long getLSN() {
-        if(getNextLSN() != null){
-            synchronized (this){
-                if(getNextLSN() != null){
-                    setLasterLSN(getNextLSN());
-                    setNextLSN(null);
+    private void setNextLSN(long lsn) {
+        nextLSN.set(lsn);
+    }
 
-                    return getLasterLSN();
-                }
+    public long getLSN() {
+        // 先读再交换， 没有预留值时不写共享变量
+        if(getNextLSN() != NO_LSN){
+            long reserved = nextLSN.getAndSet(NO_LSN);
+            if(reserved != NO_LSN){
+                return reserved;
             }
         }
 
-        // nextLSN == null
-        setLasterLSN(LSNId.getN());
-        return getLasterLSN();
+        return LSNId.getN();
     }
 
     @Override
@@ -163,29 +192,17 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
                 .body(walBlockBody)
                 .lsnSeq(getLSN())
                 .build();
-        queueManager.offer(futureCompact);
-        logger.debug("Queue offer, lsn:{}.", futureCompact.getLsnSeq());
-
-        return CompletableFuture.supplyAsync(() -> {
-            while(futureCompact.getFuture() == null) {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(1L);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+        if(!queueManager.offer(futureCompact)){
+            logger.warn("Queue offer rejected, queue is full, lsn:{}.", futureCompact.getLsnSeq());
 
-            try {
-                logger.debug("submit finish, waiting");
-                return futureCompact.getFuture().get();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-            }
+            futureCompact.completeExceptionally(new RejectedExecutionException(
+                    "wal queue is full, lsn:" + futureCompact.getLsnSeq()));
+            return futureCompact.getFuture();
+        }
+        logger.debug("Queue offer, lsn:{}.", futureCompact.getLsnSeq());
 
-            return null;
-        });
+        // 由 wal 写线程落盘后直接 complete
+        return futureCompact.getFuture();
     }
 
     @Override
@@ -200,20 +217,25 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
         return -1L;
     }
 
+    @Override
+    public void sync() throws IOException {
+        IoManager.IOTimeBean timeBean = ioManager.startIOTime();
+        writer.sync();
+        timeBean.end();
+    }
+
     /**
      * 生成新文件
      */
     private boolean retryMoveNewFile(int addLen) throws IOException {
-        // 文件可能被误删除。 因此需要判断 file.exists()
-        // 判断当前文件存在与否和大小
-        long len = file.length();
-        if(file.exists() & (len + addLen) < MAX_SIEZE_BYTE - 50){
+        // 写入位置在内存中维护， 不再逐条 stat 文件。 文件被误删除由 check() 发现
+        if(writer.position() + addLen <= MAX_SIEZE_BYTE - TRAILER_RESERVE_BYTE){
             // do nothing
             return false;
         }
 
         synchronized (lockObj){
-            if(file.exists() & (file.length() + addLen) <= MAX_SIEZE_BYTE - 50){
+            if(writer.position() + addLen <= MAX_SIEZE_BYTE - TRAILER_RESERVE_BYTE){
                 // do nothing
                 return false;
             }
@@ -222,10 +244,10 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
             // 产生新的文件名
             String newFileName = WALName.getName(tableId);
 
-            if(file.exists()){
-                // 当前文件追加结束标记
-                endMark(newFileName);
-            }
+            // 当前文件追加结束标记
+            endMark(newFileName);
+            // 旧文件截断为实际长度、落盘, 并释放旧文件流
+            writer.close();
 
             // 会尝试生成新文件
             WALCompatibilityAction compatibilityAction = WALCompatibilityAction.of(
@@ -237,15 +259,15 @@ public final class FileHandlerImpl implements IFileHandler, IFileHandlerOpera {
             // 写入头部数据，绑定在当前句柄下
             this.fileName = compatibilityAction.getFileName();
             this.file = new File(WALCompatibilityAction.getFilePath(compatibilityAction));
-            this.writer = new FileWriter(file);
+            long openPosition = getOpenPosition(compatibilityAction, file);
+            this.writer = new SegmentWriter(file, MAX_SIEZE_BYTE, openPosition);
 
             if(compatibilityAction.getModel().isOpenAndCreate()){
                 // 重新写入 current 文件
                 currentManager.writeContext(compatibilityAction.getFileName());
             }
             // write header
-            if(compatibilityAction.getModel().isOpenAndCreate()
-                    || compatibilityAction.getModel().getOpenSize() == 0) {
+            if(compatibilityAction.getModel().isOpenAndCreate() || openPosition == 0) {
 
                 setNextLSN(LSNId.getN());
 
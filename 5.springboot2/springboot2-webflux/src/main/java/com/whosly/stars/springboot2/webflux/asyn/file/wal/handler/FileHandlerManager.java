@@ -8,10 +8,13 @@ import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.IoManager;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.rs.FutureCompact;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.IFileHandler;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.IQueueManager;
-import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.QueueManagerImpl;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.OverflowPolicy;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.QueueMetrics;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.queue.WALQueueManager;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.block.WALBlockLog;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordBloEntry;
 import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordHeaderBuilder;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -20,10 +23,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -37,10 +41,40 @@ public class FileHandlerManager {
 
     private static final Map<Long, IFileHandlerOpera> HANDLER_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * group commit 单批次最大条数, 可通过 -Dwal.group.commit.maxBatchSize 配置
+     */
+    private static final int MAX_BATCH_SIZE =
+            Math.max(1, Integer.getInteger("wal.group.commit.maxBatchSize", 256));
+
+    /**
+     * group commit 最大攒批等待时间(微秒), 可通过 -Dwal.group.commit.maxLingerMicros 配置。 0 为不等待
+     *
+     * 默认 50 微秒， 保证单条提交的交接延迟低于 100 微秒; 调大可以攒出更大的批次， 但每次提交的延迟也相应增加
+     */
+    private static final long MAX_LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Math.max(0L, Long.getLong("wal.group.commit.maxLingerMicros", 50L)));
+
+    /**
+     * 批次合并 buffer 的初始大小, 不够时自动扩容
+     */
+    private static final int GROUP_COMMIT_INIT_CAPACITY = 64 * 1024;
+
+    /**
+     * wal 队列容量, 可通过 -Dwal.queue.capacity 配置
+     */
+    private static final int QUEUE_CAPACITY = Math.max(2, Integer.getInteger("wal.queue.capacity", 4096));
+
+    /**
+     * wal 队列满时的处理策略(BLOCK/FAIL_FAST/SPILL), 可通过 -Dwal.queue.overflowPolicy 配置
+     */
+    private static final OverflowPolicy QUEUE_OVERFLOW_POLICY =
+            OverflowPolicy.of(System.getProperty("wal.queue.overflowPolicy", OverflowPolicy.BLOCK.name()));
+
     private static final IQueueManager<FutureCompact> queueManager;
 
     static {
-        queueManager = new QueueManagerImpl();
+        queueManager = new WALQueueManager(QUEUE_CAPACITY, QUEUE_OVERFLOW_POLICY);
 
         ReaderThread t = new ReaderThread();
         t.setName("wal-M#1");
@@ -114,6 +148,13 @@ public class FileHandlerManager {
         }
     }
 
+    /**
+     * wal 队列指标
+     */
+    public static final QueueMetrics getQueueMetrics(){
+        return queueManager.metrics();
+    }
+
     public static final void close(Long tableId){
         if(containsKey(tableId)){
             synchronized (LOCK_OBJ){
@@ -157,33 +198,65 @@ public class FileHandlerManager {
     // ---------------------------------------------------------------------
     //                            ReaderThread
     // ---------------------------------------------------------------------
-    private static WALBlockResult compactEntry(FutureCompact futureCompact){
-        IFileHandlerOpera fileHandler = futureCompact.getFileHandler();
-
+    private static byte[] compactEntry(FutureCompact futureCompact){
         WALBlockBody body = futureCompact.getBody();
-        Long lsnSeq = futureCompact.getLsnSeq();
+        long lsnSeq = futureCompact.getLsnSeq();
 
-        WALBlockResult rs = WALBlockResult.builder()
-                .lsn(lsnSeq)
-                .build();
-
-        try {
-            WALBlockLog walBlockLog = new WALBlockLog(
-                    RecordHeaderBuilder.build(1, lsnSeq),
-                    new RecordBloEntry(body.getProcessId(), body.getTid(), body.getSql())
-            );
+        WALBlockLog walBlockLog = new WALBlockLog(
+                RecordHeaderBuilder.build(1, lsnSeq),
+                new RecordBloEntry(body.getProcessId(), body.getTid(), body.getSql())
+        );
 
-            byte[] fileBytes = walBlockLog.toBytes();
+        return walBlockLog.toBytes();
+    }
 
-            fileHandler.appendFile(fileBytes);
-        } catch (IOException e) {
-            // TODO 写文件失败，咋搞
-            e.printStackTrace();
+    /**
+     * group commit: 同一批次内的数据按句柄合并为一次 append + 一次 fsync，
+     * 落盘成功后再统一完成各自的 future
+     */
+    private static void groupCommit(List<FutureCompact> batch){
+        // key: 文件句柄， value: 该句柄在本批次内的数据
+        Map<IFileHandlerOpera, List<FutureCompact>> groups = new LinkedHashMap<>();
+        for (FutureCompact futureCompact : batch) {
+            groups.computeIfAbsent(futureCompact.getFileHandler(), k -> new ArrayList<>())
+                    .add(futureCompact);
         }
 
-        return rs;
+        for (Map.Entry<IFileHandlerOpera, List<FutureCompact>> entry : groups.entrySet()) {
+            IFileHandlerOpera fileHandler = entry.getKey();
+            List<FutureCompact> compacts = entry.getValue();
+
+            try {
+                BytesBuffers instance = BytesBuffers.build(GROUP_COMMIT_INIT_CAPACITY);
+                for (FutureCompact futureCompact : compacts) {
+                    instance.put(compactEntry(futureCompact));
+                }
+
+                fileHandler.appendFile(instance.array());
+                fileHandler.sync();
+
+                for (FutureCompact futureCompact : compacts) {
+                    futureCompact.complete(WALBlockResult.builder()
+                            .lsn(futureCompact.getLsnSeq())
+                            .build());
+                }
+            } catch (Exception e) {
+                logger.error("group commit 写文件失败， 本批次 {} 条数据全部失败。", compacts.size(), e);
+
+                for (FutureCompact futureCompact : compacts) {
+                    futureCompact.completeExceptionally(e);
+                }
+            }
+        }
     }
 
+    /**
+     * 没有数据的条目不写入文件， 直接以异常结束其 future， 避免调用方一直等待
+     */
+    private static void skip(FutureCompact futureCompact){
+        futureCompact.completeExceptionally(
+                new IllegalArgumentException("wal 数据为空， lsn: " + futureCompact.getLsnSeq()));
+    }
 
     // ---------------------------------------------------------------------
     //                            ReaderThread
@@ -195,17 +268,37 @@ public class FileHandlerManager {
         // ---------------------------------------------------------------------
         @Override
         public void run() {
+            List<FutureCompact> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
             while (true) {
                 try {
                     FutureCompact futureCompact = queueManager.take();
-                    if(futureCompact == null || futureCompact.getBody() == null){
+                    if(futureCompact == null){
                         continue;
                     }
+                    if(futureCompact.getBody() == null){
+                        skip(futureCompact);
+                        continue;
+                    }
+                    batch.add(futureCompact);
+
+                    // 在 linger 时间内继续攒批， 直到达到批次上限
+                    long deadline = System.nanoTime() + MAX_LINGER_NANOS;
+                    while (batch.size() < MAX_BATCH_SIZE) {
+                        long waitNanos = deadline - System.nanoTime();
+                        FutureCompact next = waitNanos > 0 ?
+                                queueManager.poll(waitNanos, TimeUnit.NANOSECONDS) : queueManager.poll();
+                        if(next == null){
+                            break;
+                        }
+                        if(next.getBody() != null){
+                            batch.add(next);
+                        } else {
+                            skip(next);
+                        }
+                    }
 
-                    WALBlockResult rs = compactEntry(futureCompact);
-
-                    CompletableFuture<WALBlockResult> ff = CompletableFuture.completedFuture(rs);
-                    futureCompact.setFuture(ff);
+                    groupCommit(batch);
                 } catch (InterruptedException e) {
                     // TODO
                     e.printStackTrace();
@@ -215,6 +308,8 @@ public class FileHandlerManager {
                     } catch (InterruptedException ex) {
                         ex.printStackTrace();
                     }
+                } finally {
+                    batch.clear();
                 }
             } // end while alive
         }
@@ -17,6 +17,11 @@ public interface IFileHandlerOpera extends IFileHandler {
      */
     Long appendFile(byte[] val) throws IOException;
 
+    /**
+     * 将已追加的内容落盘(fsync)。 group commit 时每个批次只调用一次
+     */
+    void sync() throws IOException;
+
 
     // ----------------------------------------------------
     //                   manager
@@ -1,27 +1,43 @@
 package com.whosly.stars.springboot2.webflux.asyn.file.wal.handler;
 
-import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatType;
-import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.concurrent.ThreadLocalRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * lsn 生成器， 无锁、单调递增。
+ *
+ * 保持原有的十进制可读格式: yyMMddHHmmss(12 位) + 7 位序号， 例如 22_1231_235959_0000001L。
+ * 不再格式化字符串: 秒级部分按秒缓存为 long， 每次分配只有一次原子自增(同一秒内)或 CAS(跨秒时)。
+ *
+ * 同一秒内超过 1000 万个时序号会进位到后面的秒， 仍然保证递增与唯一。
+ * 时钟回拨时继续在最后分配的 lsn 上自增。
+ */
 class LSNId {
-    private static Logger log = LoggerFactory.getLogger(LSNId.class);
-    private static final AtomicLong A = new AtomicLong(0);
+    /**
+     * 7 位序号
+     */
+    private static final long SEQ_RADIX = 10_000_000L;
+
+    /**
+     * 最后分配的 lsn
+     */
+    private static final AtomicLong LAST = new AtomicLong(0);
+
+    /**
+     * 当前秒对应的 lsn 起始值， 每秒只计算一次
+     */
+    private static volatile SecondBase secondBase = new SecondBase(Long.MIN_VALUE, 0);
 
     /**
-     * Long
+     * long
      *
      * 22_1231_235959_666666L
      */
-    public static Long getN() {
-        Long lsn_ = 22_1231_235959_9999999L;
-        String lsn = get();
-
-        return Long.parseLong(lsn);
+    public static long getN() {
+        return next();
     }
 
     /**
@@ -30,20 +46,76 @@ class LSNId {
      * 22_1231_235959_9999999L
      */
     public static String get() {
-        try {
-            long seqId = A.getAndIncrement();
+        return String.valueOf(next());
+    }
+
+    /**
+     * 分配下一个 lsn， 不产生对象
+     */
+    public static long next() {
+        long base = base(System.currentTimeMillis() / 1000);
 
-            return format(seqId);
-        } catch (Throwable t) {
-            t.printStackTrace();
+        while (true) {
+            long last = LAST.get();
+            if (last >= base) {
+                // 同一秒内， LAST 只增不减， 自增即可保证大于 base
+                return LAST.incrementAndGet();
+            }
 
-            return DateFormatUtil.format(DateFormatType.SHORT_YEAR_FORMAT_S)
-                    + String.format("%07d", ThreadLocalRandom.current().nextInt(10000000));
+            // 进入新的一秒， 从该秒的第 0 个序号开始
+            if (LAST.compareAndSet(last, base)) {
+                return base;
+            }
         }
     }
 
-    private static String format(long seqId) {
-        return DateFormatUtil.format(DateFormatType.SHORT_YEAR_FORMAT_S)
-                + String.format("%07d", seqId % 10000000);
+    /**
+     * 重启后从已持久化的 lsn 继续分配， 保证不会分配出比它小的 lsn
+     */
+    public static void resumeFrom(long lsn) {
+        LAST.accumulateAndGet(lsn, Math::max);
+    }
+
+    /**
+     * 清空已分配的状态， 仅供测试使用
+     */
+    static void reset() {
+        LAST.set(0);
+        secondBase = new SecondBase(Long.MIN_VALUE, 0);
+    }
+
+    private static long base(long epochSecond) {
+        SecondBase current = secondBase;
+        if (current.epochSecond != epochSecond) {
+            current = new SecondBase(epochSecond, toDecimal(epochSecond) * SEQ_RADIX);
+            secondBase = current;
+        }
+
+        return current.base;
+    }
+
+    /**
+     * epoch 秒转为十进制的 yyMMddHHmmss
+     */
+    static long toDecimal(long epochSecond) {
+        ZoneOffset offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(epochSecond));
+        LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, offset);
+
+        return (time.getYear() % 100) * 10_000_000_000L
+                + time.getMonthValue() * 100_000_000L
+                + time.getDayOfMonth() * 1_000_000L
+                + time.getHour() * 10_000L
+                + time.getMinute() * 100L
+                + time.getSecond();
+    }
+
+    private static final class SecondBase {
+        private final long epochSecond;
+        private final long base;
+
+        private SecondBase(long epochSecond, long base) {
+            this.epochSecond = epochSecond;
+            this.base = base;
+        }
     }
 }
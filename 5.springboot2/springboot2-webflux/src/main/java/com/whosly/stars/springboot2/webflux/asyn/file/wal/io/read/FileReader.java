@@ -1,6 +1,7 @@
 package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
 
 import java.io.*;
+import java.nio.file.Files;
 
 public class FileReader {
 
@@ -8,14 +9,13 @@ public class FileReader {
         return readAll(new File(filePath));
     }
 
+    /**
+     * 一次读入整个文件， 内存占用与文件大小相同。 大文件请使用 {@link WALSegmentReader} 流式读取
+     */
     public static final byte[] readAll(File file) throws IOException {
-        try (InputStream in = new BufferedInputStream(new FileInputStream(file)))
-        {
-            //当文件没有结束时，每次读取一个字节显示
-            byte[] data = new byte[in.available()];
-            in.read(data);
-
-            return data;
+        try {
+            // available() 只是可无阻塞读取的估计值， 单次 read 也不保证读满
+            return Files.readAllBytes(file.toPath());
         } catch (IOException e) {
             e.printStackTrace();
             throw e;
@@ -0,0 +1,41 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+/**
+ * 段文件读取结束的原因
+ */
+public enum WALEndReason {
+
+    /**
+     * 读到 trailer， 段文件正常结束
+     */
+    TRAILER,
+
+    /**
+     * 读到预分配的 0 填充， 活跃段或未正常关闭的段
+     */
+    PADDING,
+
+    /**
+     * 文件结束
+     */
+    EOF,
+
+    /**
+     * 最后一条数据只写了一半(宕机)
+     */
+    TORN,
+
+    /**
+     * 数据 crc 校验失败
+     */
+    CORRUPTED,
+
+    ;
+
+    /**
+     * 是否为正常结束
+     */
+    public boolean isClean() {
+        return this == TRAILER || this == PADDING || this == EOF;
+    }
+}
@@ -0,0 +1,140 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.block.WALBlockLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.handler.IWALName;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.handler.WALCompatibilityAction;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 跨段文件的 wal 流式读取器。
+ *
+ * 从 header.startLsn 不大于起始 lsn 的最后一个段开始， 沿 trailer 记录的下一个文件名逐段读取，
+ * 直到某个段没有 trailer(活跃段或宕机的段)为止。
+ */
+public class WALLogReader implements Iterator<WALBlockLog>, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WALLogReader.class);
+
+    private final File directory;
+    private final long startLsn;
+
+    private WALSegmentReader current;
+    private File currentFile;
+
+    public WALLogReader(Long databaseId, Long tableId, long startLsn) throws IOException {
+        this(new File(WALCompatibilityAction.getDirectoryAbsolutePath(databaseId, tableId)), startLsn);
+    }
+
+    public WALLogReader(File directory, long startLsn) throws IOException {
+        this.directory = directory;
+        this.startLsn = startLsn;
+
+        this.currentFile = findStartSegment();
+        if (currentFile != null) {
+            this.current = new WALSegmentReader(currentFile, startLsn);
+        }
+    }
+
+    /**
+     * 当前读取的段文件
+     */
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * 当前段的结束原因， 读完后可判断是否停在了写了一半的数据上
+     */
+    public WALEndReason getEndReason() {
+        return current == null ? WALEndReason.EOF : current.getEndReason();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current != null) {
+            if (current.hasNext()) {
+                return true;
+            }
+
+            try {
+                if (!moveToNextSegment()) {
+                    return false;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public WALBlockLog next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private boolean moveToNextSegment() throws IOException {
+        if (current.getEndReason() != WALEndReason.TRAILER || current.getTrailer() == null) {
+            return false;
+        }
+
+        File nextFile = new File(directory, current.getTrailer().getNext());
+        if (!nextFile.exists()) {
+            logger.warn("wal 段文件 {} 的下一个文件 {} 不存在。", currentFile, nextFile);
+            return false;
+        }
+
+        current.close();
+        currentFile = nextFile;
+        current = new WALSegmentReader(nextFile, startLsn);
+
+        return true;
+    }
+
+    /**
+     * 按文件名(含创建时间)排序， 取 header.startLsn 不大于起始 lsn 的最后一个段
+     */
+    private File findStartSegment() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> StringUtils.startsWith(name, IWALName.PREFIX));
+        if (files == null || files.length == 0) {
+            return null;
+        }
+        Arrays.sort(files);
+
+        File start = files[0];
+        for (File file : files) {
+            try (WALSegmentReader reader = new WALSegmentReader(file)) {
+                if (reader.getHeader() == null) {
+                    continue;
+                }
+                if (reader.getHeader().getStartLsn() > startLsn) {
+                    break;
+                }
+                start = file;
+            }
+        }
+
+        return start;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 段文件恢复扫描结果
+ */
+@Getter
+@Builder
+@ToString
+public class WALScanResult {
+
+    /**
+     * 有效数据长度， 即可继续追加的位置。 不含 0 填充和写了一半的数据
+     */
+    private final long validLength;
+
+    /**
+     * 完整且校验通过的 record 条数
+     */
+    private final long records;
+
+    /**
+     * header 中的 startLsn， 没有 header 时为 null
+     */
+    private final Long startLsn;
+
+    /**
+     * 最后一条有效 record 的 lsn， 没有 record 时为 null
+     */
+    private final Long lastLsn;
+
+    /**
+     * 结束原因
+     */
+    private final WALEndReason endReason;
+
+    /**
+     * trailer 中记录的下一个文件名， 没有 trailer 时为 null
+     */
+    private final String nextFileName;
+
+}
@@ -0,0 +1,336 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.block.WALBlockLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALBlocksLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALHeader;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALTrailer;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.IRecordChecksum;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordBloHeader;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordChecksums;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 单个 wal 段文件的流式读取器， 每次只解析一条 record。
+ *
+ * 通过固定大小的窗口从 FileChannel 读取， 内存占用与文件大小无关(仅随单条 record 的大小增长)。
+ * 按 {@link WALHeader}/{@link WALTrailer} 的格式切分， 逐条校验 crc，
+ * 遇到 0 填充、trailer、文件结束、写了一半的 record 或 crc 不一致时停止， 不抛异常。
+ */
+public class WALSegmentReader implements Iterator<WALBlockLog>, Closeable {
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    /**
+     * header 最大长度的估算值， 实际约 60 byte
+     */
+    private static final int HEADER_PROBE_SIZE = 256;
+
+    /**
+     * record header 中 crc 字段之外的固定部分: type 1, lsn 8, length 4, writeAt 的长度 1
+     */
+    private static final int RECORD_HEADER_FIXED = 1 + 8 + 4 + 1;
+
+    private final FileChannel channel;
+    private final long fileLength;
+
+    /**
+     * 从该 lsn 开始返回， 更早的 record 只解析 header 后跳过
+     */
+    private final long startLsn;
+
+    private ByteBuffer window;
+    /**
+     * window 第 0 个字节在文件中的位置
+     */
+    private long windowStart = 0;
+
+    /**
+     * 下一条待读数据在文件中的位置
+     */
+    private long position = 0;
+
+    @Getter
+    private WALHeader header;
+    @Getter
+    private WALTrailer trailer;
+
+    /**
+     * 为 null 时表示尚未结束
+     */
+    @Getter
+    private WALEndReason endReason;
+
+    @Getter
+    private long records = 0;
+    @Getter
+    private Long lastLsn;
+
+    private WALBlockLog next;
+
+    public WALSegmentReader(File file) throws IOException {
+        this(file, Long.MIN_VALUE);
+    }
+
+    public WALSegmentReader(File file, long startLsn) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.fileLength = channel.size();
+        this.startLsn = startLsn;
+        this.window = ByteBuffer.allocate(DEFAULT_WINDOW_SIZE);
+        this.window.limit(0);
+
+        readHeader();
+    }
+
+    /**
+     * 扫描整个段文件， 用于宕机后的恢复: 得到可继续追加的位置
+     */
+    public static WALScanResult scan(File file) throws IOException {
+        try (WALSegmentReader reader = new WALSegmentReader(file, Long.MAX_VALUE)) {
+            while (reader.hasNext()) {
+                reader.next();
+            }
+
+            return WALScanResult.builder()
+                    .validLength(reader.validLength())
+                    .records(reader.getRecords())
+                    .startLsn(reader.getHeader() == null ? null : reader.getHeader().getStartLsn())
+                    .lastLsn(reader.getLastLsn())
+                    .endReason(reader.getEndReason())
+                    .nextFileName(reader.getTrailer() == null ? null : reader.getTrailer().getNext())
+                    .build();
+        }
+    }
+
+    /**
+     * 已读取的有效数据长度
+     */
+    public long validLength() {
+        return position;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (endReason != null) {
+            return false;
+        }
+
+        try {
+            next = readNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public WALBlockLog next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        WALBlockLog rs = next;
+        next = null;
+        return rs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ----------------------------------------------------
+    //                   parse
+    // ----------------------------------------------------
+    private void readHeader() throws IOException {
+        if (fileLength == 0 || !ensure(1)) {
+            endReason = WALEndReason.EOF;
+            return;
+        }
+        if (byteAt(0) == WALBlocksLog.PADDING_MARK) {
+            // 预分配后 header 尚未写入
+            endReason = WALEndReason.PADDING;
+            return;
+        }
+
+        int probe = (int) Math.min(HEADER_PROBE_SIZE, fileLength);
+        ensure(probe);
+        try {
+            BytesMessage mm = message();
+            int start = mm.position();
+            WALHeader walHeader = WALHeader.fromBytes(mm);
+            int headerLen = mm.position() - start;
+            if (headerLen > probe) {
+                endReason = WALEndReason.TORN;
+                return;
+            }
+
+            this.header = walHeader;
+            position += headerLen;
+        } catch (RuntimeException ex) {
+            endReason = WALEndReason.TORN;
+        }
+    }
+
+    private WALBlockLog readNext() throws IOException {
+        while (true) {
+            if (!ensure(1)) {
+                endReason = WALEndReason.EOF;
+                return null;
+            }
+
+            byte flag = byteAt(0);
+            if (flag == WALBlocksLog.PADDING_MARK) {
+                endReason = WALEndReason.PADDING;
+                return null;
+            }
+            if (flag == WALTrailer.NULL_MARK) {
+                readTrailer();
+                return null;
+            }
+
+            // record header: [crc 字段][type][lsn][length][writeAt 长度][writeAt]
+            IRecordChecksum checksum = RecordChecksums.of(flag);
+            if (checksum == null) {
+                endReason = WALEndReason.CORRUPTED;
+                return null;
+            }
+            int crcFieldLen = checksum.fieldLength(flag);
+            if (!ensure(crcFieldLen + RECORD_HEADER_FIXED)) {
+                endReason = WALEndReason.TORN;
+                return null;
+            }
+            int writeAtLen = byteAt(crcFieldLen + RECORD_HEADER_FIXED - 1) & 0xff;
+            int headerLen = crcFieldLen + RECORD_HEADER_FIXED + writeAtLen;
+            if (writeAtLen >= 251 || !ensure(headerLen)) {
+                endReason = writeAtLen >= 251 ? WALEndReason.CORRUPTED : WALEndReason.TORN;
+                return null;
+            }
+
+            RecordBloHeader recordHeader = RecordBloHeader.fromBytes(message());
+            int bodyLen = recordHeader.getLength();
+            if (bodyLen < 0) {
+                endReason = WALEndReason.CORRUPTED;
+                return null;
+            }
+            if (!ensure(headerLen + bodyLen)) {
+                endReason = WALEndReason.TORN;
+                return null;
+            }
+
+            // ensure 可能移动了窗口， 重新定位
+            BytesMessage mm = message();
+            int recordOffset = mm.position();
+            int recordLen = headerLen + bodyLen;
+
+            // 直接在窗口上校验， 不拷贝
+            if (!recordHeader.verify(window, recordOffset)) {
+                endReason = WALEndReason.CORRUPTED;
+                return null;
+            }
+            if (recordHeader.getLsn() < startLsn) {
+                // 起始 lsn 之前的数据只做校验， 不解析数据体
+                accept(recordHeader, recordLen);
+                continue;
+            }
+
+            WALBlockLog blockLog = WALBlockLog.fromBytes(mm);
+            accept(recordHeader, recordLen);
+
+            return blockLog;
+        }
+    }
+
+    private void accept(RecordBloHeader recordHeader, int recordLen) {
+        position += recordLen;
+        records++;
+        lastLsn = recordHeader.getLsn();
+    }
+
+    private void readTrailer() throws IOException {
+        // trailer: [flag][next 长度][next][filler]
+        if (!ensure(2)) {
+            endReason = WALEndReason.TORN;
+            return;
+        }
+        int nextLen = byteAt(1) & 0xff;
+        if (!ensure(2 + nextLen + WALTrailer.FILLER_LENGTH)) {
+            endReason = WALEndReason.TORN;
+            return;
+        }
+
+        try {
+            BytesMessage mm = message();
+            int start = mm.position();
+            this.trailer = WALTrailer.fromBytes(mm);
+            position += mm.position() - start;
+            endReason = WALEndReason.TRAILER;
+        } catch (RuntimeException ex) {
+            endReason = WALEndReason.CORRUPTED;
+        }
+    }
+
+    // ----------------------------------------------------
+    //                   window
+    // ----------------------------------------------------
+    /**
+     * 保证 [position, position + n) 在窗口内
+     *
+     * @return false 文件剩余数据不足 n
+     */
+    private boolean ensure(int n) throws IOException {
+        if (position + n <= windowStart + window.limit()) {
+            return true;
+        }
+        if (position + n > fileLength) {
+            return false;
+        }
+
+        if (n > window.capacity()) {
+            // 单条 record 超过窗口， 扩容
+            window = ByteBuffer.allocate(Math.max(n, window.capacity() * 2));
+        }
+
+        window.clear();
+        windowStart = position;
+        long readTo = Math.min(fileLength, windowStart + window.capacity());
+        while (windowStart + window.position() < readTo) {
+            int read = channel.read(window, windowStart + window.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        window.flip();
+
+        return position + n <= windowStart + window.limit();
+    }
+
+    private byte byteAt(int offset) {
+        return window.get((int) (position - windowStart) + offset);
+    }
+
+    /**
+     * 以窗口底层数组构造的 BytesMessage， 当前位置为 position
+     */
+    private BytesMessage message() {
+        BytesMessage mm = new BytesMessage(window.array());
+        mm.position((int) (position - windowStart));
+
+        return mm;
+    }
+
+}
@@ -4,8 +4,14 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 
 public class FileWriter implements IFileWriter {
+    private final FileOutputStream out;
     private final BufferedOutputStream writer;
 
+    /**
+     * 已写入的数据长度
+     */
+    private long position;
+
     public FileWriter(String fileName) throws FileNotFoundException {
         this(fileName, true);
     }
@@ -26,18 +32,22 @@ public class FileWriter implements IFileWriter {
      * @throws FileNotFoundException
      */
     public FileWriter(File file, boolean append) throws FileNotFoundException {
-        this.writer = new BufferedOutputStream(new FileOutputStream(file, append));
+        this.position = append ? file.length() : 0;
+        this.out = new FileOutputStream(file, append);
+        this.writer = new BufferedOutputStream(out);
     }
 
     @Override
     public void write(int c) throws IOException {
         this.writer.write(c);
+        this.position++;
         flush();
     }
 
     @Override
     public void write(byte[] bytes) throws IOException {
         this.writer.write(bytes);
+        this.position += bytes.length;
         flush();
     }
 
@@ -47,8 +57,12 @@ public class FileWriter implements IFileWriter {
             return;
         }
 
-        this.writer.write(val.getBytes(StandardCharsets.UTF_8));
-        flush();
+        write(val.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long position() {
+        return position;
     }
 
     @Override
@@ -60,4 +74,11 @@ public class FileWriter implements IFileWriter {
     public void flush() throws IOException {
         this.writer.flush();
     }
+
+    @Override
+    public void sync() throws IOException {
+        this.writer.flush();
+        // 只需要数据落盘， 文件元数据(修改时间等)不强制
+        this.out.getChannel().force(false);
+    }
 }
@@ -10,8 +10,18 @@ public interface IFileWriter {
 
     void write(String val) throws IOException;
 
+    /**
+     * 已写入的数据长度
+     */
+    long position();
+
     void close() throws IOException;
 
     void flush() throws IOException;
 
+    /**
+     * flush 并将数据落盘(fsync)
+     */
+    void sync() throws IOException;
+
 }
@@ -0,0 +1,203 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 预分配大小的 wal 段文件写入器。
+ *
+ * 打开时将文件预分配为 segmentSize 并整段 mmap， 追加即内存拷贝， 没有逐条的 write 系统调用；
+ * 写入位置只在内存中维护， 追加时也不再有 length/exists 等元数据系统调用。
+ * 超出映射范围的数据(单批次大于段大小)按位置直接写 FileChannel。
+ * sync 只刷上次 sync 之后写入的区间。
+ * 关闭时先解除映射， 再将文件截断为实际写入长度。
+ */
+public class SegmentWriter implements IFileWriter {
+    /**
+     * sun.misc.Unsafe#invokeCleaner， 用于关闭时立即解除映射。 不可用时为 null， 映射由 GC 回收
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    /**
+     * 关闭时置空， 解除映射后不允许再访问
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * 预分配大小
+     */
+    private final long segmentSize;
+
+    /**
+     * 下一次写入的位置， 即已写入的数据长度
+     */
+    private long position;
+
+    /**
+     * 映射区内已 sync 的数据长度
+     */
+    private long syncedPosition;
+
+    private boolean closed = false;
+
+    /**
+     * @param file 段文件
+     * @param segmentSize 预分配大小
+     * @param startPosition 已有数据的长度， 新文件为 0
+     */
+    public SegmentWriter(File file, long segmentSize, long startPosition) throws IOException {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentSize must be in (0, 2GB), but is " + segmentSize);
+        }
+
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.segmentSize = segmentSize;
+        this.position = startPosition;
+        this.syncedPosition = Math.min(startPosition, segmentSize);
+
+        if (raf.length() < segmentSize) {
+            // 大多数文件系统下为稀疏分配， O(1)
+            raf.setLength(segmentSize);
+        }
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * 已写入的数据长度
+     */
+    @Override
+    public long position() {
+        return position;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(new byte[]{(byte) c});
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        ensureOpen();
+
+        long pos = position;
+        if (pos + bytes.length <= segmentSize) {
+            mapped.put((int) pos, bytes);
+            position = pos + bytes.length;
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+        position = pos;
+    }
+
+    @Override
+    public void write(String val) throws IOException {
+        if(val == null){
+            return;
+        }
+
+        write(val.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            forceMapped();
+
+            // 先解除映射再截断： 部分平台(如 Windows)不允许截断仍在映射中的文件
+            MappedByteBuffer buffer = mapped;
+            mapped = null;
+            unmap(buffer);
+
+            // 读取方依赖文件长度判断数据末尾， 截断失败需要抛出
+            channel.truncate(position);
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // 直接写 channel， 无用户态缓冲
+    }
+
+    @Override
+    public void sync() throws IOException {
+        ensureOpen();
+
+        forceMapped();
+        if (position > segmentSize) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 只刷映射区内上次 sync 之后写入的部分， 而不是整段映射
+     */
+    private void forceMapped() {
+        long end = Math.min(position, segmentSize);
+        if (end > syncedPosition) {
+            mapped.force((int) syncedPosition, (int) (end - syncedPosition));
+            syncedPosition = end;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("wal segment writer is closed");
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) throws IOException {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("unmap wal segment failed", e);
+        }
+    }
+}
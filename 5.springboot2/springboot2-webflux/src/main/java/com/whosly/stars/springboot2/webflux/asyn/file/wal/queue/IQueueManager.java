@@ -1,14 +1,12 @@
 package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 队列管理器
  */
 public interface IQueueManager<T> {
 
-    BlockingQueue<T> get();
-
     /**
      * 放入队列
      */
@@ -23,6 +21,26 @@ public interface IQueueManager<T> {
      */
     T take() throws InterruptedException;
 
+    /**
+     * 不等待，取出队列。 队列为空时返回 null
+     */
+    T poll();
+
+    /**
+     * 最多等待 timeout，取出队列。 超时返回 null
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 当前队列深度
+     */
+    int size();
+
+    /**
+     * 队列运行指标: 深度、等待时间、拒绝数等
+     */
+    QueueMetrics metrics();
+
     void close();
 
 }
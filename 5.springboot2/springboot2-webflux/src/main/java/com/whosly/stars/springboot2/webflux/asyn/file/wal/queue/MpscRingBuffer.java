@@ -0,0 +1,114 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多生产者/单消费者的有界环形队列， 无锁。
+ *
+ * 每个槽位带一个序号: 序号 == 写入位置 时可写, 序号 == 写入位置 + 1 时可读。
+ * 生产者通过 CAS 抢占 tail， 消费者独占 head。
+ *
+ * 非阻塞， 阻塞与唤醒由使用方处理。
+ */
+final class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+
+    /**
+     * 生产者抢占的下一个写入位置
+     */
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /**
+     * 消费者下一个读取位置。 仅消费者线程写
+     */
+    private volatile long head = 0;
+
+    /**
+     * @param capacity 容量， 向上取整为 2 的幂
+     */
+    MpscRingBuffer(int capacity) {
+        int cap = 1;
+        while (cap < capacity) {
+            cap <<= 1;
+        }
+
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.buffer = new Object[cap];
+        this.sequences = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return false 队列已满
+     */
+    boolean offer(E e) {
+        long t;
+        int index;
+        while (true) {
+            t = tail.get();
+            index = (int) (t & mask);
+            long dif = sequences.get(index) - t;
+
+            if (dif == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                // 槽位尚未被消费者释放
+                return false;
+            }
+            // dif > 0: 其他生产者已抢占， 重读 tail
+        }
+
+        buffer[index] = e;
+        // volatile 写发布数据， 与消费者的 waiter 检查构成 store-load 顺序
+        sequences.set(index, t + 1);
+
+        return true;
+    }
+
+    /**
+     * 仅允许单个消费者线程调用
+     *
+     * @return null 队列为空
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long h = head;
+        int index = (int) (h & mask);
+        if (sequences.get(index) != h + 1) {
+            return null;
+        }
+
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        // 释放槽位给下一轮生产者。 volatile 写， 与 WALQueueManager 中阻塞生产者的登记构成 store-load 顺序
+        sequences.set(index, h + capacity);
+        head = h + 1;
+
+        return e;
+    }
+
+    int size() {
+        long size = tail.get() - head;
+
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+/**
+ * 队列满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 阻塞生产者， 直到队列有空位
+     */
+    BLOCK,
+
+    /**
+     * 立即失败， offer 返回 false， 由调用方感知并处理
+     */
+    FAIL_FAST,
+
+    /**
+     * 溢出到磁盘文件， 队列有空闲后由消费者按顺序读回
+     */
+    SPILL,
+
+    ;
+
+    public static OverflowPolicy of(String name) {
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+
+        return BLOCK;
+    }
+}
@@ -4,22 +4,35 @@ import com.whosly.stars.springboot2.webflux.asyn.file.wal.rs.FutureCompact;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * 队列管理器
+ * 队列管理器。 队列满时 offer 直接返回 false
+ *
+ * wal 写入已改用 {@link WALQueueManager}， 此实现保留作为对比基线
  */
 public class QueueManagerImpl implements IQueueManager<FutureCompact> {
     private static final int QUEUE_SIZE = 100;
     private static final BlockingQueue<FutureCompact> activeQueue = new LinkedBlockingQueue<>(QUEUE_SIZE);
 
-    @Override
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
     public BlockingQueue<FutureCompact> get() {
         return activeQueue;
     }
 
     @Override
     public boolean offer(FutureCompact futureCompact) {
-        return activeQueue.offer(futureCompact);
+        boolean rs = activeQueue.offer(futureCompact);
+        if(rs){
+            offered.increment();
+        }else{
+            rejected.increment();
+        }
+
+        return rs;
     }
 
     @Override
@@ -27,6 +40,31 @@ public class QueueManagerImpl implements IQueueManager<FutureCompact> {
         return activeQueue.take();
     }
 
+    @Override
+    public FutureCompact poll() {
+        return activeQueue.poll();
+    }
+
+    @Override
+    public FutureCompact poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return activeQueue.poll(timeout, unit);
+    }
+
+    @Override
+    public int size() {
+        return activeQueue.size();
+    }
+
+    @Override
+    public QueueMetrics metrics() {
+        return QueueMetrics.builder()
+                .capacity(QUEUE_SIZE)
+                .depth(activeQueue.size())
+                .offered(offered.sum())
+                .rejected(rejected.sum())
+                .build();
+    }
+
     @Override
     public void close() {
         //
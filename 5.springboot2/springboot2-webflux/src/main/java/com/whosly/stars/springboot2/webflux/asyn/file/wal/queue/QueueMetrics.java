@@ -0,0 +1,60 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 队列运行指标快照
+ */
+@Getter
+@Builder
+@ToString
+public class QueueMetrics {
+
+    /**
+     * 队列容量
+     */
+    private final int capacity;
+
+    /**
+     * 当前深度， 包含已溢出到磁盘的条数
+     */
+    private final int depth;
+
+    /**
+     * 当前溢出在磁盘中的条数
+     */
+    private final int spilledDepth;
+
+    /**
+     * 累计入队成功条数
+     */
+    private final long offered;
+
+    /**
+     * 累计拒绝条数
+     */
+    private final long rejected;
+
+    /**
+     * 累计溢出到磁盘的条数
+     */
+    private final long spilled;
+
+    /**
+     * 累计因队列满而阻塞的次数
+     */
+    private final long blocked;
+
+    /**
+     * 累计阻塞等待时间(纳秒)
+     */
+    private final long waitNanos;
+
+    /**
+     * 单次最大阻塞等待时间(纳秒)
+     */
+    private final long maxWaitNanos;
+
+}
@@ -0,0 +1,76 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 队列溢出文件， 先进先出。 记录格式: [int length][bytes]
+ *
+ * 仅在队列满的慢路径上使用， 方法均加锁。 全部读回后文件截断为 0
+ */
+final class SpillFile {
+
+    private final File file;
+    private final RandomAccessFile raf;
+
+    private long writePos = 0;
+    private long readPos = 0;
+    private int count = 0;
+
+    SpillFile(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        // 溢出数据只在进程内有效， 启动时丢弃残留
+        this.raf.setLength(0);
+    }
+
+    synchronized void write(byte[] bytes) throws IOException {
+        raf.seek(writePos);
+        raf.writeInt(bytes.length);
+        raf.write(bytes);
+
+        writePos += 4 + bytes.length;
+        count++;
+    }
+
+    /**
+     * @return null 没有溢出数据
+     */
+    synchronized byte[] read() throws IOException {
+        if (count == 0) {
+            return null;
+        }
+
+        raf.seek(readPos);
+        int length = raf.readInt();
+        byte[] bytes = new byte[length];
+        raf.readFully(bytes);
+
+        readPos += 4 + length;
+        count--;
+
+        if (count == 0) {
+            // 全部读回， 回收空间
+            writePos = 0;
+            readPos = 0;
+            raf.setLength(0);
+        }
+
+        return bytes;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized void close() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+}
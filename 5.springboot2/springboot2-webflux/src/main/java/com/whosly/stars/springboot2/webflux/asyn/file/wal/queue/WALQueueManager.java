@@ -0,0 +1,374 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.body.WALBlockBody;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.rs.FutureCompact;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * wal 队列管理器。 基于多生产者/单消费者环形队列， 队列满时按 {@link OverflowPolicy} 处理，不会静默丢数据
+ */
+public class WALQueueManager implements IQueueManager<FutureCompact> {
+    private static final Logger logger = LoggerFactory.getLogger(WALQueueManager.class);
+
+    private final MpscRingBuffer<FutureCompact> ringBuffer;
+    private final OverflowPolicy policy;
+
+    /**
+     * 当前阻塞在 take/poll 上的消费者
+     */
+    private volatile Thread waiter;
+
+    // ----------------------------------------
+    //                    block
+    // ----------------------------------------
+    /**
+     * BLOCK 策略下， 队列满的生产者在 notFull 上等待， 消费者取出数据后唤醒
+     */
+    private final ReentrantLock notFullLock = new ReentrantLock();
+    private final Condition notFull = notFullLock.newCondition();
+    /**
+     * 等待中的生产者数量， 在 notFullLock 内修改。 为 0 时消费者不加锁
+     */
+    private volatile int blockedProducers = 0;
+
+    // ----------------------------------------
+    //                    spill
+    // ----------------------------------------
+    private final Object spillLock = new Object();
+    private final File spillPath;
+    private SpillFile spillFile;
+    /**
+     * 与溢出文件中的记录一一对应， 保存 lsn、句柄与 future
+     */
+    private final Deque<FutureCompact> spilledHolders = new ArrayDeque<>();
+    private volatile int spilledDepth = 0;
+
+    // ----------------------------------------
+    //                    metrics
+    // ----------------------------------------
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public WALQueueManager(int capacity, OverflowPolicy policy) {
+        this(capacity, policy, new File("storage/cstore/wal" + File.separator + "queue.spill"));
+    }
+
+    public WALQueueManager(int capacity, OverflowPolicy policy, File spillPath) {
+        this.ringBuffer = new MpscRingBuffer<>(capacity);
+        this.policy = policy;
+        this.spillPath = spillPath;
+    }
+
+    @Override
+    public boolean offer(FutureCompact futureCompact) {
+        if (policy == OverflowPolicy.SPILL) {
+            return spillOffer(futureCompact);
+        }
+
+        if (ringBuffer.offer(futureCompact)) {
+            offered.increment();
+            signal();
+            return true;
+        }
+
+        if (policy == OverflowPolicy.FAIL_FAST) {
+            rejected.increment();
+            return false;
+        }
+
+        return blockOffer(futureCompact);
+    }
+
+    private boolean blockOffer(FutureCompact futureCompact) {
+        blocked.increment();
+
+        long start = System.nanoTime();
+        notFullLock.lock();
+        try {
+            blockedProducers++;
+            try {
+                // 先登记再重试， 与消费者 "取出后检查 blockedProducers" 配对， 不会错过唤醒
+                while (!ringBuffer.offer(futureCompact)) {
+                    notFull.await();
+                }
+            } finally {
+                blockedProducers--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        } finally {
+            notFullLock.unlock();
+
+            long cost = System.nanoTime() - start;
+            waitNanos.add(cost);
+            maxWaitNanos.accumulateAndGet(cost, Math::max);
+        }
+
+        offered.increment();
+        signal();
+        return true;
+    }
+
+    /**
+     * 消费者取出一条数据后， 唤醒一个等待中的生产者
+     */
+    private void signalNotFull() {
+        if (blockedProducers == 0) {
+            return;
+        }
+
+        notFullLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            notFullLock.unlock();
+        }
+    }
+
+    /**
+     * SPILL 策略入队。 "有溢出数据则继续溢出" 的判断与入队在同一把锁内完成，
+     * 否则并发的生产者可能在判断之后、 其他生产者溢出之后写入环形队列， 越过溢出文件中更早的数据
+     */
+    private boolean spillOffer(FutureCompact futureCompact) {
+        synchronized (spillLock) {
+            if (spilledDepth == 0 && ringBuffer.offer(futureCompact)) {
+                offered.increment();
+            } else if (!spill(futureCompact)) {
+                return false;
+            }
+        }
+
+        signal();
+        return true;
+    }
+
+    /**
+     * 调用方持有 spillLock
+     */
+    private boolean spill(FutureCompact futureCompact) {
+        try {
+            if (spillFile == null) {
+                spillFile = new SpillFile(spillPath);
+            }
+            spillFile.write(toSpillBytes(futureCompact.getBody()));
+        } catch (IOException e) {
+            logger.error("wal queue spill failed, lsn:{}.", futureCompact.getLsnSeq(), e);
+
+            rejected.increment();
+            return false;
+        }
+
+        // 数据体已落盘， 内存中只保留轻量的 holder
+        spilledHolders.addLast(FutureCompact.builder()
+                .lsnSeq(futureCompact.getLsnSeq())
+                .fileHandler(futureCompact.getFileHandler())
+                .future(futureCompact.getFuture())
+                .build());
+        spilledDepth++;
+
+        offered.increment();
+        spilled.increment();
+        return true;
+    }
+
+    /**
+     * 读回一条溢出数据
+     */
+    private FutureCompact unspill() {
+        if (spilledDepth == 0) {
+            return null;
+        }
+
+        synchronized (spillLock) {
+            FutureCompact holder = spilledHolders.pollFirst();
+            if (holder == null) {
+                return null;
+            }
+            spilledDepth--;
+
+            try {
+                WALBlockBody body = fromSpillBytes(spillFile.read());
+
+                return FutureCompact.builder()
+                        .lsnSeq(holder.getLsnSeq())
+                        .fileHandler(holder.getFileHandler())
+                        .future(holder.getFuture())
+                        .body(body)
+                        .build();
+            } catch (IOException e) {
+                logger.error("wal queue unspill failed, lsn:{}.", holder.getLsnSeq(), e);
+
+                holder.completeExceptionally(e);
+                // 返回无 body 的 holder， 消费者会跳过
+                return holder;
+            }
+        }
+    }
+
+    private FutureCompact pollOnce() {
+        FutureCompact futureCompact = ringBuffer.poll();
+        if (futureCompact != null) {
+            signalNotFull();
+        } else {
+            futureCompact = unspill();
+        }
+
+        return futureCompact;
+    }
+
+    @Override
+    public FutureCompact take() throws InterruptedException {
+        FutureCompact futureCompact = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        while (futureCompact == null) {
+            futureCompact = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        return futureCompact;
+    }
+
+    @Override
+    public FutureCompact poll() {
+        return pollOnce();
+    }
+
+    @Override
+    public FutureCompact poll(long timeout, TimeUnit unit) throws InterruptedException {
+        FutureCompact futureCompact = pollOnce();
+        if (futureCompact != null) {
+            return futureCompact;
+        }
+
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        Thread current = Thread.currentThread();
+        while (true) {
+            waiter = current;
+            // 登记后再检查一次， 避免错过生产者的唤醒
+            futureCompact = pollOnce();
+            if (futureCompact != null) {
+                waiter = null;
+                return futureCompact;
+            }
+            if (remaining <= 0) {
+                waiter = null;
+                return null;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+            waiter = null;
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            futureCompact = pollOnce();
+            if (futureCompact != null) {
+                return futureCompact;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private void signal() {
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    @Override
+    public int size() {
+        return ringBuffer.size() + spilledDepth;
+    }
+
+    @Override
+    public QueueMetrics metrics() {
+        return QueueMetrics.builder()
+                .capacity(ringBuffer.capacity())
+                .depth(size())
+                .spilledDepth(spilledDepth)
+                .offered(offered.sum())
+                .rejected(rejected.sum())
+                .spilled(spilled.sum())
+                .blocked(blocked.sum())
+                .waitNanos(waitNanos.sum())
+                .maxWaitNanos(maxWaitNanos.get())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        synchronized (spillLock) {
+            if (spillFile != null) {
+                try {
+                    spillFile.close();
+                } catch (IOException e) {
+                    logger.error("wal queue spill file close failed, path:{}.", spillPath, e);
+                }
+                spillFile = null;
+            }
+        }
+    }
+
+    // ----------------------------------------
+    //                  spill codec
+    // ----------------------------------------
+    /**
+     * 字符串按 [length][bytes] 写入， null 写入 null 标记。 空串写入长度 0， 读回时仍为空串
+     */
+    private static byte[] toSpillBytes(WALBlockBody body) {
+        BytesBuffers instance = BytesBuffers.build(256);
+        instance.writeWithLength(body.getProcessId());
+        instance.writeLong(body.getTid());
+        instance.writeWithLength(body.getSql());
+
+        return instance.array();
+    }
+
+    private static WALBlockBody fromSpillBytes(byte[] bytes) {
+        BytesMessage mm = new BytesMessage(bytes);
+
+        String processId = readNullableString(mm);
+        long tid = mm.readLong();
+        String sql = readNullableString(mm);
+
+        return WALBlockBody.builder()
+                .processId(processId)
+                .tid(tid)
+                .sql(sql)
+                .build();
+    }
+
+    /**
+     * readStringWithLength 会把长度为 0 的空串读成 null， 这里区分 null 标记与空串
+     */
+    private static String readNullableString(BytesMessage mm) {
+        long length = mm.readLength();
+        if (length == BytesMessage.NULL_LENGTH) {
+            return null;
+        }
+
+        return new String(mm.readBytes((int) length), StandardCharsets.UTF_8);
+    }
+
+}
@@ -15,7 +15,7 @@ public class FutureCompact {
     // ----------------------------------------
     //                    head
     // ----------------------------------------
-    private Long lsnSeq;
+    private long lsnSeq;
 
 
     // ----------------------------------------
@@ -24,12 +24,28 @@ public class FutureCompact {
     private WALBlockBody body;
 
     /**
-     * 操作的文件句柄
+     * 操作的文件句柄。 非 wal 场景(如 console)可为空
      */
-    @NonNull
     private IFileHandlerOpera fileHandler;
 
-    @Setter
-    private CompletableFuture<WALBlockResult> future;
+    /**
+     * 提交时创建， 由消费线程直接 complete，调用方无需轮询
+     */
+    @Builder.Default
+    private final CompletableFuture<WALBlockResult> future = new CompletableFuture<>();
+
+    /**
+     * 消费完成
+     */
+    public boolean complete(WALBlockResult result) {
+        return future.complete(result);
+    }
+
+    /**
+     * 消费失败
+     */
+    public boolean completeExceptionally(Throwable ex) {
+        return future.completeExceptionally(ex);
+    }
 
 }
@@ -0,0 +1,120 @@
+package com.whosly.stars.springboot2.webflux.asyn.console;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.body.WALBlockBody;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.body.WALBlockResult;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提交 -> 消费线程 complete 的 handoff 压测。
+ *
+ * 1. 低负载: 单线程逐条 submit().get()， 输出 handoff 的 p50/p99(us)
+ * 2. 高负载: 共 10k 条提交， 队列容量与提交数相同， 不会因为队列满而拒绝；
+ *    采样实际达到的未完成提交数、队列深度， 以及 ForkJoinPool.commonPool 活跃线程数(应始终为 0)
+ */
+public class CommitHandoffBenchmark {
+
+    private static final int LOW_LOAD_COUNT = 20_000;
+
+    private static final int OUTSTANDING_COUNT = 10_000;
+
+    private static final int PRODUCERS = 64;
+
+    public static void main(String[] args) throws Exception {
+        AsynConsoleServiceImpl service = new AsynConsoleServiceImpl(OUTSTANDING_COUNT);
+
+        lowLoad(service);
+        outstanding(service);
+    }
+
+    private static void lowLoad(IAsynConsoleService service) throws Exception {
+        long[] lat = new long[LOW_LOAD_COUNT];
+        for (int i = 0; i < LOW_LOAD_COUNT; i++) {
+            long st = System.nanoTime();
+            service.submit(body(i)).get();
+            lat[i] = System.nanoTime() - st;
+        }
+
+        // 前 1/4 作为预热丢弃
+        long[] sorted = Arrays.copyOfRange(lat, LOW_LOAD_COUNT / 4, LOW_LOAD_COUNT);
+        Arrays.sort(sorted);
+        System.out.printf("low load handoff, p50(us):%d, p99(us):%d%n",
+                TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(sorted[(int) (sorted.length * 0.99)]));
+    }
+
+    private static void outstanding(AsynConsoleServiceImpl service) throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger maxPoolActive = new AtomicInteger();
+        AtomicInteger maxQueueDepth = new AtomicInteger();
+        CountDownLatch completed = new CountDownLatch(OUTSTANDING_COUNT);
+
+        Thread sampler = new Thread(() -> {
+            while (completed.getCount() > 0) {
+                maxPoolActive.accumulateAndGet(ForkJoinPool.commonPool().getActiveThreadCount(), Math::max);
+                maxInFlight.accumulateAndGet(inFlight.get(), Math::max);
+                maxQueueDepth.accumulateAndGet(service.queueDepth(), Math::max);
+                Thread.onSpinWait();
+            }
+        }, "bench-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long st = System.nanoTime();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers[p] = new Thread(() -> {
+                while (true) {
+                    int seq = accepted.get();
+                    if (seq >= OUTSTANDING_COUNT) {
+                        return;
+                    }
+
+                    inFlight.incrementAndGet();
+                    CompletableFuture<WALBlockResult> future = service.submit(body(seq));
+                    if (future.isCompletedExceptionally()) {
+                        inFlight.decrementAndGet();
+                        rejected.incrementAndGet();
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    if (accepted.incrementAndGet() > OUTSTANDING_COUNT) {
+                        // 超额提交只等待完成， 不计数
+                        future.whenComplete((r, e) -> inFlight.decrementAndGet());
+                        return;
+                    }
+
+                    future.whenComplete((r, e) -> {
+                        inFlight.decrementAndGet();
+                        completed.countDown();
+                    });
+                }
+            }, "bench-producer-" + p);
+            producers[p].start();
+        }
+
+        completed.await();
+        long costNanos = System.nanoTime() - st;
+
+        // maxInFlight 为实际达到的未完成提交数， 消费快于提交时会远小于提交总数
+        System.out.printf("submitted:%d, cost(ms):%d, rejected:%d, maxInFlight:%d, maxQueueDepth:%d, commonPool maxActive:%d%n",
+                OUTSTANDING_COUNT, TimeUnit.NANOSECONDS.toMillis(costNanos), rejected.get(),
+                maxInFlight.get(), maxQueueDepth.get(), maxPoolActive.get());
+    }
+
+    private static WALBlockBody body(int i) {
+        return WALBlockBody.builder()
+                .processId("p1")
+                .sql(String.valueOf(i))
+                .build();
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * record 校验吞吐(GB/s)压测:
+ * 1. CRC4: 原有路径， 拷贝出校验数组后 {@link CRC4#getCRC(byte[])} 得到十六进制字符串
+ * 2. CRC32C: {@link RecordChecksums#CRC32C}， 在原数组上计算
+ */
+public class ChecksumBenchmark {
+
+    private static final long BYTES_PER_ROUND = Long.getLong("bench.bytesPerRound", 256L * 1024 * 1024);
+
+    public static void main(String[] args) {
+        int[] sizes = {128, 1024, 16 * 1024, 256 * 1024};
+
+        for (int size : sizes) {
+            byte[] bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+
+            // 预热一轮
+            crc4(bytes);
+            crc32c(bytes);
+
+            System.out.printf("size:%8d, CRC4(GB/s):%8.3f, CRC32C(GB/s):%8.3f%n",
+                    size, crc4(bytes), crc32c(bytes));
+        }
+    }
+
+    private static double crc4(byte[] bytes) {
+        // CRC4 很慢， 只跑 1/16 的数据量
+        long rounds = Math.max(1, BYTES_PER_ROUND / 16 / bytes.length);
+
+        int sink = 0;
+        long st = System.nanoTime();
+        for (long i = 0; i < rounds; i++) {
+            byte[] copy = new byte[bytes.length];
+            System.arraycopy(bytes, 0, copy, 0, bytes.length);
+            sink += CRC4.getCRC(copy).length();
+        }
+        long cost = System.nanoTime() - st;
+
+        return report(rounds * bytes.length, cost, sink);
+    }
+
+    private static double crc32c(byte[] bytes) {
+        long rounds = Math.max(1, BYTES_PER_ROUND / bytes.length);
+
+        int sink = 0;
+        long st = System.nanoTime();
+        for (long i = 0; i < rounds; i++) {
+            Checksum checksum = RecordChecksums.CRC32C.newChecksum();
+            checksum.update(bytes, 0, bytes.length);
+            sink += (int) checksum.getValue();
+        }
+        long cost = System.nanoTime() - st;
+
+        return report(rounds * bytes.length, cost, sink);
+    }
+
+    private static double report(long bytes, long costNanos, int sink) {
+        if (sink == 42) {
+            System.out.print("");
+        }
+
+        return bytes / (double) costNanos;
+    }
+
+}
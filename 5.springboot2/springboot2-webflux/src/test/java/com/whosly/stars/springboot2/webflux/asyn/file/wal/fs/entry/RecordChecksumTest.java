@@ -0,0 +1,85 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.bytes.BytesBuffers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+public class RecordChecksumTest {
+
+    @Test
+    public void testCRC4Compatible() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = new byte[random.nextInt(512)];
+            random.nextBytes(bytes);
+
+            Checksum checksum = RecordChecksums.CRC4.newChecksum();
+            checksum.update(bytes, 0, bytes.length);
+
+            Assert.assertEquals(CRC4.getCRC(bytes), Integer.toHexString((int) checksum.getValue()));
+        }
+    }
+
+    @Test
+    public void testVerify() {
+        byte[] body = new RecordBloEntry("p1", 1L, "insert into SaleOrder values (1)").toBytes();
+        RecordBloHeader header = new RecordBloHeader(new RecordHeaderData(1, 100L), body);
+        Assert.assertSame(RecordChecksums.CRC32C, header.getChecksum());
+
+        byte[] record = concat(header.toBytes(), body);
+        RecordBloHeader header1 = RecordBloHeader.fromBytes(record);
+        Assert.assertEquals(header.getCrc(), header1.getCrc());
+        Assert.assertTrue(header1.verify(record, 0));
+
+        // direct buffer， 非 0 偏移
+        ByteBuffer direct = ByteBuffer.allocateDirect(record.length + 3);
+        direct.position(3);
+        direct.put(record);
+        Assert.assertTrue(header1.verify(direct, 3));
+
+        record[record.length - 1] ^= 0x01;
+        Assert.assertFalse(header1.verify(record, 0));
+    }
+
+    /**
+     * 格式版本 1 写入的 record 仍然可以读取与校验
+     */
+    @Test
+    public void testVerifyVersion1() {
+        byte[] body = new RecordBloEntry("p1", 1L, "insert into SaleOrder values (1)").toBytes();
+
+        BytesBuffers checked = BytesBuffers.build(64);
+        checked.put((byte) 1);
+        checked.writeLong(100L);
+        checked.writeInt(body.length);
+        checked.writeWithLength("20221231235959");
+        checked.put(body);
+        byte[] checkedBytes = checked.array();
+
+        BytesBuffers v1 = BytesBuffers.build(128);
+        v1.writeWithLength(CRC4.getCRC(checkedBytes));
+        v1.put(checkedBytes);
+        byte[] record = v1.array();
+
+        RecordBloHeader header = RecordBloHeader.fromBytes(record);
+        Assert.assertSame(RecordChecksums.CRC4, header.getChecksum());
+        Assert.assertEquals(Long.valueOf(100L), header.getLsn());
+        Assert.assertTrue(header.verify(record, 0));
+
+        record[record.length - 1] ^= 0x01;
+        Assert.assertFalse(header.verify(record, 0));
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] rs = new byte[a.length + b.length];
+        System.arraycopy(a, 0, rs, 0, a.length);
+        System.arraycopy(b, 0, rs, a.length, b.length);
+
+        return rs;
+    }
+
+}
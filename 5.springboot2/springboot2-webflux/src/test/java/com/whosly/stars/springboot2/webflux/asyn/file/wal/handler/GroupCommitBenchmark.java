@@ -0,0 +1,82 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.handler;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.IFileHandler;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.body.WALBlockBody;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * group commit 压测: 1/16/256 个并发 writer 下的 commits/sec 与 p99 commit 延迟。
+ *
+ * 对比逐条写 + fsync 的基线:
+ *   -Dwal.group.commit.maxBatchSize=1 -Dwal.group.commit.maxLingerMicros=0
+ */
+public class GroupCommitBenchmark {
+
+    private static final Long DATABASE_ID = 99L;
+
+    private static final int COMMITS_PER_WRITER = Integer.getInteger("bench.commitsPerWriter", 2000);
+
+    public static void main(String[] args) throws Exception {
+        int[] writerCounts = {1, 16, 256};
+
+        for (int i = 0; i < writerCounts.length; i++) {
+            run(100L + i, writerCounts[i]);
+        }
+    }
+
+    private static void run(Long tableId, int writers) throws Exception {
+        IFileHandler fileHandler = FileHandlerManager.tryGet(DATABASE_ID, tableId).get();
+
+        int perWriter = Math.max(1, COMMITS_PER_WRITER * 16 / Math.max(16, writers));
+        long[][] latencies = new long[writers][perWriter];
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            final long[] lat = latencies[w];
+            final int writerId = w;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        WALBlockBody body = WALBlockBody.builder()
+                                .processId("p" + writerId)
+                                .sql("insert into SaleOrder values (" + i + ", 'C" + writerId + "')")
+                                .build();
+
+                        long st = System.nanoTime();
+                        fileHandler.commit(body).get();
+                        lat[i] = System.nanoTime() - st;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-writer-" + w);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        long st = System.nanoTime();
+        start.countDown();
+        done.await();
+        long costNanos = System.nanoTime() - st;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        long total = all.length;
+        double commitsPerSec = total * 1_000_000_000D / costNanos;
+        long p99 = all[(int) Math.min(total - 1, (long) Math.ceil(total * 0.99) - 1)];
+
+        System.out.printf("writers:%4d, commits:%8d, commits/sec:%12.1f, p50(us):%8d, p99(us):%8d%n",
+                writers, total, commitsPerSec,
+                TimeUnit.NANOSECONDS.toMicros(all[(int) (total / 2)]),
+                TimeUnit.NANOSECONDS.toMicros(p99));
+
+        FileHandlerManager.close(tableId);
+    }
+
+}
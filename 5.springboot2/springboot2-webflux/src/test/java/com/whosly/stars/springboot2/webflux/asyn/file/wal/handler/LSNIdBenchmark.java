@@ -0,0 +1,86 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.handler;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatType;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.util.DateFormatUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * lsn 分配速率压测: 1~64 个线程并发分配， 对比原有的 格式化字符串 + parseLong + synchronized 方式
+ */
+public class LSNIdBenchmark {
+
+    private static final long DURATION_MILLIS = Long.getLong("bench.durationMillis", 1000L);
+
+    private static final AtomicLong LEGACY_SEQ = new AtomicLong(0);
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = {1, 2, 4, 8, 16, 32, 64};
+
+        // 预热
+        run(4, LSNId::next);
+        run(4, LSNIdBenchmark::legacy);
+
+        for (int threads : threadCounts) {
+            double lockFree = run(threads, LSNId::next);
+            double legacy = run(threads, LSNIdBenchmark::legacy);
+
+            System.out.printf("threads:%3d, LSNId(M/s):%8.2f, legacy(M/s):%8.2f%n", threads, lockFree, legacy);
+        }
+    }
+
+    /**
+     * 原实现: FileHandlerImpl.getLSN 的 synchronized + 格式化 + 解析
+     */
+    private static synchronized long legacy() {
+        String lsn = DateFormatUtil.format(DateFormatType.SHORT_YEAR_FORMAT_S)
+                + String.format("%07d", LEGACY_SEQ.getAndIncrement() % 10000000);
+
+        return Long.parseLong(lsn);
+    }
+
+    private static double run(int threads, LongSupplier supplier) throws InterruptedException {
+        long[] counts = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS) + TimeUnit.MILLISECONDS.toNanos(50);
+
+        for (int t = 0; t < threads; t++) {
+            final int idx = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long count = 0;
+                long sink = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    sink += supplier.getAsLong();
+                    count++;
+                }
+                counts[idx] = count + (sink == 42 ? 1 : 0);
+                done.countDown();
+            }, "bench-lsn-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long st = System.nanoTime();
+        start.countDown();
+        done.await();
+        long cost = System.nanoTime() - st;
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        return total * 1000D / cost;
+    }
+
+}
@@ -3,8 +3,26 @@ package com.whosly.stars.springboot2.webflux.asyn.file.wal.handler;
 import junit.framework.TestCase;
 import org.junit.Assert;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class LSNIdTest extends TestCase {
 
+    /**
+     * lsn 为静态状态， 每个用例结束后清空， 避免 resumeFrom 等影响其他用例
+     */
+    @Override
+    protected void tearDown() {
+        LSNId.reset();
+    }
+
     public void testGet() {
         for (int i = 0; i < 100000; i++) {
             String lsn = LSNId.get();
@@ -15,8 +33,60 @@ public class LSNIdTest extends TestCase {
 
     public void testGetN() {
         for (int i = 0; i < 100000; i++) {
-            Long lsn = LSNId.getN();
-            Assert.assertTrue(lsn != null);
+            long lsn = LSNId.getN();
+            Assert.assertTrue(lsn > 0);
         }
     }
-}
\ No newline at end of file
+
+    public void testToDecimal() {
+        long now = System.currentTimeMillis() / 1000;
+        String expect = new SimpleDateFormat("yyMMddHHmmss").format(new Date(now * 1000));
+
+        Assert.assertEquals(Long.parseLong(expect), LSNId.toDecimal(now));
+    }
+
+    public void testMonotonic() throws Exception {
+        int threads = 8;
+        int perThread = 50000;
+
+        // 各线程只收集结果， 断言在主线程完成， 工作线程中的断言失败不会被吞掉
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    long[] lsns = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        lsns[i] = LSNId.next();
+                    }
+                    return lsns;
+                }));
+            }
+
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> future : futures) {
+                long prev = 0;
+                for (long lsn : future.get()) {
+                    Assert.assertTrue(lsn > prev);
+                    all.add(lsn);
+                    prev = lsn;
+                }
+            }
+
+            Assert.assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testResumeFrom() {
+        long future = LSNId.next() + 100_0000000L;
+        LSNId.resumeFrom(future);
+
+        Assert.assertEquals(future + 1, LSNId.next());
+
+        // 更小的值不会回退
+        LSNId.resumeFrom(1L);
+        Assert.assertEquals(future + 2, LSNId.next());
+    }
+}
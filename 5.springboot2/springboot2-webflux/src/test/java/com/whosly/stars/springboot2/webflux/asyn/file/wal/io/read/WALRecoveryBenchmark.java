@@ -0,0 +1,111 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.block.WALBlockLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALBlocksLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALHeader;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALTrailer;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordBloEntry;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordHeaderBuilder;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer.SegmentWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 恢复耗时与峰值堆内存压测: 生成 -Dbench.walSizeMB(默认 1024)MB 的 wal， 分别用
+ * 1. 旧方式: FileReader.readAll + WALBlocksLog.fromBytes， 逐段整文件读入
+ * 2. 新方式: WALLogReader 流式逐条读取并校验
+ *
+ * 旧方式需要足够的堆， 例如 -Xmx4g。 单个段文件超过 2GB 时旧方式无法读取
+ */
+public class WALRecoveryBenchmark {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        long walSize = Long.getLong("bench.walSizeMB", 1024L) * 1024 * 1024;
+        File dir = new File(System.getProperty("java.io.tmpdir"), "wal-recovery-bench");
+        int segments = generate(dir, walSize);
+
+        System.gc();
+        resetPeak();
+        long st = System.nanoTime();
+        long records = 0;
+        try (WALLogReader reader = new WALLogReader(dir, Long.MIN_VALUE)) {
+            while (reader.hasNext()) {
+                reader.next();
+                records++;
+            }
+        }
+        report("WALLogReader", records, System.nanoTime() - st);
+
+        System.gc();
+        resetPeak();
+        st = System.nanoTime();
+        records = 0;
+        for (int i = 0; i < segments; i++) {
+            byte[] bytes = FileReader.readAll(new File(dir, segmentName(i)));
+            records += WALBlocksLog.fromBytes(bytes).getEntryList().size();
+        }
+        report("readAll+fromBytes", records, System.nanoTime() - st);
+    }
+
+    private static int generate(File dir, long walSize) throws IOException {
+        dir.mkdirs();
+
+        long written = 0;
+        long lsn = 1;
+        int seq = 0;
+        while (written < walSize) {
+            File file = new File(dir, segmentName(seq));
+            file.delete();
+
+            SegmentWriter writer = new SegmentWriter(file, SEGMENT_SIZE, 0);
+            writer.write(new WALHeader((byte) 1, lsn, seq == 0 ? "---------------------" : segmentName(seq - 1)).toBytes());
+            while (writer.position() < SEGMENT_SIZE - 8 * 1024) {
+                writer.write(new WALBlockLog(
+                        RecordHeaderBuilder.build(1, lsn),
+                        new RecordBloEntry("p1", lsn, "insert into SaleOrder values (" + lsn + ", 'C1', now(), 'remark')")
+                ).toBytes());
+                lsn++;
+            }
+            written += writer.position();
+            if (written < walSize) {
+                writer.write(new WALTrailer(segmentName(seq + 1)).toBytes());
+            }
+            writer.close();
+            seq++;
+        }
+
+        return seq;
+    }
+
+    private static String segmentName(int seq) {
+        return String.format("wal-20221231235959-%02d", seq);
+    }
+
+    private static void resetPeak() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static void report(String name, long records, long costNanos) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        System.out.printf("%-18s records:%d, cost(ms):%d, peak heap(MB):%d%n",
+                name, records, TimeUnit.NANOSECONDS.toMillis(costNanos), peak / 1024 / 1024);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.read;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.block.WALBlockLog;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALHeader;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.blocks.WALTrailer;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordBloEntry;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.fs.entry.RecordHeaderBuilder;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer.SegmentWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WALSegmentReaderTest {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @Test
+    public void testReadFromLsn() throws IOException {
+        File file = newSegment(10, true);
+
+        List<Long> lsnList = new ArrayList<>();
+        try (WALSegmentReader reader = new WALSegmentReader(file, 105L)) {
+            while (reader.hasNext()) {
+                lsnList.add(reader.next().getHeader().getLsn());
+            }
+
+            Assert.assertEquals(WALEndReason.TRAILER, reader.getEndReason());
+            Assert.assertEquals("wal-20221231235959-01", reader.getTrailer().getNext());
+        }
+
+        Assert.assertEquals(5, lsnList.size());
+        Assert.assertEquals(Long.valueOf(105L), lsnList.get(0));
+        Assert.assertEquals(Long.valueOf(109L), lsnList.get(4));
+    }
+
+    @Test
+    public void testScanPadding() throws IOException {
+        File file = newSegment(3, false);
+
+        // 关闭前的状态: 文件仍为预分配的大小
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            raf.setLength(SEGMENT_SIZE);
+
+            WALScanResult rs = WALSegmentReader.scan(file);
+            Assert.assertEquals(WALEndReason.PADDING, rs.getEndReason());
+            Assert.assertEquals(3, rs.getRecords());
+            Assert.assertEquals(length, rs.getValidLength());
+            Assert.assertEquals(Long.valueOf(102L), rs.getLastLsn());
+        }
+    }
+
+    @Test
+    public void testScanTornWrite() throws IOException {
+        File file = newSegment(3, false);
+        long validLength = file.length();
+
+        // 第 4 条只写了一半
+        byte[] record = record(103L);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(validLength);
+            raf.write(record, 0, record.length / 2);
+        }
+
+        WALScanResult rs = WALSegmentReader.scan(file);
+        Assert.assertEquals(WALEndReason.TORN, rs.getEndReason());
+        Assert.assertEquals(3, rs.getRecords());
+        Assert.assertEquals(validLength, rs.getValidLength());
+    }
+
+    @Test
+    public void testScanCorrupted() throws IOException {
+        File file = newSegment(3, false);
+        long length = file.length();
+
+        // 改写最后一条 record 数据体的最后一个字节
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(length - 1);
+            int b = raf.read();
+            raf.seek(length - 1);
+            raf.write(b ^ 0x01);
+        }
+
+        WALScanResult rs = WALSegmentReader.scan(file);
+        Assert.assertEquals(WALEndReason.CORRUPTED, rs.getEndReason());
+        Assert.assertEquals(2, rs.getRecords());
+    }
+
+    private static File newSegment(int records, boolean withTrailer) throws IOException {
+        File file = File.createTempFile("wal-segment", ".test");
+        file.deleteOnExit();
+
+        SegmentWriter writer = new SegmentWriter(file, SEGMENT_SIZE, 0);
+        writer.write(new WALHeader((byte) 1, 100L, "wal-20221231235959-00").toBytes());
+        for (int i = 0; i < records; i++) {
+            writer.write(record(100L + i));
+        }
+        if (withTrailer) {
+            writer.write(new WALTrailer("wal-20221231235959-01").toBytes());
+        }
+        writer.close();
+
+        return file;
+    }
+
+    private static byte[] record(long lsn) {
+        WALBlockLog blockLog = new WALBlockLog(
+                RecordHeaderBuilder.build(1, lsn),
+                new RecordBloEntry("p1", lsn, "insert into SaleOrder values (" + lsn + ")"));
+
+        return blockLog.toBytes();
+    }
+
+}
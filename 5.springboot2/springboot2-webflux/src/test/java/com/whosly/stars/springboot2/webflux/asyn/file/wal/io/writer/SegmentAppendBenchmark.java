@@ -0,0 +1,86 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 4KB record 追加吞吐压测(Write4KToFileController 的写入形态)。
+ *
+ * 旧路径: FileWriter(每次 flush) + 每条 record 的 exists/length 检查 + 1MB 滚动
+ * 新路径: SegmentWriter(预分配 64MB， 内存维护写入位置)
+ */
+public class SegmentAppendBenchmark {
+
+    private static final int RECORD_SIZE = 4 * 1024;
+
+    private static final int RECORDS = 100_000;
+
+    private static final long OLD_SEGMENT_SIZE = 1024L * 1024;
+
+    private static final long NEW_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        byte[] record = new byte[RECORD_SIZE];
+        ThreadLocalRandom.current().nextBytes(record);
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "wal-segment-bench");
+        dir.mkdirs();
+
+        for (int round = 0; round < 3; round++) {
+            report("FileWriter", oldPath(dir, record));
+            report("SegmentWriter", newPath(dir, record));
+        }
+    }
+
+    private static long oldPath(File dir, byte[] record) throws IOException {
+        int seq = 0;
+        File file = new File(dir, "old-" + seq);
+        file.delete();
+        IFileWriter writer = new FileWriter(file);
+
+        long st = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            if (!(file.exists() & file.length() + record.length < OLD_SEGMENT_SIZE - 50)) {
+                writer.close();
+                file = new File(dir, "old-" + (++seq));
+                file.delete();
+                writer = new FileWriter(file);
+            }
+            writer.write(record);
+        }
+        writer.close();
+
+        return System.nanoTime() - st;
+    }
+
+    private static long newPath(File dir, byte[] record) throws IOException {
+        int seq = 0;
+        File file = new File(dir, "new-" + seq);
+        file.delete();
+        SegmentWriter writer = new SegmentWriter(file, NEW_SEGMENT_SIZE, 0);
+
+        long st = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            if (writer.position() + record.length > NEW_SEGMENT_SIZE - 50) {
+                writer.close();
+                file = new File(dir, "new-" + (++seq));
+                file.delete();
+                writer = new SegmentWriter(file, NEW_SEGMENT_SIZE, 0);
+            }
+            writer.write(record);
+        }
+        writer.close();
+
+        return System.nanoTime() - st;
+    }
+
+    private static void report(String name, long costNanos) {
+        double mbPerSec = (double) RECORDS * RECORD_SIZE / (1024 * 1024) / (costNanos / 1_000_000_000D);
+        System.out.printf("%-14s records:%d, cost(ms):%6d, records/sec:%10.0f, MB/s:%8.1f%n",
+                name, RECORDS, TimeUnit.NANOSECONDS.toMillis(costNanos),
+                RECORDS * 1_000_000_000D / costNanos, mbPerSec);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.io.writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class SegmentWriterTest {
+
+    @Test
+    public void testPreallocateAndTruncate() throws IOException {
+        File file = File.createTempFile("wal-segment", ".test");
+        file.deleteOnExit();
+
+        SegmentWriter writer = new SegmentWriter(file, 1024 * 1024, 0);
+        Assert.assertEquals(1024 * 1024, file.length());
+
+        writer.write(new byte[4096]);
+        writer.write("end");
+        Assert.assertEquals(4096 + 3, writer.position());
+
+        writer.sync();
+        writer.close();
+        // 关闭时截断为实际长度
+        Assert.assertEquals(4096 + 3, file.length());
+
+        // 从已有位置继续追加
+        SegmentWriter reopen = new SegmentWriter(file, 1024 * 1024, file.length());
+        reopen.write(new byte[]{1, 2, 3});
+        Assert.assertEquals(4096 + 6, reopen.position());
+        reopen.close();
+        Assert.assertEquals(4096 + 6, file.length());
+    }
+
+    @Test
+    public void testIncrementalSyncAndWriteAfterClose() throws IOException {
+        File file = File.createTempFile("wal-segment", ".test");
+        file.deleteOnExit();
+
+        SegmentWriter writer = new SegmentWriter(file, 64 * 1024, 0);
+        writer.write("abc");
+        writer.sync();
+        writer.write("def");
+        writer.sync();
+        // 无新数据时 sync 不做任何事
+        writer.sync();
+        writer.close();
+
+        Assert.assertEquals("abcdef", new String(Files.readAllBytes(file.toPath())));
+
+        try {
+            writer.write("ghi");
+            Assert.fail("write after close");
+        } catch (IOException expected) {
+            // expected
+        }
+        try {
+            writer.sync();
+            Assert.fail("sync after close");
+        } catch (IOException expected) {
+            // expected
+        }
+        // 重复关闭无副作用
+        writer.close();
+        Assert.assertEquals(6, file.length());
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void testOfferPollWhenFull() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(100);
+        Assert.assertEquals(128, ringBuffer.capacity());
+
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            Assert.assertTrue(ringBuffer.offer(i));
+        }
+        Assert.assertFalse(ringBuffer.offer(-1));
+        Assert.assertEquals(ringBuffer.capacity(), ringBuffer.size());
+
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), ringBuffer.poll());
+        }
+        Assert.assertNull(ringBuffer.poll());
+        Assert.assertTrue(ringBuffer.isEmpty());
+    }
+
+    @Test
+    public void testMultiProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20000;
+        MpscRingBuffer<Long> ringBuffer = new MpscRingBuffer<>(64);
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ringBuffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].setDaemon(true);
+            threads[p].start();
+        }
+
+        // 每个生产者内部保持先进先出
+        long[] last = new long[producers];
+        Arrays.fill(last, -1L);
+        int received = 0;
+        while (received < producers * perProducer) {
+            Long val = ringBuffer.poll();
+            if (val == null) {
+                Thread.yield();
+                continue;
+            }
+
+            int p = (int) (val / perProducer);
+            Assert.assertEquals(last[p] + 1, val % perProducer);
+            last[p] = val % perProducer;
+            received++;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(ringBuffer.poll());
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.whosly.stars.springboot2.webflux.asyn.file.wal.queue;
+
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.body.WALBlockBody;
+import com.whosly.stars.springboot2.webflux.asyn.file.wal.rs.FutureCompact;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class WALQueueManagerTest {
+
+    @Test
+    public void testSpillKeepsOrderAndEmptyValues() throws IOException {
+        File spillPath = File.createTempFile("wal-queue", ".spill");
+        WALQueueManager queueManager = new WALQueueManager(2, OverflowPolicy.SPILL, spillPath);
+        String[] sqls = {"insert 0", "insert 1", "", null, "insert 4", ""};
+
+        try {
+            for (int i = 0; i < sqls.length; i++) {
+                Assert.assertTrue(queueManager.offer(compact(i, sqls[i])));
+            }
+            Assert.assertEquals(sqls.length - 2, queueManager.metrics().getSpilledDepth());
+
+            for (int i = 0; i < sqls.length; i++) {
+                FutureCompact futureCompact = queueManager.poll();
+                Assert.assertEquals(i, futureCompact.getLsnSeq());
+                Assert.assertEquals(sqls[i], futureCompact.getBody().getSql());
+                Assert.assertEquals("p" + i, futureCompact.getBody().getProcessId());
+            }
+            Assert.assertNull(queueManager.poll());
+        } finally {
+            queueManager.close();
+        }
+    }
+
+    @Test
+    public void testBlockedProducerWokenByConsumer() throws InterruptedException {
+        WALQueueManager queueManager = new WALQueueManager(2, OverflowPolicy.BLOCK);
+        Assert.assertTrue(queueManager.offer(compact(0, "insert 0")));
+        Assert.assertTrue(queueManager.offer(compact(1, "insert 1")));
+
+        boolean[] offered = new boolean[1];
+        Thread producer = new Thread(() -> offered[0] = queueManager.offer(compact(2, "insert 2")));
+        producer.setDaemon(true);
+        producer.start();
+
+        // 队列满， 生产者在条件上等待而不是自旋
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(Thread.State.WAITING, producer.getState());
+
+        Assert.assertEquals(0, queueManager.poll().getLsnSeq());
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertTrue(offered[0]);
+
+        Assert.assertEquals(1, queueManager.poll().getLsnSeq());
+        Assert.assertEquals(2, queueManager.poll().getLsnSeq());
+        Assert.assertEquals(1, queueManager.metrics().getBlocked());
+    }
+
+    private static FutureCompact compact(long lsn, String sql) {
+        return FutureCompact.builder()
+                .lsnSeq(lsn)
+                .body(WALBlockBody.builder()
+                        .processId("p" + lsn)
+                        .tid(lsn)
+                        .sql(sql)
+                        .build())
+                .build();
+    }
+
+}